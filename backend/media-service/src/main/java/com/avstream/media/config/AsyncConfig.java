@@ -21,35 +21,6 @@ public class AsyncConfig {
     
     private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
 
-    /**
-     * 转码任务线程池
-     */
-    @Bean("transcodeExecutor")
-    public Executor transcodeExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        
-        // 核心线程数
-        executor.setCorePoolSize(2);
-        // 最大线程数
-        executor.setMaxPoolSize(5);
-        // 队列容量
-        executor.setQueueCapacity(10);
-        // 线程名前缀
-        executor.setThreadNamePrefix("transcode-task-");
-        // 拒绝策略：由调用线程处理
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        // 线程空闲时间
-        executor.setKeepAliveSeconds(60);
-        // 等待所有任务结束后再关闭线程池
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        // 等待时间
-        executor.setAwaitTerminationSeconds(60);
-        
-        executor.initialize();
-        log.info("转码任务线程池初始化完成");
-        return executor;
-    }
-
     /**
      * 文件处理线程池
      */
@@ -99,9 +70,10 @@ public class AsyncConfig {
     public Executor metadataExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        executor.setCorePoolSize(1);
-        executor.setMaxPoolSize(2);
-        executor.setQueueCapacity(5);
+        // ffprobe通过范围请求读取文件头，主要是网络等待；队列放宽，避免上传高峰时由上传请求线程执行提取
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(200);
         executor.setThreadNamePrefix("metadata-extract-");
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.setKeepAliveSeconds(60);
@@ -112,4 +84,25 @@ public class AsyncConfig {
         log.info("元数据提取线程池初始化完成");
         return executor;
     }
+
+    /**
+     * 本地磁盘缓存填充线程池
+     */
+    @Bean("storageCacheExecutor")
+    public Executor storageCacheExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // 填充缓存是尽力而为的优化，队列满时直接放弃（下次未命中会重新触发），不能由播放请求线程执行整对象下载
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("storage-cache-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        
+        executor.initialize();
+        log.info("本地磁盘缓存填充线程池初始化完成");
+        return executor;
+    }
 }
\ No newline at end of file
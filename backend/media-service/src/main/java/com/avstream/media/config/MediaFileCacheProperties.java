@@ -0,0 +1,31 @@
+package com.avstream.media.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 媒体文件记录缓存配置
+ *
+ * @author AV Stream Team
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "media.file-cache")
+public class MediaFileCacheProperties {
+
+    /** 是否启用缓存，关闭时每次查询数据库 */
+    private boolean enabled = true;
+
+    /** 本地缓存最大条目数 */
+    private long localMaxSize = 10000;
+
+    /** 本地缓存过期时间（秒），失效消息丢失时的最长不一致时间 */
+    private long localTtlSeconds = 30;
+
+    /** Redis缓存过期时间（秒） */
+    private long redisTtlSeconds = 300;
+
+    /** 清除标记保留时间（秒），应大于一次数据库读取到写回缓存的最长耗时 */
+    private long tombstoneTtlSeconds = 10;
+}
@@ -29,6 +29,22 @@ public class MediaProcessingProperties {
             private int width = 320;
             private int height = 180;
             private String format = "jpeg";
+            /** 是否在元数据提取完成后自动生成海报、截图和雪碧图 */
+            private boolean autoGenerate = true;
+            /** 均匀分布的截图数量 */
+            private int frameCount = 8;
+            /** 海报最大宽高 */
+            private int posterWidth = 1280;
+            private int posterHeight = 720;
+            /** 海报截取位置（占时长的比例），避开片头黑场 */
+            private double posterPosition = 0.1;
+            /** 雪碧图小图间隔（秒）及小图最大宽高 */
+            private int spriteInterval = 10;
+            private int spriteTileWidth = 160;
+            private int spriteTileHeight = 90;
+            /** 每张雪碧图的行列数 */
+            private int spriteColumns = 10;
+            private int spriteRows = 10;
         }
     }
     
@@ -41,6 +41,15 @@ public class MediaServiceConfig {
     /** 分片过期时间（分钟） */
     private int chunkExpireMinutes = 60;
     
+    /** 上传进度落库步长（百分比），进度增长未达到步长时不写数据库 */
+    private int uploadProgressStep = 10;
+
+    /** 用户存储配额（字节） */
+    private long userStorageQuota = 10L * 1024 * 1024 * 1024; // 10GB
+
+    /** 上传配额预留有效期（小时），超时未完成的上传自动释放预留 */
+    private int quotaReservationTtlHours = 24;
+    
     /** 是否启用转码服务 */
     private boolean transcodeEnabled = true;
     
@@ -0,0 +1,25 @@
+package com.avstream.media.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis发布订阅配置
+ *
+ * @author AV Stream Team
+ */
+@Configuration
+public class RedisConfig {
+
+    /**
+     * 共享的消息监听容器，各服务自行注册频道监听
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
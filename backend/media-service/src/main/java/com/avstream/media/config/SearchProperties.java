@@ -0,0 +1,22 @@
+package com.avstream.media.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 媒体文件搜索配置
+ *
+ * @author AV Stream Team
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "media.search")
+public class SearchProperties {
+
+    /** 是否使用PostgreSQL全文/三元组索引搜索，关闭或数据库不支持时退化为文件名模糊匹配 */
+    private boolean enabled = true;
+
+    /** 三元组相似度阈值（0-1），用于容忍拼写错误 */
+    private double similarityThreshold = 0.3;
+}
@@ -0,0 +1,37 @@
+package com.avstream.media.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地磁盘缓存配置
+ *
+ * @author AV Stream Team
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "media.storage.cache")
+public class StorageCacheProperties {
+
+    /** 是否启用本地磁盘缓存 */
+    private boolean enabled = false;
+
+    /** 缓存目录（建议使用本地NVMe盘） */
+    private String directory = "/var/cache/avstream-media";
+
+    /** 缓存容量上限（字节） */
+    private long maxSizeBytes = 50L * 1024 * 1024 * 1024; // 50GB
+
+    /** 单个对象大小上限（字节），超过的对象不缓存 */
+    private long maxObjectSizeBytes = 4L * 1024 * 1024 * 1024; // 4GB
+
+    /** 准入阈值：对象被访问达到该次数后才写入缓存，避免一次性访问挤掉热点对象 */
+    private int admissionThreshold = 2;
+
+    /** 跟随进行中的填充读取时，等待新数据的最长时间（毫秒），超时后剩余部分回源读取 */
+    private long fillWaitTimeoutMs = 30000;
+
+    /** 访问计数表最大条目数，超过后清空重新计数 */
+    private int maxTrackedObjects = 100000;
+}
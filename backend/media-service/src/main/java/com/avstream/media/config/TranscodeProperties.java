@@ -0,0 +1,131 @@
+package com.avstream.media.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 转码调度配置
+ *
+ * @author AV Stream Team
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "media.transcode")
+public class TranscodeProperties {
+
+    /** 运行模式：all=接收请求并执行转码，api=只入队不执行，worker=只执行转码（配合worker profile） */
+    private Mode mode = Mode.ALL;
+
+    /** 工作节点标识，为空时使用 主机名:进程号 */
+    private String workerId;
+
+    /** 执行租约时长（毫秒），工作节点失联超过该时长后任务被退回队列 */
+    private long leaseDurationMs = 60000;
+
+    /** 租约续约间隔（毫秒），应明显小于租约时长 */
+    private long heartbeatIntervalMs = 15000;
+
+    /** 过期租约回收间隔（毫秒） */
+    private long reaperIntervalMs = 30000;
+
+    /** 最大并发转码任务数，0表示按CPU核数自动计算（核数 / 单任务线程数） */
+    private int maxConcurrentJobs = 0;
+
+    /** 单个转码任务占用的FFmpeg线程数，用于计算并发上限 */
+    private int threadsPerJob = 4;
+
+    /** 排队任务总数上限，超过后拒绝新任务（背压） */
+    private int maxQueueDepth = 500;
+
+    /** 单个用户排队任务数上限 */
+    private int maxPendingPerUser = 50;
+
+    /** 调度器轮询间隔（毫秒），新任务入队时会立即触发调度 */
+    private long dispatchIntervalMs = 1000;
+
+    /** 转码进度写库的最小间隔（毫秒），实时进度通过推送获取 */
+    private long progressPersistIntervalMs = 5000;
+
+    /** 进度增长达到该百分比时立即写库 */
+    private int progressPersistStep = 5;
+
+    /** 是否对长视频分段并行转码 */
+    private boolean splitEnabled = true;
+
+    /** 源文件时长达到该值（秒）时分段转码 */
+    private int splitMinDurationSeconds = 1200;
+
+    /** 目标分段时长（秒），实际在该时间点之后的第一个关键帧处切分 */
+    private int splitSegmentSeconds = 120;
+
+    /** 单个分段失败后的最大重试次数，超过后整体任务失败 */
+    private int segmentMaxRetries = 2;
+
+    /** 是否按内容复杂度（per-title）选择各码率档的码率和分辨率 */
+    private boolean perTitleEnabled = true;
+
+    /** 复杂度分析的采样片段数，在片源中均匀分布 */
+    private int perTitleSamples = 4;
+
+    /** 每个采样片段的时长（秒） */
+    private int perTitleSampleSeconds = 5;
+
+    /** 试编码使用的CRF值，对应目标画质 */
+    private int perTitleCrf = 23;
+
+    /** 试编码码率换算为各档码率时的系数，用于整体校准画质 */
+    private double perTitleBitrateFactor = 1.0;
+
+    /** 选定码率相对模板码率的下限比例 */
+    private double perTitleMinRatio = 0.4;
+
+    /** 选定码率相对模板码率的上限比例 */
+    private double perTitleMaxRatio = 1.2;
+
+    /** 是否通过nice/ionice降低FFmpeg进程的调度优先级（命令不存在时自动跳过） */
+    private boolean processPriorityEnabled = true;
+
+    /** 交互式任务（普通及以上优先级）的nice值 */
+    private int interactiveNice = 0;
+
+    /** 批量任务的nice值，同时使用最低的best-effort IO优先级 */
+    private int batchNice = 15;
+
+    /** 切分、拼接、打包等无重编码处理的nice值 */
+    private int remuxNice = 10;
+
+    /** 编码器停滞判定时长（秒）：输出时间戳超过该时长没有推进时终止进程，0表示不检测 */
+    private int stallTimeoutSeconds = 120;
+
+    /** 按源时长放宽运行时间上限：每秒源时长、每路输出允许的处理时间（秒），0表示不按时长放宽 */
+    private double timeoutRealtimeFactor = 3.0;
+
+    /** 单个进程运行时间的硬上限（秒），按源时长放宽后也不超过该值，0表示不限 */
+    private long maxProcessSeconds = 86400;
+
+    /** 进程看门狗检查间隔（毫秒） */
+    private long watchdogIntervalMs = 5000;
+
+    /**
+     * 当前节点是否执行转码任务
+     */
+    public boolean isExecutor() {
+        return mode != Mode.API;
+    }
+
+    /**
+     * 实际并发上限
+     */
+    public int resolveMaxConcurrentJobs() {
+        if (maxConcurrentJobs > 0) {
+            return maxConcurrentJobs;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, cores / Math.max(1, threadsPerJob));
+    }
+
+    public enum Mode {
+        ALL, API, WORKER
+    }
+}
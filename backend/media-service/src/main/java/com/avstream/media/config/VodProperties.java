@@ -0,0 +1,40 @@
+package com.avstream.media.config;
+
+import jakarta.validation.constraints.AssertTrue;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * 点播（VOD）打包与分发配置
+ *
+ * @author AV Stream Team
+ */
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "media.vod")
+public class VodProperties {
+
+    /** 多码率转码完成后是否打包为HLS/DASH */
+    private boolean enabled = true;
+
+    /** 分片时长（秒），转码时按该间隔强制关键帧，保证各码率分片对齐 */
+    private int segmentSeconds = 4;
+
+    /** 播放地址签名密钥，多个节点必须一致；启用VOD时未配置或长度不足32个字符则启动失败 */
+    private String signingSecret;
+
+    /** 播放地址有效期（秒） */
+    private int urlExpirySeconds = 7200;
+
+    /** 播放地址前缀，为空时返回相对路径 */
+    private String baseUrl = "";
+
+    /** 仅在启用VOD时要求签名密钥，关闭VOD的部署无需配置 */
+    @AssertTrue(message = "启用VOD时必须配置至少32个字符的播放地址签名密钥 media.vod.signing-secret")
+    public boolean isSigningSecretValid() {
+        return !enabled || (signingSecret != null && signingSecret.strip().length() >= 32);
+    }
+}
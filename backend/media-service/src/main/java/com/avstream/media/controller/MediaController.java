@@ -1,12 +1,16 @@
 package com.avstream.media.controller;
 
 import com.avstream.media.dto.request.UploadRequest;
+import com.avstream.media.dto.response.BatchOperationResponse;
+import com.avstream.media.dto.response.CursorPageResponse;
 import com.avstream.media.dto.response.MediaInfoResponse;
 import com.avstream.media.dto.response.UploadResponse;
 import com.avstream.media.entity.MediaFile;
+import com.avstream.media.service.MediaDownloadService;
 import com.avstream.media.service.MediaService;
 import com.avstream.media.service.FFmpegService;
 import com.avstream.media.service.MediaMTXService;
+import com.avstream.media.service.TranscodeProgressPublisher;
 import com.avstream.media.service.WebRTCService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -21,10 +25,13 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
@@ -46,9 +53,11 @@ public class MediaController {
     private static final Logger log = LoggerFactory.getLogger(MediaController.class);
 
     private final MediaService mediaService;
+    private final MediaDownloadService mediaDownloadService;
     private final FFmpegService ffmpegService;
     private final MediaMTXService mediaMTXService;
     private final WebRTCService webRTCService;
+    private final TranscodeProgressPublisher transcodeProgressPublisher;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "上传媒体文件", description = "上传单个媒体文件")
@@ -66,6 +75,48 @@ public class MediaController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping(value = "/upload/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "流式上传媒体文件", description = "请求体为文件原始字节，直接写入存储并计算SHA-256，支持分块传输")
+    public ResponseEntity<UploadResponse> uploadStream(
+            HttpServletRequest httpRequest,
+            @RequestParam("filename") String filename,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "isPublic", defaultValue = "false") Boolean isPublic,
+            @RequestHeader(value = "X-Content-SHA256", required = false) String contentSha256,
+            @RequestHeader("X-User-Id") Long userId) throws IOException {
+        
+        long contentLength = httpRequest.getContentLengthLong();
+        log.info("用户 {} 开始流式上传文件: {}, 长度: {}", userId, filename, contentLength);
+        
+        UploadRequest request = new UploadRequest();
+        request.setFilename(filename);
+        request.setFileSize(contentLength);
+        request.setMimeType(MediaTypeFactory.getMediaType(filename)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        request.setDescription(description);
+        request.setIsPublic(isPublic);
+        
+        UploadResponse response = mediaService.uploadStream(
+                httpRequest.getInputStream(), contentLength, request, contentSha256, userId);
+        
+        log.info("用户 {} 流式上传完成: {}", userId, response.getFileUuid());
+        
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/upload/init")
+    @Operation(summary = "初始化分片上传", description = "创建分片上传会话，返回文件UUID、分片大小和分片数")
+    public ResponseEntity<UploadResponse> initChunkUpload(
+            @Valid @RequestBody UploadRequest request,
+            @RequestHeader("X-User-Id") Long userId) {
+        
+        log.info("用户 {} 初始化分片上传: {}, 大小: {}", userId, request.getFilename(), request.getFileSize());
+        
+        UploadResponse response = mediaService.initChunkUpload(request, userId);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping(value = "/upload/chunk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "分片上传媒体文件", description = "分片上传大文件")
     public ResponseEntity<UploadResponse> uploadChunk(
@@ -82,6 +133,32 @@ public class MediaController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping(value = "/upload/chunks", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "批量上传分片", description = "一次上传多个分片，分片可乱序，全部到达后自动合并")
+    public ResponseEntity<UploadResponse> uploadChunks(
+            @RequestParam("chunks") List<MultipartFile> chunks,
+            @RequestParam("chunkIndexes") List<Integer> chunkIndexes,
+            @RequestParam("fileUuid") String fileUuid,
+            @RequestHeader("X-User-Id") Long userId) {
+        
+        log.debug("用户 {} 批量上传 {} 个分片 for file {}", userId, chunks.size(), fileUuid);
+        
+        UploadResponse response = mediaService.uploadChunks(chunks, fileUuid, chunkIndexes, userId);
+        
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/upload/status/{fileUuid}")
+    @Operation(summary = "获取分片上传状态", description = "返回已上传分片数和缺失分片列表，用于断点续传")
+    public ResponseEntity<UploadResponse> getUploadStatus(
+            @PathVariable String fileUuid,
+            @RequestHeader("X-User-Id") Long userId) {
+        
+        UploadResponse response = mediaService.getUploadStatus(fileUuid, userId);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/upload/merge")
     @Operation(summary = "合并分片文件", description = "合并所有分片为完整文件")
     public ResponseEntity<UploadResponse> mergeChunks(
@@ -136,15 +213,17 @@ public class MediaController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "搜索媒体文件", description = "根据关键词搜索用户的媒体文件")
+    @Operation(summary = "搜索媒体文件", description = "根据关键词搜索文件名和描述，按相关度排序并返回高亮片段；"
+            + "includePublic为true时同时搜索其他用户公开的文件")
     public ResponseEntity<Page<MediaInfoResponse>> searchMediaFiles(
             @RequestParam String keyword,
             @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(defaultValue = "false") boolean includePublic,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<MediaInfoResponse> response = mediaService.searchMediaFiles(keyword, userId, pageable);
+        Page<MediaInfoResponse> response = mediaService.searchMediaFiles(keyword, userId, includePublic, pageable);
         
         return ResponseEntity.ok(response);
     }
@@ -177,6 +256,23 @@ public class MediaController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/scroll")
+    @Operation(summary = "游标分页获取媒体文件", description = "按创建时间倒序滚动加载用户的媒体文件，可按关键词、类型、状态筛选；"
+            + "下一页传入上一页返回的nextCursor")
+    public ResponseEntity<CursorPageResponse<MediaInfoResponse>> scrollMediaFiles(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) MediaFile.FileType fileType,
+            @RequestParam(required = false) MediaFile.MediaStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        CursorPageResponse<MediaInfoResponse> response = mediaService.scrollMediaFiles(
+                userId, keyword, fileType, status, cursor, size);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @PutMapping("/info/{fileUuid}")
     @Operation(summary = "更新媒体文件信息", description = "更新媒体文件的文件名、描述、公开状态等信息")
     public ResponseEntity<MediaInfoResponse> updateMediaInfo(
@@ -209,16 +305,29 @@ public class MediaController {
     }
 
     @PostMapping("/batch-delete")
-    @Operation(summary = "批量删除媒体文件", description = "批量软删除多个媒体文件")
-    public ResponseEntity<Void> batchDeleteMediaFiles(
+    @Operation(summary = "批量删除媒体文件", description = "批量软删除多个媒体文件，逐项返回结果")
+    public ResponseEntity<BatchOperationResponse> batchDeleteMediaFiles(
             @RequestBody List<String> fileUuids,
             @RequestHeader("X-User-Id") Long userId) {
         
         log.info("用户 {} 批量删除文件: {}", userId, fileUuids.size());
         
-        mediaService.batchDeleteMediaFiles(fileUuids, userId);
+        BatchOperationResponse response = mediaService.batchDeleteMediaFiles(fileUuids, userId);
         
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/batch-restore")
+    @Operation(summary = "批量恢复媒体文件", description = "批量恢复多个已删除的媒体文件，逐项返回结果")
+    public ResponseEntity<BatchOperationResponse> batchRestoreMediaFiles(
+            @RequestBody List<String> fileUuids,
+            @RequestHeader("X-User-Id") Long userId) {
+        
+        log.info("用户 {} 批量恢复文件: {}", userId, fileUuids.size());
+        
+        BatchOperationResponse response = mediaService.batchRestoreMediaFiles(fileUuids, userId);
+        
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping("/restore/{fileUuid}")
@@ -248,45 +357,32 @@ public class MediaController {
     }
 
     @GetMapping("/download/{fileUuid}")
-    @Operation(summary = "下载媒体文件", description = "下载媒体文件内容")
+    @Operation(summary = "下载媒体文件", description = "下载媒体文件内容，支持Range断点续传")
     public void downloadMediaFile(
             @PathVariable String fileUuid,
             @RequestHeader("X-User-Id") Long userId,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         
         log.info("用户 {} 下载文件: {}", userId, fileUuid);
         
         MediaFile mediaFile = mediaService.downloadMediaFile(fileUuid, userId);
         
-        // 设置响应头
-        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, 
-            "attachment; filename=\"" + mediaFile.getFilename() + "\"");
-        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(mediaFile.getFileSize()));
-        
-        // 这里应该实现文件流传输逻辑
-        // 由于存储服务未实现，暂时返回空响应
-        response.getOutputStream().flush();
+        mediaDownloadService.serve(mediaFile, request, response, true);
     }
 
     @GetMapping("/public/download/{fileUuid}")
-    @Operation(summary = "下载公开媒体文件", description = "下载公开媒体文件内容（无需认证）")
+    @Operation(summary = "下载公开媒体文件", description = "下载公开媒体文件内容（无需认证），支持Range断点续传")
     public void downloadPublicMediaFile(
             @PathVariable String fileUuid,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         
         log.info("下载公开文件: {}", fileUuid);
         
         MediaFile mediaFile = mediaService.downloadPublicMediaFile(fileUuid);
         
-        // 设置响应头
-        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, 
-            "attachment; filename=\"" + mediaFile.getFilename() + "\"");
-        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(mediaFile.getFileSize()));
-        
-        // 这里应该实现文件流传输逻辑
-        response.getOutputStream().flush();
+        mediaDownloadService.serve(mediaFile, request, response, true);
     }
 
     @GetMapping("/preview/{fileUuid}")
@@ -457,6 +553,14 @@ public class MediaController {
         }
     }
 
+    @GetMapping(value = "/transcode/{transcodeUuid}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅转码进度", description = "以SSE方式推送转码任务的实时进度、速度和预计剩余时间")
+    public SseEmitter subscribeTranscodeProgress(
+            @PathVariable String transcodeUuid,
+            @RequestHeader("X-User-Id") Long userId) {
+        return transcodeProgressPublisher.subscribe(transcodeUuid, userId);
+    }
+
     @PostMapping("/thumbnail")
     @Operation(summary = "提取缩略图", description = "从视频文件中提取缩略图")
     public ResponseEntity<Map<String, Object>> extractThumbnail(
@@ -0,0 +1,85 @@
+package com.avstream.media.controller;
+
+import com.avstream.media.service.StorageService;
+import com.avstream.media.service.StoredObjectInfo;
+import com.avstream.media.service.VodService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 点播分发控制器
+ *
+ * 输出HLS/DASH清单和CMAF分片。地址中携带签名和过期时间，清单内的相对地址沿用同一前缀，
+ * 播放器无需额外鉴权即可请求子播放列表和分片；对象读取经过存储服务，启用本地缓存时热点分片直接从本地磁盘输出。
+ *
+ * @author AV Stream Team
+ */
+@RestController
+@RequestMapping("/api/v1/media/vod")
+@RequiredArgsConstructor
+@Tag(name = "点播分发", description = "HLS/DASH点播清单与分片")
+public class VodController {
+
+    private static final Logger log = LoggerFactory.getLogger(VodController.class);
+
+    /** 分片内容不可变（每次打包使用新的版本目录），可长期缓存 */
+    private static final String SEGMENT_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String MANIFEST_CACHE_CONTROL = "public, max-age=60";
+
+    private final VodService vodService;
+    private final StorageService storageService;
+
+    @GetMapping("/{fileUuid}/{expires}/{signature}/{version}/{name:.+}")
+    @Operation(summary = "点播清单与分片", description = "按签名地址输出HLS/DASH清单或CMAF分片")
+    public void serve(@PathVariable String fileUuid,
+                      @PathVariable long expires,
+                      @PathVariable String signature,
+                      @PathVariable String version,
+                      @PathVariable String name,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String objectName = vodService.resolveObjectName(fileUuid, expires, signature, version, name);
+        if (objectName == null) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        StoredObjectInfo object;
+        try {
+            object = storageService.statObject(objectName);
+        } catch (IOException e) {
+            log.debug("点播对象不存在: {}", objectName);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + object.getEtag() + "\"";
+        boolean manifest = name.endsWith(".m3u8") || name.endsWith(".mpd");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, manifest ? MANIFEST_CACHE_CONTROL : SEGMENT_CACHE_CONTROL);
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(VodService.contentTypeOf(name));
+        response.setContentLengthLong(object.getSize());
+        if (object.getSize() > 0) {
+            storageService.transferTo(objectName, 0, object.getSize(), response.getOutputStream());
+        }
+    }
+}
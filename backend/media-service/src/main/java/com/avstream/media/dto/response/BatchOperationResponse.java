@@ -0,0 +1,96 @@
+package com.avstream.media.dto.response;
+
+import java.util.List;
+
+/**
+ * 批量操作响应DTO
+ *
+ * 逐项返回处理结果，部分文件失败不影响其他文件。
+ *
+ * @author AV Stream Team
+ */
+public class BatchOperationResponse {
+
+    public static final String SUCCESS = "SUCCESS";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String FORBIDDEN = "FORBIDDEN";
+    public static final String SKIPPED = "SKIPPED";
+    public static final String CREATED = "CREATED";
+    public static final String REUSED = "REUSED";
+
+    /** 逐项结果 */
+    private List<ItemResult> results;
+
+    /** 成功数量 */
+    private int successCount;
+
+    /** 未成功数量（不存在、无权限或已处于目标状态） */
+    private int failureCount;
+
+    public BatchOperationResponse() {
+    }
+
+    public BatchOperationResponse(List<ItemResult> results) {
+        this.results = results;
+        this.successCount = (int) results.stream().filter(result -> isSuccess(result.getStatus())).count();
+        this.failureCount = results.size() - successCount;
+    }
+
+    private static boolean isSuccess(String status) {
+        return SUCCESS.equals(status) || CREATED.equals(status) || REUSED.equals(status);
+    }
+
+    // Getter and Setter methods
+    public List<ItemResult> getResults() { return results; }
+    public void setResults(List<ItemResult> results) { this.results = results; }
+
+    public int getSuccessCount() { return successCount; }
+    public void setSuccessCount(int successCount) { this.successCount = successCount; }
+
+    public int getFailureCount() { return failureCount; }
+    public void setFailureCount(int failureCount) { this.failureCount = failureCount; }
+
+    /**
+     * 单个文件的处理结果
+     */
+    public static class ItemResult {
+
+        /** 文件UUID */
+        private String fileUuid;
+
+        /** 结果：SUCCESS、NOT_FOUND、FORBIDDEN、SKIPPED；批量转码为 CREATED、REUSED、NOT_FOUND */
+        private String status;
+
+        /** 批量转码时创建的转码任务UUID */
+        private String transcodeUuid;
+
+        /** 失败原因 */
+        private String message;
+
+        public ItemResult() {
+        }
+
+        public ItemResult(String fileUuid, String status, String message) {
+            this.fileUuid = fileUuid;
+            this.status = status;
+            this.message = message;
+        }
+
+        public ItemResult(String fileUuid, String status, String message, String transcodeUuid) {
+            this(fileUuid, status, message);
+            this.transcodeUuid = transcodeUuid;
+        }
+
+        public String getFileUuid() { return fileUuid; }
+        public void setFileUuid(String fileUuid) { this.fileUuid = fileUuid; }
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+
+        public String getTranscodeUuid() { return transcodeUuid; }
+        public void setTranscodeUuid(String transcodeUuid) { this.transcodeUuid = transcodeUuid; }
+    }
+}
@@ -0,0 +1,48 @@
+package com.avstream.media.dto.response;
+
+import java.util.List;
+
+/**
+ * 游标分页响应DTO
+ *
+ * 深度翻页时使用：下一页以上一页最后一条记录为起点查询，不统计总数，每页的查询开销与页码无关。
+ *
+ * @author AV Stream Team
+ */
+public class CursorPageResponse<T> {
+
+    /** 当前页数据 */
+    private List<T> content;
+
+    /** 下一页游标，没有更多数据时为null */
+    private String nextCursor;
+
+    /** 是否还有更多数据 */
+    private boolean hasMore;
+
+    /** 每页大小 */
+    private int size;
+
+    public CursorPageResponse() {
+    }
+
+    public CursorPageResponse(List<T> content, String nextCursor, int size) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.size = size;
+    }
+
+    // Getter and Setter methods
+    public List<T> getContent() { return content; }
+    public void setContent(List<T> content) { this.content = content; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+}
@@ -95,6 +95,12 @@ public class MediaInfoResponse {
     /** 分类信息 */
     private CategoryInfo category;
 
+    /** 搜索结果中高亮的文件名（HTML，匹配部分以 em 标签标记），仅搜索时返回 */
+    private String highlightedFilename;
+
+    /** 搜索结果中高亮的描述片段，仅搜索时返回 */
+    private String highlightedDescription;
+
     // Getter and Setter methods
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -179,6 +185,12 @@ public class MediaInfoResponse {
     
     public CategoryInfo getCategory() { return category; }
     public void setCategory(CategoryInfo category) { this.category = category; }
+    
+    public String getHighlightedFilename() { return highlightedFilename; }
+    public void setHighlightedFilename(String highlightedFilename) { this.highlightedFilename = highlightedFilename; }
+    
+    public String getHighlightedDescription() { return highlightedDescription; }
+    public void setHighlightedDescription(String highlightedDescription) { this.highlightedDescription = highlightedDescription; }
 
     /**
      * 媒体元数据类
@@ -2,6 +2,7 @@ package com.avstream.media.dto.response;
 
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 上传响应DTO
@@ -31,6 +32,9 @@ public class UploadResponse {
     /** 已上传分片数 */
     private Integer uploadedChunks = 0;
 
+    /** 缺失的分片索引（断点续传时返回） */
+    private List<Integer> missingChunks;
+
     /** 上传状态 */
     private UploadStatus status;
 
@@ -71,6 +75,9 @@ public class UploadResponse {
     public Integer getUploadedChunks() { return uploadedChunks; }
     public void setUploadedChunks(Integer uploadedChunks) { this.uploadedChunks = uploadedChunks; }
     
+    public List<Integer> getMissingChunks() { return missingChunks; }
+    public void setMissingChunks(List<Integer> missingChunks) { this.missingChunks = missingChunks; }
+    
     public UploadStatus getStatus() { return status; }
     public void setStatus(UploadStatus status) { this.status = status; }
     
@@ -322,6 +329,11 @@ public class UploadResponse {
             return this;
         }
 
+        public UploadResponseBuilder missingChunks(List<Integer> missingChunks) {
+            uploadResponse.setMissingChunks(missingChunks);
+            return this;
+        }
+
         public UploadResponseBuilder status(UploadStatus status) {
             uploadResponse.setStatus(status);
             return this;
@@ -117,6 +117,18 @@ public class MediaFile {
     @Column(name = "error_message", length = 1000)
     private String errorMessage;
 
+    /** 存储对象校验值（合并后对象的ETag） */
+    @Column(name = "checksum", length = 128)
+    private String checksum;
+
+    /** 文件内容SHA-256（十六进制） */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /** VOD主播放列表路径（打包为HLS/DASH后设置，未打包时为空） */
+    @Column(name = "vod_manifest_path", length = 500)
+    private String vodManifestPath;
+
     /** 转码文件列表 */
     @OneToMany(mappedBy = "originalFile", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<MediaTranscode> transcodes = new ArrayList<>();
@@ -125,9 +137,9 @@ public class MediaFile {
     @OneToOne(mappedBy = "mediaFile", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private MediaMetadata metadata;
 
-    /** 缩略图信息 */
-    @OneToOne(mappedBy = "mediaFile", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private MediaThumbnail thumbnail;
+    /** 缩略图（海报、截图、雪碧图） */
+    @OneToMany(mappedBy = "mediaFile", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    private List<MediaThumbnail> thumbnails = new ArrayList<>();
 
     /**
      * 文件类型枚举
@@ -268,14 +280,23 @@ public class MediaFile {
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
     
+    public String getChecksum() { return checksum; }
+    public void setChecksum(String checksum) { this.checksum = checksum; }
+    
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    
+    public String getVodManifestPath() { return vodManifestPath; }
+    public void setVodManifestPath(String vodManifestPath) { this.vodManifestPath = vodManifestPath; }
+    
     public List<MediaTranscode> getTranscodes() { return transcodes; }
     public void setTranscodes(List<MediaTranscode> transcodes) { this.transcodes = transcodes; }
     
     public MediaMetadata getMetadata() { return metadata; }
     public void setMetadata(MediaMetadata metadata) { this.metadata = metadata; }
     
-    public MediaThumbnail getThumbnail() { return thumbnail; }
-    public void setThumbnail(MediaThumbnail thumbnail) { this.thumbnail = thumbnail; }
+    public List<MediaThumbnail> getThumbnails() { return thumbnails; }
+    public void setThumbnails(List<MediaThumbnail> thumbnails) { this.thumbnails = thumbnails; }
     
     // Builder pattern implementation
     public static MediaFileBuilder builder() {
@@ -24,8 +24,12 @@ public class MediaThumbnail {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    /** 关联的媒体文件 */
-    @OneToOne(fetch = FetchType.LAZY)
+    /** 缩略图UUID */
+    @Column(name = "thumbnail_uuid", unique = true, length = 36)
+    private String thumbnailUuid;
+
+    /** 关联的媒体文件（一个文件有海报、多张截图和雪碧图） */
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "media_file_id", nullable = false)
     private MediaFile mediaFile;
 
@@ -66,6 +70,14 @@ public class MediaThumbnail {
     @Column(name = "capture_time")
     private Double captureTime;
 
+    /** 是否为默认缩略图（海报） */
+    @Column(name = "is_default")
+    private Boolean isDefault = false;
+
+    /** 雪碧图中每个小图的显示时长（秒），仅雪碧图 */
+    @Column(name = "tile_interval")
+    private Double tileInterval;
+
     /** 是否启用 */
     @Column(name = "enabled", nullable = false)
     private Boolean enabled = true;
@@ -75,6 +87,14 @@ public class MediaThumbnail {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /** 更新时间 */
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /** 删除时间 */
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     /**
      * 缩略图类型枚举
      */
@@ -84,7 +104,9 @@ public class MediaThumbnail {
         LARGE,          // 大图（用于详情）
         COVER,          // 封面图
         POSTER,         // 海报图
-        SCREENSHOT      // 截图
+        SCREENSHOT,     // 截图
+        SPRITE,         // 雪碧图（拖动预览的小图拼接）
+        SPRITE_INDEX    // 雪碧图WebVTT索引
     }
 
     /**
@@ -129,6 +151,10 @@ public class MediaThumbnail {
                 return "海报图";
             case SCREENSHOT:
                 return "截图";
+            case SPRITE:
+                return "雪碧图";
+            case SPRITE_INDEX:
+                return "雪碧图索引";
             default:
                 return this.thumbnailType.name();
         }
@@ -16,8 +16,10 @@ import java.time.LocalDateTime;
 @Table(name = "media_transcodes")
 public class MediaTranscode {
 
+    /** 序列一次分配50个ID（见迁移脚本V5），批量插入时不必逐行取回自增主键，可以合并为JDBC批处理 */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "media_transcodes_seq")
+    @SequenceGenerator(name = "media_transcodes_seq", sequenceName = "media_transcodes_id_seq", allocationSize = 50)
     private Long id;
 
     /** 原始媒体文件 */
@@ -110,10 +112,22 @@ public class MediaTranscode {
     @Column(name = "progress")
     private Integer progress = 0;
 
+    /** 调度优先级，数值越大越优先，取值见 {@link TranscodePriority}（带默认值，便于为已有数据加列） */
+    @Column(name = "priority", nullable = false, columnDefinition = "INTEGER DEFAULT 100")
+    private Integer priority = TranscodePriority.NORMAL.getValue();
+
     /** 转码开始时间 */
     @Column(name = "started_at")
     private LocalDateTime startedAt;
 
+    /** 持有执行租约的工作节点（只由领取、续约、回收语句修改，实体保存时不覆盖） */
+    @Column(name = "lease_owner", length = 128, updatable = false)
+    private String leaseOwner;
+
+    /** 执行租约到期时间，工作节点定期续约，过期未续约的任务会被退回队列 */
+    @Column(name = "lease_expires_at", updatable = false)
+    private LocalDateTime leaseExpiresAt;
+
     /** 转码完成时间 */
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
@@ -126,6 +140,34 @@ public class MediaTranscode {
     @Column(name = "job_id", length = 100)
     private String jobId;
 
+    /** 分段转码：分段记录所属的整体任务ID */
+    @Column(name = "parent_id")
+    private Long parentId;
+
+    /** 分段转码：分段序号（从0开始） */
+    @Column(name = "segment_index")
+    private Integer segmentIndex;
+
+    /** 分段转码：整体任务的分段数，未分段时为空 */
+    @Column(name = "segment_count")
+    private Integer segmentCount;
+
+    /** 分段转码：源分段SHA-256 */
+    @Column(name = "source_checksum", length = 64)
+    private String sourceChecksum;
+
+    /** 分段转码：输出分段SHA-256 */
+    @Column(name = "output_checksum", length = 64)
+    private String outputChecksum;
+
+    /** 内容复杂度：低分辨率CRF试编码的平均码率（kbps），未分析时为空 */
+    @Column(name = "complexity_kbps")
+    private Integer complexityKbps;
+
+    /** 按内容复杂度选定的整套码率阶梯，如 1920x1080@2450k,1280x720@1380k */
+    @Column(name = "encoding_ladder", length = 500)
+    private String encodingLadder;
+
     /** 用户ID */
     @Column(name = "user_id")
     private Long userId;
@@ -220,9 +262,18 @@ public class MediaTranscode {
     public Integer getProgress() { return progress; }
     public void setProgress(Integer progress) { this.progress = progress; }
     
+    public Integer getPriority() { return priority; }
+    public void setPriority(Integer priority) { this.priority = priority; }
+    
     public LocalDateTime getStartedAt() { return startedAt; }
     public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
     
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+    
     public LocalDateTime getCompletedAt() { return completedAt; }
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
     
@@ -232,6 +283,27 @@ public class MediaTranscode {
     public String getJobId() { return jobId; }
     public void setJobId(String jobId) { this.jobId = jobId; }
     
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+    
+    public Integer getSegmentIndex() { return segmentIndex; }
+    public void setSegmentIndex(Integer segmentIndex) { this.segmentIndex = segmentIndex; }
+    
+    public Integer getSegmentCount() { return segmentCount; }
+    public void setSegmentCount(Integer segmentCount) { this.segmentCount = segmentCount; }
+    
+    public String getSourceChecksum() { return sourceChecksum; }
+    public void setSourceChecksum(String sourceChecksum) { this.sourceChecksum = sourceChecksum; }
+    
+    public String getOutputChecksum() { return outputChecksum; }
+    public void setOutputChecksum(String outputChecksum) { this.outputChecksum = outputChecksum; }
+    
+    public Integer getComplexityKbps() { return complexityKbps; }
+    public void setComplexityKbps(Integer complexityKbps) { this.complexityKbps = complexityKbps; }
+    
+    public String getEncodingLadder() { return encodingLadder; }
+    public void setEncodingLadder(String encodingLadder) { this.encodingLadder = encodingLadder; }
+    
     public Long getUserId() { return userId; }
     
     public Integer getProcessingTime() { return processingTime; }
@@ -255,11 +327,32 @@ public class MediaTranscode {
     public enum TranscodeStatus {
         PENDING,        // 等待转码
         PROCESSING,     // 转码中
+        WAITING,        // 已分段，等待各分段转码完成
         COMPLETED,      // 转码完成
         FAILED,         // 转码失败
         CANCELLED       // 转码取消
     }
 
+    /**
+     * 转码调度优先级
+     */
+    public enum TranscodePriority {
+        LIVE(300),      // 直播录制衍生
+        VIP(200),       // VIP用户
+        NORMAL(100),    // 普通用户
+        BATCH(0);       // 批量任务
+
+        private final int value;
+
+        TranscodePriority(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
     /**
      * 获取视频分辨率
      */
@@ -267,7 +360,7 @@ public class MediaTranscode {
         if (this.width != null && this.height != null) {
             return this.width + "x" + this.height;
         }
-        return null;
+        return this.resolution;
     }
 
     /**
@@ -318,9 +411,7 @@ public class MediaTranscode {
 
     // Setter方法
     public void setFileUuid(String fileUuid) {
-        // 这里需要根据fileUuid查找对应的MediaFile并设置originalFile
-        // 实际应用中应该通过Service来设置关联关系
-        // 暂时保留此方法以通过编译
+        this.fileUuid = fileUuid;
     }
 
     public void setTemplateName(String templateName) {
@@ -0,0 +1,70 @@
+package com.avstream.media.entity;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 内容寻址存储对象实体类
+ *
+ * 同一内容（SHA-256相同）只保存一份存储对象，多个媒体文件通过引用计数共享。
+ *
+ * @author AV Stream Team
+ */
+@Entity
+@Table(name = "media_objects")
+public class StoredObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 内容SHA-256（十六进制） */
+    @Column(name = "content_hash", unique = true, nullable = false, length = 64)
+    private String contentHash;
+
+    /** 存储对象名称 */
+    @Column(name = "object_name", nullable = false, length = 500)
+    private String objectName;
+
+    /** 对象大小（字节） */
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    /** 引用计数 */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 1;
+
+    /** 创建时间 */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /** 更新时间 */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getObjectName() { return objectName; }
+    public void setObjectName(String objectName) { this.objectName = objectName; }
+
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+
+    public Integer getRefCount() { return refCount; }
+    public void setRefCount(Integer refCount) { this.refCount = refCount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -3,6 +3,7 @@ package com.avstream.media.exception;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -24,6 +25,9 @@ public class GlobalExceptionHandler {
     
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    /** 转码队列已满时建议客户端的重试间隔（秒） */
+    private static final int QUEUE_FULL_RETRY_AFTER_SECONDS = 30;
+
     /**
      * 处理业务异常
      */
@@ -39,6 +43,26 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    /**
+     * 处理转码异常，任务队列已满时返回429并提示客户端稍后重试
+     */
+    @ExceptionHandler(TranscodeException.class)
+    public ResponseEntity<Map<String, Object>> handleTranscodeException(TranscodeException e) {
+        log.warn("转码异常: {}", e.getFullMessage());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", e.getCode());
+        response.put("message", e.getMessage());
+        response.put("timestamp", System.currentTimeMillis());
+        
+        if (e.getCode() == TranscodeException.queueFull().getCode()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(QUEUE_FULL_RETRY_AFTER_SECONDS))
+                    .body(response);
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    }
+
     /**
      * 处理参数验证异常
      */
@@ -4,12 +4,15 @@ import com.avstream.media.entity.MediaFile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,13 +22,26 @@ import java.util.Optional;
  * @author AV Stream Team
  */
 @Repository
-public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
+public interface MediaFileRepository extends JpaRepository<MediaFile, Long>, JpaSpecificationExecutor<MediaFile>,
+        MediaFileRepositoryCustom {
 
     /**
      * 根据文件UUID查找媒体文件
      */
     Optional<MediaFile> findByFileUuid(String fileUuid);
 
+    /**
+     * 根据文件UUID批量查找媒体文件，元数据一并加载
+     */
+    @Query("SELECT m FROM MediaFile m LEFT JOIN FETCH m.metadata WHERE m.fileUuid IN :fileUuids")
+    List<MediaFile> findByFileUuidIn(@Param("fileUuids") Collection<String> fileUuids);
+
+    /**
+     * 批量查询文件归属和删除状态，每行为 {fileUuid, userId, enabled}
+     */
+    @Query("SELECT m.fileUuid, m.userId, m.enabled FROM MediaFile m WHERE m.fileUuid IN :fileUuids")
+    List<Object[]> findOwnershipByFileUuidIn(@Param("fileUuids") Collection<String> fileUuids);
+
     /**
      * 根据用户ID查找媒体文件
      */
@@ -108,6 +124,14 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
     @Query("UPDATE MediaFile m SET m.uploadProgress = :progress, m.updatedAt = CURRENT_TIMESTAMP WHERE m.id = :id")
     void updateUploadProgress(@Param("id") Long id, @Param("progress") Integer progress);
 
+    /**
+     * 更新VOD主播放列表路径
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaFile m SET m.vodManifestPath = :path, m.updatedAt = CURRENT_TIMESTAMP WHERE m.fileUuid = :fileUuid")
+    int updateVodManifestPath(@Param("fileUuid") String fileUuid, @Param("path") String path);
+
     /**
      * 标记上传完成
      */
@@ -195,6 +219,20 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
     @Query("SELECT COALESCE(SUM(m.fileSize), 0) FROM MediaFile m WHERE m.enabled = true")
     Long calculateTotalStorageUsage();
 
+    /**
+     * 按用户统计已上传完成文件占用的存储（包含回收站中的文件），每行为 {userId, 字节数, 文件数}
+     */
+    @Query("SELECT m.userId, COALESCE(SUM(m.fileSize), 0), COUNT(m) FROM MediaFile m " +
+           "WHERE m.uploadCompletedAt IS NOT NULL GROUP BY m.userId")
+    List<Object[]> sumStorageUsageGroupByUser();
+
+    /**
+     * 统计单个用户已上传完成文件占用的存储，结果为 {字节数, 文件数}
+     */
+    @Query("SELECT COALESCE(SUM(m.fileSize), 0), COUNT(m) FROM MediaFile m " +
+           "WHERE m.userId = :userId AND m.uploadCompletedAt IS NOT NULL")
+    List<Object[]> sumStorageUsageByUserId(@Param("userId") Long userId);
+
     /**
      * 根据文件类型统计文件数量
      */
@@ -0,0 +1,43 @@
+package com.avstream.media.repository;
+
+import com.avstream.media.entity.MediaFile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 媒体文件投影查询接口
+ *
+ * @author AV Stream Team
+ */
+public interface MediaFileRepositoryCustom {
+
+    /**
+     * 按条件分页查询媒体文件摘要
+     */
+    Page<MediaFileSummary> findSummaries(Specification<MediaFile> spec, Pageable pageable);
+
+    /**
+     * 按条件查询前 limit 条媒体文件摘要，不统计总数
+     */
+    List<MediaFileSummary> findSummaries(Specification<MediaFile> spec, Sort sort, int limit);
+
+    /**
+     * 按ID查询媒体文件摘要
+     */
+    List<MediaFileSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    /**
+     * 批量软删除用户自己未删除的文件，返回实际被删除的文件UUID
+     */
+    List<String> softDeleteAll(Collection<String> fileUuids, Long userId);
+
+    /**
+     * 批量恢复用户自己已删除的文件，返回实际被恢复的文件UUID
+     */
+    List<String> restoreAll(Collection<String> fileUuids, Long userId);
+}
@@ -0,0 +1,133 @@
+package com.avstream.media.repository;
+
+import com.avstream.media.entity.MediaFile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 媒体文件投影查询与批量更新实现
+ *
+ * 使用Criteria构造 {@link MediaFileSummary}，SELECT 只包含摘要列；条件复用 {@link MediaFileSpecifications}。
+ * 批量软删除/恢复以数组参数一条UPDATE完成，RETURNING 返回实际变更的行，供调用方生成逐项结果。
+ *
+ * @author AV Stream Team
+ */
+public class MediaFileRepositoryCustomImpl implements MediaFileRepositoryCustom {
+
+    private static final String SOFT_DELETE_SQL = "UPDATE media_files "
+            + "SET enabled = false, deleted_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE file_uuid = ANY(?) AND user_id = ? AND enabled = true RETURNING file_uuid";
+
+    private static final String RESTORE_SQL = "UPDATE media_files "
+            + "SET enabled = true, deleted_at = NULL, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE file_uuid = ANY(?) AND user_id = ? AND enabled = false RETURNING file_uuid";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MediaFileRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Page<MediaFileSummary> findSummaries(Specification<MediaFile> spec, Pageable pageable) {
+        TypedQuery<MediaFileSummary> query = createQuery(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        // 第一页不满一页时不执行COUNT
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<MediaFileSummary> findSummaries(Specification<MediaFile> spec, Sort sort, int limit) {
+        return createQuery(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<MediaFileSummary> findSummariesByIdIn(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Specification<MediaFile> spec = (root, query, cb) -> root.get("id").in(ids);
+        return createQuery(spec, Sort.unsorted()).getResultList();
+    }
+
+    @Override
+    public List<String> softDeleteAll(Collection<String> fileUuids, Long userId) {
+        return updateReturningUuids(SOFT_DELETE_SQL, fileUuids, userId);
+    }
+
+    @Override
+    public List<String> restoreAll(Collection<String> fileUuids, Long userId) {
+        return updateReturningUuids(RESTORE_SQL, fileUuids, userId);
+    }
+
+    private List<String> updateReturningUuids(String sql, Collection<String> fileUuids, Long userId) {
+        if (fileUuids.isEmpty()) {
+            return List.of();
+        }
+        // 在当前事务的连接上执行；批量更新绕过持久化上下文，调用方不应再使用已加载的实体
+        entityManager.flush();
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("varchar", fileUuids.toArray()));
+            statement.setLong(2, userId);
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+    private TypedQuery<MediaFileSummary> createQuery(Specification<MediaFile> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MediaFileSummary> query = cb.createQuery(MediaFileSummary.class);
+        Root<MediaFile> root = query.from(MediaFile.class);
+        query.select(cb.construct(MediaFileSummary.class,
+                root.get("id"), root.get("fileUuid"), root.get("filename"), root.get("fileSize"),
+                root.get("fileType"), root.get("status"), root.get("isPublic"), root.get("description"),
+                root.get("uploadProgress"), root.get("createdAt"), root.get("updatedAt"),
+                root.get("filePath"), root.get("vodManifestPath")));
+        applySpecification(spec, root, query, cb);
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<MediaFile> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<MediaFile> root = query.from(MediaFile.class);
+        query.select(cb.count(root));
+        applySpecification(spec, root, query, cb);
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static void applySpecification(Specification<MediaFile> spec, Root<MediaFile> root,
+                                           CriteriaQuery<?> query, CriteriaBuilder cb) {
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.avstream.media.repository;
+
+import com.avstream.media.entity.MediaFile;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * 媒体文件查询条件
+ *
+ * 用户范围、筛选条件、排序和分页都下推到数据库执行，按需组合使用。
+ *
+ * @author AV Stream Team
+ */
+public final class MediaFileSpecifications {
+
+    private MediaFileSpecifications() {
+    }
+
+    /**
+     * 属于指定用户
+     */
+    public static Specification<MediaFile> ownedBy(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    /**
+     * 公开的文件
+     */
+    public static Specification<MediaFile> isPublic() {
+        return (root, query, cb) -> cb.isTrue(root.get("isPublic"));
+    }
+
+    /**
+     * 未被删除
+     */
+    public static Specification<MediaFile> notDeleted() {
+        return (root, query, cb) -> cb.isTrue(root.get("enabled"));
+    }
+
+    /**
+     * 文件名包含关键词（忽略大小写），关键词为空时不限制
+     */
+    public static Specification<MediaFile> filenameContains(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(keyword.trim().toLowerCase()) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("filename")), pattern, '\\');
+    }
+
+    /**
+     * 指定文件类型，为空时不限制
+     */
+    public static Specification<MediaFile> hasFileType(MediaFile.FileType fileType) {
+        return fileType == null ? null : (root, query, cb) -> cb.equal(root.get("fileType"), fileType);
+    }
+
+    /**
+     * 指定处理状态，为空时不限制
+     */
+    public static Specification<MediaFile> hasStatus(MediaFile.MediaStatus status) {
+        return status == null ? null : (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    /**
+     * 键集分页：按 (createdAt DESC, id DESC) 排序时位于游标之后的记录
+     */
+    public static Specification<MediaFile> after(LocalDateTime createdAt, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,34 @@
+package com.avstream.media.repository;
+
+import com.avstream.media.entity.MediaFile;
+
+import java.time.LocalDateTime;
+
+/**
+ * 媒体文件列表投影
+ *
+ * 只包含列表页展示和签名播放、下载URL需要的列，查询时直接构造，不加载实体及其元数据、缩略图等关联。
+ *
+ * @author AV Stream Team
+ */
+public record MediaFileSummary(Long id,
+                               String fileUuid,
+                               String filename,
+                               Long fileSize,
+                               MediaFile.FileType fileType,
+                               MediaFile.MediaStatus status,
+                               Boolean isPublic,
+                               String description,
+                               Integer uploadProgress,
+                               LocalDateTime createdAt,
+                               LocalDateTime updatedAt,
+                               String filePath,
+                               String vodManifestPath) {
+
+    public static MediaFileSummary of(MediaFile mediaFile) {
+        return new MediaFileSummary(mediaFile.getId(), mediaFile.getFileUuid(), mediaFile.getFilename(),
+                mediaFile.getFileSize(), mediaFile.getFileType(), mediaFile.getStatus(), mediaFile.getIsPublic(),
+                mediaFile.getDescription(), mediaFile.getUploadProgress(), mediaFile.getCreatedAt(),
+                mediaFile.getUpdatedAt(), mediaFile.getFilePath(), mediaFile.getVodManifestPath());
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +30,13 @@ public interface MediaThumbnailRepository extends JpaRepository<MediaThumbnail,
      */
     List<MediaThumbnail> findByMediaFileId(Long mediaFileId);
 
+    /**
+     * 批量查询媒体文件的默认缩略图路径（列表页签名预览URL），每行为 [媒体文件ID, 对象路径]
+     */
+    @Query("SELECT t.mediaFile.id, t.filePath FROM MediaThumbnail t " +
+           "WHERE t.mediaFile.id IN :mediaFileIds AND t.isDefault = true AND t.enabled = true")
+    List<Object[]> findDefaultThumbnailPaths(@Param("mediaFileIds") Collection<Long> mediaFileIds);
+
     /**
      * 根据媒体文件ID和缩略图类型查找缩略图
      */
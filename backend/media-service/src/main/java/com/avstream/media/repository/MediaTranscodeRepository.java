@@ -8,8 +8,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,6 +43,309 @@ public interface MediaTranscodeRepository extends JpaRepository<MediaTranscode,
      */
     List<MediaTranscode> findByFileUuidOrderByCreatedAtDesc(String fileUuid);
 
+    /**
+     * 统计引用同一转码产物的记录数（内容去重后多个文件可共享同一产物）
+     */
+    long countByFilePath(String filePath);
+
+    /**
+     * 查找相同内容哈希、相同预设下已完成的转码记录，用于复用转码产物
+     */
+    @Query("SELECT t FROM MediaTranscode t WHERE t.originalFile.contentHash = :contentHash " +
+            "AND t.presetName = :presetName AND t.status = :status AND t.enabled = true " +
+            "ORDER BY t.completedAt DESC")
+    List<MediaTranscode> findReusableTranscodes(@Param("contentHash") String contentHash,
+                                                @Param("presetName") String presetName,
+                                                @Param("status") MediaTranscode.TranscodeStatus status);
+
+    /**
+     * 批量查找可复用的转码记录，每行为 {内容哈希, 转码记录}，同一哈希按完成时间倒序
+     */
+    @Query("SELECT f.contentHash, t FROM MediaTranscode t JOIN t.originalFile f WHERE f.contentHash IN :contentHashes " +
+            "AND t.presetName = :presetName AND t.status = :status AND t.enabled = true " +
+            "ORDER BY t.completedAt DESC")
+    List<Object[]> findReusableTranscodesIn(@Param("contentHashes") Collection<String> contentHashes,
+                                            @Param("presetName") String presetName,
+                                            @Param("status") MediaTranscode.TranscodeStatus status);
+
+    /**
+     * 按调度顺序选取待执行任务ID：优先级高者优先；同一优先级内按用户轮转，
+     * 每个用户的第N个排队任务排在所有用户的第N-1个之后，正在执行任务多的用户顺延，
+     * 避免单个用户的批量提交占满转码资源。
+     * 多码率（ladder）任务共享job_id，只返回其中ID最小的排队记录作为代表，其余记录随代表一起领取
+     */
+    @Query(value = "SELECT ranked.id FROM (" +
+            "SELECT t.id, t.priority, t.created_at, " +
+            "ROW_NUMBER() OVER (PARTITION BY t.user_id, t.priority ORDER BY t.created_at, t.id) " +
+            "+ COALESCE(r.running, 0) AS user_rank " +
+            "FROM media_transcodes t " +
+            "LEFT JOIN (SELECT user_id, COUNT(*) AS running FROM media_transcodes " +
+            "WHERE status = 'PROCESSING' GROUP BY user_id) r ON r.user_id = t.user_id " +
+            "WHERE t.status = 'PENDING' AND t.enabled = true AND (t.job_id IS NULL OR t.id = " +
+            "(SELECT MIN(j.id) FROM media_transcodes j WHERE j.job_id = t.job_id AND j.status = 'PENDING'))) ranked " +
+            "ORDER BY ranked.priority DESC, ranked.user_rank ASC, ranked.created_at ASC " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> findNextDispatchIds(@Param("limit") int limit);
+
+    /**
+     * 锁定仍处于排队状态的候选任务，已被其他工作节点锁定的行直接跳过（需在事务中调用）
+     */
+    @Query(value = "SELECT id FROM media_transcodes WHERE id IN (:ids) AND status = 'PENDING' AND enabled = true " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockPendingIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 锁定与代表记录同属一个多码率任务的其他排队记录（需在事务中调用）
+     */
+    @Query(value = "SELECT id FROM media_transcodes WHERE status = 'PENDING' AND id NOT IN (:ids) AND job_id IN " +
+            "(SELECT job_id FROM media_transcodes WHERE id IN (:ids) AND job_id IS NOT NULL) " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockPendingJobSiblings(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询本节点领取的、与代表记录同属一个多码率任务的全部记录（含代表记录）
+     */
+    @Query("SELECT t FROM MediaTranscode t WHERE t.jobId = :jobId AND t.leaseOwner = :owner " +
+            "AND t.status = 'PROCESSING' ORDER BY t.id")
+    List<MediaTranscode> findLeasedJobRenditions(@Param("jobId") String jobId, @Param("owner") String owner);
+
+    /**
+     * 为已锁定的任务写入执行租约并置为PROCESSING，到期时间按数据库时钟计算，不受各节点时钟偏差影响
+     */
+    @Modifying
+    @Query(value = "UPDATE media_transcodes SET status = 'PROCESSING', lease_owner = :owner, " +
+            "lease_expires_at = LOCALTIMESTAMP + :leaseMs * INTERVAL '1 millisecond', " +
+            "started_at = LOCALTIMESTAMP, updated_at = LOCALTIMESTAMP WHERE id IN (:ids)", nativeQuery = true)
+    int acquireLeases(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("leaseMs") long leaseMs);
+
+    /**
+     * 续约（多码率任务按代表记录连同同组记录一起续约），返回续约成功的记录数；
+     * 租约已被回收或任务已取消的不会续约
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE media_transcodes SET lease_expires_at = LOCALTIMESTAMP + :leaseMs * INTERVAL '1 millisecond' " +
+            "WHERE lease_owner = :owner AND status = 'PROCESSING' AND (id IN (:ids) OR job_id IN " +
+            "(SELECT x.job_id FROM media_transcodes x WHERE x.id IN (:ids) AND x.job_id IS NOT NULL))",
+            nativeQuery = true)
+    int renewLeases(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("leaseMs") long leaseMs);
+
+    /**
+     * 任务结束后释放租约
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.leaseOwner = NULL, t.leaseExpiresAt = NULL " +
+            "WHERE t.id = :id AND t.leaseOwner = :owner")
+    int releaseLease(@Param("id") Long id, @Param("owner") String owner);
+
+    /**
+     * 将租约过期（工作节点宕机或失联）及无租约的执行中任务退回队列，按数据库时钟判断过期
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE media_transcodes SET status = 'PENDING', progress = 0, started_at = NULL, " +
+            "lease_owner = NULL, lease_expires_at = NULL, updated_at = LOCALTIMESTAMP " +
+            "WHERE status = 'PROCESSING' AND (lease_expires_at IS NULL OR lease_expires_at < LOCALTIMESTAMP)",
+            nativeQuery = true)
+    int requeueExpiredLeases();
+
+    /**
+     * 更新执行中任务的进度，仅当本节点仍持有租约时生效，租约被回收后不覆盖新执行节点的进度
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.progress = :progress, t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int updateLeasedProgress(@Param("id") Long id, @Param("owner") String owner, @Param("progress") Integer progress);
+
+    /**
+     * 写回执行结果前将任务置为最终状态并释放租约，仅当本节点仍持有租约时生效；
+     * 条件更新与租约检查是同一条语句，检查之后租约不会再被回收
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = :status, t.leaseOwner = NULL, t.leaseExpiresAt = NULL, " +
+            "t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int finishLeased(@Param("id") Long id, @Param("owner") String owner,
+                     @Param("status") MediaTranscode.TranscodeStatus status);
+
+    /**
+     * 查询任务当前的租约持有者
+     */
+    @Query("SELECT t.leaseOwner FROM MediaTranscode t WHERE t.id = :id")
+    String findLeaseOwner(@Param("id") Long id);
+
+    /**
+     * 失败任务重新入队，仅当任务仍为FAILED时生效，多个节点同时重试时只有一个成功。
+     * 多码率任务中失败的记录一起重新入队，由一个FFmpeg进程重新生成；分段记录只能随整体任务重新切分
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'PENDING', t.progress = 0, t.retryCount = t.retryCount + 1, " +
+            "t.updatedAt = CURRENT_TIMESTAMP WHERE t.status = 'FAILED' AND t.parentId IS NULL AND (t.id = :id OR t.jobId = " +
+            "(SELECT x.jobId FROM MediaTranscode x WHERE x.id = :id AND x.jobId IS NOT NULL))")
+    int requeueFailed(@Param("id") Long id);
+
+    /**
+     * 查询同一源文件已有的内容复杂度分析结果
+     */
+    @Query("SELECT t.complexityKbps FROM MediaTranscode t WHERE t.fileUuid = :fileUuid " +
+            "AND t.complexityKbps IS NOT NULL ORDER BY t.id DESC LIMIT 1")
+    Optional<Integer> findComplexityKbps(@Param("fileUuid") String fileUuid);
+
+    /**
+     * 写入按内容复杂度选定的编码参数（不覆盖状态，执行期间任务可能已被取消）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.videoBitrate = :videoBitrate, t.resolution = :resolution, " +
+            "t.complexityKbps = :complexityKbps, t.encodingLadder = :encodingLadder, t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id")
+    int updateEncodingLadder(@Param("id") Long id, @Param("videoBitrate") Long videoBitrate,
+                             @Param("resolution") String resolution, @Param("complexityKbps") Integer complexityKbps,
+                             @Param("encodingLadder") String encodingLadder);
+
+    /**
+     * 统计排队中的任务数
+     */
+    @Query("SELECT COUNT(t) FROM MediaTranscode t WHERE t.status = 'PENDING' AND t.enabled = true AND t.parentId IS NULL")
+    long countPending();
+
+    /**
+     * 统计用户排队中的任务数
+     */
+    @Query("SELECT COUNT(t) FROM MediaTranscode t WHERE t.userId = :userId AND t.status = 'PENDING' AND t.enabled = true " +
+            "AND t.parentId IS NULL")
+    long countPendingByUserId(@Param("userId") Long userId);
+
+    /**
+     * 查询分段转码任务的全部分段
+     */
+    List<MediaTranscode> findByParentIdOrderBySegmentIndex(Long parentId);
+
+    /**
+     * 统计分段转码任务中指定状态的分段数
+     */
+    long countByParentIdAndStatus(Long parentId, MediaTranscode.TranscodeStatus status);
+
+    /**
+     * 分段失败后重新入队并释放租约，仅当本节点仍持有租约时生效
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'PENDING', t.progress = 0, t.startedAt = NULL, " +
+            "t.retryCount = t.retryCount + 1, t.leaseOwner = NULL, t.leaseExpiresAt = NULL, " +
+            "t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int requeueSegment(@Param("id") Long id, @Param("owner") String owner);
+
+    /**
+     * 分段记录创建后整体任务转为WAITING并释放租约，仅当本节点仍持有租约时生效
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'WAITING', t.segmentCount = :segmentCount, t.progress = 0, " +
+            "t.leaseOwner = NULL, t.leaseExpiresAt = NULL, t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int markSplit(@Param("id") Long id, @Param("segmentCount") int segmentCount, @Param("owner") String owner);
+
+    /**
+     * 分段完成并释放租约，仅当本节点仍持有租约时生效
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'COMPLETED', t.progress = 100, t.outputChecksum = :checksum, " +
+            "t.fileSize = :fileSize, t.completedAt = CURRENT_TIMESTAMP, t.leaseOwner = NULL, t.leaseExpiresAt = NULL, " +
+            "t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int completeSegment(@Param("id") Long id, @Param("owner") String owner,
+                        @Param("checksum") String checksum, @Param("fileSize") Long fileSize);
+
+    /**
+     * 分段重试耗尽后标记失败并释放租约，仅当本节点仍持有租约时生效
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'FAILED', t.failureReason = :reason, t.leaseOwner = NULL, " +
+            "t.leaseExpiresAt = NULL, t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id AND t.leaseOwner = :owner AND t.status = 'PROCESSING'")
+    int failSegment(@Param("id") Long id, @Param("owner") String owner, @Param("reason") String reason);
+
+    /**
+     * 全部分段完成后整体任务重新入队执行拼接，多个分段同时完成时只有一个成功
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'PENDING', t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id AND t.status = 'WAITING'")
+    int resumeSplitParent(@Param("id") Long id);
+
+    /**
+     * 分段重试耗尽时整体任务失败；清空分段数，重试时重新切分
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'FAILED', t.segmentCount = NULL, t.failureReason = :reason, " +
+            "t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id AND t.status = 'WAITING'")
+    int failSplitParent(@Param("id") Long id, @Param("reason") String reason);
+
+    /**
+     * 查询分段已全部结束（完成、失败或取消）但仍处于WAITING超过graceMs的整体任务，
+     * 即完成或失败通知因节点宕机等原因丢失的任务；updated_at由数据库写入，按数据库时钟比较
+     */
+    @Query(value = "SELECT p.* FROM media_transcodes p WHERE p.status = 'WAITING' " +
+            "AND p.updated_at < LOCALTIMESTAMP - :graceMs * INTERVAL '1 millisecond' " +
+            "AND NOT EXISTS (SELECT 1 FROM media_transcodes s WHERE s.parent_id = p.id " +
+            "AND s.status IN ('PENDING', 'PROCESSING'))", nativeQuery = true)
+    List<MediaTranscode> findStalledSplitParents(@Param("graceMs") long graceMs);
+
+    /**
+     * 取消分段转码任务中未完成的分段，执行中的分段结果随之作废
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'CANCELLED', t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.parentId = :parentId AND t.status IN ('PENDING', 'PROCESSING')")
+    int cancelSegments(@Param("parentId") Long parentId);
+
+    /**
+     * 取消未结束（排队、执行中或等待分段）的任务，返回是否取消成功；
+     * 与执行节点写回结果并发时，已完成或失败的任务不会被改为已取消
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'CANCELLED', t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.id = :id AND t.status IN ('PENDING', 'PROCESSING', 'WAITING')")
+    int cancelActive(@Param("id") Long id);
+
+    /**
+     * 查询多码率任务的全部记录
+     */
+    List<MediaTranscode> findByJobId(String jobId);
+
+    /**
+     * 取消多码率任务中未完成的全部记录（同组记录由一个FFmpeg进程生成，无法单独取消）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaTranscode t SET t.status = 'CANCELLED', t.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE t.jobId = :jobId AND t.status IN ('PENDING', 'PROCESSING')")
+    int cancelJob(@Param("jobId") String jobId);
+
+    /**
+     * 查询指定状态的分段记录UUID
+     */
+    @Query("SELECT t.transcodeUuid FROM MediaTranscode t WHERE t.parentId = :parentId AND t.status = :status")
+    List<String> findSegmentUuids(@Param("parentId") Long parentId,
+                                  @Param("status") MediaTranscode.TranscodeStatus status);
+
+    /**
+     * 删除分段转码任务的分段记录
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MediaTranscode t WHERE t.parentId = :parentId")
+    int deleteSegments(@Param("parentId") Long parentId);
+
     /**
      * 根据媒体文件ID查找转码记录
      */
@@ -115,6 +420,7 @@ public interface MediaTranscodeRepository extends JpaRepository<MediaTranscode,
      * 更新转码任务状态
      */
     @Modifying
+    @Transactional
     @Query("UPDATE MediaTranscode t SET t.status = :status, t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id")
     void updateStatus(@Param("id") Long id, @Param("status") MediaTranscode.TranscodeStatus status);
 
@@ -122,6 +428,7 @@ public interface MediaTranscodeRepository extends JpaRepository<MediaTranscode,
      * 更新转码进度
      */
     @Modifying
+    @Transactional
     @Query("UPDATE MediaTranscode t SET t.progress = :progress, t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :id")
     void updateProgress(@Param("id") Long id, @Param("progress") Integer progress);
 
@@ -236,9 +543,9 @@ public interface MediaTranscodeRepository extends JpaRepository<MediaTranscode,
     List<String> findTranscodedResolutionsByMediaFileId(@Param("mediaFileId") Long mediaFileId);
 
     /**
-     * 查找失败的转码任务用于重试
+     * 查找失败的转码任务用于重试（分段记录随整体任务重试，不单独重试）
      */
-    @Query("SELECT t FROM MediaTranscode t WHERE t.status = 'FAILED' AND t.enabled = true AND t.retryCount < :maxRetryCount AND t.updatedAt >= :threshold")
+    @Query("SELECT t FROM MediaTranscode t WHERE t.status = 'FAILED' AND t.enabled = true AND t.parentId IS NULL AND t.retryCount < :maxRetryCount AND t.updatedAt >= :threshold")
     List<MediaTranscode> findFailedTasksForRetry(@Param("threshold") LocalDateTime threshold, @Param("maxRetryCount") Integer maxRetryCount);
 
     /**
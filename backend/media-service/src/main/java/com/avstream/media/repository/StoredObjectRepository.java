@@ -0,0 +1,52 @@
+package com.avstream.media.repository;
+
+import com.avstream.media.entity.StoredObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 内容寻址存储对象数据访问接口
+ *
+ * @author AV Stream Team
+ */
+@Repository
+public interface StoredObjectRepository extends JpaRepository<StoredObject, Long> {
+
+    /**
+     * 根据内容哈希查找存储对象
+     */
+    Optional<StoredObject> findByContentHash(String contentHash);
+
+    /**
+     * 登记存储对象：哈希不存在时插入（引用计数为1），已存在时引用计数加1。
+     * 返回该哈希最终对应的对象名称，单条语句完成，并发上传同一内容时不会重复登记。
+     */
+    @Query(value = "INSERT INTO media_objects (content_hash, object_name, size, ref_count, created_at, updated_at) " +
+            "VALUES (:contentHash, :objectName, :size, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (content_hash) DO UPDATE SET ref_count = media_objects.ref_count + 1, " +
+            "updated_at = CURRENT_TIMESTAMP " +
+            "RETURNING object_name", nativeQuery = true)
+    String upsertReference(@Param("contentHash") String contentHash,
+                           @Param("objectName") String objectName,
+                           @Param("size") long size);
+
+    /**
+     * 引用计数减1
+     */
+    @Modifying
+    @Query("UPDATE StoredObject o SET o.refCount = o.refCount - 1, o.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE o.contentHash = :contentHash AND o.refCount > 0")
+    int decrementRefCount(@Param("contentHash") String contentHash);
+
+    /**
+     * 删除引用计数归零的存储对象记录
+     */
+    @Modifying
+    @Query("DELETE FROM StoredObject o WHERE o.contentHash = :contentHash AND o.refCount <= 0")
+    int deleteUnreferenced(@Param("contentHash") String contentHash);
+}
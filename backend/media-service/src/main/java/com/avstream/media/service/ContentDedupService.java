@@ -0,0 +1,75 @@
+package com.avstream.media.service;
+
+import com.avstream.media.repository.StoredObjectRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+
+/**
+ * 内容去重服务
+ *
+ * 按内容SHA-256维护 哈希→存储对象 的映射和引用计数：相同内容只保留一份对象，
+ * 媒体文件永久删除时引用计数减1，归零后才删除存储对象。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentDedupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentDedupService.class);
+
+    private final StoredObjectRepository storedObjectRepository;
+    private final StorageService storageService;
+
+    /**
+     * 登记新上传的对象。若相同内容已存在，则删除本次上传的重复对象并返回已有对象。
+     *
+     * @return 媒体文件应引用的存储对象
+     */
+    @Transactional
+    public StoredObjectInfo register(StoredObjectInfo uploaded) {
+        if (uploaded.getSha256() == null) {
+            return uploaded;
+        }
+
+        String objectName = storedObjectRepository.upsertReference(
+                uploaded.getSha256(), uploaded.getObjectName(), uploaded.getSize());
+        if (objectName == null || objectName.equals(uploaded.getObjectName())) {
+            return uploaded;
+        }
+
+        // 命中已有内容：本次上传的对象是重复副本，直接删除
+        try {
+            storageService.deleteFile(uploaded.getObjectName());
+        } catch (IOException e) {
+            log.warn("删除重复上传对象失败: {}", uploaded.getObjectName(), e);
+        }
+        log.info("内容去重命中: {} -> {}", uploaded.getObjectName(), objectName);
+
+        return StoredObjectInfo.of(objectName, uploaded.getSize(), uploaded.getEtag(), uploaded.getSha256());
+    }
+
+    /**
+     * 释放一次引用
+     *
+     * @return 引用已归零（或对象未参与去重），调用方可删除存储对象
+     */
+    @Transactional
+    public boolean release(String contentHash) {
+        if (contentHash == null) {
+            return true;
+        }
+
+        int updated = storedObjectRepository.decrementRefCount(contentHash);
+        if (updated == 0) {
+            // 未登记的历史数据，按独占对象处理
+            return true;
+        }
+        return storedObjectRepository.deleteUnreferenced(contentHash) > 0;
+    }
+}
@@ -0,0 +1,168 @@
+package com.avstream.media.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的分布式锁
+ *
+ * 多个副本都会触发的定时维护任务（存储对账、孤儿对象清理等）通过该锁保证同一时间只有一个节点执行；
+ * 分片合并等耗时不定的操作使用 {@link #tryLock} 获取锁，持有期间后台按有效期的1/3续期。
+ * 锁值为本次持有的随机令牌，续期和释放都先比较令牌，锁过期后被其他节点获取时不会误续、误删；
+ * 持有节点宕机时锁在过期后自动释放。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class DistributedLockService {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedLockService.class);
+
+    private static final String KEY_PREFIX = "media:lock:";
+
+    /**
+     * 比较令牌后删除：KEYS[1]=锁键，ARGV[1]=持有令牌
+     */
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """;
+
+    /**
+     * 比较令牌后续期：KEYS[1]=锁键，ARGV[1]=持有令牌，ARGV[2]=有效期（毫秒）
+     */
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """;
+
+    private static final RedisScript<Long> RELEASE = RedisScript.of(RELEASE_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> RENEW = RedisScript.of(RENEW_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "distributed-lock-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 获取锁后执行任务，锁被其他节点持有或Redis不可用时跳过本次执行
+     *
+     * @param name 锁名称
+     * @param ttl  锁有效期，应大于任务的最长执行时间
+     * @return 是否执行了任务
+     */
+    public boolean runExclusively(String name, Duration ttl, Runnable task) {
+        String key = KEY_PREFIX + name;
+        String token = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, token, ttl))) {
+                log.debug("分布式锁已被其他节点持有，跳过执行: {}", name);
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("获取分布式锁失败，跳过执行: {}, {}", name, e.getMessage());
+            return false;
+        }
+
+        try {
+            task.run();
+            return true;
+        } finally {
+            release(name, key, token);
+        }
+    }
+
+    /**
+     * 尝试获取锁，持有期间自动续期，直到调用 {@link LockHandle#release()}
+     *
+     * @param name 锁名称
+     * @param ttl  锁有效期，持有节点宕机后最长经过该时间锁自动释放
+     * @return 锁句柄，锁被其他节点持有时返回null
+     */
+    public LockHandle tryLock(String name, Duration ttl) {
+        String key = KEY_PREFIX + name;
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, token, ttl))) {
+            return null;
+        }
+        long periodMillis = Math.max(1L, ttl.toMillis() / 3);
+        LockHandle handle = new LockHandle(name, key, token);
+        handle.renewal = renewer.scheduleAtFixedRate(() -> handle.renew(ttl),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return handle;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private void release(String name, String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(key), token);
+        } catch (Exception e) {
+            // 释放失败时锁在过期后自动释放
+            log.warn("释放分布式锁失败: {}, {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * 已持有的锁
+     */
+    public final class LockHandle {
+
+        private final String name;
+        private final String key;
+        private final String token;
+        private volatile ScheduledFuture<?> renewal;
+
+        private LockHandle(String name, String key, String token) {
+            this.name = name;
+            this.key = key;
+            this.token = token;
+        }
+
+        private void renew(Duration ttl) {
+            try {
+                Long renewed = redisTemplate.execute(RENEW, List.of(key), token, String.valueOf(ttl.toMillis()));
+                if (renewed == null || renewed == 0L) {
+                    log.warn("分布式锁已失效，停止续期: {}", name);
+                    renewal.cancel(false);
+                }
+            } catch (Exception e) {
+                // 续期失败时保留任务，Redis恢复后继续续期
+                log.warn("分布式锁续期失败: {}, {}", name, e.getMessage());
+            }
+        }
+
+        /**
+         * 停止续期并释放锁（仅删除本次持有的锁），可重复调用
+         */
+        public void release() {
+            renewal.cancel(false);
+            DistributedLockService.this.release(name, key, token);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.avstream.media.service;
 
+import com.avstream.media.entity.MediaMetadata;
+import com.avstream.media.util.FFprobeMetadataParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,6 +10,7 @@ import org.springframework.stereotype.Service;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,12 +30,17 @@ public class FFmpegService {
     @Value("${ffmpeg.path:/usr/bin/ffmpeg}")
     private String ffmpegPath;
 
+    @Value("${ffmpeg.ffprobe-path:/usr/bin/ffprobe}")
+    private String ffprobePath;
+
     @Value("${ffmpeg.output-dir:/tmp/av-stream/output}")
     private String outputDir;
 
     @Value("${ffmpeg.threads:4}")
     private int threads;
 
+    private final FFprobeMetadataParser probeParser = new FFprobeMetadataParser();
+
     /**
      * 视频转码
      */
@@ -97,10 +105,11 @@ public class FFmpegService {
                 
                 List<String> command = new ArrayList<>();
                 command.add(ffmpegPath);
-                command.add("-i");
-                command.add(videoPath);
+                // 输入端定位：直接跳到目标时间点附近的关键帧，不从头解码
                 command.add("-ss");
                 command.add(timestamp);
+                command.add("-i");
+                command.add(videoPath);
                 command.add("-vframes");
                 command.add("1");
                 command.add("-s");
@@ -127,33 +136,37 @@ public class FFmpegService {
     }
 
     /**
-     * 获取视频信息
+     * 获取视频信息（ffprobe JSON输出，流式解析）
      */
     public CompletableFuture<VideoInfo> getVideoInfo(String videoPath) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 List<String> command = new ArrayList<>();
-                command.add(ffmpegPath);
-                command.add("-i");
+                command.add(ffprobePath);
+                command.add("-v");
+                command.add("error");
+                command.add("-print_format");
+                command.add("json");
+                command.add("-show_streams");
+                command.add("-show_format");
                 command.add(videoPath);
 
                 ProcessBuilder processBuilder = new ProcessBuilder(command);
-                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
                 
                 Process process = processBuilder.start();
                 
-                StringBuilder output = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
+                MediaMetadata metadata;
+                try (InputStream in = process.getInputStream()) {
+                    metadata = probeParser.parse(in);
                 }
                 
-                process.waitFor();
+                int exitCode = process.waitFor();
+                if (exitCode != 0) {
+                    throw new RuntimeException("ffprobe执行失败，退出码: " + exitCode);
+                }
                 
-                return parseVideoInfo(output.toString(), videoPath);
+                return toVideoInfo(metadata, videoPath);
                 
             } catch (IOException | InterruptedException e) {
                 log.error("获取视频信息失败: {}", e.getMessage(), e);
@@ -249,50 +262,26 @@ public class FFmpegService {
         }
     }
 
-    private VideoInfo parseVideoInfo(String ffmpegOutput, String videoPath) {
+    private VideoInfo toVideoInfo(MediaMetadata metadata, String videoPath) {
         VideoInfo info = new VideoInfo();
         info.setFilePath(videoPath);
-        
-        // 解析视频信息（简化版）
-        String[] lines = ffmpegOutput.split("\n");
-        for (String line : lines) {
-            if (line.contains("Duration:")) {
-                // 解析时长
-                String duration = line.split("Duration: ")[1].split(",")[0].trim();
-                info.setDuration(duration);
-            } else if (line.contains("Video:")) {
-                // 解析视频信息
-                String[] parts = line.split(",");
-                for (String part : parts) {
-                    part = part.trim();
-                    if (part.contains("x")) {
-                        // 解析分辨率
-                        String[] res = part.split("x");
-                        if (res.length == 2) {
-                            try {
-                                info.setWidth(Integer.parseInt(res[0].trim()));
-                                info.setHeight(Integer.parseInt(res[1].split(" ")[0].trim()));
-                            } catch (NumberFormatException e) {
-                                log.warn("解析分辨率失败: {}", part);
-                            }
-                        }
-                    } else if (part.contains("fps")) {
-                        // 解析帧率
-                        try {
-                            String fps = part.split("fps")[0].trim();
-                            info.setFrameRate(Double.parseDouble(fps));
-                        } catch (NumberFormatException e) {
-                            log.warn("解析帧率失败: {}", part);
-                        }
-                    }
-                }
-            }
+        info.setDuration(metadata.getFormattedDuration());
+        if (metadata.getWidth() != null && metadata.getHeight() != null) {
+            info.setWidth(metadata.getWidth());
+            info.setHeight(metadata.getHeight());
+        }
+        if (metadata.getFrameRate() != null) {
+            info.setFrameRate(metadata.getFrameRate().doubleValue());
         }
         
         // 获取文件大小
-        File file = new File(videoPath);
-        if (file.exists()) {
-            info.setFileSize(file.length());
+        if (metadata.getFileSize() != null) {
+            info.setFileSize(metadata.getFileSize());
+        } else {
+            File file = new File(videoPath);
+            if (file.exists()) {
+                info.setFileSize(file.length());
+            }
         }
         
         return info;
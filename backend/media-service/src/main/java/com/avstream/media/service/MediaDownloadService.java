@@ -0,0 +1,194 @@
+package com.avstream.media.service;
+
+import com.avstream.media.entity.MediaFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 媒体文件下载服务
+ *
+ * 支持Range/If-Range断点续传与拖动播放（206 Partial Content），
+ * 以及基于ETag/Last-Modified的条件请求（304 Not Modified）。
+ * 文件内容从存储按字节范围流式写出，不会整体读入内存。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class MediaDownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaDownloadService.class);
+
+    private final StorageService storageService;
+
+    /**
+     * 输出媒体文件内容
+     *
+     * @param attachment 是否以附件形式下载（否则内联播放）
+     */
+    public void serve(MediaFile mediaFile, HttpServletRequest request, HttpServletResponse response,
+                      boolean attachment) throws IOException {
+        // 上传尚未完成时对象还不存在，失败或已删除的文件没有可下载的内容
+        if (mediaFile.getStatus() == MediaFile.MediaStatus.UPLOADING) {
+            response.sendError(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        if (mediaFile.getFilePath() == null
+                || mediaFile.getStatus() == MediaFile.MediaStatus.FAILED
+                || mediaFile.getStatus() == MediaFile.MediaStatus.DELETED) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        StoredObjectInfo object = storageService.statObject(mediaFile.getFilePath());
+        long size = object.getSize();
+        String etag = "\"" + object.getEtag() + "\"";
+        long lastModified = object.getLastModified() / 1000 * 1000;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(resolveContentType(mediaFile, object));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                (attachment ? ContentDisposition.attachment() : ContentDisposition.inline())
+                        .filename(mediaFile.getFilename(), StandardCharsets.UTF_8)
+                        .build().toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isRangeApplicable(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentLengthLong(size);
+            transfer(mediaFile, 0, size, response);
+            return;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            sendRangeNotSatisfiable(response, size);
+            return;
+        }
+
+        // 多段范围需要multipart/byteranges，按规范忽略Range返回完整内容
+        if (ranges.size() != 1) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentLengthLong(size);
+            transfer(mediaFile, 0, size, response);
+            return;
+        }
+
+        HttpRange range = ranges.get(0);
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            sendRangeNotSatisfiable(response, size);
+            return;
+        }
+        if (size == 0 || start >= size || start > end) {
+            sendRangeNotSatisfiable(response, size);
+            return;
+        }
+
+        long length = end - start + 1;
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        response.setContentLengthLong(length);
+        transfer(mediaFile, start, length, response);
+    }
+
+    private void transfer(MediaFile mediaFile, long offset, long length, HttpServletResponse response) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        try {
+            storageService.transferTo(mediaFile.getFilePath(), offset, length, response.getOutputStream());
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                // 播放器拖动进度或关闭页面时会主动断开连接
+                log.debug("客户端中断下载: {}, {}", mediaFile.getFileUuid(), e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range校验：资源未变化时才按Range返回部分内容
+     */
+    private boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long ifRangeDate = getDateHeader(request, HttpHeaders.IF_RANGE);
+        return ifRangeDate >= 0 && lastModified <= ifRangeDate;
+    }
+
+    private boolean matchesEtag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private void sendRangeNotSatisfiable(HttpServletResponse response, long size) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        response.setContentLengthLong(0);
+    }
+
+    private String resolveContentType(MediaFile mediaFile, StoredObjectInfo object) {
+        if (mediaFile.getMimeType() != null) {
+            return mediaFile.getMimeType();
+        }
+        if (object.getContentType() != null) {
+            return object.getContentType();
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+}
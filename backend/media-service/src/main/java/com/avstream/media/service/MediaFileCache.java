@@ -0,0 +1,189 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.MediaFileCacheProperties;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.repository.MediaFileRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 媒体文件记录两级缓存
+ *
+ * 按 fileUuid 缓存 {@link MediaFileSnapshot}：本节点Caffeine缓存（容量有限、过期时间短）在前，
+ * 各节点共享的Redis缓存在后，都未命中才查询数据库。公开链接被大量访问时绝大多数请求在本地命中，
+ * 不再每次访问查询一次数据库。
+ *
+ * 上传中的文件进度和状态频繁变化，不缓存。修改文件记录后调用 {@link #evict(String)}：事务提交后删除
+ * Redis中的副本，并通过Redis频道通知所有节点清除本地副本；通知丢失时本地副本最迟在过期后刷新。
+ *
+ * 清除时同时写入一个记录清除时间的短期标记：在清除之前读到旧记录、清除之后才写回缓存的请求，
+ * 写回后检查到读取早于清除，会撤销自己写入的副本，旧记录不会在缓存中保留到过期。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class MediaFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaFileCache.class);
+
+    private static final String KEY_PREFIX = "media:file:";
+
+    private static final String INVALIDATE_CHANNEL = "media:file:invalidate";
+
+    private static final String TOMBSTONE_PREFIX = "media:file:evicted:";
+
+    /** 比较读取时间和清除时间时容忍的节点间时钟偏差（毫秒） */
+    private static final long CLOCK_SKEW_MS = 1000;
+
+    /** 一条失效消息可携带多个fileUuid */
+    private static final String MESSAGE_SEPARATOR = ",";
+
+    private final MediaFileRepository mediaFileRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MediaFileCacheProperties properties;
+
+    private Cache<String, MediaFileSnapshot> localCache;
+
+    @PostConstruct
+    public void initialize() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getLocalTtlSeconds()))
+                .build();
+        listenerContainer.addMessageListener(this::onInvalidate, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 按 fileUuid 查询文件记录快照
+     */
+    public Optional<MediaFileSnapshot> get(String fileUuid) {
+        if (!properties.isEnabled()) {
+            return mediaFileRepository.findByFileUuid(fileUuid).map(MediaFileSnapshot::of);
+        }
+
+        MediaFileSnapshot snapshot = localCache.getIfPresent(fileUuid);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        snapshot = readShared(fileUuid);
+        if (snapshot != null) {
+            localCache.put(fileUuid, snapshot);
+            return Optional.of(snapshot);
+        }
+
+        long readAt = System.currentTimeMillis();
+        snapshot = mediaFileRepository.findByFileUuid(fileUuid).map(MediaFileSnapshot::of).orElse(null);
+        if (snapshot != null && snapshot.status() != MediaFile.MediaStatus.UPLOADING) {
+            writeShared(snapshot);
+            localCache.put(fileUuid, snapshot);
+            revokeIfEvicted(fileUuid, readAt);
+        }
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     * 清除文件记录缓存。在事务中调用时推迟到提交之后，避免其他请求在提交前重新读到旧记录写回缓存
+     */
+    public void evict(String fileUuid) {
+        evictAll(List.of(fileUuid));
+    }
+
+    /**
+     * 批量清除文件记录缓存，Redis删除和失效通知各一条命令
+     */
+    public void evictAll(Collection<String> fileUuids) {
+        if (!properties.isEnabled() || fileUuids.isEmpty()) {
+            return;
+        }
+        List<String> uuids = List.copyOf(fileUuids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doEvict(uuids);
+                }
+            });
+        } else {
+            doEvict(uuids);
+        }
+    }
+
+    private void doEvict(List<String> fileUuids) {
+        localCache.invalidateAll(fileUuids);
+        try {
+            // 标记先于删除写入：删除之后写回的副本，写回后的检查一定能看到标记
+            Duration tombstoneTtl = Duration.ofSeconds(properties.getTombstoneTtlSeconds());
+            String evictedAt = String.valueOf(System.currentTimeMillis());
+            for (String fileUuid : fileUuids) {
+                redisTemplate.opsForValue().set(TOMBSTONE_PREFIX + fileUuid, evictedAt, tombstoneTtl);
+            }
+            redisTemplate.delete(fileUuids.stream().map(fileUuid -> KEY_PREFIX + fileUuid).toList());
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.join(MESSAGE_SEPARATOR, fileUuids));
+        } catch (Exception e) {
+            log.warn("清除媒体文件缓存失败: {}, {}", fileUuids.size() == 1 ? fileUuids.get(0) : fileUuids.size(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * 写回缓存后检查清除标记：清除不早于读取（计入时钟偏差）时，读到的记录可能是旧的，撤销写入的副本。
+     * 本地副本在检查之前写入，检查之后才写入的标记对应的失效通知也会清除它
+     */
+    private void revokeIfEvicted(String fileUuid, long readAt) {
+        try {
+            String evictedAt = redisTemplate.opsForValue().get(TOMBSTONE_PREFIX + fileUuid);
+            if (evictedAt != null && Long.parseLong(evictedAt) >= readAt - CLOCK_SKEW_MS) {
+                localCache.invalidate(fileUuid);
+                redisTemplate.delete(KEY_PREFIX + fileUuid);
+            }
+        } catch (Exception e) {
+            // 无法确认时不保留本地副本，Redis副本最迟在过期后刷新
+            localCache.invalidate(fileUuid);
+            log.debug("检查媒体文件缓存清除标记失败: {}, {}", fileUuid, e.getMessage());
+        }
+    }
+
+    private void onInvalidate(Message message, byte[] pattern) {
+        localCache.invalidateAll(List.of(new String(message.getBody(), StandardCharsets.UTF_8).split(MESSAGE_SEPARATOR)));
+    }
+
+    private MediaFileSnapshot readShared(String fileUuid) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + fileUuid);
+            return json != null ? objectMapper.readValue(json, MediaFileSnapshot.class) : null;
+        } catch (Exception e) {
+            log.debug("读取媒体文件缓存失败: {}, {}", fileUuid, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(MediaFileSnapshot snapshot) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + snapshot.fileUuid(), objectMapper.writeValueAsString(snapshot),
+                    Duration.ofSeconds(properties.getRedisTtlSeconds()));
+        } catch (Exception e) {
+            log.debug("写入媒体文件缓存失败: {}, {}", snapshot.fileUuid(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.avstream.media.service;
+
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.repository.MediaFileSummary;
+
+import java.time.LocalDateTime;
+
+/**
+ * 媒体文件记录快照
+ *
+ * 缓存中保存的只读副本，只包含文件本身的列，不含转码、元数据、缩略图等关联。
+ *
+ * @author AV Stream Team
+ */
+public record MediaFileSnapshot(Long id,
+                                String fileUuid,
+                                Long userId,
+                                String filename,
+                                String originalFilename,
+                                String filePath,
+                                String bucketName,
+                                Long fileSize,
+                                MediaFile.FileType fileType,
+                                String mimeType,
+                                String format,
+                                MediaFile.MediaStatus status,
+                                Boolean isPublic,
+                                Boolean enabled,
+                                String description,
+                                Integer uploadProgress,
+                                String contentHash,
+                                String vodManifestPath,
+                                LocalDateTime createdAt,
+                                LocalDateTime updatedAt) {
+
+    public static MediaFileSnapshot of(MediaFile mediaFile) {
+        return new MediaFileSnapshot(mediaFile.getId(), mediaFile.getFileUuid(), mediaFile.getUserId(),
+                mediaFile.getFilename(), mediaFile.getOriginalFilename(), mediaFile.getFilePath(),
+                mediaFile.getBucketName(), mediaFile.getFileSize(), mediaFile.getFileType(), mediaFile.getMimeType(),
+                mediaFile.getFormat(), mediaFile.getStatus(), mediaFile.getIsPublic(), mediaFile.getEnabled(),
+                mediaFile.getDescription(), mediaFile.getUploadProgress(), mediaFile.getContentHash(),
+                mediaFile.getVodManifestPath(), mediaFile.getCreatedAt(), mediaFile.getUpdatedAt());
+    }
+
+    public MediaFileSummary toSummary() {
+        return new MediaFileSummary(id, fileUuid, filename, fileSize, fileType, status, isPublic, description,
+                uploadProgress, createdAt, updatedAt, filePath, vodManifestPath);
+    }
+
+    /**
+     * 转换为游离状态的实体，仅用于读取，不能保存
+     */
+    public MediaFile toMediaFile() {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(id);
+        mediaFile.setFileUuid(fileUuid);
+        mediaFile.setUserId(userId);
+        mediaFile.setFilename(filename);
+        mediaFile.setOriginalFilename(originalFilename);
+        mediaFile.setFilePath(filePath);
+        mediaFile.setBucketName(bucketName);
+        mediaFile.setFileSize(fileSize);
+        mediaFile.setFileType(fileType);
+        mediaFile.setMimeType(mimeType);
+        mediaFile.setFormat(format);
+        mediaFile.setStatus(status);
+        mediaFile.setIsPublic(isPublic);
+        mediaFile.setEnabled(enabled);
+        mediaFile.setDescription(description);
+        mediaFile.setUploadProgress(uploadProgress);
+        mediaFile.setContentHash(contentHash);
+        mediaFile.setVodManifestPath(vodManifestPath);
+        mediaFile.setCreatedAt(createdAt);
+        mediaFile.setUpdatedAt(updatedAt);
+        return mediaFile;
+    }
+}
@@ -0,0 +1,19 @@
+package com.avstream.media.service;
+
+/**
+ * 媒体元数据提取完成事件，缩略图等依赖时长和分辨率的后续处理由此触发
+ *
+ * @author AV Stream Team
+ */
+public class MediaMetadataExtractedEvent {
+
+    private final String fileUuid;
+
+    public MediaMetadataExtractedEvent(String fileUuid) {
+        this.fileUuid = fileUuid;
+    }
+
+    public String getFileUuid() {
+        return fileUuid;
+    }
+}
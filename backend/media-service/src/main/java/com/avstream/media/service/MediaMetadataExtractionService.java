@@ -0,0 +1,133 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.entity.MediaMetadata;
+import com.avstream.media.repository.MediaFileRepository;
+import com.avstream.media.repository.MediaMetadataRepository;
+import com.avstream.media.util.FFprobeMetadataParser;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 媒体元数据提取服务
+ *
+ * 上传完成后在 metadataExecutor 线程池中调用ffprobe读取对象的预签名URL：ffprobe只按需发起范围请求
+ * 读取文件头（及MP4等格式的索引），不下载整个文件，也不经过JVM内存。输出的JSON流式解析后一次写入元数据表。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class MediaMetadataExtractionService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaMetadataExtractionService.class);
+
+    /** 预签名URL有效期（秒） */
+    private static final int URL_EXPIRY_SECONDS = 600;
+
+    /** ffprobe单次网络读写超时（微秒），对象存储无响应时尽快失败 */
+    private static final long READ_TIMEOUT_US = 15_000_000L;
+
+    /** ffprobe进程最长运行时间（秒） */
+    private static final long PROBE_TIMEOUT_SECONDS = 60;
+
+    private final MediaFileRepository mediaFileRepository;
+    private final MediaMetadataRepository metadataRepository;
+    private final StorageService storageService;
+    private final FFmpegConfig ffmpegConfig;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final FFprobeMetadataParser parser = new FFprobeMetadataParser();
+
+    /**
+     * 上传记录提交后异步提取元数据；未开启事务的上传流程直接触发
+     */
+    @Async("metadataExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        try {
+            extract(event.getFileUuid());
+        } catch (IOException e) {
+            log.warn("元数据提取失败: {}, {}", event.getFileUuid(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("元数据提取异常: {}", event.getFileUuid(), e);
+        }
+    }
+
+    /**
+     * 提取并保存元数据，文件已有元数据时覆盖
+     */
+    public MediaMetadata extract(String fileUuid) throws IOException, InterruptedException {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new IOException("文件不存在"));
+        if (mediaFile.getFilePath() == null) {
+            throw new IOException("文件尚未上传完成");
+        }
+        String url = storageService.generateObjectUrl(mediaFile.getFilePath(), URL_EXPIRY_SECONDS);
+        if (url == null) {
+            throw new IOException("生成对象URL失败");
+        }
+
+        long startTime = System.currentTimeMillis();
+        MediaMetadata metadata = probe(url);
+        metadata.setMediaFile(mediaFile);
+        if (metadata.getFileSize() == null) {
+            metadata.setFileSize(mediaFile.getFileSize());
+        }
+        metadata.setMetadataExtractedAt(LocalDateTime.now().toString());
+        metadataRepository.findByMediaFileId(mediaFile.getId())
+                .ifPresent(existing -> metadata.setId(existing.getId()));
+        MediaMetadata saved = metadataRepository.save(metadata);
+
+        log.info("元数据提取完成: {}, 时长: {}秒, 分辨率: {}, 视频: {}, 音频: {}, 耗时: {}ms",
+                fileUuid, saved.getDuration(), saved.getResolution(), saved.getVideoCodec(), saved.getAudioCodec(),
+                System.currentTimeMillis() - startTime);
+        eventPublisher.publishEvent(new MediaMetadataExtractedEvent(fileUuid));
+        return saved;
+    }
+
+    private MediaMetadata probe(String url) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(ffmpegConfig.getFfprobePath(),
+                "-v", "error",
+                "-rw_timeout", String.valueOf(READ_TIMEOUT_US),
+                "-print_format", "json",
+                "-show_streams", "-show_format",
+                url)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        // 解析在当前线程阻塞读取输出，超时后强制终止进程使输出流结束
+        CompletableFuture<Void> timeout = CompletableFuture.runAsync(process::destroyForcibly,
+                CompletableFuture.delayedExecutor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        try {
+            MediaMetadata metadata;
+            try (InputStream in = process.getInputStream()) {
+                metadata = parser.parse(in);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("ffprobe执行失败，退出码: " + exitCode);
+            }
+            return metadata;
+        } finally {
+            timeout.cancel(false);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.SearchProperties;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+
+/**
+ * 搜索索引结构检查
+ *
+ * 全文检索列和GIN索引由迁移脚本 V3__media_search.sql 建立。启动时检查当前数据库是否为PostgreSQL
+ * 且 media_files 已有 search_vector 列；非PostgreSQL数据库（如测试用的H2）或迁移未执行时，
+ * 搜索退化为文件名模糊匹配。
+ *
+ * @author AV Stream Team
+ */
+@Component
+public class MediaSearchSchemaVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaSearchSchemaVerifier.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchProperties searchProperties;
+
+    private volatile boolean available;
+
+    public MediaSearchSchemaVerifier(JdbcTemplate jdbcTemplate, SearchProperties searchProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchProperties = searchProperties;
+    }
+
+    @PostConstruct
+    public void verify() {
+        if (!searchProperties.isEnabled()) {
+            return;
+        }
+        try {
+            Boolean ready = jdbcTemplate.execute((Connection connection) -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+                if (!"PostgreSQL".equalsIgnoreCase(metaData.getDatabaseProductName())) {
+                    log.info("数据库不是PostgreSQL（{}），搜索索引未启用", metaData.getDatabaseProductName());
+                    return false;
+                }
+                try (ResultSet columns = metaData.getColumns(null, null, "media_files", "search_vector")) {
+                    return columns.next();
+                }
+            });
+            available = Boolean.TRUE.equals(ready);
+            if (available) {
+                log.info("搜索索引可用");
+            } else {
+                log.warn("media_files 缺少 search_vector 列，请检查数据库迁移，搜索退化为文件名模糊匹配");
+            }
+        } catch (Exception e) {
+            log.warn("搜索索引检查失败，搜索退化为文件名模糊匹配: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 全文/三元组索引是否可用
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,154 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.SearchProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 媒体文件搜索
+ *
+ * 基于迁移脚本 V3__media_search.sql 建立的索引：分词匹配走 tsvector 的GIN索引（词前缀匹配，
+ * 输入"holi"可命中"holiday"），子串和拼写近似匹配走文件名的三元组GIN索引。结果按全文相关度加文件名
+ * 相似度排序，只对当前页计算高亮片段。可见范围为本人的文件，可选包含他人公开的文件。
+ *
+ * @author AV Stream Team
+ */
+@Service
+public class MediaSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaSearchService.class);
+
+    /** ts_headline 的高亮标记，使用控制字符以便先整体HTML转义再替换为标签 */
+    private static final String START_SEL = "\u0002";
+    private static final String STOP_SEL = "\u0003";
+
+    private static final String FILENAME_HEADLINE_OPTIONS =
+            "StartSel=\"" + START_SEL + "\", StopSel=\"" + STOP_SEL + "\", HighlightAll=true";
+    private static final String DESCRIPTION_HEADLINE_OPTIONS =
+            "StartSel=\"" + START_SEL + "\", StopSel=\"" + STOP_SEL + "\", MaxWords=30, MinWords=10, MaxFragments=2";
+
+    /** 关键词中参与分词匹配的词数上限 */
+    private static final int MAX_TERMS = 8;
+
+    private static final String SEARCH_SQL = """
+            SELECT hit.id, hit.rank,
+                   ts_headline(CAST('simple' AS regconfig), m.filename, hit.q, :filenameOptions) AS filename_highlight,
+                   CASE WHEN m.description IS NULL THEN NULL
+                        ELSE ts_headline(CAST('simple' AS regconfig), m.description, hit.q, :descriptionOptions)
+                   END AS description_highlight
+            FROM (
+                SELECT f.id, q.q,
+                       ts_rank_cd(f.search_vector, q.q) + similarity(lower(f.filename), :keyword) AS rank
+                FROM media_files f,
+                     to_tsquery(CAST('simple' AS regconfig), :tsquery) AS q(q)
+                WHERE f.enabled = true
+                  AND (f.user_id = :userId OR (:includePublic AND f.is_public = true))
+                  AND (f.search_vector @@ q.q
+                       OR lower(f.filename) LIKE :pattern ESCAPE '\\'
+                       OR lower(f.filename) % :keyword)
+                ORDER BY rank DESC, f.id DESC
+                LIMIT :limit OFFSET :offset
+            ) hit
+            JOIN media_files m ON m.id = hit.id
+            ORDER BY hit.rank DESC, hit.id DESC
+            """;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchProperties searchProperties;
+    private final MediaSearchSchemaVerifier schemaVerifier;
+
+    public MediaSearchService(NamedParameterJdbcTemplate namedJdbcTemplate,
+                              JdbcTemplate jdbcTemplate,
+                              SearchProperties searchProperties,
+                              MediaSearchSchemaVerifier schemaVerifier) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchProperties = searchProperties;
+        this.schemaVerifier = schemaVerifier;
+    }
+
+    /**
+     * 搜索索引是否可用，不可用时调用方使用文件名模糊匹配
+     */
+    public boolean isAvailable() {
+        return searchProperties.isEnabled() && schemaVerifier.isAvailable();
+    }
+
+    /**
+     * 按相关度分页搜索，多取一条用于判断是否有下一页，不统计总数
+     */
+    @Transactional(readOnly = true)
+    public List<SearchHit> search(String keyword, Long userId, boolean includePublic, long offset, int limit) {
+        String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+        // SET LOCAL 只作用于当前事务，不影响连接池中的其他会话
+        jdbcTemplate.execute("SET LOCAL pg_trgm.similarity_threshold = "
+                + Math.max(0, Math.min(1, searchProperties.getSimilarityThreshold())));
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("keyword", normalized)
+                .addValue("tsquery", toPrefixQuery(normalized))
+                .addValue("pattern", "%" + escapeLike(normalized) + "%")
+                .addValue("userId", userId)
+                .addValue("includePublic", includePublic)
+                .addValue("filenameOptions", FILENAME_HEADLINE_OPTIONS)
+                .addValue("descriptionOptions", DESCRIPTION_HEADLINE_OPTIONS)
+                .addValue("limit", limit)
+                .addValue("offset", offset);
+
+        long startTime = System.currentTimeMillis();
+        List<SearchHit> hits = namedJdbcTemplate.query(SEARCH_SQL, params, (rs, rowNum) -> new SearchHit(
+                rs.getLong("id"),
+                rs.getDouble("rank"),
+                highlight(rs.getString("filename_highlight")),
+                highlight(rs.getString("description_highlight"))));
+        log.debug("媒体搜索: {}, 结果: {}, 耗时: {}ms", normalized, hits.size(), System.currentTimeMillis() - startTime);
+        return hits;
+    }
+
+    /**
+     * 将关键词转换为前缀匹配的tsquery："summer holi" -> "summer:* & holi:*"。
+     * 只保留字母和数字组成的词，不会产生语法错误；没有可用词时返回空串（匹配不到任何分词）
+     */
+    public static String toPrefixQuery(String keyword) {
+        List<String> terms = new ArrayList<>();
+        for (String term : keyword.split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty() && terms.size() < MAX_TERMS) {
+                terms.add(term + ":*");
+            }
+        }
+        return String.join(" & ", terms);
+    }
+
+    /**
+     * HTML转义高亮片段（文件名、描述均为用户输入），再把高亮标记替换为 &lt;em&gt; 标签
+     */
+    public static String highlight(String fragment) {
+        if (fragment == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(fragment)
+                .replace(START_SEL, "<em>")
+                .replace(STOP_SEL, "</em>");
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 搜索命中
+     */
+    public record SearchHit(long id, double rank, String filenameHighlight, String descriptionHighlight) {
+    }
+}
@@ -1,6 +1,8 @@
 package com.avstream.media.service;
 
 import com.avstream.media.dto.request.UploadRequest;
+import com.avstream.media.dto.response.BatchOperationResponse;
+import com.avstream.media.dto.response.CursorPageResponse;
 import com.avstream.media.dto.response.MediaInfoResponse;
 import com.avstream.media.dto.response.UploadResponse;
 import com.avstream.media.entity.MediaFile;
@@ -8,6 +10,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -22,11 +25,35 @@ public interface MediaService {
      */
     UploadResponse uploadFile(MultipartFile file, UploadRequest request, Long userId);
 
+    /**
+     * 流式上传媒体文件（请求体直接写入存储，不经过multipart临时文件）
+     *
+     * @param contentLength 内容长度，分块传输时为-1
+     * @param expectedSha256 客户端声明的SHA-256，可为空
+     */
+    UploadResponse uploadStream(InputStream inputStream, long contentLength, UploadRequest request,
+                                String expectedSha256, Long userId);
+
+    /**
+     * 初始化分片上传会话
+     */
+    UploadResponse initChunkUpload(UploadRequest request, Long userId);
+
     /**
      * 分片上传媒体文件
      */
     UploadResponse uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex, Integer totalChunks, Long userId);
 
+    /**
+     * 批量上传分片（分片可乱序，全部到达后自动合并）
+     */
+    UploadResponse uploadChunks(List<MultipartFile> chunks, String fileUuid, List<Integer> chunkIndexes, Long userId);
+
+    /**
+     * 获取分片上传状态（含缺失分片列表，用于断点续传）
+     */
+    UploadResponse getUploadStatus(String fileUuid, Long userId);
+
     /**
      * 合并分片文件
      */
@@ -48,9 +75,11 @@ public interface MediaService {
     Page<MediaInfoResponse> getUserMediaFiles(Long userId, Pageable pageable);
 
     /**
-     * 搜索媒体文件
+     * 搜索媒体文件，按相关度排序
+     *
+     * @param includePublic 是否包含其他用户公开的文件
      */
-    Page<MediaInfoResponse> searchMediaFiles(String keyword, Long userId, Pageable pageable);
+    Page<MediaInfoResponse> searchMediaFiles(String keyword, Long userId, boolean includePublic, Pageable pageable);
 
     /**
      * 按文件类型筛选媒体文件
@@ -62,6 +91,17 @@ public interface MediaService {
      */
     Page<MediaInfoResponse> filterMediaFilesByStatus(MediaFile.MediaStatus status, Long userId, Pageable pageable);
 
+    /**
+     * 游标分页查询用户的媒体文件（按创建时间倒序），用于深度滚动加载
+     *
+     * @param keyword  文件名关键词，可为空
+     * @param fileType 文件类型，可为空
+     * @param status   处理状态，可为空
+     * @param cursor   上一页返回的游标，首页为空
+     */
+    CursorPageResponse<MediaInfoResponse> scrollMediaFiles(Long userId, String keyword, MediaFile.FileType fileType,
+                                                           MediaFile.MediaStatus status, String cursor, int size);
+
     /**
      * 更新媒体文件信息
      */
@@ -73,9 +113,14 @@ public interface MediaService {
     void deleteMediaFile(String fileUuid, Long userId);
 
     /**
-     * 批量删除媒体文件
+     * 批量删除媒体文件，逐项返回结果
+     */
+    BatchOperationResponse batchDeleteMediaFiles(List<String> fileUuids, Long userId);
+
+    /**
+     * 批量恢复已删除的媒体文件，逐项返回结果
      */
-    void batchDeleteMediaFiles(List<String> fileUuids, Long userId);
+    BatchOperationResponse batchRestoreMediaFiles(List<String> fileUuids, Long userId);
 
     /**
      * 恢复已删除的媒体文件
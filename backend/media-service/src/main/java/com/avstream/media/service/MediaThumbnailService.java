@@ -0,0 +1,352 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.MediaProcessingProperties;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.entity.MediaMetadata;
+import com.avstream.media.entity.MediaThumbnail;
+import com.avstream.media.repository.MediaFileRepository;
+import com.avstream.media.repository.MediaMetadataRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 视频缩略图生成服务
+ *
+ * 一次FFmpeg调用生成整套缩略图：海报、均匀分布的若干截图，以及拖动进度条时预览用的雪碧图和WebVTT索引。
+ * 海报和截图各自作为一路输入，在输入端用 -ss 快速定位到目标时间点附近的关键帧，只解码一帧；
+ * 雪碧图输入只解码关键帧（-skip_frame nokey），经 fps 抽帧后由 tile 拼接。
+ * 所有输入都读取源对象的预签名URL，不下载整个文件。生成结果批量写入缩略图表。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class MediaThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaThumbnailService.class);
+
+    private static final String THUMBNAIL_PREFIX = "thumbnails/";
+
+    private static final String POSTER_NAME = "poster.jpg";
+    private static final String SPRITE_INDEX_NAME = "sprite.vtt";
+
+    /** 预签名URL有效期（秒），雪碧图需要顺序读取整个文件的关键帧 */
+    private static final int URL_EXPIRY_SECONDS = 3600;
+
+    private static final String INSERT_SQL = "INSERT INTO media_thumbnails (thumbnail_uuid, media_file_id, file_path, "
+            + "filename, file_size, width, height, format, quality, thumbnail_type, capture_time, is_default, "
+            + "tile_interval, enabled, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final MediaFileRepository mediaFileRepository;
+    private final MediaMetadataRepository metadataRepository;
+    private final StorageService storageService;
+    private final TranscodeProcessSupervisor processSupervisor;
+    private final FFmpegConfig ffmpegConfig;
+    private final MediaProcessingProperties processingProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 删除文件的全部缩略图对象 thumbnails/{fileUuid}/（永久删除文件时调用）
+     */
+    public void deleteThumbnailObjects(String fileUuid) throws IOException {
+        storageService.deleteByPrefix(THUMBNAIL_PREFIX + fileUuid + "/");
+    }
+
+    /**
+     * 元数据提取完成后生成缩略图（需要时长确定截图位置）
+     */
+    @Async("thumbnailExecutor")
+    @EventListener
+    public void onMetadataExtracted(MediaMetadataExtractedEvent event) {
+        if (!thumbnailSettings().isAutoGenerate()) {
+            return;
+        }
+        try {
+            generate(event.getFileUuid());
+        } catch (IOException e) {
+            log.warn("缩略图生成失败: {}, {}", event.getFileUuid(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("缩略图生成异常: {}", event.getFileUuid(), e);
+        }
+    }
+
+    /**
+     * 生成并保存整套缩略图，替换该文件已有的缩略图记录；非视频文件或时长未知时返回空列表
+     */
+    public List<MediaThumbnail> generate(String fileUuid) throws IOException, InterruptedException {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new IOException("文件不存在"));
+        if (mediaFile.getFileType() != MediaFile.FileType.VIDEO || mediaFile.getFilePath() == null) {
+            return List.of();
+        }
+        MediaMetadata metadata = metadataRepository.findByMediaFileId(mediaFile.getId()).orElse(null);
+        if (metadata == null || metadata.getDuration() == null || metadata.getDuration().signum() <= 0
+                || metadata.getVideoCodec() == null) {
+            return List.of();
+        }
+        String url = storageService.generateObjectUrl(mediaFile.getFilePath(), URL_EXPIRY_SECONDS);
+        if (url == null) {
+            throw new IOException("生成对象URL失败");
+        }
+
+        MediaProcessingProperties.Video.Thumbnail settings = thumbnailSettings();
+        double duration = metadata.getDuration().doubleValue();
+        double posterTime = duration * settings.getPosterPosition();
+        int frameCount = Math.max(0, settings.getFrameCount());
+        double[] frameTimes = new double[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            frameTimes[i] = duration * (i + 1) / (frameCount + 1);
+        }
+        int interval = Math.max(1, settings.getSpriteInterval());
+
+        long startTime = System.currentTimeMillis();
+        Path workDir = Files.createDirectories(Paths.get(ffmpegConfig.getTempDir(), "thumbnail", fileUuid));
+        try {
+            runFFmpeg(fileUuid, buildCommand(url, posterTime, frameTimes, interval, workDir, settings));
+
+            String objectPrefix = THUMBNAIL_PREFIX + fileUuid + "/";
+            List<MediaThumbnail> thumbnails = new ArrayList<>();
+            MediaThumbnail poster = upload(workDir.resolve(POSTER_NAME), objectPrefix, MediaThumbnail.ThumbnailType.POSTER);
+            poster.setCaptureTime(posterTime);
+            poster.setIsDefault(true);
+            thumbnails.add(poster);
+            for (int i = 0; i < frameCount; i++) {
+                Path frame = workDir.resolve(frameName(i));
+                if (Files.exists(frame)) {
+                    MediaThumbnail screenshot = upload(frame, objectPrefix, MediaThumbnail.ThumbnailType.SCREENSHOT);
+                    screenshot.setCaptureTime(frameTimes[i]);
+                    thumbnails.add(screenshot);
+                }
+            }
+
+            List<String> sheetNames = new ArrayList<>();
+            int tilesPerSheet = settings.getSpriteColumns() * settings.getSpriteRows();
+            for (int sheet = 0; Files.exists(workDir.resolve(sheetName(sheet))); sheet++) {
+                MediaThumbnail sprite = upload(workDir.resolve(sheetName(sheet)), objectPrefix,
+                        MediaThumbnail.ThumbnailType.SPRITE);
+                sprite.setCaptureTime((double) sheet * tilesPerSheet * interval);
+                sprite.setTileInterval((double) interval);
+                thumbnails.add(sprite);
+                sheetNames.add(sheetName(sheet));
+            }
+            if (!sheetNames.isEmpty()) {
+                // tile滤镜输出的每张雪碧图尺寸相同（最后一张不足时补齐），小图尺寸由整图尺寸推算
+                MediaThumbnail firstSheet = thumbnails.get(thumbnails.size() - sheetNames.size());
+                int tileWidth = firstSheet.getWidth() / settings.getSpriteColumns();
+                int tileHeight = firstSheet.getHeight() / settings.getSpriteRows();
+                Path index = workDir.resolve(SPRITE_INDEX_NAME);
+                Files.writeString(index, buildSpriteIndex(duration, interval, settings.getSpriteColumns(),
+                        settings.getSpriteRows(), tileWidth, tileHeight, sheetNames), StandardCharsets.UTF_8);
+                storageService.uploadObject(objectPrefix + SPRITE_INDEX_NAME, index, "text/vtt");
+                thumbnails.add(thumbnail(objectPrefix, index, MediaThumbnail.ThumbnailType.SPRITE_INDEX,
+                        tileWidth, tileHeight, "vtt"));
+                thumbnails.get(thumbnails.size() - 1).setTileInterval((double) interval);
+            }
+
+            saveAll(mediaFile.getId(), thumbnails);
+            log.info("缩略图生成完成: {}, 截图: {}, 雪碧图: {}, 耗时: {}ms", fileUuid, frameCount, sheetNames.size(),
+                    System.currentTimeMillis() - startTime);
+            return thumbnails;
+        } finally {
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * 生成雪碧图的WebVTT索引，每个小图对应一条cue，图片地址为相对索引文件的路径加 #xywh 片段
+     */
+    public static String buildSpriteIndex(double durationSeconds, int interval, int columns, int rows,
+                                          int tileWidth, int tileHeight, List<String> sheetNames) {
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        int tilesPerSheet = columns * rows;
+        for (int tile = 0; (double) tile * interval < durationSeconds; tile++) {
+            int sheet = tile / tilesPerSheet;
+            if (sheet >= sheetNames.size()) {
+                break;
+            }
+            int position = tile % tilesPerSheet;
+            double start = (double) tile * interval;
+            double end = Math.min(start + interval, durationSeconds);
+            vtt.append('\n')
+                    .append(formatTimestamp(start)).append(" --> ").append(formatTimestamp(end)).append('\n')
+                    .append(sheetNames.get(sheet))
+                    .append("#xywh=").append(position % columns * tileWidth).append(',')
+                    .append(position / columns * tileHeight).append(',')
+                    .append(tileWidth).append(',').append(tileHeight).append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private List<String> buildCommand(String url, double posterTime, double[] frameTimes, int interval,
+                                      Path workDir, MediaProcessingProperties.Video.Thumbnail settings) {
+        List<String> command = new ArrayList<>(List.of(ffmpegConfig.getExecutablePath(), "-nostats", "-y",
+                "-v", "error"));
+        command.addAll(List.of("-ss", seconds(posterTime), "-i", url));
+        for (double frameTime : frameTimes) {
+            command.addAll(List.of("-ss", seconds(frameTime), "-i", url));
+        }
+        // 只解码关键帧：拖动预览对时间精度要求不高，整片解码的开销可降低一个数量级
+        command.addAll(List.of("-skip_frame", "nokey", "-i", url));
+
+        addStillOutput(command, 0, settings.getPosterWidth(), settings.getPosterHeight(), workDir.resolve(POSTER_NAME));
+        for (int i = 0; i < frameTimes.length; i++) {
+            addStillOutput(command, i + 1, settings.getWidth(), settings.getHeight(), workDir.resolve(frameName(i)));
+        }
+        command.addAll(List.of("-map", (frameTimes.length + 1) + ":v:0",
+                "-vf", "fps=1/" + interval + "," + fit(settings.getSpriteTileWidth(), settings.getSpriteTileHeight())
+                        + ",tile=" + settings.getSpriteColumns() + "x" + settings.getSpriteRows(),
+                "-q:v", "4", "-f", "image2", workDir.resolve("sprite-%03d.jpg").toString()));
+        return command;
+    }
+
+    private static void addStillOutput(List<String> command, int input, int width, int height, Path output) {
+        command.addAll(List.of("-map", input + ":v:0", "-frames:v", "1", "-vf", fit(width, height),
+                "-q:v", "2", "-update", "1", output.toString()));
+    }
+
+    /**
+     * 等比缩放到不超过指定宽高，不放大；由FFmpeg按显示方向计算，旋转过的手机视频同样适用
+     */
+    private static String fit(int width, int height) {
+        return "scale=w='min(" + width + ",iw)':h='min(" + height + ",ih)'"
+                + ":force_original_aspect_ratio=decrease:force_divisible_by=2";
+    }
+
+    private void runFFmpeg(String fileUuid, List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try (TranscodeProcessSupervisor.Handle handle = processSupervisor.start(
+                List.of("thumbnail-" + fileUuid), TranscodeProcessSupervisor.JobClass.BATCH, builder, false)) {
+            int exitCode = handle.process().waitFor();
+            if (handle.termination() != null) {
+                throw new IOException("缩略图生成中止: " + handle.termination().getDescription());
+            }
+            if (exitCode != 0) {
+                throw new IOException("FFmpeg执行失败，退出码: " + exitCode);
+            }
+        }
+    }
+
+    private MediaThumbnail upload(Path file, String objectPrefix, MediaThumbnail.ThumbnailType type)
+            throws IOException {
+        if (!Files.exists(file)) {
+            throw new IOException("缩略图未生成: " + file.getFileName());
+        }
+        int[] size = imageSize(file);
+        storageService.uploadObject(objectPrefix + file.getFileName(), file, "image/jpeg");
+        return thumbnail(objectPrefix, file, type, size[0], size[1], "jpeg");
+    }
+
+    private static MediaThumbnail thumbnail(String objectPrefix, Path file, MediaThumbnail.ThumbnailType type,
+                                            int width, int height, String format) throws IOException {
+        MediaThumbnail thumbnail = new MediaThumbnail();
+        thumbnail.setThumbnailUuid(UUID.randomUUID().toString());
+        thumbnail.setFilename(file.getFileName().toString());
+        thumbnail.setFilePath(objectPrefix + file.getFileName());
+        thumbnail.setFileSize(Files.size(file));
+        thumbnail.setWidth(width);
+        thumbnail.setHeight(height);
+        thumbnail.setFormat(format);
+        thumbnail.setThumbnailType(type);
+        return thumbnail;
+    }
+
+    /**
+     * 批量写入：先删除旧记录，再一次批量插入
+     */
+    private void saveAll(Long mediaFileId, List<MediaThumbnail> thumbnails) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM media_thumbnails WHERE media_file_id = ?", mediaFileId);
+            jdbcTemplate.batchUpdate(INSERT_SQL, thumbnails, thumbnails.size(), (ps, thumbnail) -> {
+                ps.setString(1, thumbnail.getThumbnailUuid());
+                ps.setLong(2, mediaFileId);
+                ps.setString(3, thumbnail.getFilePath());
+                ps.setString(4, thumbnail.getFilename());
+                ps.setLong(5, thumbnail.getFileSize());
+                ps.setInt(6, thumbnail.getWidth());
+                ps.setInt(7, thumbnail.getHeight());
+                ps.setString(8, thumbnail.getFormat());
+                ps.setInt(9, thumbnail.getQuality());
+                ps.setString(10, thumbnail.getThumbnailType().name());
+                ps.setObject(11, thumbnail.getCaptureTime());
+                ps.setBoolean(12, Boolean.TRUE.equals(thumbnail.getIsDefault()));
+                ps.setObject(13, thumbnail.getTileInterval());
+                ps.setBoolean(14, true);
+                ps.setTimestamp(15, now);
+                ps.setTimestamp(16, now);
+            });
+        });
+    }
+
+    /**
+     * 读取图片宽高，只解析文件头不解码像素
+     */
+    private static int[] imageSize(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法识别的图片格式: " + file.getFileName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private MediaProcessingProperties.Video.Thumbnail thumbnailSettings() {
+        return processingProperties.getVideo().getThumbnail();
+    }
+
+    private static String frameName(int index) {
+        return String.format("frame-%02d.jpg", index + 1);
+    }
+
+    /**
+     * image2 输出的序号从1开始
+     */
+    private static String sheetName(int index) {
+        return String.format("sprite-%03d.jpg", index + 1);
+    }
+
+    private static String seconds(double value) {
+        return String.format("%.3f", value);
+    }
+
+    private static String formatTimestamp(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format("%02d:%02d:%02d.%03d", millis / 3_600_000, millis / 60_000 % 60,
+                millis / 1000 % 60, millis % 1000);
+    }
+}
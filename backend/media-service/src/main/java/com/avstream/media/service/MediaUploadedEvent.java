@@ -0,0 +1,19 @@
+package com.avstream.media.service;
+
+/**
+ * 媒体文件上传完成事件，在保存上传记录的事务提交后处理
+ *
+ * @author AV Stream Team
+ */
+public class MediaUploadedEvent {
+
+    private final String fileUuid;
+
+    public MediaUploadedEvent(String fileUuid) {
+        this.fileUuid = fileUuid;
+    }
+
+    public String getFileUuid() {
+        return fileUuid;
+    }
+}
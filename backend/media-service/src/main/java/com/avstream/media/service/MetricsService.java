@@ -31,6 +31,12 @@ public class MetricsService {
     private Counter streamCounter;
     private Counter errorCounter;
     
+    // 本地缓存计数器
+    private Counter cacheHitCounter;
+    private Counter cacheMissCounter;
+    private Counter cacheBytesSavedCounter;
+    private Counter cacheEvictionCounter;
+    
     // 计时器
     private Timer uploadTimer;
     private Timer downloadTimer;
@@ -67,6 +73,26 @@ public class MetricsService {
                 .description("错误次数")
                 .register(meterRegistry);
         
+        cacheHitCounter = Counter.builder("media.storage.cache.hit")
+                .description("本地缓存命中次数")
+                .register(meterRegistry);
+                
+        cacheMissCounter = Counter.builder("media.storage.cache.miss")
+                .description("本地缓存未命中次数")
+                .register(meterRegistry);
+                
+        cacheBytesSavedCounter = Counter.builder("media.storage.cache.bytes.saved")
+                .description("本地缓存节省的对象存储读取字节数")
+                .register(meterRegistry);
+                
+        cacheEvictionCounter = Counter.builder("media.storage.cache.eviction")
+                .description("本地缓存淘汰次数")
+                .register(meterRegistry);
+        
+        Gauge.builder("media.storage.cache.hit.ratio", this, MetricsService::getCacheHitRatio)
+                .description("本地缓存命中率")
+                .register(meterRegistry);
+        
         // 初始化计时器
         uploadTimer = Timer.builder("media.upload.duration")
                 .description("文件上传耗时")
@@ -128,6 +154,13 @@ public class MetricsService {
                 .description("任务队列长度")
                 .register(meterRegistry);
         gauges.put("queueLength", queueLength);
+        
+        // 本地缓存占用
+        AtomicLong cacheSize = new AtomicLong(0);
+        Gauge.builder("media.storage.cache.size", cacheSize, AtomicLong::get)
+                .description("本地缓存占用（字节）")
+                .register(meterRegistry);
+        gauges.put("cacheSize", cacheSize);
     }
     
     /**
@@ -211,6 +244,39 @@ public class MetricsService {
                 .increment();
     }
     
+    /**
+     * 记录本地缓存命中
+     *
+     * @param bytes 由缓存提供、未从对象存储读取的字节数
+     */
+    public void recordCacheHit(long bytes) {
+        cacheHitCounter.increment();
+        cacheBytesSavedCounter.increment(bytes);
+    }
+    
+    /**
+     * 记录本地缓存未命中
+     */
+    public void recordCacheMiss() {
+        cacheMissCounter.increment();
+    }
+    
+    /**
+     * 记录本地缓存淘汰
+     */
+    public void recordCacheEviction() {
+        cacheEvictionCounter.increment();
+    }
+    
+    /**
+     * 获取本地缓存命中率
+     */
+    public double getCacheHitRatio() {
+        double hits = cacheHitCounter.count();
+        double total = hits + cacheMissCounter.count();
+        return total > 0 ? hits / total : 0.0;
+    }
+    
     /**
      * 更新Gauge值
      */
@@ -0,0 +1,220 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.entity.MediaTranscode;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * 按内容复杂度（per-title）选择码率阶梯
+ *
+ * 在片源中均匀抽取若干短片段，按原宽高比缩放到固定面积（640x360的像素数）后以固定CRF快速试编码，
+ * 试编码的平均码率反映内容复杂度：
+ * 访谈、课件等静态画面码率很低，体育、游戏等高运动画面码率很高。各档目标码率按像素数的0.75次幂
+ * 由试编码码率换算，并限制在模板码率的上下限比例之间；分辨率不超过片源，不做无意义的放大，
+ * 缩小后分辨率相同的多档合并为一档。
+ * 同一源文件的分析结果记录在转码记录上，后续任务直接复用。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class PerTitleEncodingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PerTitleEncodingService.class);
+
+    /** 试编码画面的像素数（640x360），各种宽高比的片源都缩放到该面积 */
+    private static final long PROBE_PIXELS = 640L * 360;
+
+    /** 按原宽高比缩放到 PROBE_PIXELS 面积：高 = sqrt(面积 × ih / iw)，宽高取偶数 */
+    private static final String PROBE_SCALE_FILTER = "scale=-2:trunc(sqrt(" + PROBE_PIXELS + "*ih/iw)/2)*2";
+
+    /** 码率随像素数增长的指数，分辨率越高单位像素所需码率越低 */
+    private static final double PIXEL_EXPONENT = 0.75;
+
+    /** 目标码率取整粒度（bps） */
+    private static final long BITRATE_STEP = 10_000;
+
+    private final MediaTranscodeRepository transcodeRepository;
+    private final TranscodeProcessSupervisor processSupervisor;
+    private final TranscodeProperties transcodeProperties;
+    private final FFmpegConfig ffmpegConfig;
+
+    public boolean isEnabled() {
+        return transcodeProperties.isPerTitleEnabled();
+    }
+
+    /**
+     * 获取源文件的内容复杂度（kbps），同一文件已分析过时直接复用；分析失败时返回空，调用方使用模板码率
+     */
+    public Optional<Integer> analyzeComplexity(MediaTranscode transcode, String inputUrl, long durationUs,
+                                               Path workDir, TranscodeProcessSupervisor.JobClass jobClass)
+            throws InterruptedException {
+        Optional<Integer> known = transcodeRepository.findComplexityKbps(transcode.getFileUuid());
+        if (known.isPresent() || durationUs <= 0) {
+            return known;
+        }
+
+        double durationSeconds = durationUs / 1_000_000d;
+        int samples = Math.max(1, transcodeProperties.getPerTitleSamples());
+        double sampleSeconds = Math.min(transcodeProperties.getPerTitleSampleSeconds(), durationSeconds / samples);
+        if (sampleSeconds < 1) {
+            samples = 1;
+            sampleSeconds = durationSeconds;
+        }
+
+        double totalKbps = 0;
+        double maxKbps = 0;
+        try {
+            for (int i = 0; i < samples; i++) {
+                // 各采样片段位于均分区间的中点，避开片头片尾
+                double start = Math.max(0, durationSeconds * (i + 0.5) / samples - sampleSeconds / 2);
+                double kbps = probeSample(transcode, inputUrl, start, sampleSeconds, workDir.resolve("probe-" + i + ".mkv"),
+                        jobClass);
+                totalKbps += kbps;
+                maxKbps = Math.max(maxKbps, kbps);
+            }
+        } catch (IOException e) {
+            log.warn("内容复杂度分析失败，使用模板码率: {}, {}", transcode.getTranscodeUuid(), e.getMessage());
+            return Optional.empty();
+        }
+
+        // 兼顾平均与最复杂的片段，避免高运动场景码率不足
+        int complexityKbps = (int) Math.round((totalKbps / samples + maxKbps) / 2);
+        log.info("内容复杂度分析完成: {}, 采样: {}×{}秒, 复杂度: {}kbps",
+                transcode.getFileUuid(), samples, String.format("%.1f", sampleSeconds), complexityKbps);
+        return Optional.of(complexityKbps);
+    }
+
+    /**
+     * 按内容复杂度设置各档的码率和分辨率，并在各记录上写入整套阶梯
+     *
+     * 片源分辨率较低时多个档位会缩小到同一分辨率，这些档位合并为其中排在最前的一档（代表记录始终保留），
+     * 码率取模板分辨率最接近片源（缩小最少）的那一档的结果
+     *
+     * @param sourceWidth  片源宽度，未知时为null
+     * @param sourceHeight 片源高度，未知时为null
+     * @return 需要编码的档位（保持原顺序），未包含的档位与保留档位重复
+     */
+    public List<MediaTranscode> applyLadder(List<MediaTranscode> renditions, int complexityKbps,
+                                            Integer sourceWidth, Integer sourceHeight) {
+        double sourcePixels = sourceWidth != null && sourceHeight != null && sourceWidth > 0 && sourceHeight > 0
+                ? (double) sourceWidth * sourceHeight : Double.MAX_VALUE;
+
+        List<MediaTranscode> rungs = new ArrayList<>();
+        Map<String, Integer> rungIndexByResolution = new HashMap<>();
+        List<Double> rungTemplatePixels = new ArrayList<>();
+        for (MediaTranscode rendition : renditions) {
+            int[] size = parseResolution(rendition.getResolution());
+            if (size == null || rendition.getVideoBitrate() == null) {
+                rungs.add(rendition);
+                rungTemplatePixels.add(Double.MAX_VALUE);
+                continue;
+            }
+            double templatePixels = (double) size[0] * size[1];
+            double pixels = templatePixels;
+            if (pixels > sourcePixels) {
+                double scale = Math.sqrt(sourcePixels / pixels);
+                size[0] = even(size[0] * scale);
+                size[1] = even(size[1] * scale);
+                pixels = (double) size[0] * size[1];
+            }
+
+            long templateBitrate = rendition.getVideoBitrate();
+            double target = complexityKbps * 1000d * Math.pow(pixels / PROBE_PIXELS, PIXEL_EXPONENT)
+                    * transcodeProperties.getPerTitleBitrateFactor();
+            target = Math.max(target, templateBitrate * transcodeProperties.getPerTitleMinRatio());
+            target = Math.min(target, templateBitrate * transcodeProperties.getPerTitleMaxRatio());
+
+            rendition.setVideoBitrate(Math.round(target / BITRATE_STEP) * BITRATE_STEP);
+            rendition.setResolution(size[0] + "x" + size[1]);
+            rendition.setComplexityKbps(complexityKbps);
+
+            Integer existing = rungIndexByResolution.get(rendition.getResolution());
+            if (existing == null) {
+                rungIndexByResolution.put(rendition.getResolution(), rungs.size());
+                rungs.add(rendition);
+                rungTemplatePixels.add(templatePixels);
+            } else if (templatePixels < rungTemplatePixels.get(existing)) {
+                rungs.get(existing).setVideoBitrate(rendition.getVideoBitrate());
+                rungTemplatePixels.set(existing, templatePixels);
+            }
+        }
+
+        String ladder = rungs.stream()
+                .map(rendition -> rendition.getResolution() + "@" + rendition.getVideoBitrate() / 1000 + "k")
+                .collect(Collectors.joining(","));
+        renditions.forEach(rendition -> rendition.setEncodingLadder(ladder));
+        return rungs;
+    }
+
+    /**
+     * 试编码一个采样片段，返回其平均码率（kbps）
+     */
+    private double probeSample(MediaTranscode transcode, String inputUrl, double start, double seconds, Path output,
+                               TranscodeProcessSupervisor.JobClass jobClass) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(ffmpegConfig.getExecutablePath(), "-nostats", "-y",
+                "-ss", String.format("%.3f", start),
+                "-t", String.format("%.3f", seconds),
+                "-i", inputUrl,
+                "-map", "0:v:0", "-an",
+                "-vf", PROBE_SCALE_FILTER,
+                "-c:v", "libx264", "-preset", "veryfast",
+                "-crf", String.valueOf(transcodeProperties.getPerTitleCrf()),
+                "-threads", String.valueOf(processSupervisor.threadsPerEncoder(1)),
+                "-f", "matroska", output.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try (TranscodeProcessSupervisor.Handle handle = processSupervisor.start(
+                List.of(transcode.getTranscodeUuid()), jobClass, builder, false)) {
+            int exitCode = handle.process().waitFor();
+            if (handle.termination() != null) {
+                throw new IOException("试编码中止: " + handle.termination().getDescription());
+            }
+            if (exitCode != 0 || !Files.exists(output)) {
+                throw new IOException("试编码失败，退出码: " + exitCode);
+            }
+        }
+        try {
+            return Files.size(output) * 8 / seconds / 1000;
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private static int[] parseResolution(String resolution) {
+        if (resolution == null) {
+            return null;
+        }
+        String[] parts = resolution.split("x");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 编码器要求宽高为偶数
+     */
+    private static int even(double value) {
+        return Math.max(2, (int) Math.round(value / 2) * 2);
+    }
+}
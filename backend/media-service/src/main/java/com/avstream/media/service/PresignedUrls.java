@@ -0,0 +1,27 @@
+package com.avstream.media.service;
+
+import lombok.Data;
+
+/**
+ * 媒体文件预签名URL集合
+ *
+ * @author AV Stream Team
+ */
+@Data
+public class PresignedUrls {
+
+    /** 预览URL */
+    private String previewUrl;
+
+    /** 播放URL */
+    private String playUrl;
+
+    /** 下载URL */
+    private String downloadUrl;
+
+    /**
+     * 批量签名的输入：文件UUID及其预览、播放、下载对应的对象路径，对象路径为空时不生成该URL
+     */
+    public record Target(String fileUuid, String previewObject, String playObject, String downloadObject) {
+    }
+}
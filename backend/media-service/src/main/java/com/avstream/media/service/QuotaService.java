@@ -0,0 +1,173 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.MediaServiceConfig;
+import com.avstream.media.repository.MediaFileRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 用户存储配额服务
+ *
+ * 已用量复用 {@link StorageUsageService} 在Redis中维护的用户计数（首次使用时从数据库加载），
+ * 上传中的文件按fileUuid记录预留量：上传开始时原子预留，完成时转为已用量，取消或失败时释放。
+ * 上传热路径上的配额检查只访问Redis，不执行聚合查询。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class QuotaService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuotaService.class);
+
+    private static final String RESERVATION_KEY_PREFIX = "media:quota:reservations:";
+
+    /**
+     * 预留配额：KEYS[1]=用户用量键，KEYS[2]=用户预留键
+     * ARGV={fileUuid, 预留字节数, 配额上限, 当前时间(毫秒), 预留有效期(毫秒)}
+     * 预留记录格式为 "字节数:过期时间"，统计时顺带清理已过期的预留；同一fileUuid重复预留时覆盖原值
+     */
+    private static final String RESERVE_SCRIPT = """
+            local now = tonumber(ARGV[4])
+            local reserved = 0
+            local entries = redis.call('HGETALL', KEYS[2])
+            for i = 1, #entries, 2 do
+                local sep = string.find(entries[i + 1], ':', 1, true)
+                local bytes = tonumber(string.sub(entries[i + 1], 1, sep - 1))
+                local expiresAt = tonumber(string.sub(entries[i + 1], sep + 1))
+                if expiresAt <= now then
+                    redis.call('HDEL', KEYS[2], entries[i])
+                elseif entries[i] ~= ARGV[1] then
+                    reserved = reserved + bytes
+                end
+            end
+            local used = tonumber(redis.call('HGET', KEYS[1], 'bytes') or '0')
+            if used + reserved + tonumber(ARGV[2]) > tonumber(ARGV[3]) then
+                return 0
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2] .. ':' .. (now + tonumber(ARGV[5])))
+            redis.call('PEXPIRE', KEYS[2], ARGV[5])
+            return 1
+            """;
+
+    /**
+     * 提交预留：删除预留记录并按实际大小累加已用量，两步在同一脚本中执行，不会出现重复计算或漏算的窗口
+     * KEYS[1]=用户用量键，KEYS[2]=用户预留键，ARGV={fileUuid, 实际字节数}
+     */
+    private static final String COMMIT_SCRIPT = """
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            if redis.call('HEXISTS', KEYS[1], 'bytes') == 1 then
+                redis.call('HINCRBY', KEYS[1], 'bytes', ARGV[2])
+                redis.call('HINCRBY', KEYS[1], 'objects', 1)
+            end
+            return 1
+            """;
+
+    private static final RedisScript<Long> RESERVE = RedisScript.of(RESERVE_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> COMMIT = RedisScript.of(COMMIT_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final StorageUsageService storageUsageService;
+    private final MediaFileRepository mediaFileRepository;
+    private final MediaServiceConfig mediaServiceConfig;
+
+    /**
+     * 为上传中的文件预留配额
+     *
+     * @return 剩余配额足够并预留成功
+     */
+    public boolean reserve(Long userId, String fileUuid, long bytes) {
+        ensureUsageLoaded(userId);
+        Long result = redisTemplate.execute(RESERVE,
+                List.of(StorageUsageService.userKey(userId), reservationKey(userId)),
+                fileUuid, String.valueOf(bytes), String.valueOf(mediaServiceConfig.getUserStorageQuota()),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(mediaServiceConfig.getQuotaReservationTtlHours() * 3600_000L));
+        boolean reserved = result != null && result == 1L;
+        if (!reserved) {
+            log.info("用户存储配额不足: {}, 申请: {} bytes", userId, bytes);
+        }
+        return reserved;
+    }
+
+    /**
+     * 上传完成：预留转为已用量
+     *
+     * @param bytes 文件实际大小
+     */
+    public void commit(Long userId, String fileUuid, long bytes) {
+        try {
+            redisTemplate.execute(COMMIT,
+                    List.of(StorageUsageService.userKey(userId), reservationKey(userId)),
+                    fileUuid, String.valueOf(bytes));
+        } catch (Exception e) {
+            // 已用量偏差由存储用量对账任务修正
+            log.warn("提交配额预留失败: {}, {}", fileUuid, e.getMessage());
+        }
+    }
+
+    /**
+     * 上传取消或失败：释放预留
+     */
+    public void release(Long userId, String fileUuid) {
+        try {
+            redisTemplate.opsForHash().delete(reservationKey(userId), fileUuid);
+        } catch (Exception e) {
+            // 预留记录过期后会在下次预留时被清理
+            log.warn("释放配额预留失败: {}, {}", fileUuid, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取用户已用存储（字节）
+     */
+    public long getUsedBytes(Long userId) {
+        ensureUsageLoaded(userId);
+        return storageUsageService.getUserUsage(userId).getBytes();
+    }
+
+    public long getQuotaBytes() {
+        return mediaServiceConfig.getUserStorageQuota();
+    }
+
+    /**
+     * 获取用户剩余可用配额（字节）：配额减去已用量和未过期的预留
+     */
+    public long getRemainingBytes(Long userId) {
+        long reserved = 0;
+        long now = System.currentTimeMillis();
+        for (Object value : redisTemplate.opsForHash().values(reservationKey(userId))) {
+            // 预留记录格式为 "字节数:过期时间"
+            String[] parts = value.toString().split(":");
+            if (parts.length == 2 && Long.parseLong(parts[1]) > now) {
+                reserved += Long.parseLong(parts[0]);
+            }
+        }
+        return Math.max(0, getQuotaBytes() - getUsedBytes(userId) - reserved);
+    }
+
+    /**
+     * 用户计数不存在（首次上传或Redis数据丢失）时从数据库加载一次
+     */
+    private void ensureUsageLoaded(Long userId) {
+        if (storageUsageService.hasUserUsage(userId)) {
+            return;
+        }
+        List<Object[]> rows = mediaFileRepository.sumStorageUsageByUserId(userId);
+        Object[] row = rows.isEmpty() ? new Object[]{0L, 0L} : rows.get(0);
+        if (storageUsageService.initUserUsage(userId, ((Number) row[0]).longValue(), ((Number) row[1]).longValue())) {
+            log.debug("加载用户存储用量: {}", userId);
+        }
+    }
+
+    private String reservationKey(Long userId) {
+        return RESERVATION_KEY_PREFIX + userId;
+    }
+}
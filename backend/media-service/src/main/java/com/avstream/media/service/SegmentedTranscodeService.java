@@ -0,0 +1,409 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.entity.MediaTranscode;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * 分段并行转码服务
+ *
+ * 长视频在关键帧处无重编码地切分为若干视频分段（GOP对齐），每个分段上传到存储并作为一条独立的转码记录入队，
+ * 由任意工作节点领取编码，整体任务进入WAITING状态。分段在上传和下载时都校验SHA-256，失败的分段单独重试。
+ * 全部分段完成后整体任务重新入队，由领取的节点用concat分离器无损拼接视频，音频从源文件一次性编码，
+ * 避免逐段编码AAC在分段边界产生的间隙。
+ *
+ * 存储布局：transcodes/{fileUuid}/segments/{整体任务UUID}/src-00000.mkv（源分段）、seg-00000.mkv（输出分段），
+ * 拼接成功、整体任务失败或取消后按前缀删除。
+ *
+ * @author AV Stream Team
+ */
+@Service
+public class SegmentedTranscodeService {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedTranscodeService.class);
+
+    /** 中间分段使用Matroska封装，可容纳任意编码格式，concat分离器可直接拼接 */
+    private static final String SEGMENT_FORMAT = "mkv";
+
+    private static final String SEGMENT_CONTENT_TYPE = "video/x-matroska";
+
+    /** 分段完成后整体进度最多到该值，剩余部分留给拼接 */
+    private static final int SEGMENT_PHASE_PERCENT = 90;
+
+    /** 整体任务最后更新超过该时长仍在WAITING且分段已全部结束，才由回收任务处理 */
+    private static final Duration STALLED_PARENT_GRACE = Duration.ofMinutes(5);
+
+    private final MediaTranscodeRepository transcodeRepository;
+    private final StorageService storageService;
+    private final TranscodeScheduler transcodeScheduler;
+    private final TranscodeProgressPublisher progressPublisher;
+    private final TranscodeProcessSupervisor processSupervisor;
+    private final TranscodeProperties transcodeProperties;
+    private final FFmpegConfig ffmpegConfig;
+    private final Executor uploadExecutor;
+
+    public SegmentedTranscodeService(MediaTranscodeRepository transcodeRepository,
+                                     StorageService storageService,
+                                     TranscodeScheduler transcodeScheduler,
+                                     TranscodeProgressPublisher progressPublisher,
+                                     TranscodeProcessSupervisor processSupervisor,
+                                     TranscodeProperties transcodeProperties,
+                                     FFmpegConfig ffmpegConfig,
+                                     @Qualifier("fileProcessExecutor") Executor uploadExecutor) {
+        this.transcodeRepository = transcodeRepository;
+        this.storageService = storageService;
+        this.transcodeScheduler = transcodeScheduler;
+        this.progressPublisher = progressPublisher;
+        this.processSupervisor = processSupervisor;
+        this.transcodeProperties = transcodeProperties;
+        this.ffmpegConfig = ffmpegConfig;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    /**
+     * 源文件时长是否达到分段转码阈值
+     */
+    public boolean shouldSplit(long durationUs) {
+        return transcodeProperties.isSplitEnabled()
+                && durationUs >= transcodeProperties.getSplitMinDurationSeconds() * 1_000_000L;
+    }
+
+    /**
+     * 在关键帧处切分源文件视频流并上传各分段
+     *
+     * @return 各分段SHA-256（按分段顺序），源文件过短只得到一个分段时返回空列表
+     */
+    public List<String> split(MediaTranscode parent, String inputUrl, Path workDir)
+            throws IOException, InterruptedException {
+        Path splitDir = Files.createDirectories(workDir.resolve("split"));
+        // 流复制切分只能在关键帧处断开，segment_time之后的第一个关键帧即为分段边界
+        ProcessBuilder builder = new ProcessBuilder(ffmpegConfig.getExecutablePath(), "-nostats", "-y",
+                "-i", inputUrl,
+                "-map", "0:v:0", "-c", "copy",
+                "-f", "segment",
+                "-segment_time", String.valueOf(transcodeProperties.getSplitSegmentSeconds()),
+                "-segment_format", "matroska",
+                "-reset_timestamps", "1",
+                splitDir.resolve("src-%05d." + SEGMENT_FORMAT).toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try (TranscodeProcessSupervisor.Handle handle = processSupervisor.start(List.of(parent.getTranscodeUuid()),
+                TranscodeProcessSupervisor.JobClass.REMUX, builder, false)) {
+            int exitCode = handle.process().waitFor();
+            if (handle.termination() != null) {
+                throw new IOException("源文件分段中止: " + handle.termination().getDescription());
+            }
+            if (exitCode != 0) {
+                throw new IOException("源文件分段失败，退出码: " + exitCode);
+            }
+        }
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(splitDir)) {
+            segments = files.sorted().toList();
+        }
+        if (segments.size() < 2) {
+            return List.of();
+        }
+
+        String prefix = segmentPrefix(parent);
+        CompletableFuture<?>[] uploads = new CompletableFuture[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            String objectName = prefix + sourceName(i);
+            uploads[i] = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return uploadWithChecksum(objectName, segment);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, uploadExecutor);
+        }
+        try {
+            CompletableFuture.allOf(uploads).join();
+        } catch (CompletionException e) {
+            throw new IOException("源分段上传失败", e.getCause());
+        }
+
+        List<String> checksums = new ArrayList<>(segments.size());
+        for (CompletableFuture<?> upload : uploads) {
+            checksums.add((String) upload.join());
+        }
+        log.info("源文件分段完成: {}, 分段数: {}", parent.getTranscodeUuid(), checksums.size());
+        return checksums;
+    }
+
+    /**
+     * 为各分段创建转码记录，整体任务转为WAITING并释放租约；本节点已不持有租约时整体回滚
+     */
+    @Transactional
+    public void fanOut(MediaTranscode parent, List<String> sourceChecksums, String owner) {
+        // 之前中断的切分可能留下旧分段记录
+        transcodeRepository.deleteSegments(parent.getId());
+
+        String prefix = segmentPrefix(parent);
+        List<MediaTranscode> segments = new ArrayList<>(sourceChecksums.size());
+        for (int i = 0; i < sourceChecksums.size(); i++) {
+            MediaTranscode segment = new MediaTranscode();
+            segment.setTranscodeUuid(UUID.randomUUID().toString());
+            segment.setOriginalFile(parent.getOriginalFile());
+            segment.setFileUuid(parent.getFileUuid());
+            segment.setTemplateName(parent.getPresetName());
+            segment.setUserId(parent.getUserId());
+            segment.setPriority(parent.getPriority());
+            segment.setStatus(MediaTranscode.TranscodeStatus.PENDING);
+            segment.setProgress(0);
+            segment.setParentId(parent.getId());
+            segment.setSegmentIndex(i);
+            segment.setSourceChecksum(sourceChecksums.get(i));
+            segment.setFormat(SEGMENT_FORMAT);
+            segment.setOutputFormat(SEGMENT_FORMAT);
+            segment.setFilename(outputName(i));
+            segment.setFilePath(prefix + outputName(i));
+            segment.setVideoCodec(parent.getVideoCodec());
+            segment.setVideoBitrate(parent.getVideoBitrate());
+            segment.setResolution(parent.getResolution());
+            segment.setFrameRate(parent.getFrameRate());
+            segment.setFrameRateStr(parent.getFrameRateStr());
+            // 分段只编码视频，音频在拼接时统一编码
+            segment.setAudioCodec(null);
+            segments.add(segment);
+        }
+        transcodeRepository.saveAll(segments);
+
+        if (transcodeRepository.markSplit(parent.getId(), segments.size(), owner) == 0) {
+            throw new IllegalStateException("转码任务租约已失效: " + parent.getTranscodeUuid());
+        }
+    }
+
+    /**
+     * 下载源分段并校验SHA-256
+     */
+    public void downloadSource(MediaTranscode segment, Path target) throws IOException {
+        String objectName = sourceObjectName(segment.getFilePath(), segment.getSegmentIndex());
+        downloadVerified(objectName, segment.getSourceChecksum(), target);
+    }
+
+    /**
+     * 下载各输出分段并校验SHA-256，返回按顺序排列的本地文件；有分段未完成时抛出异常
+     */
+    public List<Path> downloadOutputs(MediaTranscode parent, Path targetDir) throws IOException {
+        List<MediaTranscode> segments = transcodeRepository.findByParentIdOrderBySegmentIndex(parent.getId());
+        if (segments.size() != parent.getSegmentCount()
+                || segments.stream().anyMatch(segment -> !segment.isCompleted())) {
+            throw new IOException("分段未全部完成: " + parent.getTranscodeUuid());
+        }
+        List<Path> outputs = new ArrayList<>(segments.size());
+        for (MediaTranscode segment : segments) {
+            Path target = targetDir.resolve(segment.getFilename());
+            downloadVerified(segment.getFilePath(), segment.getOutputChecksum(), target);
+            outputs.add(target);
+        }
+        return outputs;
+    }
+
+    /**
+     * 上传输出分段并记录完成；全部分段完成时整体任务重新入队执行拼接
+     *
+     * @return 本节点已不持有租约（分段被回收或已重新切分）时返回false，结果作废
+     */
+    public boolean completeSegment(MediaTranscode segment, Path output, String owner) throws IOException {
+        String checksum = uploadWithChecksum(segment.getFilePath(), output);
+        if (transcodeRepository.completeSegment(segment.getId(), owner, checksum, Files.size(output)) == 0) {
+            return false;
+        }
+
+        Long parentId = segment.getParentId();
+        MediaTranscode parent = transcodeRepository.findById(parentId).orElse(null);
+        if (parent == null || parent.getSegmentCount() == null) {
+            return true;
+        }
+        long completed = transcodeRepository.countByParentIdAndStatus(parentId, MediaTranscode.TranscodeStatus.COMPLETED);
+        int percent = (int) (completed * SEGMENT_PHASE_PERCENT / parent.getSegmentCount());
+        transcodeRepository.updateProgress(parentId, percent);
+        publishProgress(parent, percent);
+
+        // 分段各自提交后再计数，最后一个计数的节点一定能看到全部完成；条件更新保证只入队一次
+        if (completed >= parent.getSegmentCount() && transcodeRepository.resumeSplitParent(parentId) > 0) {
+            log.info("全部分段转码完成，开始拼接: {}", parent.getTranscodeUuid());
+            transcodeScheduler.wakeUp();
+        }
+        return true;
+    }
+
+    /**
+     * 分段失败：未超过重试次数时重新入队，否则整体任务失败并取消其余排队分段
+     */
+    public void failSegment(MediaTranscode segment, String reason, String owner) {
+        if (segment.getRetryCount() < transcodeProperties.getSegmentMaxRetries()) {
+            if (transcodeRepository.requeueSegment(segment.getId(), owner) > 0) {
+                log.warn("分段转码失败，重新入队: {}#{}, 已重试: {}",
+                        segment.getParentId(), segment.getSegmentIndex(), segment.getRetryCount());
+                transcodeScheduler.wakeUp();
+            }
+            return;
+        }
+
+        if (transcodeRepository.failSegment(segment.getId(), owner, reason) == 0) {
+            return;
+        }
+        String parentReason = "分段" + segment.getSegmentIndex() + "重试" + segment.getRetryCount() + "次后仍失败: "
+                + (reason != null ? reason : "");
+        transcodeRepository.findById(segment.getParentId()).ifPresent(parent -> failParent(parent, parentReason));
+    }
+
+    /**
+     * 回收分段已全部结束但仍在WAITING的整体任务：分段全部完成时重新入队拼接，否则整体任务失败。
+     * 完成或失败的分段节点在通知整体任务前宕机时由此兜底；各执行节点都会运行，状态更新均为条件更新
+     */
+    @Scheduled(fixedDelayString = "${media.transcode.reaper-interval-ms:30000}")
+    public void reapStalledParents() {
+        if (!transcodeProperties.isExecutor()) {
+            return;
+        }
+        try {
+            for (MediaTranscode parent : transcodeRepository.findStalledSplitParents(STALLED_PARENT_GRACE.toMillis())) {
+                long completed = transcodeRepository.countByParentIdAndStatus(parent.getId(),
+                        MediaTranscode.TranscodeStatus.COMPLETED);
+                if (parent.getSegmentCount() != null && completed >= parent.getSegmentCount()) {
+                    if (transcodeRepository.resumeSplitParent(parent.getId()) > 0) {
+                        log.warn("分段已全部完成但整体任务未入队，重新入队拼接: {}", parent.getTranscodeUuid());
+                        transcodeScheduler.wakeUp();
+                    }
+                } else {
+                    failParent(parent, "分段未全部完成（存在失败或已取消的分段）");
+                }
+            }
+        } catch (Exception e) {
+            log.error("回收分段转码任务失败", e);
+        }
+    }
+
+    /**
+     * 整体任务失败：取消其余分段并删除分段对象和记录，重试时重新切分
+     */
+    private void failParent(MediaTranscode parent, String reason) {
+        if (transcodeRepository.failSplitParent(parent.getId(), truncate(reason)) > 0) {
+            int cancelled = discardSegments(parent);
+            log.error("分段转码失败，整体任务失败: {}, 取消分段: {}", parent.getTranscodeUuid(), cancelled);
+            publishProgress(parent, -1);
+        }
+    }
+
+    /**
+     * 取消整体任务的未完成分段并终止正在执行的分段进程（可能在其他节点上），然后删除分段对象和记录
+     *
+     * @return 取消的分段数
+     */
+    public int discardSegments(MediaTranscode parent) {
+        List<String> running = transcodeRepository.findSegmentUuids(parent.getId(),
+                MediaTranscode.TranscodeStatus.PROCESSING);
+        int cancelled = transcodeRepository.cancelSegments(parent.getId());
+        running.forEach(processSupervisor::cancel);
+        cleanup(parent);
+        return cancelled;
+    }
+
+    /**
+     * 删除分段对象和分段记录（拼接成功、整体任务失败或取消时）
+     */
+    public void cleanup(MediaTranscode parent) {
+        String prefix = segmentPrefix(parent);
+        try {
+            storageService.deleteByPrefix(prefix);
+        } catch (IOException e) {
+            log.warn("删除分段对象失败: {}", prefix, e);
+        }
+        transcodeRepository.deleteSegments(parent.getId());
+    }
+
+    private void publishProgress(MediaTranscode parent, int percent) {
+        TranscodeProgress progress = new TranscodeProgress();
+        progress.setTranscodeUuid(parent.getTranscodeUuid());
+        progress.setStatus(percent < 0 ? MediaTranscode.TranscodeStatus.FAILED.name()
+                : MediaTranscode.TranscodeStatus.PROCESSING.name());
+        progress.setPercent(Math.max(0, percent));
+        progress.setSpeed(-1);
+        progress.setEtaSeconds(-1);
+        progress.setTimestamp(System.currentTimeMillis());
+        progressPublisher.publish(progress);
+    }
+
+    private String uploadWithChecksum(String objectName, Path file) throws IOException {
+        String checksum;
+        try (InputStream in = Files.newInputStream(file);
+             DigestOutputStream digest = new DigestOutputStream(OutputStream.nullOutputStream(), sha256())) {
+            in.transferTo(digest);
+            checksum = HexFormat.of().formatHex(digest.getMessageDigest().digest());
+        }
+        storageService.uploadObject(objectName, file, SEGMENT_CONTENT_TYPE);
+        return checksum;
+    }
+
+    private void downloadVerified(String objectName, String expectedChecksum, Path target) throws IOException {
+        MessageDigest digest = sha256();
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(target), digest)) {
+            storageService.transferTo(objectName, 0, -1, out);
+        }
+        String actual = HexFormat.of().formatHex(digest.digest());
+        if (!actual.equals(expectedChecksum)) {
+            throw new IOException("分段校验失败: " + objectName + ", 期望: " + expectedChecksum + ", 实际: " + actual);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String segmentPrefix(MediaTranscode parent) {
+        return "transcodes/" + parent.getFileUuid() + "/segments/" + parent.getTranscodeUuid() + "/";
+    }
+
+    /**
+     * 源分段与输出分段位于同一目录
+     */
+    private static String sourceObjectName(String outputObjectName, int index) {
+        return outputObjectName.substring(0, outputObjectName.lastIndexOf('/') + 1) + sourceName(index);
+    }
+
+    private static String sourceName(int index) {
+        return String.format("src-%05d.%s", index, SEGMENT_FORMAT);
+    }
+
+    private static String outputName(int index) {
+        return String.format("seg-%05d.%s", index, SEGMENT_FORMAT);
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
@@ -3,6 +3,11 @@ package com.avstream.media.service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * 存储服务接口
@@ -16,45 +21,109 @@ public interface StorageService {
      */
     String uploadFile(MultipartFile file, String fileUuid) throws IOException;
 
+    /**
+     * 流式上传文件（边读边写入存储并计算SHA-256，不落本地临时文件）
+     *
+     * @param size 内容长度，未知时传-1（分块传输）
+     */
+    default StoredObjectInfo uploadStream(InputStream inputStream, long size, String fileUuid,
+                                          String originalFilename, String contentType) throws IOException {
+        return uploadStream(inputStream, size, size, fileUuid, originalFilename, contentType);
+    }
+
+    /**
+     * 流式上传文件，读取的内容超过上限时中止上传并删除已写入的部分
+     *
+     * @param size    内容长度，未知时传-1（分块传输）
+     * @param maxSize 允许的最大字节数（如剩余配额），小于0表示不限
+     */
+    StoredObjectInfo uploadStream(InputStream inputStream, long size, long maxSize, String fileUuid,
+                                  String originalFilename, String contentType) throws IOException;
+
     /**
      * 上传分片文件
+     *
+     * @return 分片内容的SHA-256（十六进制小写）
      */
-    void uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex) throws IOException;
+    String uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex) throws IOException;
 
     /**
-     * 合并分片文件
+     * 合并分片文件（服务端合并，分片数据不经过本服务）
      */
-    String mergeChunks(String fileUuid, Integer totalChunks) throws IOException;
+    StoredObjectInfo mergeChunks(String fileUuid, Integer totalChunks, String originalFilename) throws IOException;
 
     /**
-     * 下载文件
+     * 删除已合并的分片（合并结果提交后调用）
+     */
+    void deleteChunks(String fileUuid) throws IOException;
+
+    /**
+     * 上传本地文件到指定对象（转码产物、VOD分片等服务端生成的文件）
+     */
+    void uploadObject(String objectName, Path file, String contentType) throws IOException;
+
+    /**
+     * 下载文件（整个对象读入内存，仅适用于小文件）
      */
     byte[] downloadFile(String filePath) throws IOException;
 
+    /**
+     * 获取对象元信息（大小、ETag、最后修改时间、内容类型）
+     */
+    StoredObjectInfo statObject(String filePath) throws IOException;
+
+    /**
+     * 将对象的指定字节范围写入输出流
+     *
+     * @param offset 起始偏移
+     * @param length 读取长度，小于0表示读到对象末尾
+     * @return 实际写出的字节数
+     */
+    long transferTo(String filePath, long offset, long length, OutputStream outputStream) throws IOException;
+
     /**
      * 删除文件
      */
     void deleteFile(String filePath) throws IOException;
 
+    /**
+     * 删除指定前缀下的全部对象（VOD版本目录、分段转码中间产物等）
+     *
+     * @return 删除的对象数
+     */
+    int deleteByPrefix(String prefix) throws IOException;
+
     /**
      * 取消上传
      */
     void cancelUpload(String fileUuid) throws IOException;
 
     /**
-     * 生成预览URL
+     * 为预览对象（缩略图或图片文件）生成预览URL
      */
-    String generatePreviewUrl(String fileUuid);
+    String generatePreviewUrl(String objectName);
 
     /**
-     * 生成播放URL
+     * 为媒体对象生成播放URL
      */
-    String generatePlayUrl(String fileUuid);
+    String generatePlayUrl(String objectName);
 
     /**
-     * 生成下载URL
+     * 为媒体对象生成下载URL
      */
-    String generateDownloadUrl(String fileUuid);
+    String generateDownloadUrl(String objectName);
+
+    /**
+     * 为指定对象生成GET预签名URL（供FFmpeg等外部进程直接读取对象）
+     */
+    String generateObjectUrl(String objectName, int expirySeconds);
+
+    /**
+     * 批量生成预览、播放、下载URL（列表页一次性签名）
+     *
+     * @return 文件UUID到URL集合的映射，顺序与输入一致
+     */
+    Map<String, PresignedUrls> generatePresignedUrls(Collection<PresignedUrls.Target> targets);
 
     /**
      * 检查文件是否存在
@@ -76,6 +145,11 @@ public interface StorageService {
      */
     void cleanupExpiredFiles();
 
+    /**
+     * 分页遍历存储桶，修正增量维护的存储用量计数
+     */
+    void reconcileStorageUsage() throws IOException;
+
     /**
      * 健康检查 - 检查存储服务是否可用
      */
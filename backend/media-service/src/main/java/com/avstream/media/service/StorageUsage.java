@@ -0,0 +1,25 @@
+package com.avstream.media.service;
+
+import lombok.Data;
+
+/**
+ * 存储用量（字节数与对象数）
+ *
+ * @author AV Stream Team
+ */
+@Data
+public class StorageUsage {
+
+    /** 已使用字节数 */
+    private long bytes;
+
+    /** 对象数量 */
+    private long objects;
+
+    public static StorageUsage of(long bytes, long objects) {
+        StorageUsage usage = new StorageUsage();
+        usage.setBytes(bytes);
+        usage.setObjects(objects);
+        return usage;
+    }
+}
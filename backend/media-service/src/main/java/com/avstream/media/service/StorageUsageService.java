@@ -0,0 +1,352 @@
+package com.avstream.media.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 存储用量计数服务
+ *
+ * 在Redis中按存储桶、对象前缀和用户维护字节数与对象数的累计值，
+ * 上传、合并、删除时增量更新，健康检查直接读取计数（O(1)），不再遍历存储桶。
+ * 计数可能因进程异常或Redis故障产生偏差，由定时对账任务修正。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageUsageService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageUsageService.class);
+
+    private static final String KEY_PREFIX = "media:storage:usage:";
+
+    private static final String USER_KEY_PREFIX = KEY_PREFIX + "user:";
+
+    /** 遍历用户计数键时每次SCAN的提示数量 */
+    private static final long USER_SCAN_COUNT = 1000;
+
+    private static final String FIELD_BYTES = "bytes";
+    private static final String FIELD_OBJECTS = "objects";
+
+    private static final String PREFIX_FIELD_PREFIX = "prefix:";
+
+    /** 存储桶根目录下对象（原始媒体文件）的前缀名 */
+    public static final String ROOT_PREFIX = "_root";
+
+    /**
+     * 同时更新总量和前缀计数：KEYS[1]=计数键，ARGV={前缀(可为空), 字节增量, 对象数增量}
+     */
+    private static final String APPLY_DELTA_SCRIPT = """
+            redis.call('HINCRBY', KEYS[1], 'bytes', ARGV[2])
+            redis.call('HINCRBY', KEYS[1], 'objects', ARGV[3])
+            if ARGV[1] ~= '' then
+                redis.call('HINCRBY', KEYS[1], 'prefix:' .. ARGV[1] .. ':bytes', ARGV[2])
+                redis.call('HINCRBY', KEYS[1], 'prefix:' .. ARGV[1] .. ':objects', ARGV[3])
+            end
+            return 1
+            """;
+
+    /**
+     * 更新用户计数：计数尚未初始化时不更新，等待从数据库加载或对账，避免在空计数上累加出错误的小值
+     */
+    private static final String APPLY_USER_DELTA_SCRIPT = """
+            if redis.call('HEXISTS', KEYS[1], 'bytes') == 0 then
+                return 0
+            end
+            redis.call('HINCRBY', KEYS[1], 'bytes', ARGV[1])
+            redis.call('HINCRBY', KEYS[1], 'objects', ARGV[2])
+            return 1
+            """;
+
+    /**
+     * 初始化用户计数：KEYS[1]=用户计数键，ARGV={字节数, 对象数}。
+     * 两个字段在同一脚本中写入，已初始化时不覆盖，不会出现只有对象数没有字节数的中间状态
+     */
+    private static final String INIT_USER_SCRIPT = """
+            if redis.call('HEXISTS', KEYS[1], 'bytes') == 1 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'bytes', ARGV[1], 'objects', ARGV[2])
+            return 1
+            """;
+
+    /**
+     * 按对账结果修正计数：KEYS[1]=计数键，ARGV按 {字段, 差量, 汇总字段(可为空)} 分组。
+     * 差量为对账值减去对账开始前的快照值，用HINCRBY叠加，对账期间的写入保留在当前值中不被覆盖；
+     * 计数键在对账期间被删除时快照已失效，不做修正
+     */
+    private static final String RECONCILE_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 1, #ARGV, 3 do
+                redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+                if ARGV[i + 2] ~= '' then
+                    redis.call('HINCRBY', KEYS[1], ARGV[i + 2], ARGV[i + 1])
+                end
+            end
+            return #ARGV / 3
+            """;
+
+    private static final RedisScript<Long> APPLY_DELTA = RedisScript.of(APPLY_DELTA_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> RECONCILE = RedisScript.of(RECONCILE_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> APPLY_USER_DELTA = RedisScript.of(APPLY_USER_DELTA_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> INIT_USER = RedisScript.of(INIT_USER_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 记录新增对象
+     */
+    public void recordObjectAdded(String bucket, String objectName, long size) {
+        applyDelta(bucketKey(bucket), prefixOf(objectName), size, 1);
+    }
+
+    /**
+     * 记录删除对象
+     */
+    public void recordObjectRemoved(String bucket, String objectName, long size) {
+        applyDelta(bucketKey(bucket), prefixOf(objectName), -size, -1);
+    }
+
+    /**
+     * 记录批量删除同一前缀下的对象
+     */
+    public void recordObjectsRemoved(String bucket, String prefix, long bytes, long count) {
+        applyDelta(bucketKey(bucket), prefix, -bytes, -count);
+    }
+
+    /**
+     * 记录用户新增的存储用量
+     */
+    public void recordUserAdded(Long userId, long size) {
+        applyUserDelta(userId, size, 1);
+    }
+
+    /**
+     * 记录用户释放的存储用量
+     */
+    public void recordUserRemoved(Long userId, long size) {
+        applyUserDelta(userId, -size, -1);
+    }
+
+    public StorageUsage getBucketUsage(String bucket) {
+        return readUsage(bucketKey(bucket), FIELD_BYTES, FIELD_OBJECTS);
+    }
+
+    public StorageUsage getPrefixUsage(String bucket, String prefix) {
+        return readUsage(bucketKey(bucket), prefixField(prefix, FIELD_BYTES), prefixField(prefix, FIELD_OBJECTS));
+    }
+
+    public StorageUsage getUserUsage(Long userId) {
+        return readUsage(userKey(userId), FIELD_BYTES, FIELD_OBJECTS);
+    }
+
+    /**
+     * 用户计数是否已初始化
+     */
+    public boolean hasUserUsage(Long userId) {
+        return redisTemplate.opsForHash().hasKey(userKey(userId), FIELD_BYTES);
+    }
+
+    /**
+     * 初始化用户计数（已存在时不覆盖），字节数和对象数原子写入
+     *
+     * @return 本次完成了初始化；其他节点已先初始化时返回false
+     */
+    public boolean initUserUsage(Long userId, long bytes, long objects) {
+        Long result = redisTemplate.execute(INIT_USER, List.of(userKey(userId)),
+                String.valueOf(bytes), String.valueOf(objects));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 读取存储桶计数快照，对账开始前调用
+     */
+    public Map<String, Long> snapshotBucket(String bucket) {
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        Map<String, Long> snapshot = new HashMap<>();
+        hash.entries(bucketKey(bucket)).forEach((field, value) -> snapshot.put(field, Long.parseLong(value)));
+        return snapshot;
+    }
+
+    /**
+     * 按遍历结果修正存储桶计数
+     *
+     * 各前缀字段按“遍历结果 - 快照值”原子叠加（见 {@link #RECONCILE_SCRIPT}），总量随前缀修正同步调整；
+     * 遍历期间的写入若已被遍历到会暂时重复计入，由下次对账修正。
+     *
+     * @param snapshot 遍历开始前的计数快照
+     * @param scanned  遍历得到的各前缀用量
+     */
+    public void reconcileBucket(String bucket, Map<String, Long> snapshot, Map<String, StorageUsage> scanned) {
+        Map<String, Long> actual = new HashMap<>();
+        long totalBytes = 0;
+        long totalObjects = 0;
+        for (Map.Entry<String, StorageUsage> entry : scanned.entrySet()) {
+            actual.put(prefixField(entry.getKey(), FIELD_BYTES), entry.getValue().getBytes());
+            actual.put(prefixField(entry.getKey(), FIELD_OBJECTS), entry.getValue().getObjects());
+            totalBytes += entry.getValue().getBytes();
+            totalObjects += entry.getValue().getObjects();
+        }
+        // 快照中有但遍历不到的前缀（对象已全部删除）修正为0
+        snapshot.keySet().stream()
+                .filter(field -> field.startsWith(PREFIX_FIELD_PREFIX))
+                .forEach(field -> actual.putIfAbsent(field, 0L));
+
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            String field = entry.getKey();
+            String totalField = field.endsWith(":" + FIELD_BYTES) ? FIELD_BYTES : FIELD_OBJECTS;
+            addCorrection(args, field, snapshot.getOrDefault(field, 0L), entry.getValue(), totalField);
+        }
+
+        long corrected = applyCorrections(bucketKey(bucket), args);
+        log.info("存储用量对账完成: {}, 字节数: {}, 对象数: {}, 修正字段: {}",
+                bucket, totalBytes, totalObjects, corrected);
+    }
+
+    /**
+     * 读取全部已初始化的用户计数快照，须在数据库统计之前调用
+     *
+     * @return 用户计数键到计数值的映射
+     */
+    public Map<String, StorageUsage> snapshotUsers() {
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        Map<String, StorageUsage> snapshot = new HashMap<>();
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(USER_KEY_PREFIX + "*")
+                .count(USER_SCAN_COUNT)
+                .build())) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                List<String> values = hash.multiGet(key, List.of(FIELD_BYTES, FIELD_OBJECTS));
+                if (values.get(0) != null) {
+                    snapshot.put(key, StorageUsage.of(parseLong(values.get(0)), parseLong(values.get(1))));
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 按数据库统计结果修正用户计数
+     *
+     * 差量按“统计值 - 快照值”叠加，快照须先于数据库统计读取；统计结果中没有的用户（文件已全部删除）修正为0，
+     * 否则已删除文件的用量会一直占用配额。快照时尚未初始化的用户不修正，由首次使用时从数据库加载。
+     *
+     * @param snapshot 数据库统计前读取的用户计数快照（见 {@link #snapshotUsers()}）
+     * @param rows     每行为 {userId, 字节数, 文件数}
+     */
+    public void reconcileUsers(Map<String, StorageUsage> snapshot, List<Object[]> rows) {
+        long corrected = 0;
+        Set<String> reconciled = new HashSet<>();
+        for (Object[] row : rows) {
+            String key = userKey(((Number) row[0]).longValue());
+            reconciled.add(key);
+            StorageUsage before = snapshot.get(key);
+            if (before != null) {
+                corrected += reconcileUser(key, before, ((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+            }
+        }
+
+        int zeroed = 0;
+        for (Map.Entry<String, StorageUsage> entry : snapshot.entrySet()) {
+            if (!reconciled.contains(entry.getKey())) {
+                corrected += reconcileUser(entry.getKey(), entry.getValue(), 0L, 0L);
+                zeroed++;
+            }
+        }
+        log.info("用户存储用量对账完成: 用户数: {}, 归零: {}, 修正字段: {}", rows.size(), zeroed, corrected);
+    }
+
+    private long reconcileUser(String key, StorageUsage snapshot, long bytes, long objects) {
+        List<String> args = new ArrayList<>();
+        addCorrection(args, FIELD_BYTES, snapshot.getBytes(), bytes, "");
+        addCorrection(args, FIELD_OBJECTS, snapshot.getObjects(), objects, "");
+        return applyCorrections(key, args);
+    }
+
+    /**
+     * 对象名首段作为前缀，根目录下的对象归入 {@link #ROOT_PREFIX}
+     */
+    public static String prefixOf(String objectName) {
+        int index = objectName.indexOf('/');
+        return index > 0 ? objectName.substring(0, index) : ROOT_PREFIX;
+    }
+
+    private void addCorrection(List<String> args, String field, long snapshot, long actual, String totalField) {
+        if (actual == snapshot) {
+            return;
+        }
+        args.add(field);
+        args.add(String.valueOf(actual - snapshot));
+        args.add(totalField);
+    }
+
+    private long applyCorrections(String key, List<String> args) {
+        if (args.isEmpty()) {
+            return 0;
+        }
+        Long corrected = redisTemplate.execute(RECONCILE, List.of(key), args.toArray());
+        return corrected != null ? corrected : 0;
+    }
+
+    private void applyDelta(String key, String prefix, long deltaBytes, long deltaObjects) {
+        try {
+            redisTemplate.execute(APPLY_DELTA, List.of(key),
+                    prefix, String.valueOf(deltaBytes), String.valueOf(deltaObjects));
+        } catch (Exception e) {
+            // 计数失败不影响业务操作，偏差由对账任务修正
+            log.warn("更新存储用量计数失败: {}, {}", key, e.getMessage());
+        }
+    }
+
+    private void applyUserDelta(Long userId, long deltaBytes, long deltaObjects) {
+        try {
+            redisTemplate.execute(APPLY_USER_DELTA, List.of(userKey(userId)),
+                    String.valueOf(deltaBytes), String.valueOf(deltaObjects));
+        } catch (Exception e) {
+            log.warn("更新用户存储用量计数失败: {}, {}", userId, e.getMessage());
+        }
+    }
+
+    private StorageUsage readUsage(String key, String bytesField, String objectsField) {
+        HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+        List<String> values = hash.multiGet(key, List.of(bytesField, objectsField));
+        return StorageUsage.of(parseLong(values.get(0)), parseLong(values.get(1)));
+    }
+
+    private long parseLong(String value) {
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    private String prefixField(String prefix, String field) {
+        return PREFIX_FIELD_PREFIX + prefix + ":" + field;
+    }
+
+    private String bucketKey(String bucket) {
+        return KEY_PREFIX + bucket;
+    }
+
+    static String userKey(Long userId) {
+        return USER_KEY_PREFIX + userId;
+    }
+}
@@ -0,0 +1,50 @@
+package com.avstream.media.service;
+
+import lombok.Data;
+
+/**
+ * 存储对象信息
+ *
+ * @author AV Stream Team
+ */
+@Data
+public class StoredObjectInfo {
+
+    /** 对象名称（在存储系统中的路径） */
+    private String objectName;
+
+    /** 对象大小（字节） */
+    private long size;
+
+    /** 对象ETag */
+    private String etag;
+
+    /** 内容SHA-256（十六进制小写，仅流式上传时计算） */
+    private String sha256;
+
+    /** 最后修改时间（毫秒时间戳） */
+    private long lastModified;
+
+    /** 内容类型 */
+    private String contentType;
+
+    /**
+     * 创建存储对象信息
+     */
+    public static StoredObjectInfo of(String objectName, long size, String etag) {
+        StoredObjectInfo info = new StoredObjectInfo();
+        info.setObjectName(objectName);
+        info.setSize(size);
+        info.setEtag(etag);
+        return info;
+    }
+
+    /**
+     * 创建带内容摘要的存储对象信息
+     */
+    public static StoredObjectInfo of(String objectName, long size, String etag, String sha256) {
+        StoredObjectInfo info = of(objectName, size, etag);
+        info.setSha256(sha256);
+        return info;
+    }
+}
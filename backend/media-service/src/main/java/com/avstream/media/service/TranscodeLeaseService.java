@@ -0,0 +1,94 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 转码任务租约服务
+ *
+ * 多个工作节点共享同一张任务表：领取时用 SELECT ... FOR UPDATE SKIP LOCKED 锁定候选行并写入租约，
+ * 同一任务只会被一个节点领取；执行中的节点定期续约，节点宕机后租约过期，任务由回收任务退回队列。
+ * 租约到期时间的写入和过期判断都使用数据库时钟，节点之间的时钟偏差不会导致租约被提前回收。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class TranscodeLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeLeaseService.class);
+
+    private final MediaTranscodeRepository transcodeRepository;
+    private final TranscodeProperties transcodeProperties;
+
+    /**
+     * 按候选顺序领取最多limit个任务，多码率任务的同组记录随代表记录一起领取
+     *
+     * @param candidates 按调度顺序排列的候选任务ID
+     * @return 领取成功的任务ID（保持候选顺序，多码率任务只返回代表记录）
+     */
+    @Transactional
+    public List<Long> claim(List<Long> candidates, int limit, String owner) {
+        if (candidates.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // 已被其他节点锁定或领取的行被跳过，未选中的行在事务提交时解锁
+        Set<Long> locked = new HashSet<>(transcodeRepository.lockPendingIds(candidates));
+        List<Long> claimed = candidates.stream()
+                .filter(locked::contains)
+                .limit(limit)
+                .toList();
+        if (!claimed.isEmpty()) {
+            List<Long> leased = new ArrayList<>(claimed);
+            leased.addAll(transcodeRepository.lockPendingJobSiblings(claimed));
+            transcodeRepository.acquireLeases(leased, owner, transcodeProperties.getLeaseDurationMs());
+        }
+        return claimed;
+    }
+
+    /**
+     * 为正在执行的任务续约
+     *
+     * @return 续约成功的任务数
+     */
+    public int renew(Collection<Long> ids, String owner) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return transcodeRepository.renewLeases(List.copyOf(ids), owner, transcodeProperties.getLeaseDurationMs());
+    }
+
+    /**
+     * 当前节点是否仍持有任务租约
+     */
+    public boolean holds(Long id, String owner) {
+        return owner.equals(transcodeRepository.findLeaseOwner(id));
+    }
+
+    public void release(Long id, String owner) {
+        transcodeRepository.releaseLease(id, owner);
+    }
+
+    /**
+     * 回收过期租约，任务退回队列重新调度
+     */
+    public int reapExpired() {
+        int requeued = transcodeRepository.requeueExpiredLeases();
+        if (requeued > 0) {
+            log.warn("回收过期转码租约，退回队列任务数: {}", requeued);
+        }
+        return requeued;
+    }
+}
@@ -0,0 +1,347 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.TranscodeProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 转码进程监管
+ *
+ * 所有转码相关的FFmpeg进程都经由这里启动，按任务UUID登记：
+ * <ul>
+ *     <li>按任务类别通过 nice/ionice 设置CPU和IO调度优先级，批量任务让位于交互式任务；</li>
+ *     <li>看门狗定期检查，运行时间超过上限（ffmpeg.timeout-seconds / max-transcode-time，
+ *     长视频按源时长和输出路数放宽，不超过 max-process-seconds），
+ *     或输出时间戳长时间不推进（编码器停滞）时终止整个进程树；</li>
+ *     <li>取消任务时通过Redis频道广播，执行该任务的节点终止对应进程；</li>
+ *     <li>节点关闭时终止本节点全部进程，未完成的任务由租约回收后在其他节点重新执行。</li>
+ * </ul>
+ *
+ * @author AV Stream Team
+ */
+@Service
+public class TranscodeProcessSupervisor {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeProcessSupervisor.class);
+
+    private static final String CANCEL_CHANNEL = "media:transcode:cancel";
+
+    /** 批量任务的best-effort IO优先级（0最高，7最低） */
+    private static final int BATCH_IO_LEVEL = 7;
+
+    /**
+     * 任务类别
+     */
+    public enum JobClass {
+        /** 普通及以上优先级的编码任务 */
+        INTERACTIVE,
+        /** 批量编码任务 */
+        BATCH,
+        /** 切分、拼接、打包等无重编码处理 */
+        REMUX
+    }
+
+    /**
+     * 进程被监管方终止的原因
+     */
+    public enum Termination {
+        CANCELLED("任务已取消"),
+        TIMEOUT("转码超时"),
+        STALLED("编码器停滞"),
+        SHUTDOWN("节点关闭");
+
+        private final String description;
+
+        Termination(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final TranscodeProperties transcodeProperties;
+    private final FFmpegConfig ffmpegConfig;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    /** 本节点正在运行的进程 */
+    private final Set<Handle> running = ConcurrentHashMap.newKeySet();
+
+    /** 任务UUID -> 进程（多码率任务的各记录共享同一进程） */
+    private final Map<String, Handle> byTranscodeUuid = new ConcurrentHashMap<>();
+
+    private volatile boolean shuttingDown;
+
+    private String niceCommand;
+    private String ioniceCommand;
+
+    public TranscodeProcessSupervisor(TranscodeProperties transcodeProperties,
+                                      FFmpegConfig ffmpegConfig,
+                                      StringRedisTemplate redisTemplate,
+                                      RedisMessageListenerContainer listenerContainer) {
+        this.transcodeProperties = transcodeProperties;
+        this.ffmpegConfig = ffmpegConfig;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (transcodeProperties.isProcessPriorityEnabled()) {
+            niceCommand = findExecutable("nice");
+            ioniceCommand = findExecutable("ionice");
+        }
+        listenerContainer.addMessageListener(this::onCancelMessage, new ChannelTopic(CANCEL_CHANNEL));
+        log.info("转码进程监管初始化完成，超时: {}秒（按时长放宽上限: {}秒）, 停滞判定: {}秒, nice: {}, ionice: {}",
+                resolveTimeoutSeconds(), transcodeProperties.getMaxProcessSeconds(),
+                transcodeProperties.getStallTimeoutSeconds(),
+                niceCommand != null, ioniceCommand != null);
+    }
+
+    /**
+     * 启动并登记进程
+     *
+     * @param transcodeUuids  进程服务的任务UUID（多码率任务为同组全部记录）
+     * @param builder         已配置好命令和输入输出重定向的进程构造器，命令前会按任务类别加上nice/ionice
+     * @param reportsProgress 进程是否通过 {@link Handle#progressed()} 报告进度，否则不做停滞检测
+     */
+    public Handle start(Collection<String> transcodeUuids, JobClass jobClass, ProcessBuilder builder,
+                        boolean reportsProgress) throws IOException {
+        return start(transcodeUuids, jobClass, builder, reportsProgress, 0);
+    }
+
+    /**
+     * 启动并登记进程，运行时间上限按源时长和输出路数（任务UUID数）放宽
+     *
+     * @param sourceDurationUs 源文件时长（微秒），未知时传0，使用固定上限
+     */
+    public Handle start(Collection<String> transcodeUuids, JobClass jobClass, ProcessBuilder builder,
+                        boolean reportsProgress, long sourceDurationUs) throws IOException {
+        if (shuttingDown) {
+            throw new IOException("节点正在关闭，不再启动转码进程");
+        }
+        builder.command(wrapCommand(builder.command(), jobClass));
+        long timeoutMs = resolveTimeoutSeconds(sourceDurationUs, transcodeUuids.size()) * 1000L;
+        Handle handle = new Handle(List.copyOf(transcodeUuids), builder.start(), reportsProgress, timeoutMs);
+        running.add(handle);
+        handle.transcodeUuids.forEach(uuid -> byTranscodeUuid.put(uuid, handle));
+        return handle;
+    }
+
+    /**
+     * 单个编码器可用的线程数：单任务线程数在同一进程的各路输出间平分
+     */
+    public int threadsPerEncoder(int encoders) {
+        return Math.max(1, transcodeProperties.getThreadsPerJob() / Math.max(1, encoders));
+    }
+
+    /**
+     * 取消任务：终止本节点上的进程，并广播给其他节点
+     */
+    public void cancel(String transcodeUuid) {
+        terminate(transcodeUuid);
+        try {
+            redisTemplate.convertAndSend(CANCEL_CHANNEL, transcodeUuid);
+        } catch (Exception e) {
+            log.warn("广播转码取消消息失败: {}, {}", transcodeUuid, e.getMessage());
+        }
+    }
+
+    /**
+     * 节点是否正在关闭；关闭期间被终止的任务不应写回失败结果，只释放租约
+     */
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * 看门狗：终止超时或停滞的进程
+     */
+    @Scheduled(fixedDelayString = "${media.transcode.watchdog-interval-ms:5000}")
+    public void watchdog() {
+        if (running.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long stallMs = transcodeProperties.getStallTimeoutSeconds() * 1000L;
+        for (Handle handle : running) {
+            if (handle.timeoutMs > 0 && now - handle.startedAt > handle.timeoutMs) {
+                log.warn("转码进程超时，终止: {}, 已运行: {}秒", handle.transcodeUuids, (now - handle.startedAt) / 1000);
+                handle.kill(Termination.TIMEOUT);
+            } else if (stallMs > 0 && handle.reportsProgress && now - handle.lastProgressAt > stallMs) {
+                log.warn("转码进程停滞，终止: {}, 无进度: {}秒", handle.transcodeUuids, (now - handle.lastProgressAt) / 1000);
+                handle.kill(Termination.STALLED);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        if (!running.isEmpty()) {
+            log.info("节点关闭，终止转码进程: {}", running.size());
+        }
+        running.forEach(handle -> handle.kill(Termination.SHUTDOWN));
+    }
+
+    private void onCancelMessage(Message message, byte[] pattern) {
+        terminate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void terminate(String transcodeUuid) {
+        Handle handle = byTranscodeUuid.get(transcodeUuid);
+        if (handle != null) {
+            log.info("终止已取消任务的转码进程: {}", transcodeUuid);
+            handle.kill(Termination.CANCELLED);
+        }
+    }
+
+    private void unregister(Handle handle) {
+        running.remove(handle);
+        handle.transcodeUuids.forEach(uuid -> byTranscodeUuid.remove(uuid, handle));
+    }
+
+    private List<String> wrapCommand(List<String> command, JobClass jobClass) {
+        List<String> wrapped = new ArrayList<>();
+        int nice = switch (jobClass) {
+            case INTERACTIVE -> transcodeProperties.getInteractiveNice();
+            case BATCH -> transcodeProperties.getBatchNice();
+            case REMUX -> transcodeProperties.getRemuxNice();
+        };
+        if (niceCommand != null && nice != 0) {
+            wrapped.addAll(List.of(niceCommand, "-n", String.valueOf(nice)));
+        }
+        if (ioniceCommand != null && jobClass == JobClass.BATCH) {
+            wrapped.addAll(List.of(ioniceCommand, "-c", "2", "-n", String.valueOf(BATCH_IO_LEVEL)));
+        }
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * 单个进程的最长运行时间（秒）：固定上限与 源时长 × 输出路数 × timeout-realtime-factor 中较大者，
+     * 不超过 max-process-seconds；0表示不限。进程依赖的外部资源（如源文件预签名URL）按此设置有效期
+     */
+    public long resolveTimeoutSeconds(long sourceDurationUs, int outputs) {
+        long timeout = resolveTimeoutSeconds();
+        long scaled = (long) Math.ceil(sourceDurationUs / 1_000_000.0 * Math.max(1, outputs)
+                * transcodeProperties.getTimeoutRealtimeFactor());
+        if (timeout > 0) {
+            timeout = Math.max(timeout, scaled);
+        }
+        long cap = transcodeProperties.getMaxProcessSeconds();
+        if (cap > 0) {
+            timeout = timeout > 0 ? Math.min(timeout, cap) : cap;
+        }
+        return timeout;
+    }
+
+    /**
+     * 固定运行时间上限（秒）：ffmpeg.timeout-seconds 与 ffmpeg.max-transcode-time 中较小的正值
+     */
+    private long resolveTimeoutSeconds() {
+        long timeout = ffmpegConfig.getTimeoutSeconds();
+        long maxTranscodeSeconds = ffmpegConfig.getMaxTranscodeTime() * 60L;
+        if (timeout <= 0) {
+            return Math.max(0, maxTranscodeSeconds);
+        }
+        return maxTranscodeSeconds > 0 ? Math.min(timeout, maxTranscodeSeconds) : timeout;
+    }
+
+    private static String findExecutable(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            Path candidate = Paths.get(dir, name);
+            if (Files.isExecutable(candidate)) {
+                return candidate.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 受监管的进程，使用完毕后关闭以注销登记
+     */
+    public final class Handle implements AutoCloseable {
+
+        private final List<String> transcodeUuids;
+        private final Process process;
+        private final boolean reportsProgress;
+        private final long timeoutMs;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long lastProgressAt = startedAt;
+        private volatile Termination termination;
+
+        private Handle(List<String> transcodeUuids, Process process, boolean reportsProgress, long timeoutMs) {
+            this.transcodeUuids = transcodeUuids;
+            this.process = process;
+            this.reportsProgress = reportsProgress;
+            this.timeoutMs = timeoutMs;
+        }
+
+        public Process process() {
+            return process;
+        }
+
+        /**
+         * 输出时间戳有推进时调用，重置停滞计时
+         */
+        public void progressed() {
+            lastProgressAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 进程被监管方终止的原因，正常退出时为null
+         */
+        public Termination termination() {
+            return termination;
+        }
+
+        /**
+         * 终止进程树：先终止子进程（如经由nice启动时的派生进程），再终止进程本身。
+         * 输出文件会被丢弃，直接强制终止
+         */
+        private void kill(Termination reason) {
+            if (termination == null) {
+                termination = reason;
+            }
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        @Override
+        public void close() {
+            if (process.isAlive()) {
+                kill(termination != null ? termination : Termination.CANCELLED);
+            }
+            unregister(this);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.avstream.media.service;
+
+import lombok.Data;
+
+/**
+ * 转码实时进度（通过Redis频道在节点间广播，并推送给订阅的客户端）
+ *
+ * @author AV Stream Team
+ */
+@Data
+public class TranscodeProgress {
+
+    /** 转码任务UUID */
+    private String transcodeUuid;
+
+    /** 任务状态 */
+    private String status;
+
+    /** 进度百分比（0-100），时长未知时为-1 */
+    private int percent;
+
+    /** 已输出的媒体时长（毫秒） */
+    private long outTimeMs;
+
+    /** 源文件时长（毫秒），未知时为0 */
+    private long durationMs;
+
+    /** 相对实时的处理速度，未知时为-1 */
+    private double speed;
+
+    /** 预计剩余时间（秒），无法估算时为-1 */
+    private long etaSeconds;
+
+    /** 进度产生时间 */
+    private long timestamp;
+}
@@ -0,0 +1,158 @@
+package com.avstream.media.service;
+
+import com.avstream.media.entity.MediaTranscode;
+import com.avstream.media.exception.BusinessException;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 转码进度推送服务
+ *
+ * 执行转码的节点把进度发布到Redis频道，所有节点订阅该频道并转发给本节点上通过SSE订阅该任务的客户端，
+ * 因此客户端连接到任意API节点都能收到工作节点上的实时进度。订阅时先推送任务当前状态，
+ * 任务已结束时推送后直接关闭连接。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class TranscodeProgressPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeProgressPublisher.class);
+
+    private static final String CHANNEL = "media:transcode:progress";
+
+    /** SSE连接超时时间（毫秒） */
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MediaTranscodeRepository transcodeRepository;
+
+    /** transcodeUuid -> 本节点上的订阅连接 */
+    private final Map<String, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initialize() {
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 发布进度，失败只记录日志，不影响转码
+     */
+    public void publish(TranscodeProgress progress) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(progress));
+        } catch (Exception e) {
+            log.debug("发布转码进度失败: {}, {}", progress.getTranscodeUuid(), e.getMessage());
+        }
+    }
+
+    /**
+     * 订阅任务进度，只允许任务所属用户订阅
+     */
+    public SseEmitter subscribe(String transcodeUuid, Long userId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Set<SseEmitter> subscribers = emitters.computeIfAbsent(transcodeUuid, key -> new CopyOnWriteArraySet<>());
+        subscribers.add(emitter);
+
+        Runnable remove = () -> removeEmitter(transcodeUuid, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        // 先登记连接再读取当前状态：读取之后发布的进度都会推送到该连接，任务在订阅前结束也不会错过最终状态
+        MediaTranscode transcode;
+        try {
+            transcode = transcodeRepository.findByTranscodeUuid(transcodeUuid)
+                    .orElseThrow(() -> new BusinessException("转码任务不存在"));
+            if (!userId.equals(transcode.getUserId())) {
+                throw new BusinessException("无权访问此转码任务");
+            }
+        } catch (RuntimeException e) {
+            remove.run();
+            throw e;
+        }
+
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(currentProgress(transcode)));
+            if (isFinished(transcode.getStatus())) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            remove.run();
+        }
+        return emitter;
+    }
+
+    private static TranscodeProgress currentProgress(MediaTranscode transcode) {
+        TranscodeProgress progress = new TranscodeProgress();
+        progress.setTranscodeUuid(transcode.getTranscodeUuid());
+        progress.setStatus(transcode.getStatus().name());
+        progress.setPercent(transcode.getProgress() != null ? transcode.getProgress() : 0);
+        progress.setSpeed(-1);
+        progress.setEtaSeconds(-1);
+        progress.setTimestamp(System.currentTimeMillis());
+        return progress;
+    }
+
+    private static boolean isFinished(MediaTranscode.TranscodeStatus status) {
+        return status == MediaTranscode.TranscodeStatus.COMPLETED
+                || status == MediaTranscode.TranscodeStatus.FAILED
+                || status == MediaTranscode.TranscodeStatus.CANCELLED;
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        TranscodeProgress progress;
+        try {
+            progress = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8),
+                    TranscodeProgress.class);
+        } catch (JsonProcessingException e) {
+            log.warn("解析转码进度消息失败: {}", e.getMessage());
+            return;
+        }
+
+        Set<SseEmitter> subscribers = emitters.get(progress.getTranscodeUuid());
+        if (subscribers == null) {
+            return;
+        }
+        boolean finished = !"PROCESSING".equals(progress.getStatus());
+        for (SseEmitter emitter : subscribers) {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(progress));
+                if (finished) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                removeEmitter(progress.getTranscodeUuid(), emitter);
+            }
+        }
+    }
+
+    private void removeEmitter(String transcodeUuid, SseEmitter emitter) {
+        emitters.computeIfPresent(transcodeUuid, (key, subscribers) -> {
+            subscribers.remove(emitter);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+}
@@ -0,0 +1,268 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.entity.MediaTranscode;
+import com.avstream.media.exception.TranscodeException;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 转码任务调度器
+ *
+ * media_transcodes 表中状态为PENDING的记录即为任务队列。调度器按CPU核数限制并发，
+ * 有空闲槽位时按 优先级 → 用户轮转 的顺序领取任务，在专用线程池中执行；
+ * 排队任务超过上限时拒绝新任务（{@link TranscodeException#queueFull()}），
+ * 提交任务的请求线程只负责入队，不会执行或等待转码。
+ *
+ * 任务通过 {@link TranscodeLeaseService} 以租约方式领取，可以部署多个工作节点（worker profile）
+ * 共同消费同一队列；api模式的节点只入队，不领取任务。
+ *
+ * @author AV Stream Team
+ */
+@Service
+public class TranscodeScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeScheduler.class);
+
+    /** 候选任务数 = 空闲槽位数 × 该系数 */
+    private static final int CANDIDATE_FACTOR = 4;
+
+    private final MediaTranscodeRepository transcodeRepository;
+    private final TranscodeService transcodeService;
+    private final TranscodeProperties transcodeProperties;
+    private final TranscodeLeaseService leaseService;
+
+    /** 空闲转码槽位 */
+    private Semaphore slots;
+
+    /** 转码执行线程池，线程数等于槽位数，不排队 */
+    private ThreadPoolExecutor workerPool;
+
+    /** 调度线程，保证同一时间只有一个调度循环 */
+    private ExecutorService dispatcher;
+
+    /** 本节点正在执行的任务，用于续约 */
+    private final Set<Long> runningIds = ConcurrentHashMap.newKeySet();
+
+    private int maxConcurrentJobs;
+
+    private String workerId;
+
+    public TranscodeScheduler(MediaTranscodeRepository transcodeRepository,
+                              @Lazy TranscodeService transcodeService,
+                              TranscodeProperties transcodeProperties,
+                              TranscodeLeaseService leaseService) {
+        this.transcodeRepository = transcodeRepository;
+        this.transcodeService = transcodeService;
+        this.transcodeProperties = transcodeProperties;
+        this.leaseService = leaseService;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        String configuredId = transcodeProperties.getWorkerId();
+        // RuntimeMXBean名称格式为 进程号@主机名
+        workerId = configuredId != null && !configuredId.isBlank()
+                ? configuredId : ManagementFactory.getRuntimeMXBean().getName();
+        maxConcurrentJobs = transcodeProperties.isExecutor() ? transcodeProperties.resolveMaxConcurrentJobs() : 0;
+        slots = new Semaphore(maxConcurrentJobs);
+
+        // api模式下不执行任务，线程池保留一个线程仅为满足构造参数要求
+        int poolSize = Math.max(1, maxConcurrentJobs);
+        AtomicInteger workerIndex = new AtomicInteger();
+        workerPool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> new Thread(runnable, "transcode-worker-" + workerIndex.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transcode-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("转码调度器初始化完成，模式: {}, 节点: {}, 最大并发: {}, 排队上限: {}",
+                transcodeProperties.getMode(), workerId, maxConcurrentJobs, transcodeProperties.getMaxQueueDepth());
+    }
+
+    /**
+     * 入队前的准入检查，队列已满时抛出 {@link TranscodeException#queueFull()}
+     */
+    public void checkAdmission(Long userId) {
+        checkAdmission(userId, 1);
+    }
+
+    /**
+     * 批量入队的准入检查，入队后队列深度不能超过上限
+     */
+    public void checkAdmission(Long userId, int count) {
+        if (transcodeRepository.countPending() + count > transcodeProperties.getMaxQueueDepth()) {
+            throw TranscodeException.queueFull();
+        }
+        if (userId != null
+                && transcodeRepository.countPendingByUserId(userId) + count > transcodeProperties.getMaxPendingPerUser()) {
+            throw TranscodeException.queueFull();
+        }
+    }
+
+    /**
+     * 有新任务入队，立即触发一次调度（不阻塞调用线程）
+     */
+    public void wakeUp() {
+        if (!transcodeProperties.isExecutor()) {
+            return;
+        }
+        try {
+            dispatcher.execute(this::dispatch);
+        } catch (RejectedExecutionException e) {
+            log.debug("转码调度器已关闭，忽略调度请求");
+        }
+    }
+
+    /**
+     * 定时调度，兜底处理入队通知丢失或任务执行结束后的空闲槽位
+     */
+    @Scheduled(fixedDelayString = "${media.transcode.dispatch-interval-ms:1000}")
+    public void scheduledDispatch() {
+        wakeUp();
+    }
+
+    /**
+     * 为本节点正在执行的任务续约
+     */
+    @Scheduled(fixedDelayString = "${media.transcode.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (runningIds.isEmpty()) {
+            return;
+        }
+        try {
+            int renewed = leaseService.renew(runningIds, workerId);
+            if (renewed < runningIds.size()) {
+                log.warn("部分转码任务续约失败（租约已被回收或任务已取消），执行中: {}, 续约: {}",
+                        runningIds.size(), renewed);
+            }
+        } catch (Exception e) {
+            log.error("转码任务续约失败", e);
+        }
+    }
+
+    /**
+     * 回收过期租约（各执行节点都会运行，语句幂等）
+     */
+    @Scheduled(fixedDelayString = "${media.transcode.reaper-interval-ms:30000}")
+    public void reapExpiredLeases() {
+        if (!transcodeProperties.isExecutor()) {
+            return;
+        }
+        try {
+            if (leaseService.reapExpired() > 0) {
+                wakeUp();
+            }
+        } catch (Exception e) {
+            log.error("回收转码租约失败", e);
+        }
+    }
+
+    /**
+     * 本节点是否仍持有任务租约，任务结束写回结果前检查，租约被回收后结果作废
+     */
+    public boolean holdsLease(Long transcodeId) {
+        return leaseService.holds(transcodeId, workerId);
+    }
+
+    /**
+     * 释放任务租约
+     */
+    public void releaseLease(Long transcodeId) {
+        leaseService.release(transcodeId, workerId);
+    }
+
+    /**
+     * 按空闲槽位数领取并执行任务
+     */
+    private void dispatch() {
+        try {
+            int free = slots.availablePermits();
+            if (free == 0) {
+                return;
+            }
+
+            // 多取一些候选，部分候选可能已被其他节点锁定或领取
+            List<Long> candidates = transcodeRepository.findNextDispatchIds(free * CANDIDATE_FACTOR);
+            List<Long> claimed = leaseService.claim(candidates, free, workerId);
+            for (Long id : claimed) {
+                // 只有调度线程获取槽位，领取数不超过空闲槽位数
+                slots.acquireUninterruptibly();
+                submit(id);
+            }
+        } catch (Exception e) {
+            log.error("转码任务调度失败", e);
+        }
+    }
+
+    private void submit(Long id) {
+        runningIds.add(id);
+        try {
+            workerPool.execute(() -> {
+                try {
+                    transcodeService.executeTranscodeTask(id);
+                } catch (Exception e) {
+                    log.error("转码任务执行异常: {}", id, e);
+                } finally {
+                    runningIds.remove(id);
+                    slots.release();
+                    wakeUp();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 槽位与线程数一致，正常情况下不会拒绝；关闭过程中的任务退回队列
+            runningIds.remove(id);
+            slots.release();
+            transcodeRepository.findById(id).ifPresent(transcode -> {
+                transcode.setStatus(MediaTranscode.TranscodeStatus.PENDING);
+                transcodeRepository.save(transcode);
+            });
+            leaseService.release(id, workerId);
+            log.warn("转码线程池拒绝任务，已退回队列: {}", id);
+        }
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int getRunningJobs() {
+        return maxConcurrentJobs - slots.availablePermits();
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        workerPool.shutdown();
+    }
+}
@@ -1,5 +1,6 @@
 package com.avstream.media.service;
 
+import com.avstream.media.dto.response.BatchOperationResponse;
 import com.avstream.media.entity.MediaTranscode;
 
 /**
@@ -15,10 +16,27 @@ public interface TranscodeService {
     MediaTranscode createTranscodeTask(String fileUuid, String templateName, Long userId);
 
     /**
-     * 开始转码任务
+     * 按指定优先级创建转码任务，排队任务超过上限时抛出TranscodeException（队列已满）
+     */
+    MediaTranscode createTranscodeTask(String fileUuid, String templateName, Long userId,
+                                       MediaTranscode.TranscodePriority priority);
+
+    /**
+     * 创建多码率（ladder）转码任务：每个模板一条转码记录，调度时一起执行，源文件只解码一次
+     */
+    java.util.List<MediaTranscode> createLadderTranscodeTasks(String fileUuid, java.util.List<String> templateNames, Long userId,
+                                                              MediaTranscode.TranscodePriority priority);
+
+    /**
+     * 开始转码任务（仅触发调度，不在调用线程中执行）
      */
     void startTranscodeTask(String transcodeUuid);
 
+    /**
+     * 执行已领取的转码任务（由转码调度器在转码线程池中调用）
+     */
+    void executeTranscodeTask(Long transcodeId);
+
     /**
      * 取消转码任务
      */
@@ -65,9 +83,9 @@ public interface TranscodeService {
     java.util.List<MediaTranscode> getTranscodeHistory(String fileUuid);
 
     /**
-     * 批量创建转码任务
+     * 批量创建转码任务，逐项返回结果：CREATED（需转码）、REUSED（复用已有产物）、NOT_FOUND（文件不存在）
      */
-    java.util.List<MediaTranscode> batchCreateTranscodeTasks(java.util.List<String> fileUuids, String templateName, Long userId);
+    BatchOperationResponse batchCreateTranscodeTasks(java.util.List<String> fileUuids, String templateName, Long userId);
 
     /**
      * 批量取消转码任务
@@ -0,0 +1,224 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.MediaServiceConfig;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片上传会话服务
+ *
+ * 使用Redis位图记录已接收的分片（每个分片1个bit），支持乱序、并行和断点续传；
+ * 上传进度按步长合并后再落库，避免每个分片写一次数据库。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final String KEY_PREFIX = "media:upload:";
+
+    private static final String FIELD_USER_ID = "userId";
+    private static final String FIELD_TOTAL_CHUNKS = "totalChunks";
+
+    /** 合并锁有效期：合并期间自动续期，合并节点宕机后锁在该时间内释放 */
+    private static final Duration MERGE_LOCK_TTL = Duration.ofSeconds(30);
+
+    /** 分片内容摘要列表的哈希标识，与整文件SHA-256区分 */
+    private static final String CHUNK_DIGEST_TAG = "sha256-chunks:";
+
+    /**
+     * 标记分片已接收：记录分片摘要，SETBIT + BITCOUNT 原子执行并刷新过期时间，返回已接收分片数
+     */
+    private static final String MARK_CHUNK_SCRIPT = """
+            redis.call('HSET', KEYS[3], ARGV[1], ARGV[3])
+            redis.call('SETBIT', KEYS[1], ARGV[1], 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            redis.call('EXPIRE', KEYS[3], ARGV[2])
+            return redis.call('BITCOUNT', KEYS[1])
+            """;
+
+    /**
+     * 进度合并：仅当进度较上次落库值增长超过步长（或达到100）时返回1
+     */
+    private static final String PROGRESS_STEP_SCRIPT = """
+            local last = tonumber(redis.call('HGET', KEYS[1], 'progress') or '-1')
+            local progress = tonumber(ARGV[1])
+            if progress >= 100 or progress - last >= tonumber(ARGV[2]) then
+                redis.call('HSET', KEYS[1], 'progress', progress)
+                return 1
+            end
+            return 0
+            """;
+
+    private static final RedisScript<Long> MARK_CHUNK = RedisScript.of(MARK_CHUNK_SCRIPT, Long.class);
+
+    private static final RedisScript<Long> PROGRESS_STEP = RedisScript.of(PROGRESS_STEP_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MediaServiceConfig mediaServiceConfig;
+    private final DistributedLockService lockService;
+
+    /**
+     * 创建或刷新上传会话
+     */
+    public void initSession(String fileUuid, Long userId, int totalChunks) {
+        String metaKey = metaKey(fileUuid);
+        redisTemplate.opsForHash().putAll(metaKey, Map.of(
+                FIELD_USER_ID, String.valueOf(userId),
+                FIELD_TOTAL_CHUNKS, String.valueOf(totalChunks)));
+        redisTemplate.expire(metaKey, sessionTtl());
+        redisTemplate.expire(bitmapKey(fileUuid), sessionTtl());
+    }
+
+    /**
+     * 会话是否存在
+     */
+    public boolean hasSession(String fileUuid) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(metaKey(fileUuid)));
+    }
+
+    /**
+     * 分片是否已接收
+     */
+    public boolean isChunkReceived(String fileUuid, int chunkIndex) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().getBit(bitmapKey(fileUuid), chunkIndex));
+    }
+
+    /**
+     * 标记分片已接收
+     *
+     * @param sha256 分片内容的SHA-256（上传时计算）
+     * @return 已接收分片数
+     */
+    public int markChunkReceived(String fileUuid, int chunkIndex, String sha256) {
+        Long received = redisTemplate.execute(MARK_CHUNK,
+                Arrays.asList(bitmapKey(fileUuid), metaKey(fileUuid), digestKey(fileUuid)),
+                String.valueOf(chunkIndex), String.valueOf(sessionTtl().getSeconds()), sha256);
+        return received != null ? received.intValue() : 0;
+    }
+
+    /**
+     * 获取已接收分片数
+     */
+    public int countReceivedChunks(String fileUuid) {
+        Long count = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.stringCommands().bitCount(rawKey(bitmapKey(fileUuid))));
+        return count != null ? count.intValue() : 0;
+    }
+
+    /**
+     * 获取缺失的分片索引
+     */
+    public List<Integer> getMissingChunks(String fileUuid, int totalChunks) {
+        byte[] bitmap = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(rawKey(bitmapKey(fileUuid))));
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < totalChunks; i++) {
+            // Redis位图偏移0对应首字节的最高位
+            int byteIndex = i >>> 3;
+            boolean received = bitmap != null && byteIndex < bitmap.length
+                    && (bitmap[byteIndex] & (0x80 >>> (i & 7))) != 0;
+            if (!received) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 按分片顺序对各分片SHA-256再做一次SHA-256，作为分片上传文件的内容摘要，合并时无需回读对象。
+     * 分片边界由服务端固定分片大小决定，相同内容按相同分片大小上传时摘要一致；
+     * 摘要输入带独立前缀，与整文件SHA-256的输入区分开。任一分片缺少摘要时返回null（不参与去重）
+     */
+    public String chunkedContentHash(String fileUuid, int totalChunks) {
+        List<Object> fields = new ArrayList<>(totalChunks);
+        for (int i = 0; i < totalChunks; i++) {
+            fields.add(String.valueOf(i));
+        }
+        List<Object> digests = redisTemplate.opsForHash().multiGet(digestKey(fileUuid), fields);
+        MessageDigest digest = newSha256();
+        digest.update(CHUNK_DIGEST_TAG.getBytes(StandardCharsets.UTF_8));
+        for (Object chunkDigest : digests) {
+            if (chunkDigest == null) {
+                return null;
+            }
+            digest.update(HexFormat.of().parseHex(chunkDigest.toString()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 判断本次进度是否需要落库（按步长合并进度更新）
+     */
+    public boolean shouldPersistProgress(String fileUuid, int progress) {
+        Long result = redisTemplate.execute(PROGRESS_STEP,
+                List.of(metaKey(fileUuid)),
+                String.valueOf(progress), String.valueOf(mediaServiceConfig.getUploadProgressStep()));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 获取合并锁（同一文件同时只允许一个合并），合并期间自动续期
+     *
+     * @return 锁句柄，其他请求正在合并时返回null
+     */
+    public DistributedLockService.LockHandle tryAcquireMergeLock(String fileUuid) {
+        return lockService.tryLock("upload-merge:" + fileUuid, MERGE_LOCK_TTL);
+    }
+
+    /**
+     * 清理上传会话
+     */
+    public void clearSession(String fileUuid) {
+        redisTemplate.delete(Arrays.asList(bitmapKey(fileUuid), metaKey(fileUuid), digestKey(fileUuid)));
+        log.debug("上传会话已清理: {}", fileUuid);
+    }
+
+    private Duration sessionTtl() {
+        return Duration.ofMinutes(mediaServiceConfig.getChunkExpireMinutes());
+    }
+
+    private String bitmapKey(String fileUuid) {
+        return KEY_PREFIX + fileUuid + ":chunks";
+    }
+
+    private String metaKey(String fileUuid) {
+        return KEY_PREFIX + fileUuid + ":meta";
+    }
+
+    private String digestKey(String fileUuid) {
+        return KEY_PREFIX + fileUuid + ":digests";
+    }
+
+    private byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.VodProperties;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.repository.MediaFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 点播打包与分发服务
+ *
+ * 多码率转码完成后，把各码率MP4无重编码地重新封装为CMAF（fMP4）分片，同时生成DASH（manifest.mpd）
+ * 和HLS（master.m3u8）清单，两种协议共用同一套分片。每次打包写入独立的版本目录
+ * vod/{fileUuid}/{version}/，分片内容不可变，全部上传完成后才切换文件记录中的主播放列表路径。
+ *
+ * 播放地址形如 {baseUrl}/api/v1/media/vod/{fileUuid}/{expires}/{signature}/{version}/master.m3u8，
+ * 签名覆盖整个文件目录，清单中的相对地址（子播放列表、分片）自然继承同一签名。
+ * 重新打包后旧版本目录不立即删除：切换前签发的播放地址在有效期内仍引用旧版本，
+ * 旧版本登记为待清理，超过播放地址有效期后由定时任务删除。
+ *
+ * @author AV Stream Team
+ */
+@Service
+public class VodService {
+
+    private static final Logger log = LoggerFactory.getLogger(VodService.class);
+
+    public static final String MASTER_PLAYLIST = "master.m3u8";
+
+    private static final String DASH_MANIFEST = "manifest.mpd";
+
+    private static final String VOD_PREFIX = "vod/";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /** 待清理的旧版本目录：成员为版本目录前缀，分值为可删除时间（秒） */
+    private static final String RETIRED_VERSIONS_KEY = "media:vod:retired-versions";
+
+    /** 版本目录和文件名只允许这些字符，防止路径穿越 */
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    private final StorageService storageService;
+    private final MediaFileRepository mediaFileRepository;
+    private final MediaFileCache mediaFileCache;
+    private final FFmpegConfig ffmpegConfig;
+    private final VodProperties vodProperties;
+    private final TranscodeProcessSupervisor processSupervisor;
+    private final StringRedisTemplate redisTemplate;
+    private final Executor uploadExecutor;
+
+    public VodService(StorageService storageService,
+                      MediaFileRepository mediaFileRepository,
+                      MediaFileCache mediaFileCache,
+                      FFmpegConfig ffmpegConfig,
+                      VodProperties vodProperties,
+                      TranscodeProcessSupervisor processSupervisor,
+                      StringRedisTemplate redisTemplate,
+                      @Qualifier("fileProcessExecutor") Executor uploadExecutor) {
+        this.storageService = storageService;
+        this.mediaFileRepository = mediaFileRepository;
+        this.mediaFileCache = mediaFileCache;
+        this.ffmpegConfig = ffmpegConfig;
+        this.vodProperties = vodProperties;
+        this.processSupervisor = processSupervisor;
+        this.redisTemplate = redisTemplate;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    public boolean isEnabled() {
+        return vodProperties.isEnabled();
+    }
+
+    public int getSegmentSeconds() {
+        return vodProperties.getSegmentSeconds();
+    }
+
+    /**
+     * 把已转码的各码率文件打包为HLS/DASH并上传
+     *
+     * @param renditions 各码率MP4（按码率从高到低），关键帧需按分片时长对齐
+     * @param workDir    工作目录，打包输出写入其子目录
+     * @param version    版本目录名（即代表转码记录的UUID，取消该任务时打包进程一并终止）
+     */
+    public void packageRenditions(String fileUuid, List<Path> renditions, Path workDir, String version)
+            throws IOException, InterruptedException {
+        Path outputDir = Files.createDirectories(workDir.resolve("vod"));
+        boolean hasAudio = hasAudioStream(renditions.get(0));
+
+        List<String> command = new ArrayList<>(List.of(ffmpegConfig.getExecutablePath(), "-nostats", "-y"));
+        for (Path rendition : renditions) {
+            command.addAll(List.of("-i", rendition.toString()));
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            command.addAll(List.of("-map", i + ":v"));
+        }
+        if (hasAudio) {
+            // 各码率音频相同，只保留一路
+            command.addAll(List.of("-map", "0:a"));
+        }
+        command.addAll(List.of(
+                "-c", "copy",
+                "-f", "dash",
+                "-seg_duration", String.valueOf(vodProperties.getSegmentSeconds()),
+                "-use_template", "1",
+                "-use_timeline", "1",
+                "-init_seg_name", "init-$RepresentationID$.m4s",
+                "-media_seg_name", "chunk-$RepresentationID$-$Number%05d$.m4s",
+                "-adaptation_sets", hasAudio ? "id=0,streams=v id=1,streams=a" : "id=0,streams=v",
+                "-hls_playlist", "1",
+                outputDir.resolve(DASH_MANIFEST).toString()));
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try (TranscodeProcessSupervisor.Handle handle = processSupervisor.start(List.of(version),
+                TranscodeProcessSupervisor.JobClass.REMUX, builder, false)) {
+            int exitCode = handle.process().waitFor();
+            if (exitCode != 0 || !Files.exists(outputDir.resolve(MASTER_PLAYLIST))) {
+                throw new IOException("VOD打包失败，退出码: " + exitCode);
+            }
+        }
+
+        String objectPrefix = VOD_PREFIX + fileUuid + "/" + version + "/";
+        String previousManifest = mediaFileRepository.findByFileUuid(fileUuid)
+                .map(MediaFile::getVodManifestPath)
+                .orElse(null);
+        try {
+            uploadDirectory(outputDir, objectPrefix);
+        } catch (IOException e) {
+            // 上传不完整的版本目录不会被引用，直接清理
+            deleteQuietly(objectPrefix);
+            throw e;
+        }
+        mediaFileRepository.updateVodManifestPath(fileUuid, objectPrefix + MASTER_PLAYLIST);
+        mediaFileCache.evict(fileUuid);
+        log.info("VOD打包完成: {}, 码率数: {}, 版本: {}", fileUuid, renditions.size(), version);
+
+        // 主播放列表路径已切换（更新在独立事务中提交），新签发的地址不再引用旧版本目录
+        String previousPrefix = versionPrefixOf(fileUuid, previousManifest);
+        if (previousPrefix != null && !previousPrefix.equals(objectPrefix)) {
+            retireVersion(previousPrefix);
+        }
+    }
+
+    /**
+     * 删除已过播放地址有效期的旧版本目录，仍是当前版本（例如同一任务重试后重新打包）的跳过
+     *
+     * @return 删除的版本目录数
+     */
+    public int sweepRetiredVersions() {
+        long now = System.currentTimeMillis() / 1000;
+        Set<String> due = redisTemplate.opsForZSet().rangeByScore(RETIRED_VERSIONS_KEY, 0, now);
+        if (due == null || due.isEmpty()) {
+            return 0;
+        }
+        int deleted = 0;
+        for (String prefix : due) {
+            if (!isCurrentVersion(prefix)) {
+                try {
+                    storageService.deleteByPrefix(prefix);
+                    deleted++;
+                } catch (IOException e) {
+                    // 保留登记，下次重试
+                    log.warn("清理VOD版本目录失败: {}", prefix, e);
+                    continue;
+                }
+            }
+            redisTemplate.opsForZSet().remove(RETIRED_VERSIONS_KEY, prefix);
+        }
+        return deleted;
+    }
+
+    /**
+     * 登记旧版本目录，切换前签发的播放地址全部过期后再删除
+     */
+    private void retireVersion(String versionPrefix) {
+        long deleteAfter = System.currentTimeMillis() / 1000 + vodProperties.getUrlExpirySeconds();
+        try {
+            redisTemplate.opsForZSet().add(RETIRED_VERSIONS_KEY, versionPrefix, deleteAfter);
+        } catch (Exception e) {
+            // 未登记的旧版本保留到文件删除时随文件目录一起清理
+            log.warn("登记待清理VOD版本目录失败: {}", versionPrefix, e);
+        }
+    }
+
+    private boolean isCurrentVersion(String versionPrefix) {
+        // versionPrefix = vod/{fileUuid}/{version}/
+        String[] parts = versionPrefix.split("/");
+        if (parts.length < 3) {
+            return false;
+        }
+        return mediaFileRepository.findByFileUuid(parts[1])
+                .map(MediaFile::getVodManifestPath)
+                .map(manifestPath -> manifestPath.startsWith(versionPrefix))
+                .orElse(false);
+    }
+
+    /**
+     * 删除文件的全部VOD版本目录（永久删除文件时调用）
+     */
+    public void deleteVodObjects(String fileUuid) throws IOException {
+        storageService.deleteByPrefix(VOD_PREFIX + fileUuid + "/");
+    }
+
+    /**
+     * 主播放列表所在的版本目录 vod/{fileUuid}/{version}/，路径不属于该文件时返回null
+     */
+    private static String versionPrefixOf(String fileUuid, String manifestPath) {
+        String prefix = VOD_PREFIX + fileUuid + "/";
+        if (manifestPath == null || !manifestPath.startsWith(prefix)) {
+            return null;
+        }
+        int index = manifestPath.indexOf('/', prefix.length());
+        return index > 0 ? manifestPath.substring(0, index + 1) : null;
+    }
+
+    private void deleteQuietly(String objectPrefix) {
+        try {
+            storageService.deleteByPrefix(objectPrefix);
+        } catch (IOException e) {
+            log.warn("清理VOD版本目录失败: {}", objectPrefix, e);
+        }
+    }
+
+    /**
+     * 并行上传分片；清单最后上传，播放器拿到的清单引用的分片都已存在
+     */
+    private void uploadDirectory(Path directory, String objectPrefix) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        List<Path> manifests = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String name = file.getFileName().toString();
+                (name.endsWith(".m3u8") || name.endsWith(".mpd") ? manifests : segments).add(file);
+            });
+        }
+
+        uploadAll(segments, objectPrefix);
+        uploadAll(manifests, objectPrefix);
+    }
+
+    private void uploadAll(List<Path> files, String objectPrefix) throws IOException {
+        CompletableFuture<?>[] uploads = files.stream()
+                .map(file -> CompletableFuture.runAsync(() -> {
+                    String name = file.getFileName().toString();
+                    try {
+                        storageService.uploadObject(objectPrefix + name, file, contentTypeOf(name));
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, uploadExecutor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(uploads).join();
+        } catch (CompletionException e) {
+            throw new IOException("VOD分片上传失败", e.getCause());
+        }
+    }
+
+    private boolean hasAudioStream(Path file) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(ffmpegConfig.getFfprobePath(),
+                "-v", "error", "-select_streams", "a", "-show_entries", "stream=index", "-of", "csv=p=0",
+                file.toString())
+                .redirectErrorStream(true)
+                .start();
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        return process.waitFor() == 0 && !output.isEmpty();
+    }
+
+    /**
+     * 生成主播放列表地址，文件未打包时返回null
+     */
+    public String getMasterPlaylistUrl(String fileUuid, String manifestPath) {
+        String prefix = VOD_PREFIX + fileUuid + "/";
+        if (manifestPath == null || !manifestPath.startsWith(prefix)) {
+            return null;
+        }
+        // manifestPath = vod/{fileUuid}/{version}/master.m3u8
+        String versionAndName = manifestPath.substring(prefix.length());
+        long expires = System.currentTimeMillis() / 1000 + vodProperties.getUrlExpirySeconds();
+        return vodProperties.getBaseUrl() + "/api/v1/media/vod/" + fileUuid + "/" + expires + "/"
+                + sign(fileUuid, expires) + "/" + versionAndName;
+    }
+
+    /**
+     * 校验播放地址签名，通过时返回对象名，否则返回null
+     */
+    public String resolveObjectName(String fileUuid, long expires, String signature, String version, String name) {
+        if (expires < System.currentTimeMillis() / 1000
+                || !SAFE_NAME.matcher(fileUuid).matches()
+                || !SAFE_NAME.matcher(version).matches()
+                || !SAFE_NAME.matcher(name).matches()
+                || name.startsWith(".") || version.startsWith(".")) {
+            return null;
+        }
+        byte[] expected = sign(fileUuid, expires).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        return VOD_PREFIX + fileUuid + "/" + version + "/" + name;
+    }
+
+    public static String contentTypeOf(String name) {
+        if (name.endsWith(".m3u8")) {
+            return "application/vnd.apple.mpegurl";
+        } else if (name.endsWith(".mpd")) {
+            return "application/dash+xml";
+        } else if (name.endsWith(".m4s")) {
+            return "video/iso.segment";
+        } else if (name.endsWith(".mp4")) {
+            return "video/mp4";
+        }
+        return "application/octet-stream";
+    }
+
+    private String sign(String fileUuid, long expires) {
+        String secret = vodProperties.getSigningSecret();
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalStateException("未配置VOD播放地址签名密钥 media.vod.signing-secret");
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] digest = mac.doFinal((fileUuid + ":" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("VOD播放地址签名失败", e);
+        }
+    }
+}
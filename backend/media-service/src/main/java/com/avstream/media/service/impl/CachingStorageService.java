@@ -0,0 +1,784 @@
+package com.avstream.media.service.impl;
+
+import com.avstream.media.config.StorageCacheProperties;
+import com.avstream.media.service.MetricsService;
+import com.avstream.media.service.PresignedUrls;
+import com.avstream.media.service.StorageHealthInfo;
+import com.avstream.media.service.StorageService;
+import com.avstream.media.service.StoredObjectInfo;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 带本地磁盘缓存的存储服务
+ *
+ * 作为MinIO存储服务的装饰器，将热点对象整体缓存到本地磁盘：
+ * 对象访问次数达到准入阈值后才写入缓存，容量超限时按LRU淘汰；
+ * 未命中时请求直接从对象存储读取，不等待整对象下载：整对象请求边输出边写入缓存文件，
+ * 范围请求（拖动播放）回源输出后由后台线程填充缓存；同一对象同时只有一个填充任务，
+ * 填充期间的其他未命中跟随正在写入的临时文件读取，不重复回源；
+ * 命中时通过FileChannel.transferTo按字节范围输出。
+ *
+ * @author AV Stream Team
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "media.storage.cache", name = "enabled", havingValue = "true")
+public class CachingStorageService implements StorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingStorageService.class);
+
+    private static final String TEMP_FILE_PREFIX = "loading-";
+
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final MinioStorageService delegate;
+    private final StorageCacheProperties properties;
+    private final MetricsService metricsService;
+    private final Executor cacheExecutor;
+
+    /** 缓存条目（访问顺序，用于LRU淘汰），由自身加锁保护 */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** 正在填充缓存的对象，同一对象的其他未命中请求跟随该填充读取 */
+    private final ConcurrentHashMap<String, Fill> loading = new ConcurrentHashMap<>();
+
+    /** 对象访问计数（准入判断） */
+    private final ConcurrentHashMap<String, AtomicInteger> accessCounts = new ConcurrentHashMap<>();
+
+    private long currentSize;
+
+    private Path cacheDirectory;
+
+    public CachingStorageService(MinioStorageService delegate,
+                                 StorageCacheProperties properties,
+                                 MetricsService metricsService,
+                                 @Qualifier("storageCacheExecutor") Executor cacheExecutor) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.metricsService = metricsService;
+        this.cacheExecutor = cacheExecutor;
+    }
+
+    /**
+     * 初始化缓存目录，清理上次运行遗留的缓存文件（索引不持久化）
+     */
+    @PostConstruct
+    public void initialize() throws IOException {
+        cacheDirectory = Paths.get(properties.getDirectory());
+        Files.createDirectories(cacheDirectory);
+        // 只清理本服务生成的文件，避免误删目录中的其他内容
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory,
+                file -> Files.isRegularFile(file) && isCacheFileName(file.getFileName().toString()))) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("本地磁盘缓存已启用: {}, 容量上限: {} 字节", cacheDirectory, properties.getMaxSizeBytes());
+    }
+
+    private boolean isCacheFileName(String name) {
+        return name.startsWith(TEMP_FILE_PREFIX) || CACHE_FILE_NAME.matcher(name).matches();
+    }
+
+    @Override
+    public long transferTo(String filePath, long offset, long length, OutputStream outputStream) throws IOException {
+        CacheEntry entry = lookup(filePath);
+        if (entry != null) {
+            try {
+                long transferred = transferFromFile(entry, offset, length, outputStream);
+                metricsService.recordCacheHit(transferred);
+                return transferred;
+            } catch (NoSuchFileException e) {
+                // 读取前条目已被淘汰，回源读取
+                log.debug("缓存文件已淘汰，回源读取: {}", filePath);
+            }
+        }
+
+        Fill inflight = loading.get(filePath);
+        if (inflight != null) {
+            Long transferred = transferFromFill(filePath, inflight, offset, length, outputStream);
+            if (transferred != null) {
+                // 跟随正在进行的填充读取，没有再次回源
+                metricsService.recordCacheHit(transferred);
+                return transferred;
+            }
+        }
+        if (admit(filePath)) {
+            if (offset == 0) {
+                Long transferred = transferAndFill(filePath, length, outputStream);
+                if (transferred != null) {
+                    return transferred;
+                }
+            } else {
+                fillAsync(filePath);
+            }
+        }
+        metricsService.recordCacheMiss();
+        return delegate.transferTo(filePath, offset, length, outputStream);
+    }
+
+    @Override
+    public StoredObjectInfo statObject(String filePath) throws IOException {
+        CacheEntry entry = lookup(filePath);
+        return entry != null ? entry.info : delegate.statObject(filePath);
+    }
+
+    @Override
+    public byte[] downloadFile(String filePath) throws IOException {
+        CacheEntry entry = lookup(filePath);
+        if (entry != null) {
+            try {
+                byte[] data = Files.readAllBytes(entry.file);
+                metricsService.recordCacheHit(data.length);
+                return data;
+            } catch (NoSuchFileException e) {
+                log.debug("缓存文件已淘汰，回源读取: {}", filePath);
+            }
+        }
+        return delegate.downloadFile(filePath);
+    }
+
+    @Override
+    public void deleteFile(String filePath) throws IOException {
+        invalidate(filePath);
+        delegate.deleteFile(filePath);
+    }
+
+    @Override
+    public int deleteByPrefix(String prefix) throws IOException {
+        List<String> cached;
+        synchronized (entries) {
+            cached = entries.keySet().stream().filter(key -> key.startsWith(prefix)).toList();
+        }
+        cached.forEach(this::invalidate);
+        return delegate.deleteByPrefix(prefix);
+    }
+
+    @Override
+    public boolean fileExists(String filePath) {
+        return lookup(filePath) != null || delegate.fileExists(filePath);
+    }
+
+    @Override
+    public long getFileSize(String filePath) throws IOException {
+        CacheEntry entry = lookup(filePath);
+        return entry != null ? entry.info.getSize() : delegate.getFileSize(filePath);
+    }
+
+    @Override
+    public String uploadFile(MultipartFile file, String fileUuid) throws IOException {
+        return delegate.uploadFile(file, fileUuid);
+    }
+
+    @Override
+    public StoredObjectInfo uploadStream(InputStream inputStream, long size, long maxSize, String fileUuid,
+                                         String originalFilename, String contentType) throws IOException {
+        return delegate.uploadStream(inputStream, size, maxSize, fileUuid, originalFilename, contentType);
+    }
+
+    @Override
+    public void uploadObject(String objectName, Path file, String contentType) throws IOException {
+        // 覆盖写入时本地缓存的旧内容失效
+        invalidate(objectName);
+        delegate.uploadObject(objectName, file, contentType);
+    }
+
+    @Override
+    public String uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex) throws IOException {
+        return delegate.uploadChunk(chunk, fileUuid, chunkIndex);
+    }
+
+    @Override
+    public StoredObjectInfo mergeChunks(String fileUuid, Integer totalChunks, String originalFilename) throws IOException {
+        return delegate.mergeChunks(fileUuid, totalChunks, originalFilename);
+    }
+
+    @Override
+    public void deleteChunks(String fileUuid) throws IOException {
+        delegate.deleteChunks(fileUuid);
+    }
+
+    @Override
+    public void cancelUpload(String fileUuid) throws IOException {
+        delegate.cancelUpload(fileUuid);
+    }
+
+    @Override
+    public String generatePreviewUrl(String objectName) {
+        return delegate.generatePreviewUrl(objectName);
+    }
+
+    @Override
+    public String generatePlayUrl(String objectName) {
+        return delegate.generatePlayUrl(objectName);
+    }
+
+    @Override
+    public String generateDownloadUrl(String objectName) {
+        return delegate.generateDownloadUrl(objectName);
+    }
+
+    @Override
+    public String generateObjectUrl(String objectName, int expirySeconds) {
+        return delegate.generateObjectUrl(objectName, expirySeconds);
+    }
+
+    @Override
+    public Map<String, PresignedUrls> generatePresignedUrls(Collection<PresignedUrls.Target> targets) {
+        return delegate.generatePresignedUrls(targets);
+    }
+
+    @Override
+    public String getFileType(String filePath) throws IOException {
+        CacheEntry entry = lookup(filePath);
+        return entry != null && entry.info.getContentType() != null
+                ? entry.info.getContentType() : delegate.getFileType(filePath);
+    }
+
+    @Override
+    public void cleanupExpiredFiles() {
+        delegate.cleanupExpiredFiles();
+    }
+
+    @Override
+    public void reconcileStorageUsage() throws IOException {
+        delegate.reconcileStorageUsage();
+    }
+
+    @Override
+    public boolean healthCheck() {
+        return delegate.healthCheck();
+    }
+
+    @Override
+    public StorageHealthInfo getStorageHealthInfo() {
+        return delegate.getStorageHealthInfo();
+    }
+
+    /**
+     * 从缓存文件按字节范围输出
+     */
+    private long transferFromFile(CacheEntry entry, long offset, long length, OutputStream outputStream) throws IOException {
+        long count = length >= 0 ? Math.min(length, entry.info.getSize() - offset) : entry.info.getSize() - offset;
+        long position = offset;
+        long remaining = count;
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+        return count - remaining;
+    }
+
+    /**
+     * 记录一次访问，返回是否达到准入阈值
+     */
+    private boolean admit(String filePath) {
+        if (accessCounts.size() > properties.getMaxTrackedObjects()) {
+            accessCounts.clear();
+        }
+        int count = accessCounts.computeIfAbsent(filePath, key -> new AtomicInteger()).incrementAndGet();
+        return count >= properties.getAdmissionThreshold();
+    }
+
+    /**
+     * 从头读取的请求：整对象请求（length为-1或等于对象大小）回源输出的同时写入缓存文件，
+     * 只读取开头部分时交给后台线程填充
+     *
+     * @return 输出的字节数；对象不可缓存或不是整对象请求时返回null，由调用方直接回源
+     */
+    private Long transferAndFill(String filePath, long length, OutputStream outputStream) throws IOException {
+        Fill fill = new Fill();
+        Fill inflight = loading.putIfAbsent(filePath, fill);
+        if (inflight != null) {
+            Long transferred = transferFromFill(filePath, inflight, 0, length, outputStream);
+            if (transferred != null) {
+                metricsService.recordCacheHit(transferred);
+            }
+            return transferred;
+        }
+
+        StoredObjectInfo info = null;
+        Path tempFile = null;
+        boolean complete = false;
+        boolean handedOff = false;
+        try {
+            info = delegate.statObject(filePath);
+            if (!isCacheable(info)) {
+                return null;
+            }
+            if (length >= 0 && length != info.getSize()) {
+                // 填充交给后台线程，由其负责结束填充
+                handedOff = true;
+                loadAsync(filePath, fill);
+                return null;
+            }
+            metricsService.recordCacheMiss();
+            tempFile = Files.createTempFile(cacheDirectory, TEMP_FILE_PREFIX, ".tmp");
+            fill.start(tempFile, info.getSize());
+
+            long transferred;
+            TeeOutputStream tee;
+            try (OutputStream fileOut = new FillOutputStream(Files.newOutputStream(tempFile), fill)) {
+                tee = new TeeOutputStream(outputStream, fileOut);
+                transferred = delegate.transferTo(filePath, 0, -1, tee);
+            }
+            complete = !tee.fileFailed && transferred == info.getSize();
+            // 客户端断开时仍读完整个对象，供等待中的请求和缓存使用，之后再向调用方报告
+            tee.checkResponse();
+            return transferred;
+        } finally {
+            if (!handedOff) {
+                finishFill(filePath, fill, tempFile, info, complete);
+            }
+        }
+    }
+
+    /**
+     * 后台线程填充缓存，线程池已满时放弃本次填充
+     */
+    private void fillAsync(String filePath) {
+        Fill fill = new Fill();
+        if (loading.putIfAbsent(filePath, fill) == null) {
+            loadAsync(filePath, fill);
+        }
+    }
+
+    /**
+     * 由后台线程完成已登记的填充，线程池已满时直接结束填充
+     */
+    private void loadAsync(String filePath, Fill fill) {
+        try {
+            cacheExecutor.execute(() -> {
+                try {
+                    if (lookup(filePath) == null) {
+                        load(filePath, fill);
+                    } else {
+                        finishFill(filePath, fill, null, null, false);
+                    }
+                } catch (Exception e) {
+                    log.warn("加载对象到本地缓存失败: {}", filePath, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finishFill(filePath, fill, null, null, false);
+            log.debug("缓存填充线程池已满，跳过填充: {}", filePath);
+        }
+    }
+
+    private void load(String filePath, Fill fill) throws IOException {
+        StoredObjectInfo info = null;
+        Path tempFile = null;
+        boolean complete = false;
+        try {
+            info = delegate.statObject(filePath);
+            if (!isCacheable(info)) {
+                return;
+            }
+            tempFile = Files.createTempFile(cacheDirectory, TEMP_FILE_PREFIX, ".tmp");
+            fill.start(tempFile, info.getSize());
+
+            long transferred;
+            try (OutputStream out = new FillOutputStream(Files.newOutputStream(tempFile), fill)) {
+                transferred = delegate.transferTo(filePath, 0, -1, out);
+            }
+            complete = transferred == info.getSize();
+        } finally {
+            finishFill(filePath, fill, tempFile, info, complete);
+        }
+    }
+
+    /**
+     * 结束填充：完整写入时登记为缓存条目，否则丢弃临时文件；随后唤醒等待该填充的请求
+     */
+    private void finishFill(String filePath, Fill fill, Path tempFile, StoredObjectInfo info, boolean complete) {
+        boolean committed = false;
+        synchronized (fill) {
+            try {
+                if (complete) {
+                    commit(filePath, tempFile, info);
+                    committed = true;
+                }
+            } catch (IOException e) {
+                log.warn("登记本地缓存文件失败: {}", filePath, e);
+            } finally {
+                loading.remove(filePath, fill);
+                fill.finish(committed);
+            }
+        }
+        if (tempFile != null && !committed) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("删除缓存临时文件失败: {}", tempFile, e);
+            }
+        }
+    }
+
+    /**
+     * 从正在填充的临时文件输出，跟随填充进度读取，不再发起回源读取
+     *
+     * 填充失败或超过等待时间没有进展时，剩余部分回源读取
+     *
+     * @return 输出的字节数；填充未开始即放弃（对象不可缓存）时返回null，由调用方直接回源
+     */
+    private Long transferFromFill(String filePath, Fill fill, long offset, long length,
+                                  OutputStream outputStream) throws IOException {
+        long timeoutMillis = properties.getFillWaitTimeoutMs();
+        FileChannel channel = null;
+        long size;
+        boolean succeeded;
+        synchronized (fill) {
+            fill.awaitStart(timeoutMillis);
+            // 临时文件只在填充结束后移动或删除，持有锁时打开可保证文件存在
+            if (fill.started && !fill.finished) {
+                channel = FileChannel.open(fill.file, StandardOpenOption.READ);
+            }
+            size = fill.size;
+            succeeded = fill.succeeded;
+        }
+
+        if (channel == null) {
+            // 填充已结束：成功时从缓存读取，否则由调用方回源
+            CacheEntry entry = succeeded ? lookup(filePath) : null;
+            if (entry == null) {
+                return null;
+            }
+            try {
+                return transferFromFile(entry, offset, length, outputStream);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        try (FileChannel source = channel) {
+            long end = length >= 0 ? Math.min(offset + length, size) : size;
+            long position = offset;
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            while (position < end) {
+                long available = Math.min(fill.awaitAvailable(position, timeoutMillis), end);
+                if (available <= position) {
+                    log.debug("等待缓存填充失败或超时，剩余部分回源读取: {}, 位置: {}", filePath, position);
+                    position += delegate.transferTo(filePath, position, end - position, outputStream);
+                    break;
+                }
+                while (position < available) {
+                    long written = source.transferTo(position, available - position, target);
+                    if (written <= 0) {
+                        throw new IOException("读取缓存临时文件失败: " + filePath);
+                    }
+                    position += written;
+                }
+            }
+            return position - offset;
+        }
+    }
+
+    private boolean isCacheable(StoredObjectInfo info) {
+        return info.getSize() <= properties.getMaxObjectSizeBytes() && info.getSize() <= properties.getMaxSizeBytes();
+    }
+
+    /**
+     * 将写完的临时文件登记为缓存条目
+     */
+    private void commit(String filePath, Path tempFile, StoredObjectInfo info) throws IOException {
+        // 每次加载使用新文件名，避免覆盖仍在被读取的旧文件
+        Path target = cacheDirectory.resolve(UUID.randomUUID().toString());
+        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+
+        put(filePath, new CacheEntry(target, info));
+        accessCounts.remove(filePath);
+        log.debug("对象已加载到本地缓存: {}, 大小: {}", filePath, info.getSize());
+    }
+
+    private CacheEntry lookup(String filePath) {
+        synchronized (entries) {
+            return entries.get(filePath);
+        }
+    }
+
+    private void put(String filePath, CacheEntry entry) {
+        List<CacheEntry> evicted = new ArrayList<>();
+        long size;
+        synchronized (entries) {
+            CacheEntry previous = entries.put(filePath, entry);
+            if (previous != null) {
+                currentSize -= previous.info.getSize();
+                evicted.add(previous);
+            }
+            currentSize += entry.info.getSize();
+
+            // 按最近最少使用顺序淘汰，直到容量回到上限以内
+            Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+            while (currentSize > properties.getMaxSizeBytes() && iterator.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = iterator.next();
+                if (eldest.getValue() == entry) {
+                    continue;
+                }
+                iterator.remove();
+                currentSize -= eldest.getValue().info.getSize();
+                evicted.add(eldest.getValue());
+                metricsService.recordCacheEviction();
+            }
+            size = currentSize;
+        }
+        metricsService.updateGauge("cacheSize", size);
+        evicted.forEach(this::deleteQuietly);
+    }
+
+    private void invalidate(String filePath) {
+        CacheEntry removed;
+        long size;
+        synchronized (entries) {
+            removed = entries.remove(filePath);
+            if (removed != null) {
+                currentSize -= removed.info.getSize();
+            }
+            size = currentSize;
+        }
+        accessCounts.remove(filePath);
+        if (removed != null) {
+            metricsService.updateGauge("cacheSize", size);
+            deleteQuietly(removed);
+        }
+    }
+
+    /**
+     * 删除缓存文件。正在读取该文件的请求持有已打开的文件句柄，不受影响
+     */
+    private void deleteQuietly(CacheEntry entry) {
+        try {
+            Files.deleteIfExists(entry.file);
+        } catch (IOException e) {
+            log.warn("删除缓存文件失败: {}", entry.file, e);
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class CacheEntry {
+
+        private final Path file;
+        private final StoredObjectInfo info;
+
+        private CacheEntry(Path file, StoredObjectInfo info) {
+            this.file = file;
+            this.info = info;
+        }
+    }
+
+    /**
+     * 一次进行中的缓存填充，由自身加锁保护
+     */
+    private static final class Fill {
+
+        private Path file;
+        private long size;
+        private long written;
+        private boolean started;
+        private boolean failed;
+        private boolean finished;
+        private boolean succeeded;
+
+        private synchronized void start(Path file, long size) {
+            this.file = file;
+            this.size = size;
+            this.started = true;
+            notifyAll();
+        }
+
+        private synchronized void advance(long count) {
+            written += count;
+            notifyAll();
+        }
+
+        private synchronized void fail() {
+            failed = true;
+            notifyAll();
+        }
+
+        private synchronized void finish(boolean succeeded) {
+            this.finished = true;
+            this.succeeded = succeeded;
+            notifyAll();
+        }
+
+        /**
+         * 等待填充开始写入临时文件或结束
+         */
+        private synchronized void awaitStart(long timeoutMillis) throws InterruptedIOException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (!started && !finished) {
+                if (!await(deadline)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 等待position之后的数据写入临时文件
+         *
+         * @return 已写入的字节数；填充失败或超时时可能不大于position
+         */
+        private synchronized long awaitAvailable(long position, long timeoutMillis) throws InterruptedIOException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (written <= position && !failed && !finished) {
+                if (!await(deadline)) {
+                    break;
+                }
+            }
+            return written;
+        }
+
+        private boolean await(long deadline) throws InterruptedIOException {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待缓存填充被中断");
+            }
+        }
+    }
+
+    /**
+     * 写入缓存临时文件并推进填充进度；写入失败时标记填充失败，等待的请求改为回源
+     */
+    private static final class FillOutputStream extends OutputStream {
+
+        private final OutputStream file;
+        private final Fill fill;
+
+        private FillOutputStream(OutputStream file, Fill fill) {
+            this.file = file;
+            this.fill = fill;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                file.write(b, off, len);
+            } catch (IOException e) {
+                fill.fail();
+                throw e;
+            }
+            fill.advance(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    /**
+     * 同时写入响应和缓存文件。写缓存文件失败只放弃缓存，不影响响应输出；
+     * 响应写入失败时继续写缓存文件，由调用方在对象读完后检查
+     */
+    private static final class TeeOutputStream extends OutputStream {
+
+        private final OutputStream response;
+        private final OutputStream file;
+        private boolean fileFailed;
+        private IOException responseFailure;
+
+        private TeeOutputStream(OutputStream response, OutputStream file) {
+            this.response = response;
+            this.file = file;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (responseFailure == null) {
+                try {
+                    response.write(b, off, len);
+                } catch (IOException e) {
+                    responseFailure = e;
+                }
+            }
+            if (!fileFailed) {
+                try {
+                    file.write(b, off, len);
+                } catch (IOException e) {
+                    onFileFailure(e);
+                }
+            }
+            if (responseFailure != null && fileFailed) {
+                throw responseFailure;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (responseFailure == null) {
+                response.flush();
+            }
+        }
+
+        private void checkResponse() throws IOException {
+            if (responseFailure != null) {
+                throw responseFailure;
+            }
+        }
+
+        private void onFileFailure(IOException e) {
+            fileFailed = true;
+            log.warn("写入本地缓存文件失败，放弃缓存: {}", e.getMessage());
+        }
+    }
+}
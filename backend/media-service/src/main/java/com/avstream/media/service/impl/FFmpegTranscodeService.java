@@ -1,22 +1,52 @@
 package com.avstream.media.service.impl;
 
+import com.avstream.media.config.FFmpegConfig;
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.dto.response.BatchOperationResponse;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.entity.MediaMetadata;
 import com.avstream.media.entity.MediaTranscode;
+import com.avstream.media.exception.BusinessException;
+import com.avstream.media.repository.MediaFileRepository;
+import com.avstream.media.repository.MediaMetadataRepository;
 import com.avstream.media.repository.MediaTranscodeRepository;
+import com.avstream.media.service.PerTitleEncodingService;
+import com.avstream.media.service.SegmentedTranscodeService;
+import com.avstream.media.service.StorageService;
 import com.avstream.media.service.TranscodeHealthInfo;
+import com.avstream.media.service.TranscodeProcessSupervisor;
+import com.avstream.media.service.TranscodeProgress;
+import com.avstream.media.service.TranscodeProgressPublisher;
+import com.avstream.media.service.TranscodeScheduler;
 import com.avstream.media.service.TranscodeService;
+import com.avstream.media.service.VodService;
+import com.avstream.media.util.FFmpegProgressParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * FFmpeg转码服务实现
@@ -31,6 +61,51 @@ public class FFmpegTranscodeService implements TranscodeService {
     @Autowired
     private MediaTranscodeRepository transcodeRepository;
 
+    @Autowired
+    private MediaFileRepository mediaFileRepository;
+
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
+
+    @Autowired
+    private MediaMetadataRepository metadataRepository;
+
+    @Autowired
+    private TranscodeProgressPublisher progressPublisher;
+
+    @Autowired
+    private TranscodeProperties transcodeProperties;
+
+    @Autowired
+    private FFmpegConfig ffmpegConfig;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private VodService vodService;
+
+    @Autowired
+    private SegmentedTranscodeService segmentedTranscodeService;
+
+    @Autowired
+    private TranscodeProcessSupervisor processSupervisor;
+
+    @Autowired
+    private PerTitleEncodingService perTitleEncodingService;
+
+    /** 源文件预签名URL在转码超时时间之外额外保留的有效期（秒） */
+    private static final int INPUT_URL_EXPIRY_MARGIN_SECONDS = 600;
+
+    /** 预签名URL有效期上限（秒），S3签名最长7天 */
+    private static final int INPUT_URL_MAX_EXPIRY_SECONDS = 7 * 24 * 3600;
+
+    /** 失败原因字段长度 */
+    private static final int FAILURE_REASON_MAX_LENGTH = 500;
+
+    /** 多码率任务job_id前缀 */
+    private static final String LADDER_JOB_PREFIX = "ladder-";
+
     private static final List<String> SUPPORTED_OUTPUT_FORMATS = Arrays.asList(
             "mp4", "avi", "mkv", "mov", "webm", "flv"
     );
@@ -43,67 +118,258 @@ public class FFmpegTranscodeService implements TranscodeService {
 
     @Override
     public MediaTranscode createTranscodeTask(String fileUuid, String templateName, Long userId) {
+        return createTranscodeTask(fileUuid, templateName, userId, MediaTranscode.TranscodePriority.NORMAL);
+    }
+
+    @Override
+    public MediaTranscode createTranscodeTask(String fileUuid, String templateName, Long userId,
+                                              MediaTranscode.TranscodePriority priority) {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        MediaTranscode transcode = buildTranscode(mediaFile, templateName, userId, priority);
+
+        // 需要实际转码的任务入队前做准入检查，队列已满时直接拒绝
+        if (!transcode.isCompleted()) {
+            transcodeScheduler.checkAdmission(userId);
+        }
+        
+        MediaTranscode saved = transcodeRepository.save(transcode);
+        if (!saved.isCompleted()) {
+            transcodeScheduler.wakeUp();
+        }
+        return saved;
+    }
+
+    @Override
+    public List<MediaTranscode> createLadderTranscodeTasks(String fileUuid, List<String> templateNames, Long userId,
+                                                           MediaTranscode.TranscodePriority priority) {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        List<MediaTranscode> renditions = templateNames.stream()
+                .distinct()
+                .map(templateName -> buildTranscode(mediaFile, templateName, userId, priority))
+                .toList();
+
+        // 需要转码的码率共享job_id，调度时一起领取，由一个FFmpeg进程解码一次后分别编码
+        List<MediaTranscode> pending = renditions.stream()
+                .filter(transcode -> !transcode.isCompleted())
+                .toList();
+        if (pending.size() > 1) {
+            String jobId = LADDER_JOB_PREFIX + UUID.randomUUID();
+            pending.forEach(transcode -> transcode.setJobId(jobId));
+        }
+        if (!pending.isEmpty()) {
+            transcodeScheduler.checkAdmission(userId, pending.size());
+        }
+
+        List<MediaTranscode> saved = transcodeRepository.saveAll(renditions);
+        if (!pending.isEmpty()) {
+            transcodeScheduler.wakeUp();
+        }
+        return saved;
+    }
+
+    /**
+     * 构造转码记录；相同内容已有同预设的转码产物时直接复用，返回已完成的记录
+     */
+    private MediaTranscode buildTranscode(MediaFile mediaFile, String templateName, Long userId,
+                                          MediaTranscode.TranscodePriority priority) {
+        MediaTranscode source = null;
+        if (mediaFile.getContentHash() != null) {
+            List<MediaTranscode> reusable = transcodeRepository.findReusableTranscodes(
+                    mediaFile.getContentHash(), templateName, MediaTranscode.TranscodeStatus.COMPLETED);
+            source = reusable.isEmpty() ? null : reusable.get(0);
+        }
+        return buildTranscode(mediaFile, templateName, userId, priority, source);
+    }
+
+    /**
+     * 构造转码记录，source 不为空时复用其转码产物
+     */
+    private MediaTranscode buildTranscode(MediaFile mediaFile, String templateName, Long userId,
+                                          MediaTranscode.TranscodePriority priority, MediaTranscode source) {
+        String fileUuid = mediaFile.getFileUuid();
         MediaTranscode transcode = new MediaTranscode();
         transcode.setTranscodeUuid(UUID.randomUUID().toString());
+        transcode.setOriginalFile(mediaFile);
         transcode.setFileUuid(fileUuid);
         transcode.setTemplateName(templateName);
         transcode.setUserId(userId);
         transcode.setStatus(MediaTranscode.TranscodeStatus.PENDING);
         transcode.setProgress(0);
+        transcode.setPriority(priority.getValue());
         
         // 设置输出格式和参数
         setTranscodeParameters(transcode, templateName);
-        
-        return transcodeRepository.save(transcode);
+        transcode.setFormat(transcode.getOutputFormat());
+        transcode.setFilename(transcode.getTranscodeUuid() + "." + transcode.getOutputFormat());
+        transcode.setFilePath("transcodes/" + fileUuid + "/" + transcode.getFilename());
+
+        // 相同内容已有同预设的转码产物时直接复用，无需重新转码
+        if (source != null) {
+            transcode.setFilename(source.getFilename());
+            transcode.setFilePath(source.getFilePath());
+            transcode.setFileSize(source.getFileSize());
+            transcode.setWidth(source.getWidth());
+            transcode.setHeight(source.getHeight());
+            transcode.setStatus(MediaTranscode.TranscodeStatus.COMPLETED);
+            transcode.setProgress(100);
+            transcode.setCompletedAt(LocalDateTime.now());
+            log.info("复用转码产物: {} <- {}", transcode.getTranscodeUuid(), source.getTranscodeUuid());
+        }
+        return transcode;
     }
 
     @Override
-    @Async("transcodeExecutor")
     public void startTranscodeTask(String transcodeUuid) {
+        MediaTranscode transcode = transcodeRepository.findByTranscodeUuid(transcodeUuid)
+                .orElseThrow(() -> new BusinessException("转码任务不存在"));
+
+        // 任务创建时即已入队，这里只触发调度；复用产物的任务创建时即已完成
+        if (transcode.getStatus() == MediaTranscode.TranscodeStatus.PENDING) {
+            transcodeScheduler.wakeUp();
+        } else {
+            log.info("转码任务无需调度: {}, 状态: {}", transcodeUuid, transcode.getStatus());
+        }
+    }
+
+    @Override
+    public void executeTranscodeTask(Long transcodeId) {
+        MediaTranscode transcode = transcodeRepository.findById(transcodeId).orElse(null);
+        if (transcode == null) {
+            log.warn("转码任务不存在: {}", transcodeId);
+            return;
+        }
+        String transcodeUuid = transcode.getTranscodeUuid();
+
+        // 分段记录的结果由分段服务写回，全部完成后整体任务重新入队拼接
+        if (transcode.getParentId() != null) {
+            executeSegmentTranscode(transcode);
+            return;
+        }
+
+        // 多码率任务：代表记录连同本节点一起领取的同组记录在一个FFmpeg进程中完成
+        List<MediaTranscode> renditions = transcode.getJobId() == null
+                ? List.of(transcode)
+                : transcodeRepository.findLeasedJobRenditions(transcode.getJobId(), transcodeScheduler.getWorkerId());
+        if (renditions.isEmpty()) {
+            renditions = List.of(transcode);
+        }
+
         try {
-            MediaTranscode transcode = transcodeRepository.findByTranscodeUuid(transcodeUuid)
-                    .orElseThrow(() -> new RuntimeException("转码任务不存在: " + transcodeUuid));
-            
-            transcode.setStatus(MediaTranscode.TranscodeStatus.PROCESSING);
-            transcodeRepository.save(transcode);
-            
-            log.info("开始转码任务: {}", transcodeUuid);
-            
-            // 执行FFmpeg转码命令
-            boolean success = executeFFmpegTranscode(transcode);
-            
+            log.info("开始转码任务: {}, 输出码率数: {}", transcodeUuid, renditions.size());
+
+            boolean success;
+            if (transcode.getSegmentCount() != null) {
+                // 分段已全部完成，拼接输出
+                success = stitchSegments(transcode);
+            } else if (renditions.size() == 1 && splitIntoSegments(transcode)) {
+                // 长视频已切分为分段任务，整体任务等待分段完成
+                return;
+            } else {
+                // 执行FFmpeg转码命令
+                success = executeFFmpegTranscode(renditions);
+            }
+
+            if (discardResult(transcodeId, renditions)) {
+                return;
+            }
+
+            // 执行期间租约被回收（如续约中断）时任务已由其他节点重新领取，本次结果作废；
+            // 先以条件更新确认租约并置为最终状态，之后再保存输出信息
+            MediaTranscode.TranscodeStatus finalStatus = success
+                    ? MediaTranscode.TranscodeStatus.COMPLETED : MediaTranscode.TranscodeStatus.FAILED;
+            String workerId = transcodeScheduler.getWorkerId();
+            List<MediaTranscode> finished = new ArrayList<>();
+            for (MediaTranscode rendition : renditions) {
+                if (transcodeRepository.finishLeased(rendition.getId(), workerId, finalStatus) > 0) {
+                    finished.add(rendition);
+                } else {
+                    transcodeScheduler.releaseLease(rendition.getId());
+                }
+            }
+            if (finished.isEmpty()) {
+                log.warn("转码任务租约已失效，丢弃执行结果: {}", transcodeUuid);
+                return;
+            }
+
+            LocalDateTime completedAt = LocalDateTime.now();
+            for (MediaTranscode rendition : finished) {
+                rendition.setLeaseOwner(null);
+                rendition.setLeaseExpiresAt(null);
+                if (success) {
+                    rendition.setStatus(MediaTranscode.TranscodeStatus.COMPLETED);
+                    rendition.setProgress(100);
+                    rendition.setCompletedAt(completedAt);
+                    if (rendition.getStartedAt() != null) {
+                        rendition.setProcessingTime((int) Duration.between(
+                                rendition.getStartedAt(), completedAt).toSeconds());
+                    }
+                } else {
+                    rendition.setStatus(MediaTranscode.TranscodeStatus.FAILED);
+                }
+            }
             if (success) {
-                transcode.setStatus(MediaTranscode.TranscodeStatus.COMPLETED);
-                transcode.setProgress(100);
                 log.info("转码任务完成: {}", transcodeUuid);
             } else {
-                transcode.setStatus(MediaTranscode.TranscodeStatus.FAILED);
                 log.error("转码任务失败: {}", transcodeUuid);
             }
             
-            transcodeRepository.save(transcode);
+            try {
+                transcodeRepository.saveAll(finished);
+            } catch (RuntimeException e) {
+                // 状态已置为最终状态但输出信息未保存，标记失败以便重试
+                finished.forEach(rendition -> transcodeRepository.updateStatus(
+                        rendition.getId(), MediaTranscode.TranscodeStatus.FAILED));
+                throw e;
+            }
+            finished.forEach(this::publishStatus);
             
         } catch (Exception e) {
             log.error("转码任务执行异常: {}", transcodeUuid, e);
+            if (discardResult(transcodeId, renditions)) {
+                return;
+            }
             
-            // 更新任务状态为失败
-            transcodeRepository.findByTranscodeUuid(transcodeUuid).ifPresent(transcode -> {
-                transcode.setStatus(MediaTranscode.TranscodeStatus.FAILED);
-                transcodeRepository.save(transcode);
-            });
+            // 更新任务状态为失败，租约已被回收的记录不覆盖
+            String workerId = transcodeScheduler.getWorkerId();
+            for (MediaTranscode rendition : renditions) {
+                if (transcodeRepository.finishLeased(rendition.getId(), workerId,
+                        MediaTranscode.TranscodeStatus.FAILED) > 0) {
+                    transcodeRepository.findById(rendition.getId()).ifPresent(this::publishStatus);
+                } else {
+                    transcodeScheduler.releaseLease(rendition.getId());
+                }
+            }
         }
     }
 
     @Override
     public void cancelTranscodeTask(String transcodeUuid) {
         transcodeRepository.findByTranscodeUuid(transcodeUuid).ifPresent(transcode -> {
-            if (transcode.getStatus() == MediaTranscode.TranscodeStatus.PROCESSING) {
-                // 这里需要实现取消FFmpeg进程的逻辑
-                // 实际项目中可以使用进程管理来终止正在运行的FFmpeg进程
-                transcode.setStatus(MediaTranscode.TranscodeStatus.CANCELLED);
-                transcodeRepository.save(transcode);
-                log.info("取消转码任务: {}", transcodeUuid);
+            // 条件更新：任务已结束（或并发写回了执行结果）时不取消；排队中的任务取消后不会再被调度
+            if (transcodeRepository.cancelActive(transcode.getId()) == 0) {
+                return;
+            }
+            transcode.setStatus(MediaTranscode.TranscodeStatus.CANCELLED);
+            List<MediaTranscode> cancelled = List.of(transcode);
+            if (transcode.getJobId() != null) {
+                // 多码率任务的同组记录由同一个FFmpeg进程生成，一起取消
+                transcodeRepository.cancelJob(transcode.getJobId());
+                cancelled = transcodeRepository.findByJobId(transcode.getJobId()).stream()
+                        .filter(rendition -> rendition.getStatus() == MediaTranscode.TranscodeStatus.CANCELLED)
+                        .toList();
             }
+            if (transcode.getSegmentCount() != null) {
+                segmentedTranscodeService.discardSegments(transcode);
+            }
+            // 终止正在执行的FFmpeg进程（可能在其他工作节点上）
+            processSupervisor.cancel(transcodeUuid);
+            // 推送最终状态，订阅者据此结束推送连接
+            cancelled.forEach(this::publishStatus);
+            log.info("取消转码任务: {}", transcodeUuid);
         });
     }
 
@@ -124,14 +390,11 @@ public class FFmpegTranscodeService implements TranscodeService {
     @Override
     public void retryTranscodeTask(String transcodeUuid) {
         transcodeRepository.findByTranscodeUuid(transcodeUuid).ifPresent(transcode -> {
-            if (transcode.getStatus() == MediaTranscode.TranscodeStatus.FAILED) {
-                transcode.setStatus(MediaTranscode.TranscodeStatus.PENDING);
-                transcode.setProgress(0);
-                transcode.setRetryCount(transcode.getRetryCount() + 1);
-                transcodeRepository.save(transcode);
-                
-                // 异步重新执行转码任务
-                CompletableFuture.runAsync(() -> startTranscodeTask(transcodeUuid));
+            // 条件更新，多个节点同时重试同一任务时只会入队一次
+            if (transcode.getStatus() == MediaTranscode.TranscodeStatus.FAILED
+                    && transcodeRepository.requeueFailed(transcode.getId()) > 0) {
+                // 重新入队，由调度器执行
+                transcodeScheduler.wakeUp();
             }
         });
     }
@@ -164,14 +427,69 @@ public class FFmpegTranscodeService implements TranscodeService {
 
     @Override
     public List<MediaTranscode> getTranscodeHistory(String fileUuid) {
-        return transcodeRepository.findByFileUuidOrderByCreatedAtDesc(fileUuid);
+        // 分段记录是整体任务的内部实现，不出现在历史中
+        return transcodeRepository.findByFileUuidOrderByCreatedAtDesc(fileUuid).stream()
+                .filter(transcode -> transcode.getParentId() == null)
+                .toList();
     }
 
     @Override
-    public List<MediaTranscode> batchCreateTranscodeTasks(List<String> fileUuids, String templateName, Long userId) {
-        return fileUuids.stream()
-                .map(fileUuid -> createTranscodeTask(fileUuid, templateName, userId))
+    public BatchOperationResponse batchCreateTranscodeTasks(List<String> fileUuids, String templateName, Long userId) {
+        List<String> distinctUuids = fileUuids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctUuids.isEmpty()) {
+            return new BatchOperationResponse(List.of());
+        }
+
+        // 文件和可复用的转码产物各一次查询，不存在的文件只记入结果，不影响其他文件
+        Map<String, MediaFile> files = mediaFileRepository.findByFileUuidIn(distinctUuids).stream()
+                .collect(Collectors.toMap(MediaFile::getFileUuid, file -> file));
+        Set<String> contentHashes = files.values().stream()
+                .map(MediaFile::getContentHash)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, MediaTranscode> reusable = new HashMap<>();
+        if (!contentHashes.isEmpty()) {
+            for (Object[] row : transcodeRepository.findReusableTranscodesIn(contentHashes, templateName,
+                    MediaTranscode.TranscodeStatus.COMPLETED)) {
+                reusable.putIfAbsent((String) row[0], (MediaTranscode) row[1]);
+            }
+        }
+
+        // 批量任务使用最低优先级，不影响交互式提交的任务
+        List<MediaTranscode> transcodes = distinctUuids.stream()
+                .map(files::get)
+                .filter(Objects::nonNull)
+                .map(file -> buildTranscode(file, templateName, userId, MediaTranscode.TranscodePriority.BATCH,
+                        file.getContentHash() != null ? reusable.get(file.getContentHash()) : null))
                 .toList();
+        long pending = transcodes.stream().filter(transcode -> !transcode.isCompleted()).count();
+        if (pending > 0) {
+            transcodeScheduler.checkAdmission(userId, (int) pending);
+        }
+
+        // 序列预分配主键，saveAll 在同一事务中按 hibernate.jdbc.batch_size 合并为批量INSERT
+        List<MediaTranscode> saved = transcodes.isEmpty() ? List.of() : transcodeRepository.saveAll(transcodes);
+        if (pending > 0) {
+            transcodeScheduler.wakeUp();
+        }
+
+        Map<String, MediaTranscode> savedByFile = saved.stream()
+                .collect(Collectors.toMap(MediaTranscode::getFileUuid, transcode -> transcode));
+        List<BatchOperationResponse.ItemResult> results = new ArrayList<>(distinctUuids.size());
+        for (String fileUuid : distinctUuids) {
+            MediaTranscode transcode = savedByFile.get(fileUuid);
+            if (transcode == null) {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.NOT_FOUND, "文件不存在"));
+            } else if (transcode.isCompleted()) {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.REUSED, null,
+                        transcode.getTranscodeUuid()));
+            } else {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.CREATED, null,
+                        transcode.getTranscodeUuid()));
+            }
+        }
+        log.info("批量创建转码任务: {}/{}, 模板: {}, 需转码: {}", saved.size(), distinctUuids.size(), templateName, pending);
+        return new BatchOperationResponse(results);
     }
 
     @Override
@@ -241,58 +559,543 @@ public class FFmpegTranscodeService implements TranscodeService {
 
     /**
      * 执行FFmpeg转码命令
+     *
+     * FFmpeg通过预签名URL直接读取存储中的源文件，输出写入本地工作目录，成功后上传到各转码记录的存储路径；
+     * 多码率任务再打包为HLS/DASH点播分片。
+     * 使用 -progress pipe:1 输出机器可读的进度，按源文件时长计算真实百分比；
+     * stderr写入临时日志文件，失败时取末尾内容作为失败原因。
+     * 多个输出码率时源文件只解码一次，经 split/scale 滤镜分发给各路编码器
      */
-    private boolean executeFFmpegTranscode(MediaTranscode transcode) {
+    private boolean executeFFmpegTranscode(List<MediaTranscode> renditions) {
+        MediaTranscode primary = renditions.get(0);
+        Path workDir = null;
         try {
-            // 构建FFmpeg命令
-            String inputPath = "/path/to/input/" + transcode.getFileUuid(); // 实际路径需要根据存储配置获取
-            String outputPath = "/path/to/output/" + transcode.getTranscodeUuid() + "." + transcode.getOutputFormat();
+            MediaFile mediaFile = findSourceFile(primary);
+
+            workDir = createWorkDir(primary.getTranscodeUuid());
+            long durationUs = probeDurationUs(mediaFile, primary.getTranscodeUuid());
+            renditions = applyPerTitleLadder(renditions, mediaFile, generateInputUrl(mediaFile, 0, 1), durationUs,
+                    workDir);
+
+            List<Path> outputs = new ArrayList<>();
+            for (MediaTranscode rendition : renditions) {
+                outputs.add(workDir.resolve(rendition.getTranscodeUuid() + "." + rendition.getOutputFormat()));
+            }
+
+            // 构建FFmpeg命令，源文件地址的有效期覆盖按时长和输出路数放宽后的运行时间上限
+            String inputUrl = generateInputUrl(mediaFile, durationUs, renditions.size());
+            List<String> command = buildFFmpegCommand(inputUrl, renditions, outputs);
+            if (!runFFmpeg(command, renditions, durationUs, workDir, jobClassOf(primary))) {
+                return false;
+            }
+
+            for (int i = 0; i < renditions.size(); i++) {
+                MediaTranscode rendition = renditions.get(i);
+                Path output = outputs.get(i);
+                storageService.uploadObject(rendition.getFilePath(), output,
+                        VodService.contentTypeOf(output.getFileName().toString()));
+                rendition.setFileSize(Files.size(output));
+            }
+
+            if (renditions.size() > 1 && vodService.isEnabled()) {
+                try {
+                    vodService.packageRenditions(primary.getFileUuid(), outputs, workDir, primary.getTranscodeUuid());
+                } catch (IOException e) {
+                    // 打包失败不影响各码率文件，播放时回退到原有地址
+                    log.error("VOD打包失败: {}", primary.getFileUuid(), e);
+                }
+            }
+            return true;
             
-            List<String> command = Arrays.asList(
-                    "ffmpeg",
-                    "-i", inputPath,
-                    "-c:v", transcode.getVideoCodec(),
-                    "-b:v", String.valueOf(transcode.getVideoBitrate()),
-                    "-s", transcode.getResolution(),
-                    "-r", String.valueOf(transcode.getFrameRate()),
+        } catch (IOException | InterruptedException e) {
+            log.error("FFmpeg转码执行失败: {}", primary.getTranscodeUuid(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            renditions.forEach(rendition -> rendition.setFailureReason(truncate(e.getMessage())));
+            return false;
+        } finally {
+            if (workDir != null) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+
+    /**
+     * 任务已取消或节点正在关闭时不写回执行结果，只释放租约：
+     * 已取消的任务保持CANCELLED；节点关闭时释放租约的任务由回收任务退回队列，在其他节点重新执行
+     */
+    private boolean discardResult(Long transcodeId, List<MediaTranscode> renditions) {
+        boolean shuttingDown = processSupervisor.isShuttingDown();
+        if (!shuttingDown && transcodeRepository.findById(transcodeId)
+                .map(current -> current.getStatus() != MediaTranscode.TranscodeStatus.CANCELLED)
+                .orElse(true)) {
+            return false;
+        }
+        log.info("转码任务{}，不写回执行结果: {}", shuttingDown ? "因节点关闭中止" : "已取消",
+                renditions.get(0).getTranscodeUuid());
+        renditions.forEach(rendition -> transcodeScheduler.releaseLease(rendition.getId()));
+        if (!shuttingDown) {
+            // 再推送一次最终状态，取消请求所在节点推送失败时订阅者也能结束推送连接
+            renditions.forEach(rendition -> transcodeRepository.findById(rendition.getId())
+                    .filter(current -> current.getStatus() == MediaTranscode.TranscodeStatus.CANCELLED)
+                    .ifPresent(this::publishStatus));
+        }
+        return true;
+    }
+
+    /**
+     * 长视频切分为分段任务并分发，返回是否已分段（整体任务转为WAITING，租约已释放）
+     */
+    private boolean splitIntoSegments(MediaTranscode transcode) throws IOException, InterruptedException {
+        if (!transcodeProperties.isSplitEnabled()) {
+            return false;
+        }
+        MediaFile mediaFile = findSourceFile(transcode);
+        long durationUs = probeDurationUs(mediaFile, transcode.getTranscodeUuid());
+        if (!segmentedTranscodeService.shouldSplit(durationUs)) {
+            return false;
+        }
+        String inputUrl = generateInputUrl(mediaFile, durationUs, 1);
+
+        Path workDir = createWorkDir(transcode.getTranscodeUuid());
+        try {
+            // 码率阶梯在切分前选定，各分段沿用整体任务的编码参数
+            applyPerTitleLadder(List.of(transcode), mediaFile, inputUrl, durationUs, workDir);
+            List<String> checksums = segmentedTranscodeService.split(transcode, inputUrl, workDir);
+            if (checksums.isEmpty()) {
+                return false;
+            }
+            segmentedTranscodeService.fanOut(transcode, checksums, transcodeScheduler.getWorkerId());
+            log.info("长视频分段转码: {}, 分段数: {}", transcode.getTranscodeUuid(), checksums.size());
+            transcodeScheduler.wakeUp();
+            return true;
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * 按内容复杂度调整各档码率和分辨率并写回记录；未启用或分析失败时保持模板参数
+     */
+    private List<MediaTranscode> applyPerTitleLadder(List<MediaTranscode> renditions, MediaFile mediaFile,
+                                                     String inputUrl, long durationUs, Path workDir)
+            throws InterruptedException {
+        if (!perTitleEncodingService.isEnabled()) {
+            return renditions;
+        }
+        MediaTranscode primary = renditions.get(0);
+        Optional<Integer> complexity = perTitleEncodingService.analyzeComplexity(primary, inputUrl, durationUs,
+                workDir, jobClassOf(primary));
+        if (complexity.isEmpty()) {
+            return renditions;
+        }
+
+        // 以模板参数为基准重新计算，重试时不会在上次调整结果上叠加
+        renditions.forEach(rendition -> setTranscodeParameters(rendition, rendition.getPresetName()));
+        MediaMetadata metadata = metadataRepository.findByMediaFileId(mediaFile.getId()).orElse(null);
+        List<MediaTranscode> rungs = perTitleEncodingService.applyLadder(renditions, complexity.get(),
+                metadata != null ? metadata.getWidth() : null, metadata != null ? metadata.getHeight() : null);
+        String workerId = transcodeScheduler.getWorkerId();
+        for (MediaTranscode rendition : renditions) {
+            if (rungs.contains(rendition)) {
+                transcodeRepository.updateEncodingLadder(rendition.getId(), rendition.getVideoBitrate(),
+                        rendition.getResolution(), rendition.getComplexityKbps(), rendition.getEncodingLadder());
+            } else if (transcodeRepository.finishLeased(rendition.getId(), workerId,
+                    MediaTranscode.TranscodeStatus.CANCELLED) > 0) {
+                // 与保留档位分辨率相同，不再单独编码
+                rendition.setStatus(MediaTranscode.TranscodeStatus.CANCELLED);
+                publishStatus(rendition);
+                log.info("档位与其他档位分辨率相同，已合并: {}, {}", rendition.getTranscodeUuid(), rendition.getResolution());
+            }
+        }
+        log.info("按内容复杂度选定码率阶梯: {}, {}", primary.getTranscodeUuid(), primary.getEncodingLadder());
+        return rungs;
+    }
+
+    /**
+     * 执行单个分段：下载并校验源分段，只编码视频，上传后由分段服务记录结果或重试
+     */
+    private void executeSegmentTranscode(MediaTranscode segment) {
+        String owner = transcodeScheduler.getWorkerId();
+        Path workDir = null;
+        try {
+            workDir = createWorkDir(segment.getTranscodeUuid());
+            Path source = workDir.resolve("source." + segment.getOutputFormat());
+            segmentedTranscodeService.downloadSource(segment, source);
+
+            Path output = workDir.resolve(segment.getFilename());
+            List<String> command = buildFFmpegCommand(source.toString(), List.of(segment), List.of(output));
+            // 分段进度不单独计算，整体进度按已完成分段数更新
+            boolean success = runFFmpeg(command, List.of(segment), 0, workDir, jobClassOf(segment));
+            if (processSupervisor.isShuttingDown()) {
+                // 节点关闭：释放租约，分段由回收任务退回队列，不计入重试次数
+                transcodeScheduler.releaseLease(segment.getId());
+                return;
+            }
+            if (success) {
+                if (!segmentedTranscodeService.completeSegment(segment, output, owner)) {
+                    log.warn("分段租约已失效，丢弃执行结果: {}", segment.getTranscodeUuid());
+                }
+            } else {
+                segmentedTranscodeService.failSegment(segment, segment.getFailureReason(), owner);
+            }
+        } catch (Exception e) {
+            log.error("分段转码执行异常: {}#{}", segment.getParentId(), segment.getSegmentIndex(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (processSupervisor.isShuttingDown()) {
+                transcodeScheduler.releaseLease(segment.getId());
+            } else {
+                segmentedTranscodeService.failSegment(segment, truncate(e.getMessage()), owner);
+            }
+        } finally {
+            if (workDir != null) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+
+    /**
+     * 拼接各分段输出：concat分离器复制视频流，音频从源文件一次性编码，上传后清理分段
+     */
+    private boolean stitchSegments(MediaTranscode transcode) {
+        Path workDir = null;
+        try {
+            MediaFile mediaFile = findSourceFile(transcode);
+            long durationUs = probeDurationUs(mediaFile, transcode.getTranscodeUuid());
+            String inputUrl = generateInputUrl(mediaFile, durationUs, 1);
+            workDir = createWorkDir(transcode.getTranscodeUuid());
+
+            List<Path> segments;
+            try {
+                segments = segmentedTranscodeService.downloadOutputs(transcode, workDir);
+            } catch (IOException e) {
+                // 分段缺失或校验失败，删除现有分段，重试时重新切分
+                segmentedTranscodeService.cleanup(transcode);
+                transcode.setSegmentCount(null);
+                throw e;
+            }
+            Path concatList = workDir.resolve("concat.txt");
+            StringBuilder list = new StringBuilder();
+            for (Path segment : segments) {
+                list.append("file '").append(segment.getFileName()).append("'\n");
+            }
+            Files.writeString(concatList, list, StandardCharsets.UTF_8);
+
+            Path output = workDir.resolve(transcode.getTranscodeUuid() + "." + transcode.getOutputFormat());
+            List<String> command = new ArrayList<>(List.of(ffmpegConfig.getExecutablePath(),
+                    "-nostats", "-progress", "pipe:1", "-y",
+                    "-f", "concat", "-safe", "0", "-i", concatList.toString(),
+                    "-i", inputUrl,
+                    "-map", "0:v", "-map", "1:a?",
+                    "-c:v", "copy",
                     "-c:a", transcode.getAudioCodec(),
                     "-b:a", String.valueOf(transcode.getAudioBitrate()),
-                    "-y", // 覆盖输出文件
-                    outputPath
-            );
-            
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            Process process = processBuilder.start();
-            
-            // 读取输出流（用于进度监控）
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // 解析FFmpeg输出，更新转码进度
-                updateProgressFromFFmpegOutput(line, transcode);
+                    output.toString()));
+            if (!runFFmpeg(command, List.of(transcode), durationUs, workDir,
+                    TranscodeProcessSupervisor.JobClass.REMUX)) {
+                return false;
             }
-            
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-            
+
+            storageService.uploadObject(transcode.getFilePath(), output,
+                    VodService.contentTypeOf(output.getFileName().toString()));
+            transcode.setFileSize(Files.size(output));
+            segmentedTranscodeService.cleanup(transcode);
+            return true;
+
         } catch (IOException | InterruptedException e) {
-            log.error("FFmpeg转码执行失败: {}", transcode.getTranscodeUuid(), e);
+            log.error("分段拼接失败: {}", transcode.getTranscodeUuid(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            transcode.setFailureReason(truncate(e.getMessage()));
             return false;
+        } finally {
+            if (workDir != null) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+
+    /**
+     * 在进程监管下执行FFmpeg并跟踪进度；被监管方终止（超时、停滞、取消）时以终止原因作为失败原因，
+     * 非零退出时取stderr末尾作为各记录的失败原因
+     */
+    private boolean runFFmpeg(List<String> command, List<MediaTranscode> renditions, long durationUs, Path workDir,
+                              TranscodeProcessSupervisor.JobClass jobClass) throws IOException, InterruptedException {
+        Path errorLog = workDir.resolve("ffmpeg.log");
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(errorLog.toFile());
+        List<String> transcodeUuids = renditions.stream().map(MediaTranscode::getTranscodeUuid).toList();
+
+        try (TranscodeProcessSupervisor.Handle handle =
+                     processSupervisor.start(transcodeUuids, jobClass, processBuilder, true, durationUs)) {
+            // 读取进度输出（stdout）
+            ProgressTracker tracker = new ProgressTracker(renditions, durationUs, handle);
+            try (InputStream progressStream = handle.process().getInputStream()) {
+                new FFmpegProgressParser().parse(progressStream, tracker);
+            }
+
+            int exitCode = handle.process().waitFor();
+            String reason = null;
+            if (handle.termination() != null) {
+                reason = handle.termination().getDescription();
+            } else if (exitCode != 0) {
+                reason = readTail(errorLog, FAILURE_REASON_MAX_LENGTH);
+            }
+            if (reason != null) {
+                String failureReason = reason;
+                renditions.forEach(rendition -> rendition.setFailureReason(failureReason));
+                return false;
+            }
+            return true;
         }
     }
 
     /**
-     * 从FFmpeg输出解析进度
+     * 批量任务使用较低的调度优先级
      */
-    private void updateProgressFromFFmpegOutput(String output, MediaTranscode transcode) {
-        // 解析FFmpeg输出中的时间信息来估算进度
-        // 实际项目中需要更精确的进度计算
-        if (output.contains("time=")) {
-            // 简单模拟进度更新
-            int currentProgress = transcode.getProgress();
-            if (currentProgress < 90) {
-                transcode.setProgress(currentProgress + 5);
-                transcodeRepository.save(transcode);
+    private static TranscodeProcessSupervisor.JobClass jobClassOf(MediaTranscode transcode) {
+        return transcode.getPriority() != null
+                && transcode.getPriority() <= MediaTranscode.TranscodePriority.BATCH.getValue()
+                ? TranscodeProcessSupervisor.JobClass.BATCH : TranscodeProcessSupervisor.JobClass.INTERACTIVE;
+    }
+
+    private MediaFile findSourceFile(MediaTranscode transcode) throws IOException {
+        return mediaFileRepository.findByFileUuid(transcode.getFileUuid())
+                .orElseThrow(() -> new IOException("源文件不存在: " + transcode.getFileUuid()));
+    }
+
+    /**
+     * FFmpeg通过预签名URL直接读取存储中的源文件
+     *
+     * 有效期取进程监管对该次运行的时间上限（按源时长和输出路数放宽）加余量，长视频转码中途不会因URL过期读取失败；
+     * 签名缓存只保证返回的URL剩余一半有效期，因此按两倍申请
+     *
+     * @param sourceDurationUs 源文件时长（微秒），未知时传0
+     * @param outputs          该次运行的输出路数
+     */
+    private String generateInputUrl(MediaFile mediaFile, long sourceDurationUs, int outputs) throws IOException {
+        long timeoutSeconds = processSupervisor.resolveTimeoutSeconds(sourceDurationUs, outputs);
+        long expirySeconds = timeoutSeconds > 0
+                ? Math.min(2 * (timeoutSeconds + INPUT_URL_EXPIRY_MARGIN_SECONDS), INPUT_URL_MAX_EXPIRY_SECONDS)
+                : INPUT_URL_MAX_EXPIRY_SECONDS;
+        String inputUrl = storageService.generateObjectUrl(mediaFile.getFilePath(), (int) expirySeconds);
+        if (inputUrl == null) {
+            throw new IOException("生成源文件地址失败: " + mediaFile.getFilePath());
+        }
+        return inputUrl;
+    }
+
+    private Path createWorkDir(String transcodeUuid) throws IOException {
+        return Files.createDirectories(Paths.get(ffmpegConfig.getTempDir(), "transcode", transcodeUuid));
+    }
+
+    /**
+     * 构建FFmpeg命令：单个输出时直接缩放编码；多个输出时
+     * -filter_complex "[0:v]split=N[s0][s1]...;[s0]scale=W:H[v0];..." 后每路输出各自映射视频流和音频流
+     */
+    private List<String> buildFFmpegCommand(String inputUrl, List<MediaTranscode> renditions, List<Path> outputs) {
+        List<String> command = new ArrayList<>(List.of(ffmpegConfig.getExecutablePath(),
+                "-nostats", "-progress", "pipe:1", "-y", "-i", inputUrl));
+
+        if (renditions.size() == 1) {
+            MediaTranscode transcode = renditions.get(0);
+            command.addAll(List.of("-s", transcode.getResolution()));
+            addEncoderOptions(command, transcode, outputs.get(0), processSupervisor.threadsPerEncoder(1));
+            return command;
+        }
+
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(renditions.size());
+        for (int i = 0; i < renditions.size(); i++) {
+            filter.append("[s").append(i).append(']');
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            filter.append(";[s").append(i).append("]scale=")
+                    .append(renditions.get(i).getResolution().replace('x', ':'))
+                    .append("[v").append(i).append(']');
+        }
+        command.addAll(List.of("-filter_complex", filter.toString()));
+
+        int encoderThreads = processSupervisor.threadsPerEncoder(renditions.size());
+        for (int i = 0; i < renditions.size(); i++) {
+            // 源文件可能没有音频流，"0:a?" 在缺失时忽略
+            command.addAll(List.of("-map", "[v" + i + "]", "-map", "0:a?"));
+            addEncoderOptions(command, renditions.get(i), outputs.get(i), encoderThreads);
+        }
+        return command;
+    }
+
+    private void addEncoderOptions(List<String> command, MediaTranscode transcode, Path output, int threads) {
+        command.addAll(List.of(
+                "-c:v", transcode.getVideoCodec(),
+                // 限制编码线程数，与调度器按单任务线程数计算的并发槽位一致
+                "-threads", String.valueOf(threads),
+                "-b:v", String.valueOf(transcode.getVideoBitrate()),
+                "-r", transcode.getFrameRate() != null
+                        ? transcode.getFrameRate().toPlainString() : transcode.getFrameRateStr()
+        ));
+        if (transcode.getAudioCodec() != null) {
+            command.addAll(List.of(
+                    "-c:a", transcode.getAudioCodec(),
+                    "-b:a", String.valueOf(transcode.getAudioBitrate())));
+        } else {
+            // 分段转码只编码视频，音频在拼接时统一编码
+            command.add("-an");
+        }
+        if (vodService.isEnabled()) {
+            // 按分片时长强制关键帧，各码率分片边界一致，播放器可以在任意分片处切换码率
+            command.addAll(List.of("-force_key_frames",
+                    "expr:gte(t,n_forced*" + vodService.getSegmentSeconds() + ")"));
+        }
+        command.add(output.toString());
+    }
+
+    /**
+     * 获取源文件时长（微秒）：优先使用已提取的元数据，没有时调用ffprobe，仍无法获取时返回0。
+     * ffprobe在进程监管下运行，受固定时间上限约束，任务取消时一并终止
+     */
+    private long probeDurationUs(MediaFile mediaFile, String transcodeUuid) throws IOException, InterruptedException {
+        BigDecimal duration = metadataRepository.findByMediaFileId(mediaFile.getId())
+                .map(MediaMetadata::getDuration)
+                .orElse(null);
+        if (duration != null && duration.signum() > 0) {
+            return duration.movePointRight(6).longValue();
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(ffmpegConfig.getFfprobePath(),
+                "-v", "error", "-show_entries", "format=duration", "-of", "default=nw=1:nk=1",
+                generateInputUrl(mediaFile, 0, 1))
+                .redirectErrorStream(true);
+        try (TranscodeProcessSupervisor.Handle handle = processSupervisor.start(List.of(transcodeUuid),
+                TranscodeProcessSupervisor.JobClass.REMUX, builder, false)) {
+            String output;
+            try (InputStream in = handle.process().getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            int exitCode = handle.process().waitFor();
+            if (handle.termination() != null) {
+                throw new IOException("获取源文件时长中止: " + handle.termination().getDescription());
+            }
+            if (exitCode == 0 && !output.isEmpty()) {
+                return new BigDecimal(output).movePointRight(6).longValue();
+            }
+        } catch (NumberFormatException e) {
+            log.warn("获取源文件时长失败: {}, {}", mediaFile.getFileUuid(), e.getMessage());
+        }
+        return 0;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= FAILURE_REASON_MAX_LENGTH) {
+            return message;
+        }
+        return message.substring(0, FAILURE_REASON_MAX_LENGTH);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.debug("删除转码临时文件失败: {}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理转码工作目录失败: {}", directory);
+        }
+    }
+
+    private static String readTail(Path file, int maxLength) {
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8).trim();
+            return content.length() > maxLength ? content.substring(content.length() - maxLength) : content;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 推送任务最终状态
+     */
+    private void publishStatus(MediaTranscode transcode) {
+        TranscodeProgress progress = new TranscodeProgress();
+        progress.setTranscodeUuid(transcode.getTranscodeUuid());
+        progress.setStatus(transcode.getStatus().name());
+        progress.setPercent(transcode.getProgress() != null ? transcode.getProgress() : 0);
+        progress.setSpeed(-1);
+        progress.setEtaSeconds(-1);
+        progress.setTimestamp(System.currentTimeMillis());
+        progressPublisher.publish(progress);
+    }
+
+    /**
+     * 进度跟踪：每次进度输出都推送给订阅者（按FFmpeg配置的间隔限流），
+     * 数据库只在间隔时间到达或进度跨过步长时更新一次；多码率任务各记录进度相同
+     */
+    private class ProgressTracker implements FFmpegProgressParser.Listener {
+
+        private final List<MediaTranscode> renditions;
+        private final long durationUs;
+        private final TranscodeProcessSupervisor.Handle handle;
+        private long lastOutTimeUs = -1;
+        private long lastPublishAt;
+        private long lastPersistAt = System.currentTimeMillis();
+        private int lastPersistedPercent;
+
+        ProgressTracker(List<MediaTranscode> renditions, long durationUs, TranscodeProcessSupervisor.Handle handle) {
+            this.renditions = renditions;
+            this.durationUs = durationUs;
+            this.handle = handle;
+            Integer progress = renditions.get(0).getProgress();
+            this.lastPersistedPercent = progress != null ? progress : 0;
+        }
+
+        @Override
+        public void onProgress(long outTimeUs, double speed, boolean end) {
+            long now = System.currentTimeMillis();
+            // 编码器卡住时FFmpeg仍会按间隔输出进度，只有输出时间戳推进才算有进展
+            if (outTimeUs > lastOutTimeUs) {
+                lastOutTimeUs = outTimeUs;
+                handle.progressed();
+            }
+            // 100%在任务完成、结果写回后才设置
+            int percent = durationUs > 0 && outTimeUs >= 0
+                    ? (int) Math.min(99, outTimeUs * 100 / durationUs) : -1;
+
+            if (!end && now - lastPublishAt >= ffmpegConfig.getProgressUpdateInterval()) {
+                lastPublishAt = now;
+                long etaSeconds = speed > 0 && durationUs > outTimeUs && outTimeUs >= 0
+                        ? (long) ((durationUs - outTimeUs) / 1_000_000d / speed) : -1;
+                for (MediaTranscode transcode : renditions) {
+                    TranscodeProgress progress = new TranscodeProgress();
+                    progress.setTranscodeUuid(transcode.getTranscodeUuid());
+                    progress.setStatus(MediaTranscode.TranscodeStatus.PROCESSING.name());
+                    progress.setPercent(percent);
+                    progress.setOutTimeMs(Math.max(0, outTimeUs) / 1000);
+                    progress.setDurationMs(durationUs / 1000);
+                    progress.setSpeed(speed);
+                    progress.setEtaSeconds(etaSeconds);
+                    progress.setTimestamp(now);
+                    progressPublisher.publish(progress);
+                }
+            }
+
+            if (percent < 0 || percent <= lastPersistedPercent) {
+                return;
+            }
+            if (percent - lastPersistedPercent >= transcodeProperties.getProgressPersistStep()
+                    || now - lastPersistAt >= transcodeProperties.getProgressPersistIntervalMs()) {
+                for (MediaTranscode transcode : renditions) {
+                    transcodeRepository.updateLeasedProgress(transcode.getId(), transcodeScheduler.getWorkerId(),
+                            percent);
+                    transcode.setProgress(percent);
+                }
+                lastPersistedPercent = percent;
+                lastPersistAt = now;
             }
         }
     }
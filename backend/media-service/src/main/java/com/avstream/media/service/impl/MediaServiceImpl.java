@@ -1,6 +1,9 @@
 package com.avstream.media.service.impl;
 
+import com.avstream.media.config.MediaServiceConfig;
 import com.avstream.media.dto.request.UploadRequest;
+import com.avstream.media.dto.response.BatchOperationResponse;
+import com.avstream.media.dto.response.CursorPageResponse;
 import com.avstream.media.dto.response.MediaInfoResponse;
 import com.avstream.media.dto.response.UploadResponse;
 import com.avstream.media.entity.MediaFile;
@@ -9,24 +12,50 @@ import com.avstream.media.entity.MediaThumbnail;
 import com.avstream.media.entity.MediaTranscode;
 import com.avstream.media.exception.BusinessException;
 import com.avstream.media.repository.*;
+import com.avstream.media.service.ContentDedupService;
+import com.avstream.media.service.DistributedLockService;
+import com.avstream.media.service.MediaFileCache;
+import com.avstream.media.service.MediaFileSnapshot;
 import com.avstream.media.service.MediaHealthInfo;
+import com.avstream.media.service.MediaSearchService;
 import com.avstream.media.service.MediaService;
+import com.avstream.media.service.MediaThumbnailService;
+import com.avstream.media.service.MediaUploadedEvent;
+import com.avstream.media.service.PresignedUrls;
+import com.avstream.media.service.QuotaService;
+import com.avstream.media.service.StorageUsageService;
 import com.avstream.media.service.StorageService;
+import com.avstream.media.service.StoredObjectInfo;
 import com.avstream.media.service.TranscodeService;
+import com.avstream.media.service.UploadSessionService;
+import com.avstream.media.service.VodService;
+import com.avstream.media.util.SizeLimitedInputStream;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.avstream.media.repository.MediaFileSpecifications.*;
+import static org.springframework.data.jpa.domain.Specification.where;
+
 /**
  * 媒体文件服务实现类
  * 
@@ -38,46 +67,82 @@ public class MediaServiceImpl implements MediaService {
 
     private static final Logger log = LoggerFactory.getLogger(MediaServiceImpl.class);
 
+    /** 游标分页排序：创建时间倒序，同一时间按ID倒序保证顺序稳定 */
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    /** 游标分页单页上限 */
+    private static final int MAX_SCROLL_SIZE = 100;
+
+    /** 单次批量操作的文件数上限 */
+    private static final int MAX_BATCH_SIZE = 10000;
+
     private final MediaFileRepository mediaFileRepository;
     private final MediaMetadataRepository mediaMetadataRepository;
     private final MediaThumbnailRepository mediaThumbnailRepository;
     private final MediaTranscodeRepository mediaTranscodeRepository;
     private final StorageService storageService;
     private final TranscodeService transcodeService;
+    private final UploadSessionService uploadSessionService;
+    private final ContentDedupService contentDedupService;
+    private final MediaServiceConfig mediaServiceConfig;
+    private final StorageUsageService storageUsageService;
+    private final QuotaService quotaService;
+    private final VodService vodService;
+    private final MediaThumbnailService mediaThumbnailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MediaSearchService mediaSearchService;
+    private final MediaFileCache mediaFileCache;
 
     @Override
     @Transactional
     public UploadResponse uploadFile(MultipartFile file, UploadRequest request, Long userId) {
-        try {
-            // 检查上传权限
-            if (!checkUploadPermission(userId)) {
-                throw new BusinessException("上传权限不足");
-            }
+        // 检查上传权限
+        if (!checkUploadPermission(userId)) {
+            throw new BusinessException("上传权限不足");
+        }
 
-            // 检查文件大小限制
-            if (!checkFileSizeLimit(file.getSize(), userId)) {
-                throw new BusinessException("文件大小超出限制");
-            }
+        // 检查文件类型支持
+        if (!checkFileTypeSupport(file.getOriginalFilename())) {
+            throw new BusinessException("不支持的文件类型");
+        }
 
-            // 检查文件类型支持
-            if (!checkFileTypeSupport(file.getOriginalFilename())) {
-                throw new BusinessException("不支持的文件类型");
-            }
+        requireWithinMaxFileSize(file.getSize());
 
-            // 生成文件UUID
-            String fileUuid = UUID.randomUUID().toString();
+        // 生成文件UUID
+        String fileUuid = UUID.randomUUID().toString();
 
+        // 预留存储配额（原子检查剩余空间，并发上传不会超出配额）
+        if (!quotaService.reserve(userId, fileUuid, file.getSize())) {
+            throw new BusinessException("文件大小超出限制");
+        }
+
+        try {
             // 创建媒体文件记录
             MediaFile mediaFile = createMediaFile(file, request, userId, fileUuid);
 
-            // 上传文件到存储
-            String filePath = storageService.uploadFile(file, fileUuid);
-            mediaFile.setFilePath(filePath);
+            // 上传文件到存储（同时计算内容摘要）
+            StoredObjectInfo stored;
+            try (InputStream inputStream = file.getInputStream()) {
+                stored = storageService.uploadStream(inputStream, file.getSize(), fileUuid,
+                        file.getOriginalFilename(), file.getContentType());
+            }
+            // 引用登记与记录保存在同一事务中，保存失败时一起回滚
+            String uploadedObjectName = stored.getObjectName();
+            stored = contentDedupService.register(stored);
+            if (stored.getObjectName().equals(uploadedObjectName)) {
+                discardOnRollback(stored);
+            }
+            mediaFile.setFilePath(stored.getObjectName());
+            mediaFile.setContentHash(stored.getSha256());
+            mediaFile.setChecksum(stored.getEtag());
             mediaFile.setUploadProgress(100);
             mediaFile.setUploadCompletedAt(LocalDateTime.now());
             mediaFile.setStatus(MediaFile.MediaStatus.UPLOADED);
 
             MediaFile savedFile = mediaFileRepository.save(mediaFile);
+            quotaService.commit(userId, fileUuid, stored.getSize());
 
             // 异步处理上传完成的文件
             processUploadedFile(fileUuid);
@@ -91,161 +156,674 @@ public class MediaServiceImpl implements MediaService {
                     .build();
 
         } catch (IOException e) {
+            quotaService.release(userId, fileUuid);
             log.error("文件上传失败: {}", e.getMessage(), e);
             throw new BusinessException("文件上传失败: " + e.getMessage());
+        } catch (RuntimeException e) {
+            quotaService.release(userId, fileUuid);
+            throw e;
+        }
+    }
+
+    /**
+     * 文件大小超过单文件上限时拒绝上传
+     */
+    private void requireWithinMaxFileSize(long fileSize) {
+        if (!mediaServiceConfig.isFileSizeValid(fileSize)) {
+            throw BusinessException.ErrorCodes.fileSizeExceeded(fileSize, mediaServiceConfig.getMaxFileSize());
         }
     }
 
+    /**
+     * 不开启事务：上传期间不占用数据库连接，上传完成后再保存记录
+     */
     @Override
-    @Transactional
-    public UploadResponse uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex, Integer totalChunks, Long userId) {
+    public UploadResponse uploadStream(InputStream inputStream, long contentLength, UploadRequest request,
+                                       String expectedSha256, Long userId) {
+        // 检查上传权限
+        if (!checkUploadPermission(userId)) {
+            throw new BusinessException("上传权限不足");
+        }
+
+        // 检查文件类型支持
+        if (!checkFileTypeSupport(request.getFilename())) {
+            throw new BusinessException("不支持的文件类型");
+        }
+
+        // 已知长度时先按单文件上限拒绝，不读取请求体
+        if (contentLength >= 0) {
+            requireWithinMaxFileSize(contentLength);
+        }
+
+        String fileUuid = UUID.randomUUID().toString();
+
+        // 预留存储配额（分块传输时长度未知，上传完成后按实际大小预留）
+        if (contentLength >= 0 && !quotaService.reserve(userId, fileUuid, contentLength)) {
+            throw new BusinessException("文件大小超出限制");
+        }
+        // 长度未知时读取量不能超过单文件上限和当前剩余配额，超出即中止上传
+        long maxSize = contentLength >= 0 ? contentLength
+                : Math.min(mediaServiceConfig.getMaxFileSize(), quotaService.getRemainingBytes(userId));
+
+        StoredObjectInfo stored;
+        try {
+            stored = storageService.uploadStream(inputStream, contentLength, maxSize, fileUuid,
+                    request.getFilename(), request.getMimeType());
+        } catch (SizeLimitedInputStream.LimitExceededException e) {
+            quotaService.release(userId, fileUuid);
+            throw new BusinessException("文件大小超出限制");
+        } catch (IOException e) {
+            quotaService.release(userId, fileUuid);
+            log.error("文件上传失败: {}", e.getMessage(), e);
+            throw new BusinessException("文件上传失败: " + e.getMessage());
+        }
+
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(stored.getSha256())) {
+            quotaService.release(userId, fileUuid);
+            discardStoredObject(stored);
+            throw new BusinessException("文件校验失败：SHA-256不匹配");
+        }
+        if (contentLength < 0 && !quotaService.reserve(userId, fileUuid, stored.getSize())) {
+            discardStoredObject(stored);
+            throw new BusinessException("文件大小超出限制");
+        }
+        stored = contentDedupService.register(stored);
+
+        MediaFile mediaFile = MediaFile.builder()
+                .fileUuid(fileUuid)
+                .filename(request.getFilename())
+                .fileSize(stored.getSize())
+                .fileType(determineFileType(request.getFilename()))
+                .userId(userId)
+                .description(request.getDescription())
+                .isPublic(request.getIsPublic())
+                .status(MediaFile.MediaStatus.UPLOADED)
+                .uploadProgress(100)
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        mediaFile.setFilePath(stored.getObjectName());
+        mediaFile.setMimeType(request.getMimeType());
+        mediaFile.setContentHash(stored.getSha256());
+        mediaFile.setChecksum(stored.getEtag());
+        mediaFile.setUploadCompletedAt(LocalDateTime.now());
+        MediaFile savedFile;
+        try {
+            savedFile = mediaFileRepository.save(mediaFile);
+        } catch (RuntimeException e) {
+            // 引用已在独立事务中登记，记录未保存时撤销
+            releaseReference(stored);
+            quotaService.release(userId, fileUuid);
+            throw e;
+        }
+        quotaService.commit(userId, fileUuid, stored.getSize());
+
+        // 异步处理上传完成的文件
+        processUploadedFile(fileUuid);
+
+        return UploadResponse.builder()
+                .fileId(savedFile.getId())
+                .fileUuid(fileUuid)
+                .status(UploadResponse.UploadStatus.COMPLETED)
+                .progress(100)
+                .message("文件上传成功")
+                .uploadTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 撤销一次内容引用，引用归零（或对象未参与去重）时删除存储对象
+     */
+    private void releaseReference(StoredObjectInfo stored) {
         try {
-            // 检查文件UUID是否存在
-            Optional<MediaFile> existingFile = mediaFileRepository.findByFileUuid(fileUuid);
-            MediaFile mediaFile;
-
-            if (existingFile.isPresent()) {
-                mediaFile = existingFile.get();
-                // 验证用户权限
-                if (!mediaFile.getUserId().equals(userId)) {
-                    throw new BusinessException("无权操作此文件");
+            if (contentDedupService.release(stored.getSha256())) {
+                discardStoredObject(stored);
+            }
+        } catch (RuntimeException e) {
+            log.warn("撤销内容引用失败: {}", stored.getObjectName(), e);
+        }
+    }
+
+    /**
+     * 事务回滚时删除本次新上传的对象（其引用登记随事务一起回滚）
+     */
+    private void discardOnRollback(StoredObjectInfo stored) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    discardStoredObject(stored);
                 }
-            } else {
-                // 创建新的媒体文件记录
-                mediaFile = createChunkMediaFile(chunk, userId, fileUuid, totalChunks);
             }
+        });
+    }
 
-            // 上传分片
-            storageService.uploadChunk(chunk, fileUuid, chunkIndex);
+    private void discardStoredObject(StoredObjectInfo stored) {
+        try {
+            storageService.deleteFile(stored.getObjectName());
+        } catch (IOException e) {
+            log.warn("清理无效上传对象失败: {}", stored.getObjectName(), e);
+        }
+    }
 
-            // 更新上传进度
-            int progress = (int) ((chunkIndex + 1) * 100.0 / totalChunks);
-            mediaFile.setUploadProgress(progress);
-            mediaFileRepository.save(mediaFile);
+    @Override
+    @Transactional
+    public UploadResponse initChunkUpload(UploadRequest request, Long userId) {
+        // 检查上传权限
+        if (!checkUploadPermission(userId)) {
+            throw new BusinessException("上传权限不足");
+        }
+
+        // 检查文件类型支持
+        if (!checkFileTypeSupport(request.getFilename())) {
+            throw new BusinessException("不支持的文件类型");
+        }
+
+        long chunkSize = mediaServiceConfig.getChunkSize();
+        int totalChunks = (int) Math.max(1, (request.getFileSize() + chunkSize - 1) / chunkSize);
+        if (totalChunks > mediaServiceConfig.getMaxChunks()) {
+            throw new BusinessException("分片数量超出限制");
+        }
+
+        String fileUuid = UUID.randomUUID().toString();
+
+        // 按声明的文件大小预留存储配额，合并完成时转为已用量
+        if (!quotaService.reserve(userId, fileUuid, request.getFileSize())) {
+            throw new BusinessException("文件大小超出限制");
+        }
+        MediaFile mediaFile = MediaFile.builder()
+                .fileUuid(fileUuid)
+                .filename(request.getFilename())
+                .fileSize(request.getFileSize())
+                .fileType(determineFileType(request.getFilename()))
+                .userId(userId)
+                .totalChunks(totalChunks)
+                .description(request.getDescription())
+                .isPublic(request.getIsPublic())
+                .status(MediaFile.MediaStatus.UPLOADING)
+                .uploadProgress(0)
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        MediaFile savedFile = mediaFileRepository.save(mediaFile);
+
+        uploadSessionService.initSession(fileUuid, userId, totalChunks);
+
+        log.info("用户 {} 初始化分片上传: {}, 分片数: {}", userId, fileUuid, totalChunks);
+
+        return UploadResponse.builder()
+                .uploadId(fileUuid)
+                .fileId(savedFile.getId())
+                .fileUuid(fileUuid)
+                .chunkSize(chunkSize)
+                .totalChunks(totalChunks)
+                .uploadedChunks(0)
+                .status(UploadResponse.UploadStatus.INITIALIZED)
+                .progress(0)
+                .uploadTime(LocalDateTime.now())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public UploadResponse uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex, Integer totalChunks, Long userId) {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid).orElse(null);
+        if (mediaFile == null) {
+            // 兼容未调用初始化接口的客户端：首个分片到达时创建文件记录，
+            // 未声明文件大小，按分片数乘以分片大小上限预留配额
+            if (totalChunks == null || totalChunks <= 0 || totalChunks > mediaServiceConfig.getMaxChunks()) {
+                throw new BusinessException("分片数量超出限制");
+            }
+            long declaredSize = totalChunks * mediaServiceConfig.getChunkSize();
+            if (!quotaService.reserve(userId, fileUuid, declaredSize)) {
+                throw new BusinessException("文件大小超出限制");
+            }
+            mediaFile = mediaFileRepository.save(createChunkMediaFile(chunk, userId, fileUuid, totalChunks, declaredSize));
+        }
+
+        return receiveChunks(mediaFile, Collections.singletonList(chunk), Collections.singletonList(chunkIndex), userId);
+    }
+
+    @Override
+    @Transactional
+    public UploadResponse uploadChunks(List<MultipartFile> chunks, String fileUuid, List<Integer> chunkIndexes, Long userId) {
+        if (chunks == null || chunkIndexes == null || chunks.isEmpty() || chunks.size() != chunkIndexes.size()) {
+            throw new BusinessException("分片与分片索引数量不匹配");
+        }
+
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        return receiveChunks(mediaFile, chunks, chunkIndexes, userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UploadResponse getUploadStatus(String fileUuid, Long userId) {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        // 验证用户权限
+        if (!mediaFile.getUserId().equals(userId)) {
+            throw new BusinessException("无权查看此文件");
+        }
 
+        int totalChunks = mediaFile.getTotalChunks() != null ? mediaFile.getTotalChunks() : 0;
+        if (mediaFile.getStatus() != MediaFile.MediaStatus.UPLOADING) {
             return UploadResponse.builder()
                     .fileUuid(fileUuid)
-                    .status(UploadResponse.UploadStatus.UPLOADING)
-                    .progress(progress)
-                    .message(String.format("分片 %d/%d 上传成功", chunkIndex + 1, totalChunks))
-                    .uploadTime(LocalDateTime.now())
+                    .totalChunks(totalChunks)
+                    .uploadedChunks(totalChunks)
+                    .missingChunks(Collections.emptyList())
+                    .status(mediaFile.getStatus() == MediaFile.MediaStatus.FAILED
+                            ? UploadResponse.UploadStatus.FAILED : UploadResponse.UploadStatus.COMPLETED)
+                    .progress(mediaFile.getUploadProgress())
                     .build();
-
-        } catch (IOException e) {
-            log.error("分片上传失败: {}", e.getMessage(), e);
-            throw new BusinessException("分片上传失败: " + e.getMessage());
         }
+
+        List<Integer> missingChunks = uploadSessionService.getMissingChunks(fileUuid, totalChunks);
+        int uploadedChunks = totalChunks - missingChunks.size();
+
+        return UploadResponse.builder()
+                .fileUuid(fileUuid)
+                .chunkSize(mediaServiceConfig.getChunkSize())
+                .totalChunks(totalChunks)
+                .uploadedChunks(uploadedChunks)
+                .missingChunks(missingChunks)
+                .status(UploadResponse.UploadStatus.UPLOADING)
+                .progress(calculateProgress(uploadedChunks, totalChunks))
+                .build();
     }
 
     @Override
     @Transactional
     public UploadResponse mergeChunks(String fileUuid, Long userId) {
+        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        // 验证用户权限
+        if (!mediaFile.getUserId().equals(userId)) {
+            throw new BusinessException("无权操作此文件");
+        }
+
+        // 已合并（例如最后一个分片到达时已自动合并）则直接返回
+        if (mediaFile.getStatus() != MediaFile.MediaStatus.UPLOADING) {
+            return buildMergedResponse(mediaFile);
+        }
+
+        if (uploadSessionService.hasSession(fileUuid)) {
+            List<Integer> missingChunks = uploadSessionService.getMissingChunks(fileUuid, mediaFile.getTotalChunks());
+            if (!missingChunks.isEmpty()) {
+                throw new BusinessException("分片未上传完整，缺失 " + missingChunks.size() + " 个分片");
+            }
+        }
+
+        DistributedLockService.LockHandle mergeLock = uploadSessionService.tryAcquireMergeLock(fileUuid);
+        if (mergeLock == null) {
+            throw new BusinessException("文件正在合并中");
+        }
+        return doMergeChunks(mediaFile, mergeLock);
+    }
+
+    /**
+     * 接收一批分片：写入存储、记录位图、合并进度更新，位图满时自动合并
+     */
+    private UploadResponse receiveChunks(MediaFile mediaFile, List<MultipartFile> chunks, List<Integer> chunkIndexes, Long userId) {
+        String fileUuid = mediaFile.getFileUuid();
+
+        // 验证用户权限
+        if (!mediaFile.getUserId().equals(userId)) {
+            throw new BusinessException("无权操作此文件");
+        }
+        if (mediaFile.getStatus() != MediaFile.MediaStatus.UPLOADING) {
+            return buildMergedResponse(mediaFile);
+        }
+
+        int totalChunks = mediaFile.getTotalChunks();
+        if (!uploadSessionService.hasSession(fileUuid)) {
+            uploadSessionService.initSession(fileUuid, mediaFile.getUserId(), totalChunks);
+        }
+
+        int receivedChunks = 0;
         try {
-            MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
-                    .orElseThrow(() -> new BusinessException("文件不存在"));
+            for (int i = 0; i < chunks.size(); i++) {
+                Integer chunkIndex = chunkIndexes.get(i);
+                if (chunkIndex == null || chunkIndex < 0 || chunkIndex >= totalChunks) {
+                    throw new BusinessException("分片索引无效: " + chunkIndex);
+                }
+                if (chunks.get(i).getSize() > maxChunkSize(mediaFile, chunkIndex)) {
+                    throw new BusinessException("分片大小超出声明的文件大小: " + chunkIndex);
+                }
+
+                // 重复分片（客户端重试）不再写入存储
+                if (uploadSessionService.isChunkReceived(fileUuid, chunkIndex)) {
+                    receivedChunks = Math.max(receivedChunks, uploadSessionService.countReceivedChunks(fileUuid));
+                    continue;
+                }
+
+                String chunkSha256 = storageService.uploadChunk(chunks.get(i), fileUuid, chunkIndex);
+                receivedChunks = Math.max(receivedChunks,
+                        uploadSessionService.markChunkReceived(fileUuid, chunkIndex, chunkSha256));
+            }
+        } catch (IOException e) {
+            log.error("分片上传失败: {}", e.getMessage(), e);
+            throw new BusinessException("分片上传失败: " + e.getMessage());
+        }
 
-            // 验证用户权限
-            if (!mediaFile.getUserId().equals(userId)) {
-                throw new BusinessException("无权操作此文件");
+        // 位图已满：由获得合并锁的请求负责自动合并
+        if (receivedChunks >= totalChunks) {
+            DistributedLockService.LockHandle mergeLock = uploadSessionService.tryAcquireMergeLock(fileUuid);
+            if (mergeLock != null) {
+                return doMergeChunks(mediaFile, mergeLock);
             }
+        }
 
-            // 合并分片
-            String filePath = storageService.mergeChunks(fileUuid, mediaFile.getTotalChunks());
-            mediaFile.setFilePath(filePath);
+        int progress = calculateProgress(receivedChunks, totalChunks);
+        if (progress < 100 && uploadSessionService.shouldPersistProgress(fileUuid, progress)) {
+            mediaFileRepository.updateUploadProgress(mediaFile.getId(), progress);
+        }
+
+        return UploadResponse.builder()
+                .fileUuid(fileUuid)
+                .totalChunks(totalChunks)
+                .uploadedChunks(receivedChunks)
+                .status(UploadResponse.UploadStatus.UPLOADING)
+                .progress(progress)
+                .message(String.format("已接收分片 %d/%d", receivedChunks, totalChunks))
+                .uploadTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 指定分片允许的最大字节数：不超过分片大小，且所有分片之和不超过声明（预留配额）的文件大小
+     */
+    private long maxChunkSize(MediaFile mediaFile, int chunkIndex) {
+        long chunkSize = mediaServiceConfig.getChunkSize();
+        long declaredSize = mediaFile.getFileSize() != null ? mediaFile.getFileSize() : 0L;
+        return Math.max(0L, Math.min(chunkSize, declaredSize - chunkIndex * chunkSize));
+    }
+
+    /**
+     * 执行分片合并（调用方需已持有合并锁，无论成功或失败都在事务结束后释放）
+     */
+    private UploadResponse doMergeChunks(MediaFile mediaFile, DistributedLockService.LockHandle mergeLock) {
+        String fileUuid = mediaFile.getFileUuid();
+        long reservedSize = mediaFile.getFileSize() != null ? mediaFile.getFileSize() : 0L;
+        try {
+            // 合并分片（MinIO服务端合并，无需下载分片）
+            StoredObjectInfo merged = storageService.mergeChunks(
+                    fileUuid, mediaFile.getTotalChunks(), mediaFile.getFilename());
+            if (merged.getSize() > reservedSize) {
+                return rejectOversizedMerge(mediaFile, merged, reservedSize);
+            }
+            // 内容摘要由上传时记录的分片摘要得出，不回读合并结果
+            merged.setSha256(uploadSessionService.chunkedContentHash(fileUuid, mediaFile.getTotalChunks()));
+            // 引用登记与记录保存在同一事务中，保存失败时一起回滚
+            StoredObjectInfo stored = contentDedupService.register(merged);
+            if (stored.getObjectName().equals(merged.getObjectName())) {
+                discardOnRollback(stored);
+            }
+            mediaFile.setFilePath(stored.getObjectName());
+            mediaFile.setFileSize(stored.getSize());
+            mediaFile.setContentHash(stored.getSha256());
+            mediaFile.setChecksum(stored.getEtag());
             mediaFile.setUploadProgress(100);
             mediaFile.setUploadCompletedAt(LocalDateTime.now());
             mediaFile.setStatus(MediaFile.MediaStatus.UPLOADED);
             mediaFileRepository.save(mediaFile);
 
+            // 配额提交、会话和分片清理都在事务提交后执行：回滚时分片和预留仍在，客户端可以重试合并；
+            // 提前清理会话会丢失分片位图，提交失败时客户端无法确认分片并重试合并
+            Long userId = mediaFile.getUserId();
+            long mergedSize = merged.getSize();
+            runAfterCommit(() -> {
+                quotaService.commit(userId, fileUuid, mergedSize);
+                uploadSessionService.clearSession(fileUuid);
+                try {
+                    storageService.deleteChunks(fileUuid);
+                } catch (IOException e) {
+                    log.warn("清理已合并分片失败: {}", fileUuid, e);
+                }
+            });
+
             // 异步处理上传完成的文件
             processUploadedFile(fileUuid);
 
-            return UploadResponse.builder()
-                    .fileUuid(fileUuid)
-                    .status(UploadResponse.UploadStatus.COMPLETED)
-                    .progress(100)
-                    .message("文件合并成功")
-                    .uploadTime(LocalDateTime.now())
-                    .build();
+            return buildMergedResponse(mediaFile);
 
         } catch (IOException e) {
             log.error("文件合并失败: {}", e.getMessage(), e);
             throw new BusinessException("文件合并失败: " + e.getMessage());
+        } finally {
+            releaseMergeLockAfterCompletion(mergeLock);
+        }
+    }
+
+    /**
+     * 事务提交后执行（没有事务时立即执行）
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 事务结束（提交或回滚）后释放合并锁：提交前其他请求仍读到上传中状态，提前释放会导致重复合并；
+     * 保存失败等运行时异常回滚时锁也会释放，客户端可立即重试合并
+     */
+    private void releaseMergeLockAfterCompletion(DistributedLockService.LockHandle mergeLock) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    mergeLock.release();
+                }
+            });
+        } else {
+            mergeLock.release();
+        }
+    }
+
+    /**
+     * 合并结果超过预留配额：删除合并对象、释放预留并将文件标记为失败
+     */
+    private UploadResponse rejectOversizedMerge(MediaFile mediaFile, StoredObjectInfo merged, long reservedSize) {
+        String fileUuid = mediaFile.getFileUuid();
+        log.warn("合并后文件大小超出预留配额: {}, 实际: {}, 预留: {}", fileUuid, merged.getSize(), reservedSize);
+        try {
+            storageService.deleteFile(merged.getObjectName());
+        } catch (IOException e) {
+            log.warn("清理超限合并对象失败: {}", merged.getObjectName(), e);
         }
+        Long userId = mediaFile.getUserId();
+        runAfterCommit(() -> {
+            quotaService.release(userId, fileUuid);
+            uploadSessionService.clearSession(fileUuid);
+        });
+
+        String message = "合并后文件大小超出声明的文件大小";
+        mediaFile.setStatus(MediaFile.MediaStatus.FAILED);
+        mediaFile.setErrorMessage(message);
+        mediaFileRepository.save(mediaFile);
+        mediaFileCache.evict(fileUuid);
+
+        return UploadResponse.builder()
+                .fileUuid(fileUuid)
+                .totalChunks(mediaFile.getTotalChunks())
+                .status(UploadResponse.UploadStatus.FAILED)
+                .message(message)
+                .uploadTime(LocalDateTime.now())
+                .build();
+    }
+
+    private UploadResponse buildMergedResponse(MediaFile mediaFile) {
+        return UploadResponse.builder()
+                .fileUuid(mediaFile.getFileUuid())
+                .totalChunks(mediaFile.getTotalChunks())
+                .uploadedChunks(mediaFile.getTotalChunks())
+                .status(UploadResponse.UploadStatus.COMPLETED)
+                .progress(100)
+                .message("文件合并成功")
+                .uploadTime(LocalDateTime.now())
+                .build();
+    }
+
+    private int calculateProgress(int receivedChunks, int totalChunks) {
+        return totalChunks > 0 ? (int) (receivedChunks * 100L / totalChunks) : 0;
     }
 
     @Override
-    @Transactional(readOnly = true)
     public MediaInfoResponse getMediaInfo(String fileUuid, Long userId) {
-        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
                 .orElseThrow(() -> new BusinessException("文件不存在"));
 
         // 验证用户权限
-        if (!mediaFile.getUserId().equals(userId) && !mediaFile.getIsPublic()) {
+        if (!mediaFile.userId().equals(userId) && !mediaFile.isPublic()) {
             throw new BusinessException("无权访问此文件");
         }
 
-        return buildMediaInfoResponse(mediaFile);
+        return buildMediaInfoResponse(mediaFile.toSummary());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public MediaInfoResponse getPublicMediaInfo(String fileUuid) {
-        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
                 .orElseThrow(() -> new BusinessException("文件不存在"));
 
         // 验证是否为公开文件
-        if (!mediaFile.getIsPublic()) {
+        if (!mediaFile.isPublic()) {
             throw new BusinessException("文件未公开");
         }
 
-        return buildMediaInfoResponse(mediaFile);
+        return buildMediaInfoResponse(mediaFile.toSummary());
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<MediaInfoResponse> getUserMediaFiles(Long userId, Pageable pageable) {
-        Page<MediaFile> mediaFiles = mediaFileRepository.findByUserId(userId, pageable);
-        return mediaFiles.map(this::buildMediaInfoResponse);
+        return findUserMediaFiles(userId, null, pageable);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<MediaInfoResponse> searchMediaFiles(String keyword, Long userId, Pageable pageable) {
-        // 实现搜索逻辑
-        List<MediaFile> mediaFiles = mediaFileRepository.findByFilenameContainingIgnoreCase(keyword);
-        List<MediaFile> userFiles = mediaFiles.stream()
-                .filter(file -> file.getUserId().equals(userId))
-                .collect(Collectors.toList());
+    public Page<MediaInfoResponse> searchMediaFiles(String keyword, Long userId, boolean includePublic,
+                                                    Pageable pageable) {
+        if (keyword == null || keyword.isBlank()) {
+            return findUserMediaFiles(userId, null, pageable);
+        }
+        if (!mediaSearchService.isAvailable()) {
+            Specification<MediaFile> visible = includePublic
+                    ? ownedBy(userId).or(isPublic()) : ownedBy(userId);
+            return findMediaFiles(visible, filenameContains(keyword), pageable);
+        }
 
-        // 转换为分页结果
-        return new org.springframework.data.domain.PageImpl<>(
-                userFiles.stream().map(this::buildMediaInfoResponse).collect(Collectors.toList()),
-                pageable,
-                userFiles.size()
-        );
+        // 多取一条判断是否有下一页；总数不精确统计（大结果集上COUNT的开销远高于取一页）
+        List<MediaSearchService.SearchHit> hits = mediaSearchService.search(
+                keyword, userId, includePublic, pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasMore = hits.size() > pageable.getPageSize();
+        List<MediaSearchService.SearchHit> pageHits = hasMore ? hits.subList(0, pageable.getPageSize()) : hits;
+
+        Map<Long, MediaFileSummary> files = mediaFileRepository.findSummariesByIdIn(
+                        pageHits.stream().map(MediaSearchService.SearchHit::id).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(MediaFileSummary::id, file -> file));
+        List<MediaSearchService.SearchHit> foundHits = new ArrayList<>();
+        List<MediaFileSummary> foundFiles = new ArrayList<>();
+        for (MediaSearchService.SearchHit hit : pageHits) {
+            MediaFileSummary file = files.get(hit.id());
+            if (file != null) {
+                foundHits.add(hit);
+                foundFiles.add(file);
+            }
+        }
+        List<MediaInfoResponse> responses = buildSignedResponses(foundFiles);
+        for (int i = 0; i < responses.size(); i++) {
+            responses.get(i).setHighlightedFilename(foundHits.get(i).filenameHighlight());
+            responses.get(i).setHighlightedDescription(foundHits.get(i).descriptionHighlight());
+        }
+        long total = pageable.getOffset() + pageHits.size() + (hasMore ? 1 : 0);
+        return new PageImpl<>(responses, pageable, total);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<MediaInfoResponse> filterMediaFilesByType(MediaFile.FileType fileType, Long userId, Pageable pageable) {
-        List<MediaFile> mediaFiles = mediaFileRepository.findByUserIdAndFileType(userId, fileType);
-        return new org.springframework.data.domain.PageImpl<>(
-                mediaFiles.stream().map(this::buildMediaInfoResponse).collect(Collectors.toList()),
-                pageable,
-                mediaFiles.size()
-        );
+        return findUserMediaFiles(userId, hasFileType(fileType), pageable);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<MediaInfoResponse> filterMediaFilesByStatus(MediaFile.MediaStatus status, Long userId, Pageable pageable) {
-        List<MediaFile> mediaFiles = mediaFileRepository.findByUserIdAndStatus(userId, status);
-        return new org.springframework.data.domain.PageImpl<>(
-                mediaFiles.stream().map(this::buildMediaInfoResponse).collect(Collectors.toList()),
-                pageable,
-                mediaFiles.size()
-        );
+        return findUserMediaFiles(userId, hasStatus(status), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<MediaInfoResponse> scrollMediaFiles(Long userId, String keyword,
+                                                                  MediaFile.FileType fileType,
+                                                                  MediaFile.MediaStatus status,
+                                                                  String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_SCROLL_SIZE));
+        Specification<MediaFile> spec = where(ownedBy(userId)).and(notDeleted())
+                .and(filenameContains(keyword)).and(hasFileType(fileType)).and(hasStatus(status));
+        if (cursor != null && !cursor.isBlank()) {
+            Object[] position = decodeCursor(cursor);
+            spec = spec.and(after((LocalDateTime) position[0], (Long) position[1]));
+        }
+
+        // 多取一条判断是否还有下一页，不执行COUNT
+        List<MediaFileSummary> rows = mediaFileRepository.findSummaries(spec, KEYSET_SORT, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<MediaFileSummary> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? encodeCursor(pageRows.get(pageRows.size() - 1)) : null;
+
+        return new CursorPageResponse<>(buildSignedResponses(pageRows), nextCursor, pageSize);
+    }
+
+    /**
+     * 用户范围、筛选条件、排序和分页都由数据库执行，只查询当前页的摘要列
+     */
+    private Page<MediaInfoResponse> findUserMediaFiles(Long userId, Specification<MediaFile> filter,
+                                                       Pageable pageable) {
+        return findMediaFiles(ownedBy(userId), filter, pageable);
+    }
+
+    private Page<MediaInfoResponse> findMediaFiles(Specification<MediaFile> visible, Specification<MediaFile> filter,
+                                                   Pageable pageable) {
+        if (pageable.getSort().isUnsorted()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), KEYSET_SORT);
+        }
+        Page<MediaFileSummary> page = mediaFileRepository
+                .findSummaries(where(visible).and(notDeleted()).and(filter), pageable);
+        return new PageImpl<>(buildSignedResponses(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    private static String encodeCursor(MediaFileSummary last) {
+        String position = last.createdAt() + CURSOR_SEPARATOR + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+            return new Object[]{LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1))};
+        } catch (RuntimeException e) {
+            throw new BusinessException("无效的分页游标");
+        }
     }
 
     @Override
@@ -271,6 +849,7 @@ public class MediaServiceImpl implements MediaService {
 
         mediaFile.setUpdatedAt(LocalDateTime.now());
         MediaFile updatedFile = mediaFileRepository.save(mediaFile);
+        mediaFileCache.evict(fileUuid);
 
         return buildMediaInfoResponse(updatedFile);
     }
@@ -287,15 +866,59 @@ public class MediaServiceImpl implements MediaService {
         }
 
         mediaFileRepository.softDelete(mediaFile.getId());
+        mediaFileCache.evict(fileUuid);
         log.info("用户 {} 删除了文件 {}", userId, fileUuid);
     }
 
     @Override
     @Transactional
-    public void batchDeleteMediaFiles(List<String> fileUuids, Long userId) {
-        for (String fileUuid : fileUuids) {
-            deleteMediaFile(fileUuid, userId);
+    public BatchOperationResponse batchDeleteMediaFiles(List<String> fileUuids, Long userId) {
+        return batchSetEnabled(fileUuids, userId, false);
+    }
+
+    @Override
+    @Transactional
+    public BatchOperationResponse batchRestoreMediaFiles(List<String> fileUuids, Long userId) {
+        return batchSetEnabled(fileUuids, userId, true);
+    }
+
+    /**
+     * 批量软删除/恢复：一条UPDATE更新属于该用户且状态需要变更的文件，
+     * 只对未变更的文件再查询一次归属，区分不存在、无权限和已处于目标状态
+     */
+    private BatchOperationResponse batchSetEnabled(List<String> fileUuids, Long userId, boolean enabled) {
+        List<String> distinctUuids = fileUuids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctUuids.size() > MAX_BATCH_SIZE) {
+            throw new BusinessException("单次最多操作" + MAX_BATCH_SIZE + "个文件");
         }
+
+        List<String> changed = enabled
+                ? mediaFileRepository.restoreAll(distinctUuids, userId)
+                : mediaFileRepository.softDeleteAll(distinctUuids, userId);
+        Set<String> changedUuids = new HashSet<>(changed);
+        List<String> unchanged = distinctUuids.stream().filter(fileUuid -> !changedUuids.contains(fileUuid)).toList();
+        Map<String, Object[]> ownership = unchanged.isEmpty() ? Map.of()
+                : mediaFileRepository.findOwnershipByFileUuidIn(unchanged).stream()
+                        .collect(Collectors.toMap(row -> (String) row[0], row -> row));
+
+        List<BatchOperationResponse.ItemResult> results = new ArrayList<>(distinctUuids.size());
+        for (String fileUuid : distinctUuids) {
+            Object[] row = ownership.get(fileUuid);
+            if (changedUuids.contains(fileUuid)) {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.SUCCESS, null));
+            } else if (row == null) {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.NOT_FOUND, "文件不存在"));
+            } else if (!userId.equals(row[1])) {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.FORBIDDEN, "无权操作此文件"));
+            } else {
+                results.add(new BatchOperationResponse.ItemResult(fileUuid, BatchOperationResponse.SKIPPED,
+                        enabled ? "文件未删除" : "文件已删除"));
+            }
+        }
+        mediaFileCache.evictAll(changed);
+
+        log.info("用户 {} 批量{}文件: {}/{}", userId, enabled ? "恢复" : "删除", changed.size(), distinctUuids.size());
+        return new BatchOperationResponse(results);
     }
 
     @Override
@@ -310,6 +933,7 @@ public class MediaServiceImpl implements MediaService {
         }
 
         mediaFileRepository.restore(mediaFile.getId());
+        mediaFileCache.evict(fileUuid);
         log.info("用户 {} 恢复了文件 {}", userId, fileUuid);
     }
 
@@ -325,11 +949,29 @@ public class MediaServiceImpl implements MediaService {
         }
 
         try {
-            // 删除存储中的文件
-            storageService.deleteFile(mediaFile.getFilePath());
+            // 删除转码产物（与其他文件共享的产物保留）
+            for (MediaTranscode transcode : mediaFile.getTranscodes()) {
+                String outputPath = transcode.getFilePath();
+                if (outputPath != null && mediaTranscodeRepository.countByFilePath(outputPath) <= 1) {
+                    storageService.deleteFile(outputPath);
+                }
+            }
+
+            // 删除该文件的全部VOD版本目录和缩略图
+            vodService.deleteVodObjects(fileUuid);
+            mediaThumbnailService.deleteThumbnailObjects(fileUuid);
+
+            // 内容被其他文件共享时只减少引用计数，引用归零才删除存储对象
+            if (contentDedupService.release(mediaFile.getContentHash())) {
+                storageService.deleteFile(mediaFile.getFilePath());
+            }
             
             // 删除数据库记录
             mediaFileRepository.delete(mediaFile);
+            mediaFileCache.evict(fileUuid);
+            if (mediaFile.getUploadCompletedAt() != null && mediaFile.getFileSize() != null) {
+                storageUsageService.recordUserRemoved(userId, mediaFile.getFileSize());
+            }
             
             log.info("用户 {} 永久删除了文件 {}", userId, fileUuid);
         } catch (IOException e) {
@@ -341,46 +983,77 @@ public class MediaServiceImpl implements MediaService {
     // 其他方法实现...
     @Override
     public MediaFile downloadMediaFile(String fileUuid, Long userId) {
-        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
+                .filter(file -> !Boolean.FALSE.equals(file.enabled()))
                 .orElseThrow(() -> new BusinessException("文件不存在"));
 
         // 验证用户权限
-        if (!mediaFile.getUserId().equals(userId) && !mediaFile.getIsPublic()) {
+        if (!mediaFile.userId().equals(userId) && !mediaFile.isPublic()) {
             throw new BusinessException("无权下载此文件");
         }
 
-        return mediaFile;
+        return mediaFile.toMediaFile();
     }
 
     @Override
     public MediaFile downloadPublicMediaFile(String fileUuid) {
-        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
+                .filter(file -> !Boolean.FALSE.equals(file.enabled()))
                 .orElseThrow(() -> new BusinessException("文件不存在"));
 
         // 验证是否为公开文件
-        if (!mediaFile.getIsPublic()) {
+        if (!mediaFile.isPublic()) {
             throw new BusinessException("文件未公开");
         }
 
-        return mediaFile;
+        return mediaFile.toMediaFile();
     }
 
     @Override
     public String getPreviewUrl(String fileUuid, Long userId) {
-        // 实现预览URL生成逻辑
-        return storageService.generatePreviewUrl(fileUuid);
+        MediaFileSnapshot mediaFile = getAccessibleFile(fileUuid, userId);
+        String thumbnailPath = mediaThumbnailRepository.findDefaultThumbnailByMediaFileId(mediaFile.id())
+                .filter(thumbnail -> !Boolean.FALSE.equals(thumbnail.getEnabled()))
+                .map(MediaThumbnail::getFilePath)
+                .orElse(null);
+        String previewUrl = previewUrl(mediaFile.toSummary(), thumbnailPath);
+        if (previewUrl == null) {
+            throw new BusinessException("文件暂无预览图");
+        }
+        return previewUrl;
     }
 
     @Override
     public String getPlayUrl(String fileUuid, Long userId) {
-        // 实现播放URL生成逻辑
-        return storageService.generatePlayUrl(fileUuid);
+        String playUrl = playUrl(getAccessibleFile(fileUuid, userId).toSummary());
+        if (playUrl == null) {
+            throw new BusinessException("文件尚未就绪");
+        }
+        return playUrl;
     }
 
     @Override
     public String getDownloadUrl(String fileUuid, Long userId) {
-        // 实现下载URL生成逻辑
-        return storageService.generateDownloadUrl(fileUuid);
+        String downloadUrl = downloadUrl(getAccessibleFile(fileUuid, userId).toSummary());
+        if (downloadUrl == null) {
+            throw new BusinessException("文件尚未就绪");
+        }
+        return downloadUrl;
+    }
+
+    /**
+     * 查询当前用户可访问（本人或公开、未禁用）的文件
+     */
+    private MediaFileSnapshot getAccessibleFile(String fileUuid, Long userId) {
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
+                .filter(file -> !Boolean.FALSE.equals(file.enabled()))
+                .orElseThrow(() -> new BusinessException("文件不存在"));
+
+        // 验证用户权限
+        if (!mediaFile.userId().equals(userId) && !mediaFile.isPublic()) {
+            throw new BusinessException("无权访问此文件");
+        }
+        return mediaFile;
     }
 
     @Override
@@ -391,10 +1064,8 @@ public class MediaServiceImpl implements MediaService {
 
     @Override
     public boolean checkFileSizeLimit(Long fileSize, Long userId) {
-        // 实现文件大小限制检查逻辑
-        StorageUsage usage = getUserStorageUsage(userId);
-        Long remaining = usage.getTotalStorage() - usage.getUsedStorage();
-        return fileSize <= remaining;
+        // 只读检查，不预留配额；上传流程使用QuotaService.reserve原子预留
+        return quotaService.getUsedBytes(userId) + fileSize <= quotaService.getQuotaBytes();
     }
 
     @Override
@@ -407,9 +1078,7 @@ public class MediaServiceImpl implements MediaService {
 
     @Override
     public StorageUsage getUserStorageUsage(Long userId) {
-        Long usedStorage = mediaFileRepository.sumFileSizeByUserId(userId);
-        Long totalStorage = 10L * 1024 * 1024 * 1024; // 10GB默认存储空间
-        return new StorageUsage(usedStorage, totalStorage);
+        return new StorageUsage(quotaService.getUsedBytes(userId), quotaService.getQuotaBytes());
     }
 
     @Override
@@ -422,6 +1091,7 @@ public class MediaServiceImpl implements MediaService {
             try {
                 storageService.deleteFile(file.getFilePath());
                 mediaFileRepository.delete(file);
+                quotaService.release(file.getUserId(), file.getFileUuid());
                 log.info("清理过期临时文件: {}", file.getFileUuid());
             } catch (IOException e) {
                 log.error("清理文件失败: {}", file.getFileUuid(), e);
@@ -431,9 +1101,9 @@ public class MediaServiceImpl implements MediaService {
 
     @Override
     public void processUploadedFile(String fileUuid) {
-        // 异步处理上传完成的文件（元数据提取、缩略图生成等）
+        // 事务提交后在后台线程池中提取元数据，见 MediaMetadataExtractionService
         log.info("开始处理上传完成的文件: {}", fileUuid);
-        // 这里可以调用其他服务进行处理
+        eventPublisher.publishEvent(new MediaUploadedEvent(fileUuid));
     }
 
     @Override
@@ -444,6 +1114,8 @@ public class MediaServiceImpl implements MediaService {
         mediaFile.setStatus(MediaFile.MediaStatus.FAILED);
         mediaFile.setErrorMessage(errorMessage);
         mediaFileRepository.save(mediaFile);
+        mediaFileCache.evict(fileUuid);
+        quotaService.release(mediaFile.getUserId(), fileUuid);
         
         log.error("文件上传失败: {}, 错误: {}", fileUuid, errorMessage);
     }
@@ -458,6 +1130,13 @@ public class MediaServiceImpl implements MediaService {
             throw new BusinessException("无权查看此文件");
         }
 
+        // 数据库中的进度按步长落库，上传中优先读取会话位图中的实时进度
+        if (mediaFile.getStatus() == MediaFile.MediaStatus.UPLOADING
+                && mediaFile.getTotalChunks() != null
+                && uploadSessionService.hasSession(fileUuid)) {
+            return calculateProgress(uploadSessionService.countReceivedChunks(fileUuid), mediaFile.getTotalChunks());
+        }
+
         return mediaFile.getUploadProgress();
     }
 
@@ -474,9 +1153,12 @@ public class MediaServiceImpl implements MediaService {
         try {
             // 删除已上传的分片
             storageService.cancelUpload(fileUuid);
+            uploadSessionService.clearSession(fileUuid);
+            quotaService.release(userId, fileUuid);
             
             // 删除数据库记录
             mediaFileRepository.delete(mediaFile);
+            mediaFileCache.evict(fileUuid);
             
             log.info("用户 {} 取消了文件上传: {}", userId, fileUuid);
         } catch (IOException e) {
@@ -499,10 +1181,18 @@ public class MediaServiceImpl implements MediaService {
             throw new BusinessException("只有失败的文件才能重试");
         }
 
+        // 失败时已释放配额预留，重试前重新预留
+        if (mediaFile.getFileSize() != null && mediaFile.getFileSize() > 0
+                && !quotaService.reserve(userId, fileUuid, mediaFile.getFileSize())) {
+            throw new BusinessException("文件大小超出限制");
+        }
+
         mediaFile.setStatus(MediaFile.MediaStatus.UPLOADING);
         mediaFile.setUploadProgress(0);
         mediaFile.setErrorMessage(null);
         mediaFileRepository.save(mediaFile);
+        mediaFileCache.evict(fileUuid);
+        uploadSessionService.clearSession(fileUuid);
         
         log.info("用户 {} 重试上传文件: {}", userId, fileUuid);
     }
@@ -519,9 +1209,9 @@ public class MediaServiceImpl implements MediaService {
 
     @Override
     public List<MediaInfoResponse> getPopularMediaFiles(int limit) {
-        Pageable pageable = org.springframework.data.domain.PageRequest.of(0, limit);
-        List<MediaFile> popularFiles = mediaFileRepository.findPopularFiles(pageable);
-        return popularFiles.stream().map(this::buildMediaInfoResponse).collect(Collectors.toList());
+        List<MediaFileSummary> popularFiles = mediaFileRepository.findSummaries(
+                where(isPublic()).and(notDeleted()), KEYSET_SORT, limit);
+        return buildSignedResponses(popularFiles);
     }
 
     @Override
@@ -529,20 +1219,20 @@ public class MediaServiceImpl implements MediaService {
         // 实现获取最近上传文件的逻辑
         Pageable pageable = org.springframework.data.domain.PageRequest.of(0, limit);
         List<MediaFile> recentFiles = mediaFileRepository.findRecentFiles(null, pageable);
-        return recentFiles.stream().map(this::buildMediaInfoResponse).collect(Collectors.toList());
+        return buildSignedResponses(recentFiles.stream().map(MediaFileSummary::of).collect(Collectors.toList()));
     }
 
     @Override
     public String getFilePath(String fileUuid, Long userId) {
-        MediaFile mediaFile = mediaFileRepository.findByFileUuid(fileUuid)
+        MediaFileSnapshot mediaFile = mediaFileCache.get(fileUuid)
                 .orElseThrow(() -> new BusinessException("文件不存在"));
 
         // 验证用户权限
-        if (!mediaFile.getUserId().equals(userId)) {
+        if (!mediaFile.userId().equals(userId)) {
             throw new BusinessException("无权访问此文件");
         }
 
-        return mediaFile.getFilePath();
+        return mediaFile.filePath();
     }
 
     // 辅助方法
@@ -563,11 +1253,12 @@ public class MediaServiceImpl implements MediaService {
                 .build();
     }
 
-    private MediaFile createChunkMediaFile(MultipartFile chunk, Long userId, String fileUuid, Integer totalChunks) {
+    private MediaFile createChunkMediaFile(MultipartFile chunk, Long userId, String fileUuid, Integer totalChunks,
+                                          long declaredSize) {
         return MediaFile.builder()
                 .fileUuid(fileUuid)
                 .filename(chunk.getOriginalFilename())
-                .fileSize(0L) // 初始大小为0，合并后更新
+                .fileSize(declaredSize) // 上传中为预留配额的大小上限，合并后更新为实际大小
                 .fileType(determineFileType(chunk.getOriginalFilename()))
                 .userId(userId)
                 .totalChunks(totalChunks)
@@ -598,21 +1289,127 @@ public class MediaServiceImpl implements MediaService {
     }
 
     private MediaInfoResponse buildMediaInfoResponse(MediaFile mediaFile) {
+        return buildMediaInfoResponse(MediaFileSummary.of(mediaFile));
+    }
+
+    private MediaInfoResponse buildMediaInfoResponse(MediaFileSummary summary) {
         // 构建媒体信息响应对象
         return MediaInfoResponse.builder()
-                .fileUuid(mediaFile.getFileUuid())
-                .filename(mediaFile.getFilename())
-                .fileSize(mediaFile.getFileSize())
-                .fileType(mediaFile.getFileType().toString())
-                .status(mediaFile.getStatus().toString())
-                .isPublic(mediaFile.getIsPublic())
-                .description(mediaFile.getDescription())
-                .uploadProgress(mediaFile.getUploadProgress())
-                .createdAt(mediaFile.getCreatedAt())
-                .updatedAt(mediaFile.getUpdatedAt())
+                .fileUuid(summary.fileUuid())
+                .filename(summary.filename())
+                .fileSize(summary.fileSize())
+                .fileType(summary.fileType().toString())
+                .status(summary.status().toString())
+                .isPublic(summary.isPublic())
+                .description(summary.description())
+                .uploadProgress(summary.uploadProgress())
+                .createdAt(summary.createdAt())
+                .updatedAt(summary.updatedAt())
                 .build();
     }
 
+    /**
+     * 构建一页媒体信息并签名URL，一次查询取出整页的默认缩略图
+     */
+    private List<MediaInfoResponse> buildSignedResponses(List<MediaFileSummary> files) {
+        if (files.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, String> thumbnailPaths = new HashMap<>();
+        for (Object[] row : mediaThumbnailRepository.findDefaultThumbnailPaths(
+                files.stream().map(MediaFileSummary::id).collect(Collectors.toList()))) {
+            thumbnailPaths.putIfAbsent((Long) row[0], (String) row[1]);
+        }
+
+        // 已打包的文件播放VOD主播放列表，其余对象整页一次签名
+        Map<String, String> vodPlayUrls = new HashMap<>();
+        List<PresignedUrls.Target> targets = new ArrayList<>(files.size());
+        for (MediaFileSummary file : files) {
+            String vodPlayUrl = vodPlayUrl(file);
+            if (vodPlayUrl != null) {
+                vodPlayUrls.put(file.fileUuid(), vodPlayUrl);
+            }
+            String storedObject = isStored(file) ? file.filePath() : null;
+            targets.add(new PresignedUrls.Target(file.fileUuid(),
+                    previewObject(file, thumbnailPaths.get(file.id())),
+                    vodPlayUrl == null ? storedObject : null,
+                    storedObject));
+        }
+        Map<String, PresignedUrls> signedUrls = storageService.generatePresignedUrls(targets);
+
+        List<MediaInfoResponse> responses = new ArrayList<>(files.size());
+        for (MediaFileSummary file : files) {
+            MediaInfoResponse response = buildMediaInfoResponse(file);
+            PresignedUrls urls = signedUrls.get(file.fileUuid());
+            if (urls != null) {
+                response.setPreviewUrl(urls.getPreviewUrl());
+                response.setPlayUrl(urls.getPlayUrl());
+                response.setDownloadUrl(urls.getDownloadUrl());
+            }
+            if (vodPlayUrls.containsKey(file.fileUuid())) {
+                response.setPlayUrl(vodPlayUrls.get(file.fileUuid()));
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    /**
+     * 预览对象：默认缩略图，图片文件没有缩略图时使用原图；都不存在时返回null
+     */
+    private static String previewObject(MediaFileSummary file, String thumbnailPath) {
+        if (thumbnailPath != null) {
+            return thumbnailPath;
+        }
+        return file.fileType() == MediaFile.FileType.IMAGE && isStored(file) ? file.filePath() : null;
+    }
+
+    /**
+     * 预览URL：签名预览对象，对象不存在时返回null
+     */
+    private String previewUrl(MediaFileSummary file, String thumbnailPath) {
+        String previewObject = previewObject(file, thumbnailPath);
+        return previewObject != null ? storageService.generatePreviewUrl(previewObject) : null;
+    }
+
+    /**
+     * 已打包为HLS/DASH的文件返回主播放列表URL，未打包时返回null
+     */
+    private String vodPlayUrl(MediaFileSummary file) {
+        return file.vodManifestPath() != null
+                ? vodService.getMasterPlaylistUrl(file.fileUuid(), file.vodManifestPath())
+                : null;
+    }
+
+    /**
+     * 播放URL：已打包为HLS/DASH的文件返回主播放列表，否则为原始对象；对象尚未生成时返回null
+     */
+    private String playUrl(MediaFileSummary file) {
+        String vodPlayUrl = vodPlayUrl(file);
+        if (vodPlayUrl != null) {
+            return vodPlayUrl;
+        }
+        return isStored(file) ? storageService.generatePlayUrl(file.filePath()) : null;
+    }
+
+    /**
+     * 下载URL：原始对象，对象尚未生成时返回null
+     */
+    private String downloadUrl(MediaFileSummary file) {
+        return isStored(file) ? storageService.generateDownloadUrl(file.filePath()) : null;
+    }
+
+    /**
+     * 原始对象是否已写入存储（上传中、失败、已删除的文件没有可访问的对象）
+     */
+    private static boolean isStored(MediaFileSummary file) {
+        return file.filePath() != null
+                && (file.status() == MediaFile.MediaStatus.UPLOADED
+                || file.status() == MediaFile.MediaStatus.PROCESSING
+                || file.status() == MediaFile.MediaStatus.PROCESSED);
+    }
+
     @Override
     public boolean healthCheck() {
         try {
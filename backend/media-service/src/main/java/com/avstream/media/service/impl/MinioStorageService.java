@@ -1,10 +1,18 @@
 package com.avstream.media.service.impl;
 
+import com.avstream.media.service.PresignedUrls;
 import com.avstream.media.service.StorageHealthInfo;
 import com.avstream.media.service.StorageService;
+import com.avstream.media.service.StorageUsage;
+import com.avstream.media.service.StorageUsageService;
+import com.avstream.media.service.StoredObjectInfo;
+import com.avstream.media.util.SizeLimitedInputStream;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +23,21 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,8 +50,29 @@ public class MinioStorageService implements StorageService {
 
     private static final Logger log = LoggerFactory.getLogger(MinioStorageService.class);
 
+    /** S3分段上传最大分段数 */
+    private static final int MAX_MULTIPART_PARTS = 10000;
+
+    /** ComposeObject单次最多支持的源对象数量（S3分段上传上限） */
+    private static final int MAX_COMPOSE_SOURCES = MAX_MULTIPART_PARTS;
+
+    /** 分片对象前缀 */
+    private static final String CHUNK_PREFIX = "chunks";
+
+    /** 批量删除单次请求最多对象数（S3 DeleteObjects上限） */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    /** 下载传输缓冲区大小 */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /** 按线程复用的传输缓冲区，避免每次下载分配新数组 */
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
+
     private final MinioClient minioClient;
 
+    private final StorageUsageService storageUsageService;
+
     @Value("${minio.bucket-name:avstream-media}")
     private String bucketName;
 
@@ -43,13 +85,38 @@ public class MinioStorageService implements StorageService {
     @Value("${minio.download-url-expiry:1800}")
     private int downloadUrlExpiry;
 
+    /** 预签名URL缓存最大条目数 */
+    @Value("${minio.presigned-cache-max-entries:50000}")
+    private int presignedCacheMaxEntries;
+
+    /** 预签名URL缓存，键为 对象|方法|有效期 */
+    private final ConcurrentHashMap<String, SignedUrl> signedUrlCache = new ConcurrentHashMap<>();
+
+    /** 流式上传分段大小（字节），最小5MB */
+    @Value("${minio.stream-part-size:10485760}")
+    private long streamPartSize;
+
+    /** 用量对账时每页列举的对象数 */
+    @Value("${minio.usage-reconcile-page-size:1000}")
+    private int reconcilePageSize;
+
+    /** 用量对账时两页之间的间隔（毫秒），降低对MinIO的压力 */
+    @Value("${minio.usage-reconcile-page-pause-ms:50}")
+    private long reconcilePagePauseMillis;
+
+    /** 孤儿分片保留时间（分钟）：最后一个分片写入后超过该时间仍未合并的分片视为已放弃，应大于上传会话有效期 */
+    @Value("${minio.orphan-chunk-ttl-minutes:180}")
+    private long orphanChunkTtlMinutes;
+
     public MinioStorageService(@Value("${minio.endpoint}") String endpoint,
                               @Value("${minio.access-key}") String accessKey,
-                              @Value("${minio.secret-key}") String secretKey) {
+                              @Value("${minio.secret-key}") String secretKey,
+                              StorageUsageService storageUsageService) {
         this.minioClient = MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
                 .build();
+        this.storageUsageService = storageUsageService;
         
         // 初始化存储桶
         initializeBucket();
@@ -78,33 +145,118 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public String uploadFile(MultipartFile file, String fileUuid) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return uploadStream(inputStream, file.getSize(), fileUuid,
+                    file.getOriginalFilename(), file.getContentType()).getObjectName();
+        }
+    }
+
+    @Override
+    public StoredObjectInfo uploadStream(InputStream inputStream, long size, long maxSize, String fileUuid,
+                                         String originalFilename, String contentType) throws IOException {
+        if (size >= 0 && maxSize >= 0 && size > maxSize) {
+            throw new SizeLimitedInputStream.LimitExceededException(maxSize);
+        }
+        String objectName = generateObjectName(fileUuid, originalFilename != null ? originalFilename : "");
         try {
-            String objectName = generateObjectName(fileUuid, file.getOriginalFilename());
-            
-            try (InputStream inputStream = file.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // 长度未知时按上限计数，超出即中止，不会把超出配额的内容写完再拒绝
+            InputStream source = size < 0 && maxSize >= 0 ? new SizeLimitedInputStream(inputStream, maxSize) : inputStream;
+            DigestInputStream digestStream = new DigestInputStream(source, digest);
+
+            // 按固定分段大小进行分段上传，内存占用不超过一个分段
+            ObjectWriteResponse response = minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .stream(digestStream, size, resolvePartSize(size))
+                    .contentType(contentType != null ? contentType : "application/octet-stream")
+                    .build());
+
+            long objectSize = size;
+            if (objectSize < 0) {
+                objectSize = minioClient.statObject(StatObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .build()).size();
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            storageUsageService.recordObjectAdded(bucketName, objectName, objectSize);
+
+            log.info("文件流式上传成功: {} -> {}, 大小: {}", originalFilename, objectName, objectSize);
+            return StoredObjectInfo.of(objectName, objectSize, response.etag(), sha256);
+
+        } catch (Exception e) {
+            SizeLimitedInputStream.LimitExceededException exceeded = findCause(e,
+                    SizeLimitedInputStream.LimitExceededException.class);
+            if (exceeded != null) {
+                // 分段上传已中止；已完成的单段对象（内容不超过一个分段）需要删除
+                log.warn("上传内容超过允许的大小，已中止: {}, 上限: {}", originalFilename, maxSize);
+                removeQuietly(objectName);
+                throw exceeded;
+            }
+            log.error("文件上传失败: {}", originalFilename, e);
+            throw new IOException("文件上传失败", e);
+        }
+    }
+
+    private static <T extends Throwable> T findCause(Throwable e, Class<T> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    private void removeQuietly(String objectName) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .build());
+        } catch (Exception e) {
+            log.warn("删除中止上传的对象失败: {}", objectName, e);
+        }
+    }
+
+    @Override
+    public void uploadObject(String objectName, Path file, String contentType) throws IOException {
+        try {
+            long size = Files.size(file);
+            try (InputStream inputStream = Files.newInputStream(file)) {
                 minioClient.putObject(PutObjectArgs.builder()
                         .bucket(bucketName)
                         .object(objectName)
-                        .stream(inputStream, file.getSize(), -1)
-                        .contentType(file.getContentType())
+                        .stream(inputStream, size, resolvePartSize(size))
+                        .contentType(contentType != null ? contentType : "application/octet-stream")
                         .build());
             }
-            
-            log.info("文件上传成功: {} -> {}", file.getOriginalFilename(), objectName);
-            return objectName;
-            
+            storageUsageService.recordObjectAdded(bucketName, objectName, size);
+            log.debug("本地文件上传成功: {} -> {}, 大小: {}", file, objectName, size);
         } catch (Exception e) {
-            log.error("文件上传失败: {}", file.getOriginalFilename(), e);
+            log.error("本地文件上传失败: {}", objectName, e);
             throw new IOException("文件上传失败", e);
         }
     }
 
+    /**
+     * 计算分段大小：不小于配置值，且保证分段数不超过上限
+     */
+    private long resolvePartSize(long size) {
+        if (size < 0) {
+            return streamPartSize;
+        }
+        long minPartSize = (size + MAX_MULTIPART_PARTS - 1) / MAX_MULTIPART_PARTS;
+        return Math.max(streamPartSize, minPartSize);
+    }
+
     @Override
-    public void uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex) throws IOException {
+    public String uploadChunk(MultipartFile chunk, String fileUuid, Integer chunkIndex) throws IOException {
         try {
             String objectName = generateChunkObjectName(fileUuid, chunkIndex);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
             
-            try (InputStream inputStream = chunk.getInputStream()) {
+            try (InputStream inputStream = new DigestInputStream(chunk.getInputStream(), digest)) {
                 minioClient.putObject(PutObjectArgs.builder()
                         .bucket(bucketName)
                         .object(objectName)
@@ -112,8 +264,10 @@ public class MinioStorageService implements StorageService {
                         .contentType("application/octet-stream")
                         .build());
             }
+            storageUsageService.recordObjectAdded(bucketName, objectName, chunk.getSize());
             
             log.debug("分片上传成功: {} -> {}", chunkIndex, objectName);
+            return HexFormat.of().formatHex(digest.digest());
             
         } catch (Exception e) {
             log.error("分片上传失败: {}", chunkIndex, e);
@@ -122,21 +276,138 @@ public class MinioStorageService implements StorageService {
     }
 
     @Override
-    public String mergeChunks(String fileUuid, Integer totalChunks) throws IOException {
+    public StoredObjectInfo mergeChunks(String fileUuid, Integer totalChunks, String originalFilename) throws IOException {
+        if (totalChunks == null || totalChunks <= 0) {
+            throw new IOException("分片数量无效: " + totalChunks);
+        }
+        if (totalChunks > MAX_COMPOSE_SOURCES) {
+            throw new IOException("分片数量超出服务端合并上限: " + totalChunks + " > " + MAX_COMPOSE_SOURCES);
+        }
+
         try {
-            String finalObjectName = generateObjectName(fileUuid, "merged");
-            
-            // 这里需要实现分片合并逻辑
-            // 由于MinIO不支持直接合并，需要下载所有分片再上传
-            // 实际项目中可以考虑使用ComposeObject API（如果支持）
-            
-            log.info("分片合并完成: {} -> {}", fileUuid, finalObjectName);
-            return finalObjectName;
-            
+            String finalObjectName = generateObjectName(fileUuid, originalFilename != null ? originalFilename : "");
+
+            // 使用ComposeObject在MinIO服务端拼接分片，分片数据不经过本服务
+            List<ComposeSource> sources = new ArrayList<>(totalChunks);
+            for (int i = 0; i < totalChunks; i++) {
+                sources.add(ComposeSource.builder()
+                        .bucket(bucketName)
+                        .object(generateChunkObjectName(fileUuid, i))
+                        .build());
+            }
+
+            minioClient.composeObject(ComposeObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(finalObjectName)
+                    .sources(sources)
+                    .build());
+
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(finalObjectName)
+                    .build());
+
+            storageUsageService.recordObjectAdded(bucketName, finalObjectName, stat.size());
+
+            log.info("分片合并完成: {} -> {}, 分片数: {}, 大小: {}", fileUuid, finalObjectName, totalChunks, stat.size());
+            return StoredObjectInfo.of(finalObjectName, stat.size(), stat.etag());
+
         } catch (Exception e) {
             log.error("分片合并失败: {}", fileUuid, e);
-            throw new IOException("分片合并失败", e);
+            throw new IOException("分片合并失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 批量删除对象（单次请求最多1000个对象，由客户端自动分批）
+     *
+     * @return 删除失败的对象名（无法确定对象名的失败记为null）
+     */
+    private List<String> removeObjects(List<DeleteObject> objects) {
+        if (objects.isEmpty()) {
+            return List.of();
+        }
+
+        // removeObjects为惰性执行，必须遍历结果才会真正发送删除请求
+        Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucketName)
+                .objects(objects)
+                .build());
+        List<String> failed = new ArrayList<>();
+        for (Result<DeleteError> result : results) {
+            try {
+                DeleteError error = result.get();
+                log.warn("对象删除失败: {}, {}", error.objectName(), error.message());
+                failed.add(error.objectName());
+            } catch (Exception e) {
+                log.warn("对象删除失败", e);
+                failed.add(null);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 按前缀列举实际存在的分片并批量删除：每1000个分片一次列举请求加一次删除请求
+     *
+     * @return 删除成功的分片数
+     */
+    private int removeChunks(String fileUuid) throws Exception {
+        String prefix = CHUNK_PREFIX + "/" + fileUuid + "/";
+        Map<String, Long> batch = new LinkedHashMap<>();
+        int removed = 0;
+        for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .recursive(true)
+                .build())) {
+            Item item = result.get();
+            batch.put(item.objectName(), item.size());
+            if (batch.size() >= DELETE_BATCH_SIZE) {
+                removed += removeChunkBatch(batch);
+            }
         }
+        removed += removeChunkBatch(batch);
+        return removed;
+    }
+
+    /**
+     * 批量删除一组分片对象并扣减分片用量
+     *
+     * @param objects 对象名到对象大小的映射
+     * @return 删除成功的对象数
+     */
+    private int removeChunkBatch(Map<String, Long> objects) {
+        return removeObjectBatch(objects, CHUNK_PREFIX);
+    }
+
+    /**
+     * 批量删除同一用量前缀下的一组对象并扣减用量
+     *
+     * @param objects     对象名到对象大小的映射
+     * @param usagePrefix 用量统计前缀
+     * @return 删除成功的对象数
+     */
+    private int removeObjectBatch(Map<String, Long> objects, String usagePrefix) {
+        if (objects.isEmpty()) {
+            return 0;
+        }
+
+        List<DeleteObject> deleteObjects = new ArrayList<>(objects.size());
+        long bytes = 0;
+        for (Map.Entry<String, Long> entry : objects.entrySet()) {
+            deleteObjects.add(new DeleteObject(entry.getKey()));
+            bytes += entry.getValue();
+        }
+
+        List<String> failed = removeObjects(deleteObjects);
+        for (String objectName : failed) {
+            bytes -= objects.getOrDefault(objectName, 0L);
+        }
+        int removed = objects.size() - failed.size();
+        storageUsageService.recordObjectsRemoved(bucketName, usagePrefix, bytes, removed);
+        objects.clear();
+        return removed;
     }
 
     @Override
@@ -156,13 +427,77 @@ public class MinioStorageService implements StorageService {
         }
     }
 
+    @Override
+    public StoredObjectInfo statObject(String filePath) throws IOException {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(filePath)
+                    .build());
+            StoredObjectInfo info = StoredObjectInfo.of(filePath, stat.size(), stat.etag());
+            info.setLastModified(stat.lastModified().toInstant().toEpochMilli());
+            info.setContentType(stat.contentType());
+            return info;
+        } catch (Exception e) {
+            log.error("获取文件信息失败: {}", filePath, e);
+            throw new IOException("获取文件信息失败", e);
+        }
+    }
+
+    @Override
+    public long transferTo(String filePath, long offset, long length, OutputStream outputStream) throws IOException {
+        InputStream stream;
+        try {
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(filePath)
+                    .offset(offset);
+            if (length >= 0) {
+                args.length(length);
+            }
+            stream = minioClient.getObject(args.build());
+        } catch (Exception e) {
+            log.error("文件下载失败: {}", filePath, e);
+            throw new IOException("文件下载失败", e);
+        }
+
+        // 写出阶段的IOException（如客户端断开）原样抛出，由调用方处理
+        byte[] buffer = TRANSFER_BUFFER.get();
+        long transferred = 0;
+        try (stream) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+                transferred += read;
+            }
+        }
+        return transferred;
+    }
+
     @Override
     public void deleteFile(String filePath) throws IOException {
         try {
+            // 删除前获取对象大小用于扣减用量计数，对象不存在时只执行删除
+            long size = -1;
+            try {
+                size = minioClient.statObject(StatObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(filePath)
+                        .build()).size();
+            } catch (ErrorResponseException e) {
+                if (!"NoSuchKey".equals(e.errorResponse().code())) {
+                    throw e;
+                }
+                log.debug("待删除文件不存在: {}", filePath);
+            }
+
             minioClient.removeObject(RemoveObjectArgs.builder()
                     .bucket(bucketName)
                     .object(filePath)
                     .build());
+            if (size >= 0) {
+                storageUsageService.recordObjectRemoved(bucketName, filePath, size);
+            }
             
             log.info("文件删除成功: {}", filePath);
             
@@ -173,23 +508,53 @@ public class MinioStorageService implements StorageService {
     }
 
     @Override
-    public void cancelUpload(String fileUuid) throws IOException {
+    public int deleteByPrefix(String prefix) throws IOException {
         try {
-            // 删除所有相关的分片文件
-            for (int i = 0; i < 1000; i++) { // 假设最多1000个分片
-                String chunkObjectName = generateChunkObjectName(fileUuid, i);
-                try {
-                    minioClient.removeObject(RemoveObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(chunkObjectName)
-                            .build());
-                } catch (Exception e) {
-                    // 分片可能不存在，继续处理下一个
-                    break;
+            // 每1000个对象一次列举请求加一次删除请求
+            String usagePrefix = StorageUsageService.prefixOf(prefix);
+            Map<String, Long> batch = new LinkedHashMap<>();
+            int removed = 0;
+            for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .recursive(true)
+                    .build())) {
+                Item item = result.get();
+                batch.put(item.objectName(), item.size());
+                if (batch.size() >= DELETE_BATCH_SIZE) {
+                    removed += removeObjectBatch(batch, usagePrefix);
                 }
             }
-            
-            log.info("取消上传成功: {}", fileUuid);
+            removed += removeObjectBatch(batch, usagePrefix);
+
+            log.info("按前缀删除对象: {}, 删除数: {}", prefix, removed);
+            return removed;
+        } catch (Exception e) {
+            log.error("按前缀删除对象失败: {}", prefix, e);
+            throw new IOException("按前缀删除对象失败", e);
+        }
+    }
+
+    /**
+     * 合并后保留分片，直到合并结果提交：提交失败时客户端可以用原分片重试合并
+     */
+    @Override
+    public void deleteChunks(String fileUuid) throws IOException {
+        try {
+            // 只扣减实际删除成功的分片用量，删除失败的分片由孤立分片清理任务处理
+            int removed = removeChunks(fileUuid);
+            log.info("已合并分片清理完成: {}, 删除分片: {}", fileUuid, removed);
+        } catch (Exception e) {
+            log.error("已合并分片清理失败: {}", fileUuid, e);
+            throw new IOException("已合并分片清理失败", e);
+        }
+    }
+
+    @Override
+    public void cancelUpload(String fileUuid) throws IOException {
+        try {
+            int removed = removeChunks(fileUuid);
+            log.info("取消上传成功: {}, 删除分片: {}", fileUuid, removed);
             
         } catch (Exception e) {
             log.error("取消上传失败: {}", fileUuid, e);
@@ -198,53 +563,114 @@ public class MinioStorageService implements StorageService {
     }
 
     @Override
-    public String generatePreviewUrl(String fileUuid) {
+    public String generatePreviewUrl(String objectName) {
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
-                    .method(Method.GET)
-                    .bucket(bucketName)
-                    .object(fileUuid + "/preview")
-                    .expiry(previewUrlExpiry, TimeUnit.SECONDS)
-                    .build());
-            
+            return presign(objectName, previewUrlExpiry, System.currentTimeMillis());
         } catch (Exception e) {
-            log.error("生成预览URL失败: {}", fileUuid, e);
+            log.error("生成预览URL失败: {}", objectName, e);
             return null;
         }
     }
 
     @Override
-    public String generatePlayUrl(String fileUuid) {
+    public String generatePlayUrl(String objectName) {
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
-                    .method(Method.GET)
-                    .bucket(bucketName)
-                    .object(fileUuid + "/play")
-                    .expiry(playUrlExpiry, TimeUnit.SECONDS)
-                    .build());
-            
+            return presign(objectName, playUrlExpiry, System.currentTimeMillis());
         } catch (Exception e) {
-            log.error("生成播放URL失败: {}", fileUuid, e);
+            log.error("生成播放URL失败: {}", objectName, e);
             return null;
         }
     }
 
     @Override
-    public String generateDownloadUrl(String fileUuid) {
+    public String generateDownloadUrl(String objectName) {
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
-                    .method(Method.GET)
-                    .bucket(bucketName)
-                    .object(fileUuid + "/download")
-                    .expiry(downloadUrlExpiry, TimeUnit.SECONDS)
-                    .build());
-            
+            return presign(objectName, downloadUrlExpiry, System.currentTimeMillis());
         } catch (Exception e) {
-            log.error("生成下载URL失败: {}", fileUuid, e);
+            log.error("生成下载URL失败: {}", objectName, e);
             return null;
         }
     }
 
+    @Override
+    public String generateObjectUrl(String objectName, int expirySeconds) {
+        try {
+            return presign(objectName, expirySeconds, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("生成对象URL失败: {}", objectName, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Map<String, PresignedUrls> generatePresignedUrls(Collection<PresignedUrls.Target> targets) {
+        long now = System.currentTimeMillis();
+        Map<String, PresignedUrls> result = new LinkedHashMap<>();
+        for (PresignedUrls.Target target : targets) {
+            PresignedUrls urls = new PresignedUrls();
+            try {
+                if (target.previewObject() != null) {
+                    urls.setPreviewUrl(presign(target.previewObject(), previewUrlExpiry, now));
+                }
+                if (target.playObject() != null) {
+                    urls.setPlayUrl(presign(target.playObject(), playUrlExpiry, now));
+                }
+                if (target.downloadObject() != null) {
+                    urls.setDownloadUrl(presign(target.downloadObject(), downloadUrlExpiry, now));
+                }
+            } catch (Exception e) {
+                log.error("批量生成URL失败: {}", target.fileUuid(), e);
+            }
+            result.put(target.fileUuid(), urls);
+        }
+        return result;
+    }
+
+    /**
+     * 生成GET预签名URL，优先复用缓存中剩余有效期足够的URL
+     *
+     * 剩余有效期不足一半时才重新签名，保证返回的URL至少还有一半有效期；
+     * 同一对象在复用期内返回相同URL，也便于浏览器和CDN缓存。
+     */
+    private String presign(String objectName, int expirySeconds, long now) throws Exception {
+        String cacheKey = objectName + "|GET|" + expirySeconds;
+        SignedUrl cached = signedUrlCache.get(cacheKey);
+        long expiryMillis = expirySeconds * 1000L;
+        if (cached != null && cached.expiresAt - now > expiryMillis / 2) {
+            return cached.url;
+        }
+
+        String url = minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(bucketName)
+                .object(objectName)
+                .expiry(expirySeconds, TimeUnit.SECONDS)
+                .build());
+
+        if (signedUrlCache.size() >= presignedCacheMaxEntries) {
+            signedUrlCache.values().removeIf(entry -> entry.expiresAt - now <= 0);
+            if (signedUrlCache.size() >= presignedCacheMaxEntries) {
+                signedUrlCache.clear();
+            }
+        }
+        signedUrlCache.put(cacheKey, new SignedUrl(url, now + expiryMillis));
+        return url;
+    }
+
+    /**
+     * 已签名URL缓存条目
+     */
+    private static final class SignedUrl {
+
+        private final String url;
+        private final long expiresAt;
+
+        private SignedUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     @Override
     public boolean fileExists(String filePath) {
         try {
@@ -299,7 +725,7 @@ public class MinioStorageService implements StorageService {
      * 生成分片对象名称
      */
     private String generateChunkObjectName(String fileUuid, Integer chunkIndex) {
-        return "chunks/" + fileUuid + "/" + String.format("%04d", chunkIndex);
+        return CHUNK_PREFIX + "/" + fileUuid + "/" + String.format("%04d", chunkIndex);
     }
 
     @Override
@@ -344,21 +770,11 @@ public class MinioStorageService implements StorageService {
             
             // 获取存储桶统计信息
             long totalCapacity = 10737418240L; // 10GB 默认值，实际项目中需要从配置获取
-            long usedCapacity = 0;
-            long fileCount = 0;
-            
-            // 遍历存储桶中的对象统计使用量
-            Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-                    .bucket(bucketName)
-                    .build());
-            
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                usedCapacity += item.size();
-                fileCount++;
-            }
-            
-            return StorageHealthInfo.healthy(totalCapacity, usedCapacity, fileCount, 1);
+
+            // 读取增量维护的用量计数，不再遍历存储桶
+            StorageUsage usage = storageUsageService.getBucketUsage(bucketName);
+
+            return StorageHealthInfo.healthy(totalCapacity, usage.getBytes(), usage.getObjects(), 1);
             
         } catch (Exception e) {
             log.error("获取存储健康信息失败: {}", bucketName, e);
@@ -366,10 +782,107 @@ public class MinioStorageService implements StorageService {
         }
     }
 
+    @Override
+    public void reconcileStorageUsage() throws IOException {
+        long startTime = System.currentTimeMillis();
+        Map<String, Long> snapshot = storageUsageService.snapshotBucket(bucketName);
+        Map<String, StorageUsage> scanned = new HashMap<>();
+
+        try {
+            // 按页遍历存储桶，每页之间暂停，避免长时间占满MinIO的列举能力
+            String startAfter = null;
+            long pages = 0;
+            while (true) {
+                ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .recursive(true)
+                        .maxKeys(reconcilePageSize);
+                if (startAfter != null) {
+                    args.startAfter(startAfter);
+                }
+
+                int count = 0;
+                for (Result<Item> result : minioClient.listObjects(args.build())) {
+                    Item item = result.get();
+                    startAfter = item.objectName();
+                    if (!item.isDir()) {
+                        StorageUsage usage = scanned.computeIfAbsent(
+                                StorageUsageService.prefixOf(item.objectName()), prefix -> StorageUsage.of(0, 0));
+                        usage.setBytes(usage.getBytes() + item.size());
+                        usage.setObjects(usage.getObjects() + 1);
+                    }
+                    if (++count >= reconcilePageSize) {
+                        break;
+                    }
+                }
+                pages++;
+
+                if (count < reconcilePageSize) {
+                    break;
+                }
+                if (reconcilePagePauseMillis > 0) {
+                    Thread.sleep(reconcilePagePauseMillis);
+                }
+            }
+
+            storageUsageService.reconcileBucket(bucketName, snapshot, scanned);
+            log.info("存储桶遍历完成: {}, 页数: {}, 耗时: {}ms",
+                    bucketName, pages, System.currentTimeMillis() - startTime);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("存储用量对账被中断", e);
+        } catch (Exception e) {
+            log.error("存储用量对账失败: {}", bucketName, e);
+            throw new IOException("存储用量对账失败", e);
+        }
+    }
+
     @Override
     public void cleanupExpiredFiles() {
-        // 清理过期的存储文件（例如临时文件、已删除文件等）
-        // 实际项目中需要根据业务需求实现
+        // 清理孤儿分片：上传会话已过期、再也不会被合并的分片
         log.info("执行存储文件清理");
+
+        long threshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(orphanChunkTtlMinutes);
+        String chunkRoot = CHUNK_PREFIX + "/";
+        try {
+            // 对象按名称有序列举，同一上传的分片连续出现，逐组判断最后写入时间
+            String currentUuid = null;
+            long latestModified = 0;
+            Map<String, Long> group = new LinkedHashMap<>();
+            int sessions = 0;
+            int removed = 0;
+            for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucketName)
+                    .prefix(chunkRoot)
+                    .recursive(true)
+                    .build())) {
+                Item item = result.get();
+                String objectName = item.objectName();
+                int end = objectName.indexOf('/', chunkRoot.length());
+                String uuid = end > 0 ? objectName.substring(chunkRoot.length(), end) : objectName;
+
+                if (!uuid.equals(currentUuid)) {
+                    if (!group.isEmpty() && latestModified < threshold) {
+                        removed += removeChunkBatch(group);
+                        sessions++;
+                    }
+                    group.clear();
+                    currentUuid = uuid;
+                    latestModified = 0;
+                }
+                group.put(objectName, item.size());
+                latestModified = Math.max(latestModified, item.lastModified().toInstant().toEpochMilli());
+            }
+            if (!group.isEmpty() && latestModified < threshold) {
+                removed += removeChunkBatch(group);
+                sessions++;
+            }
+
+            log.info("孤儿分片清理完成: 上传数: {}, 删除分片: {}", sessions, removed);
+
+        } catch (Exception e) {
+            log.error("孤儿分片清理失败: {}", bucketName, e);
+        }
     }
 }
\ No newline at end of file
@@ -4,64 +4,112 @@ import com.avstream.media.entity.MediaFile;
 import com.avstream.media.entity.MediaTranscode;
 import com.avstream.media.repository.MediaFileRepository;
 import com.avstream.media.repository.MediaTranscodeRepository;
+import com.avstream.media.service.DistributedLockService;
+import com.avstream.media.service.MediaFileCache;
+import com.avstream.media.service.StorageService;
+import com.avstream.media.service.StorageUsage;
+import com.avstream.media.service.StorageUsageService;
 import com.avstream.media.service.TranscodeService;
+import com.avstream.media.service.VodService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 定时任务类
  * 
+ * 转码工作节点（media.transcode.mode=worker）不运行这些维护任务，避免随工作节点数量重复执行；
+ * 其余副本各自触发，通过分布式锁保证同一时间只有一个节点执行。
+ * 删除数据的清理任务（临时文件、过期转码记录）可按部署环境单独关闭
+ * 
  * @author AV Stream Team
  */
 @Component
+@ConditionalOnExpression("'${media.transcode.mode:all}'.toLowerCase() != 'worker'")
 public class ScheduledTasks {
 
     private static final Logger log = LoggerFactory.getLogger(ScheduledTasks.class);
 
+    /** 周期性维护任务的锁有效期 */
+    private static final Duration MAINTENANCE_LOCK_TTL = Duration.ofMinutes(30);
+
+    /** 存储用量对账的锁有效期，大于遍历整个存储桶的耗时，避免两个节点同时叠加修正差量 */
+    private static final Duration RECONCILE_LOCK_TTL = Duration.ofHours(5);
+
     @Autowired
     private MediaFileRepository mediaFileRepository;
 
     @Autowired
     private MediaTranscodeRepository transcodeRepository;
 
+    @Autowired
+    private MediaFileCache mediaFileCache;
+
     @Autowired
     private TranscodeService transcodeService;
 
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private StorageUsageService storageUsageService;
+
+    @Autowired
+    private DistributedLockService lockService;
+
+    @Autowired
+    private VodService vodService;
+
+    @Value("${media.maintenance.temporary-file-cleanup-enabled:true}")
+    private boolean temporaryFileCleanupEnabled;
+
+    @Value("${media.maintenance.expired-transcode-cleanup-enabled:true}")
+    private boolean expiredTranscodeCleanupEnabled;
+
     /**
      * 清理临时文件（每小时执行一次）
      */
     @Scheduled(cron = "0 0 * * * ?")
     public void cleanupTemporaryFiles() {
-        log.info("开始清理临时文件");
+        if (!temporaryFileCleanupEnabled) {
+            return;
+        }
+        lockService.runExclusively("cleanup-temporary-files", MAINTENANCE_LOCK_TTL, () -> {
+            log.info("开始清理临时文件");
         
-        try {
-            // 清理24小时前创建的临时文件
-            LocalDateTime threshold = LocalDateTime.now().minusHours(24);
-            List<MediaFile> temporaryFiles = mediaFileRepository.findTemporaryFilesOlderThan(threshold);
-            
-            int deletedCount = 0;
-            for (MediaFile file : temporaryFiles) {
-                try {
-                    // 删除文件记录和存储文件
-                    // 实际项目中需要调用存储服务删除物理文件
-                    mediaFileRepository.delete(file);
-                    deletedCount++;
-                } catch (Exception e) {
-                    log.error("删除临时文件失败: {}", file.getFileUuid(), e);
+            try {
+                // 清理24小时前创建的临时文件
+                LocalDateTime threshold = LocalDateTime.now().minusHours(24);
+                List<MediaFile> temporaryFiles = mediaFileRepository.findTemporaryFilesOlderThan(threshold);
+            
+                int deletedCount = 0;
+                for (MediaFile file : temporaryFiles) {
+                    try {
+                        // 删除文件记录和存储文件
+                        // 实际项目中需要调用存储服务删除物理文件
+                        mediaFileRepository.delete(file);
+                        mediaFileCache.evict(file.getFileUuid());
+                        deletedCount++;
+                    } catch (Exception e) {
+                        log.error("删除临时文件失败: {}", file.getFileUuid(), e);
+                    }
                 }
-            }
             
-            log.info("临时文件清理完成，共删除 {} 个文件", deletedCount);
+                log.info("临时文件清理完成，共删除 {} 个文件", deletedCount);
             
-        } catch (Exception e) {
-            log.error("临时文件清理任务执行失败", e);
-        }
+            } catch (Exception e) {
+                log.error("临时文件清理任务执行失败", e);
+            }
+        });
     }
 
     /**
@@ -69,28 +117,30 @@ public class ScheduledTasks {
      */
     @Scheduled(cron = "0 */30 * * * ?")
     public void retryFailedTranscodeTasks() {
-        log.info("开始重试失败的转码任务");
+        lockService.runExclusively("retry-failed-transcodes", MAINTENANCE_LOCK_TTL, () -> {
+            log.info("开始重试失败的转码任务");
         
-        try {
-            // 查找2小时内失败的转码任务，且重试次数小于3次
-            LocalDateTime threshold = LocalDateTime.now().minusHours(2);
-            List<MediaTranscode> failedTasks = transcodeRepository.findFailedTasksForRetry(threshold, 3);
-            
-            int retriedCount = 0;
-            for (MediaTranscode task : failedTasks) {
-                try {
-                    transcodeService.retryTranscodeTask(task.getTranscodeUuid());
-                    retriedCount++;
-                } catch (Exception e) {
-                    log.error("重试转码任务失败: {}", task.getTranscodeUuid(), e);
+            try {
+                // 查找2小时内失败的转码任务，且重试次数小于3次
+                LocalDateTime threshold = LocalDateTime.now().minusHours(2);
+                List<MediaTranscode> failedTasks = transcodeRepository.findFailedTasksForRetry(threshold, 3);
+            
+                int retriedCount = 0;
+                for (MediaTranscode task : failedTasks) {
+                    try {
+                        transcodeService.retryTranscodeTask(task.getTranscodeUuid());
+                        retriedCount++;
+                    } catch (Exception e) {
+                        log.error("重试转码任务失败: {}", task.getTranscodeUuid(), e);
+                    }
                 }
-            }
             
-            log.info("转码任务重试完成，共重试 {} 个任务", retriedCount);
+                log.info("转码任务重试完成，共重试 {} 个任务", retriedCount);
             
-        } catch (Exception e) {
-            log.error("转码任务重试任务执行失败", e);
-        }
+            } catch (Exception e) {
+                log.error("转码任务重试任务执行失败", e);
+            }
+        });
     }
 
     /**
@@ -98,28 +148,33 @@ public class ScheduledTasks {
      */
     @Scheduled(cron = "0 0 2 * * ?")
     public void cleanupExpiredTranscodeTasks() {
-        log.info("开始清理过期的转码任务");
+        if (!expiredTranscodeCleanupEnabled) {
+            return;
+        }
+        lockService.runExclusively("cleanup-expired-transcodes", MAINTENANCE_LOCK_TTL, () -> {
+            log.info("开始清理过期的转码任务");
         
-        try {
-            // 清理30天前完成的转码任务
-            LocalDateTime threshold = LocalDateTime.now().minusDays(30);
-            List<MediaTranscode> expiredTasks = transcodeRepository.findExpiredTasks(threshold);
-            
-            int deletedCount = 0;
-            for (MediaTranscode task : expiredTasks) {
-                try {
-                    transcodeService.deleteTranscodeTask(task.getTranscodeUuid());
-                    deletedCount++;
-                } catch (Exception e) {
-                    log.error("删除过期转码任务失败: {}", task.getTranscodeUuid(), e);
+            try {
+                // 清理30天前完成的转码任务
+                LocalDateTime threshold = LocalDateTime.now().minusDays(30);
+                List<MediaTranscode> expiredTasks = transcodeRepository.findExpiredTasks(threshold);
+            
+                int deletedCount = 0;
+                for (MediaTranscode task : expiredTasks) {
+                    try {
+                        transcodeService.deleteTranscodeTask(task.getTranscodeUuid());
+                        deletedCount++;
+                    } catch (Exception e) {
+                        log.error("删除过期转码任务失败: {}", task.getTranscodeUuid(), e);
+                    }
                 }
-            }
             
-            log.info("过期转码任务清理完成，共删除 {} 个任务", deletedCount);
+                log.info("过期转码任务清理完成，共删除 {} 个任务", deletedCount);
             
-        } catch (Exception e) {
-            log.error("转码任务清理任务执行失败", e);
-        }
+            } catch (Exception e) {
+                log.error("转码任务清理任务执行失败", e);
+            }
+        });
     }
 
     /**
@@ -127,32 +182,92 @@ public class ScheduledTasks {
      */
     @Scheduled(cron = "0 0 * * * ?")
     public void calculateStorageUsage() {
-        log.info("开始统计存储使用情况");
+        lockService.runExclusively("calculate-storage-usage", MAINTENANCE_LOCK_TTL, () -> {
+            log.info("开始统计存储使用情况");
         
-        try {
-            // 统计总文件数量
-            long totalFiles = mediaFileRepository.count();
-            
-            // 统计总存储空间使用量
-            Long totalStorage = mediaFileRepository.calculateTotalStorageUsage();
-            
-            // 统计各类型文件数量
-            long imageCount = mediaFileRepository.countByFileType("IMAGE");
-            long videoCount = mediaFileRepository.countByFileType("VIDEO");
-            long audioCount = mediaFileRepository.countByFileType("AUDIO");
-            long otherCount = mediaFileRepository.countByFileType("OTHER");
-            
-            log.info("存储使用统计完成:");
-            log.info("总文件数: {}", totalFiles);
-            log.info("总存储空间: {} bytes", totalStorage);
-            log.info("图片文件: {}", imageCount);
-            log.info("视频文件: {}", videoCount);
-            log.info("音频文件: {}", audioCount);
-            log.info("其他文件: {}", otherCount);
-            
-        } catch (Exception e) {
-            log.error("存储使用统计任务执行失败", e);
-        }
+            try {
+                // 统计总文件数量
+                long totalFiles = mediaFileRepository.count();
+            
+                // 统计总存储空间使用量
+                Long totalStorage = mediaFileRepository.calculateTotalStorageUsage();
+            
+                // 统计各类型文件数量
+                long imageCount = mediaFileRepository.countByFileType("IMAGE");
+                long videoCount = mediaFileRepository.countByFileType("VIDEO");
+                long audioCount = mediaFileRepository.countByFileType("AUDIO");
+                long otherCount = mediaFileRepository.countByFileType("OTHER");
+            
+                log.info("存储使用统计完成:");
+                log.info("总文件数: {}", totalFiles);
+                log.info("总存储空间: {} bytes", totalStorage);
+                log.info("图片文件: {}", imageCount);
+                log.info("视频文件: {}", videoCount);
+                log.info("音频文件: {}", audioCount);
+                log.info("其他文件: {}", otherCount);
+            
+            } catch (Exception e) {
+                log.error("存储使用统计任务执行失败", e);
+            }
+        });
+    }
+
+    /**
+     * 清理孤儿分片（每小时执行一次）
+     *
+     * 删除上传会话过期后残留、不会再被合并的分片对象
+     */
+    @Scheduled(cron = "0 15 * * * ?")
+    public void cleanupOrphanChunks() {
+        // 多个副本同时遍历分片前缀会重复列举和删除，只由持有锁的节点执行
+        lockService.runExclusively("cleanup-orphan-chunks", MAINTENANCE_LOCK_TTL, () -> {
+            log.info("开始清理孤儿分片");
+
+            try {
+                storageService.cleanupExpiredFiles();
+            } catch (Exception e) {
+                log.error("孤儿分片清理任务执行失败", e);
+            }
+        });
+    }
+
+    /**
+     * 存储用量对账（启动1分钟后执行，之后默认每6小时执行一次）
+     *
+     * 后台分页遍历存储桶修正存储桶/前缀计数，按数据库统计修正用户计数
+     */
+    @Scheduled(initialDelayString = "${media.storage.usage.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${media.storage.usage.reconcile-interval-ms:21600000}")
+    public void reconcileStorageUsage() {
+        lockService.runExclusively("reconcile-storage-usage", RECONCILE_LOCK_TTL, () -> {
+            log.info("开始存储用量对账");
+
+            try {
+                storageService.reconcileStorageUsage();
+                // 先读取Redis快照再做数据库统计，与存储桶对账的顺序一致
+                Map<String, StorageUsage> userSnapshot = storageUsageService.snapshotUsers();
+                storageUsageService.reconcileUsers(userSnapshot, mediaFileRepository.sumStorageUsageGroupByUser());
+            } catch (Exception e) {
+                log.error("存储用量对账任务执行失败", e);
+            }
+        });
+    }
+
+    /**
+     * 清理重新打包后已过播放地址有效期的VOD旧版本目录（每10分钟执行一次）
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    public void cleanupRetiredVodVersions() {
+        lockService.runExclusively("cleanup-retired-vod-versions", MAINTENANCE_LOCK_TTL, () -> {
+            try {
+                int deleted = vodService.sweepRetiredVersions();
+                if (deleted > 0) {
+                    log.info("已清理VOD旧版本目录: {} 个", deleted);
+                }
+            } catch (Exception e) {
+                log.error("清理VOD旧版本目录任务执行失败", e);
+            }
+        });
     }
 
     /**
@@ -160,25 +275,27 @@ public class ScheduledTasks {
      */
     @Scheduled(cron = "0 */5 * * * ?")
     public void checkTranscodeTaskStatus() {
-        log.debug("开始检查转码任务状态");
+        lockService.runExclusively("check-transcode-status", MAINTENANCE_LOCK_TTL, () -> {
+            log.debug("开始检查转码任务状态");
         
-        try {
-            // 查找处理时间超过2小时的转码任务
-            LocalDateTime threshold = LocalDateTime.now().minusHours(2);
-            List<MediaTranscode> longRunningTasks = transcodeRepository.findLongRunningTasks(threshold);
-            
-            for (MediaTranscode task : longRunningTasks) {
-                log.warn("转码任务处理时间过长: {} (开始时间: {})", 
-                        task.getTranscodeUuid(), task.getCreatedAt());
+            try {
+                // 查找处理时间超过2小时的转码任务
+                LocalDateTime threshold = LocalDateTime.now().minusHours(2);
+                List<MediaTranscode> longRunningTasks = transcodeRepository.findLongRunningTasks(threshold);
+            
+                for (MediaTranscode task : longRunningTasks) {
+                    log.warn("转码任务处理时间过长: {} (开始时间: {})", 
+                            task.getTranscodeUuid(), task.getCreatedAt());
                 
-                // 可以发送告警通知或自动重启任务
-                // 实际项目中根据业务需求实现
-            }
+                    // 可以发送告警通知或自动重启任务
+                    // 实际项目中根据业务需求实现
+                }
             
-            log.debug("转码任务状态检查完成，发现 {} 个长时间运行的任务", longRunningTasks.size());
+                log.debug("转码任务状态检查完成，发现 {} 个长时间运行的任务", longRunningTasks.size());
             
-        } catch (Exception e) {
-            log.error("转码任务状态检查任务执行失败", e);
-        }
+            } catch (Exception e) {
+                log.error("转码任务状态检查任务执行失败", e);
+            }
+        });
     }
 }
\ No newline at end of file
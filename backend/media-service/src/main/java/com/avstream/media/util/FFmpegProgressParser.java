@@ -0,0 +1,160 @@
+package com.avstream.media.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FFmpeg进度输出解析器
+ *
+ * 解析 {@code ffmpeg -progress pipe:1 -nostats} 输出的 key=value 行，每遇到 {@code progress=continue|end}
+ * 回调一次。直接在复用的字节缓冲区上比较键、解析数值，不为每行创建String。
+ * 实例非线程安全，每个FFmpeg进程使用一个实例。
+ */
+public class FFmpegProgressParser {
+
+    /**
+     * 进度回调
+     */
+    public interface Listener {
+
+        /**
+         * @param outTimeUs 已输出的媒体时长（微秒），未知时为-1
+         * @param speed     相对实时的处理速度（如1.5表示1.5倍速），未知时为-1
+         * @param end       是否为最后一次进度输出
+         */
+        void onProgress(long outTimeUs, double speed, boolean end);
+    }
+
+    private static final byte[] OUT_TIME_US = ascii("out_time_us");
+    private static final byte[] OUT_TIME_MS = ascii("out_time_ms");
+    private static final byte[] SPEED = ascii("speed");
+    private static final byte[] PROGRESS = ascii("progress");
+    private static final byte[] END = ascii("end");
+
+    /** 单行最大长度，超长的行（正常输出中不存在）截断处理 */
+    private static final int MAX_LINE = 256;
+
+    private final byte[] readBuffer = new byte[4096];
+    private final byte[] line = new byte[MAX_LINE];
+    private int lineLength;
+
+    private long outTimeUs = -1;
+    private double speed = -1;
+
+    /**
+     * 读取输入流直到结束
+     */
+    public void parse(InputStream in, Listener listener) throws IOException {
+        int n;
+        while ((n = in.read(readBuffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                byte b = readBuffer[i];
+                if (b == '\n') {
+                    handleLine(listener);
+                    lineLength = 0;
+                } else if (b != '\r' && lineLength < MAX_LINE) {
+                    line[lineLength++] = b;
+                }
+            }
+        }
+        if (lineLength > 0) {
+            handleLine(listener);
+            lineLength = 0;
+        }
+    }
+
+    private void handleLine(Listener listener) {
+        int eq = indexOf(line, lineLength, (byte) '=');
+        if (eq <= 0) {
+            return;
+        }
+        int valueStart = eq + 1;
+        if (keyEquals(OUT_TIME_US, eq)) {
+            outTimeUs = parseLong(valueStart, lineLength);
+        } else if (keyEquals(OUT_TIME_MS, eq)) {
+            // 历史原因，out_time_ms 的单位同样是微秒；两者同时出现时取值相同
+            outTimeUs = parseLong(valueStart, lineLength);
+        } else if (keyEquals(SPEED, eq)) {
+            speed = parseDecimal(valueStart, lineLength);
+        } else if (keyEquals(PROGRESS, eq)) {
+            boolean end = lineLength - valueStart == END.length
+                    && regionEquals(END, valueStart);
+            listener.onProgress(outTimeUs, speed, end);
+        }
+    }
+
+    private boolean keyEquals(byte[] key, int keyLength) {
+        return keyLength == key.length && regionEquals(key, 0);
+    }
+
+    private boolean regionEquals(byte[] expected, int offset) {
+        for (int i = 0; i < expected.length; i++) {
+            if (line[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析非负整数，遇到非数字（如 N/A）返回-1
+     */
+    private long parseLong(int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 解析形如 "1.25x" 的小数，忽略结尾的x，无法解析时返回-1
+     */
+    private double parseDecimal(int from, int to) {
+        long integer = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean seenDigit = false;
+        boolean inFraction = false;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (inFraction) {
+                    fraction = fraction * 10 + (b - '0');
+                    scale *= 10;
+                } else {
+                    integer = integer * 10 + (b - '0');
+                }
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else if (b == 'x' && i == to - 1) {
+                break;
+            } else if (b != ' ') {
+                return -1;
+            }
+        }
+        return seenDigit ? integer + (double) fraction / scale : -1;
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte target) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,187 @@
+package com.avstream.media.util;
+
+import com.avstream.media.entity.MediaMetadata;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FFprobe元数据解析器
+ *
+ * 解析 {@code ffprobe -print_format json -show_streams -show_format} 的输出，边读边解析，
+ * 不构建完整的JSON树。每个流只保留标量字段和 tags/disposition 下一层的字段，其余嵌套内容
+ * （side_data_list 等）直接跳过。取第一个非封面的视频流和第一个音频流填充元数据。
+ * 实例无状态，可在线程间共享。
+ */
+public class FFprobeMetadataParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** 容器格式列宽度，ffprobe 的 format_name 可能是逗号分隔的别名列表 */
+    private static final int CONTAINER_FORMAT_MAX_LENGTH = 20;
+
+    /**
+     * 解析ffprobe输出，返回未关联媒体文件的元数据
+     */
+    public MediaMetadata parse(InputStream in) throws IOException {
+        MediaMetadata metadata = new MediaMetadata();
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("ffprobe输出不是JSON对象");
+            }
+            boolean hasVideo = false;
+            boolean hasAudio = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("streams".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, String> stream = readFlat(parser);
+                        String type = stream.get("codec_type");
+                        if (!hasVideo && "video".equals(type) && !"1".equals(stream.get("disposition.attached_pic"))) {
+                            applyVideoStream(metadata, stream);
+                            hasVideo = true;
+                        } else if (!hasAudio && "audio".equals(type)) {
+                            applyAudioStream(metadata, stream);
+                            hasAudio = true;
+                        }
+                    }
+                } else if ("format".equals(field) && token == JsonToken.START_OBJECT) {
+                    applyFormat(metadata, readFlat(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * 读取当前对象的字段，下一层对象的字段以 "父字段.子字段" 为键，更深的嵌套和数组跳过
+     */
+    private static Map<String, String> readFlat(JsonParser parser) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String child = parser.currentName();
+                    if (parser.nextToken().isScalarValue()) {
+                        values.put(field + "." + child, parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if (token.isScalarValue()) {
+                values.put(field, parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    private static void applyVideoStream(MediaMetadata metadata, Map<String, String> stream) {
+        metadata.setVideoCodec(stream.get("codec_name"));
+        metadata.setWidth(parseInteger(stream.get("width")));
+        metadata.setHeight(parseInteger(stream.get("height")));
+        metadata.setVideoBitrate(parseLong(stream.get("bit_rate")));
+        metadata.setPixelFormat(stream.get("pix_fmt"));
+        String aspectRatio = stream.get("display_aspect_ratio");
+        if (aspectRatio != null && !"0:1".equals(aspectRatio) && !"N/A".equals(aspectRatio)) {
+            metadata.setAspectRatio(aspectRatio);
+        }
+        // 可变帧率片源的 r_frame_rate 是时基而非实际帧率，优先使用平均帧率
+        BigDecimal frameRate = parseRational(stream.get("avg_frame_rate"));
+        metadata.setFrameRate(frameRate != null ? frameRate : parseRational(stream.get("r_frame_rate")));
+        if (metadata.getDuration() == null) {
+            metadata.setDuration(parseDecimal(stream.get("duration")));
+        }
+    }
+
+    private static void applyAudioStream(MediaMetadata metadata, Map<String, String> stream) {
+        metadata.setAudioCodec(stream.get("codec_name"));
+        metadata.setAudioBitrate(parseLong(stream.get("bit_rate")));
+        metadata.setSampleRate(parseInteger(stream.get("sample_rate")));
+        metadata.setChannels(parseInteger(stream.get("channels")));
+        Integer bitDepth = parseInteger(stream.get("bits_per_raw_sample"));
+        if (bitDepth == null || bitDepth == 0) {
+            bitDepth = parseInteger(stream.get("bits_per_sample"));
+        }
+        metadata.setBitDepth(bitDepth != null && bitDepth > 0 ? bitDepth : null);
+    }
+
+    private static void applyFormat(MediaMetadata metadata, Map<String, String> format) {
+        String formatName = format.get("format_name");
+        if (formatName != null && formatName.length() > CONTAINER_FORMAT_MAX_LENGTH) {
+            formatName = formatName.split(",")[0];
+        }
+        metadata.setContainerFormat(formatName);
+        BigDecimal duration = parseDecimal(format.get("duration"));
+        if (duration != null) {
+            metadata.setDuration(duration);
+        }
+        metadata.setFileSize(parseLong(format.get("size")));
+        metadata.setFileCreationTime(format.get("tags.creation_time"));
+        metadata.setEncoder(format.get("tags.encoder"));
+        // 部分容器（如裸流、部分MKV）不提供流级码率，用整体码率作为视频码率的近似值
+        if (metadata.getVideoBitrate() == null && metadata.getVideoCodec() != null) {
+            metadata.setVideoBitrate(parseLong(format.get("bit_rate")));
+        }
+    }
+
+    private static Integer parseInteger(String value) {
+        Long parsed = parseLong(value);
+        return parsed != null ? parsed.intValue() : null;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal parseDecimal(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析 "30000/1001" 形式的有理数，分母为0（未知）时返回null
+     */
+    private static BigDecimal parseRational(String value) {
+        if (value == null) {
+            return null;
+        }
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            return parseDecimal(value);
+        }
+        BigDecimal numerator = parseDecimal(value.substring(0, slash));
+        BigDecimal denominator = parseDecimal(value.substring(slash + 1));
+        if (numerator == null || denominator == null || denominator.signum() == 0 || numerator.signum() == 0) {
+            return null;
+        }
+        return numerator.divide(denominator, MathContext.DECIMAL64).setScale(2, RoundingMode.HALF_UP);
+    }
+}
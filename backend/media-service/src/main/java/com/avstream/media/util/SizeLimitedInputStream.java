@@ -0,0 +1,79 @@
+package com.avstream.media.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 限制读取字节数的输入流
+ *
+ * 读取的数据超过上限时抛出 {@link LimitExceededException}，上传方随之中止写入，
+ * 用于长度未知（分块传输）的上传在超出声明大小或剩余配额时尽早失败。
+ *
+ * @author AV Stream Team
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+
+    private long count;
+
+    public SizeLimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            advance(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        advance(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * 已读取的字节数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void advance(long bytes) throws LimitExceededException {
+        count += bytes;
+        if (count > limit) {
+            throw new LimitExceededException(limit);
+        }
+    }
+
+    /**
+     * 读取字节数超过上限
+     */
+    public static class LimitExceededException extends IOException {
+
+        public LimitExceededException(long limit) {
+            super("上传内容超过允许的大小: " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+-- 补齐由 ddl-auto 建表、以V1为基线的已有数据库与V1的差异；新建数据库已包含这些结构，本脚本不做任何修改。
+-- 版本号位于V1和V2之间：基线库在V2之后的迁移（索引等）引用这些列，必须先补齐
+-- （已执行到更高版本的新建库按 spring.flyway.out-of-order 补执行本脚本）。
+
+ALTER TABLE media_files ADD COLUMN IF NOT EXISTS checksum VARCHAR(128);
+ALTER TABLE media_files ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+ALTER TABLE media_files ADD COLUMN IF NOT EXISTS vod_manifest_path VARCHAR(500);
+
+CREATE TABLE IF NOT EXISTS media_objects (
+    id           BIGSERIAL    NOT NULL,
+    content_hash VARCHAR(64)  NOT NULL,
+    object_name  VARCHAR(500) NOT NULL,
+    size         BIGINT       NOT NULL,
+    ref_count    INTEGER      NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    updated_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_objects_content_hash UNIQUE (content_hash)
+);
+
+ALTER TABLE media_thumbnails ADD COLUMN IF NOT EXISTS thumbnail_uuid VARCHAR(36);
+ALTER TABLE media_thumbnails ADD COLUMN IF NOT EXISTS tile_interval FLOAT(53);
+ALTER TABLE media_thumbnails ADD COLUMN IF NOT EXISTS is_default BOOLEAN;
+ALTER TABLE media_thumbnails ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6);
+ALTER TABLE media_thumbnails ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_media_thumbnails_thumbnail_uuid ON media_thumbnails (thumbnail_uuid);
+
+-- 缩略图原为 @OneToOne，ddl-auto 在 media_file_id 上生成了名称不固定的唯一约束，
+-- 一个媒体文件写入多张缩略图（雪碧图、多帧缩略图）时会违反该约束。按列查找约束名后删除
+DO $$
+DECLARE
+    unique_name TEXT;
+BEGIN
+    FOR unique_name IN
+        SELECT c.conname
+        FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attname = 'media_file_id'
+        WHERE c.conrelid = 'media_thumbnails'::regclass
+          AND c.contype = 'u'
+          AND c.conkey = ARRAY[a.attnum]
+    LOOP
+        EXECUTE format('ALTER TABLE media_thumbnails DROP CONSTRAINT %I', unique_name);
+    END LOOP;
+END
+$$;
+
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS parent_id BIGINT;
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS segment_index INTEGER;
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS segment_count INTEGER;
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS complexity_kbps INTEGER;
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS encoding_ladder VARCHAR(500);
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS source_checksum VARCHAR(64);
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS output_checksum VARCHAR(64);
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS priority INTEGER DEFAULT 100 NOT NULL;
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(128);
+ALTER TABLE media_transcodes ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP(6);
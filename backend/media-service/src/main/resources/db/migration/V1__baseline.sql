@@ -0,0 +1,164 @@
+-- 新建数据库的完整表结构，包含引入Flyway前 Hibernate ddl-auto 建表之后新增的列和表。
+-- 已有数据库以此版本为基线（spring.flyway.baseline-on-migrate），不执行本脚本，
+-- 与本脚本的差异（缺少的列、表和多余的唯一约束）由 V1_1 补齐。
+
+CREATE TABLE media_files (
+    id                      BIGSERIAL     NOT NULL,
+    file_uuid               VARCHAR(36)   NOT NULL,
+    filename                VARCHAR(255)  NOT NULL,
+    original_filename       VARCHAR(255)  NOT NULL,
+    file_path               VARCHAR(500)  NOT NULL,
+    bucket_name             VARCHAR(100)  NOT NULL,
+    file_size               BIGINT        NOT NULL,
+    mime_type               VARCHAR(100)  NOT NULL,
+    format                  VARCHAR(10)   NOT NULL,
+    file_type               VARCHAR(20)   NOT NULL,
+    status                  VARCHAR(20)   NOT NULL,
+    user_id                 BIGINT        NOT NULL,
+    is_public               BOOLEAN       NOT NULL,
+    enabled                 BOOLEAN       NOT NULL,
+    description             VARCHAR(1000),
+    checksum                VARCHAR(128),
+    content_hash            VARCHAR(64),
+    total_chunks            INTEGER,
+    upload_progress         INTEGER,
+    vod_manifest_path       VARCHAR(500),
+    error_message           VARCHAR(1000),
+    upload_completed_at     TIMESTAMP(6),
+    processing_completed_at TIMESTAMP(6),
+    created_at              TIMESTAMP(6)  NOT NULL,
+    updated_at              TIMESTAMP(6)  NOT NULL,
+    deleted_at              TIMESTAMP(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_files_file_uuid UNIQUE (file_uuid)
+);
+
+CREATE TABLE media_metadata (
+    id                     BIGSERIAL     NOT NULL,
+    media_file_id          BIGINT        NOT NULL,
+    duration               NUMERIC(38, 2),
+    width                  INTEGER,
+    height                 INTEGER,
+    video_codec            VARCHAR(50),
+    audio_codec            VARCHAR(50),
+    video_bitrate          BIGINT,
+    audio_bitrate          BIGINT,
+    frame_rate             NUMERIC(38, 2),
+    sample_rate            INTEGER,
+    channels               INTEGER,
+    bit_depth              INTEGER,
+    aspect_ratio           VARCHAR(10),
+    pixel_format           VARCHAR(20),
+    container_format       VARCHAR(20),
+    file_size              BIGINT,
+    encoder                VARCHAR(100),
+    file_creation_time     VARCHAR(100),
+    file_modification_time VARCHAR(100),
+    metadata_extracted_at  VARCHAR(100),
+    metadata_version       VARCHAR(10),
+    crc_checksum           VARCHAR(32),
+    custom_metadata        TEXT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_metadata_media_file UNIQUE (media_file_id),
+    CONSTRAINT fk_media_metadata_media_file FOREIGN KEY (media_file_id) REFERENCES media_files (id)
+);
+
+CREATE TABLE media_objects (
+    id           BIGSERIAL    NOT NULL,
+    content_hash VARCHAR(64)  NOT NULL,
+    object_name  VARCHAR(500) NOT NULL,
+    size         BIGINT       NOT NULL,
+    ref_count    INTEGER      NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    updated_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_objects_content_hash UNIQUE (content_hash)
+);
+
+CREATE TABLE media_thumbnails (
+    id             BIGSERIAL    NOT NULL,
+    thumbnail_uuid VARCHAR(36),
+    media_file_id  BIGINT       NOT NULL,
+    thumbnail_type VARCHAR(20)  NOT NULL,
+    filename       VARCHAR(255) NOT NULL,
+    file_path      VARCHAR(500) NOT NULL,
+    format         VARCHAR(10)  NOT NULL,
+    width          INTEGER      NOT NULL,
+    height         INTEGER      NOT NULL,
+    file_size      BIGINT,
+    quality        INTEGER,
+    capture_time   FLOAT(53),
+    tile_interval  FLOAT(53),
+    is_default     BOOLEAN,
+    enabled        BOOLEAN      NOT NULL,
+    created_at     TIMESTAMP(6) NOT NULL,
+    updated_at     TIMESTAMP(6),
+    deleted_at     TIMESTAMP(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_thumbnails_thumbnail_uuid UNIQUE (thumbnail_uuid),
+    CONSTRAINT fk_media_thumbnails_media_file FOREIGN KEY (media_file_id) REFERENCES media_files (id)
+);
+
+CREATE TABLE media_transcodes (
+    id               BIGSERIAL     NOT NULL,
+    transcode_uuid   VARCHAR(36)   NOT NULL,
+    original_file_id BIGINT        NOT NULL,
+    file_uuid        VARCHAR(36)   NOT NULL,
+    user_id          BIGINT,
+    parent_id        BIGINT,
+    segment_index    INTEGER,
+    segment_count    INTEGER,
+    job_id           VARCHAR(100),
+    preset_name      VARCHAR(50)   NOT NULL,
+    filename         VARCHAR(255)  NOT NULL,
+    file_path        VARCHAR(500)  NOT NULL,
+    format           VARCHAR(10)   NOT NULL,
+    output_format    VARCHAR(10),
+    file_size        BIGINT,
+    resolution       VARCHAR(20),
+    width            INTEGER,
+    height           INTEGER,
+    video_codec      VARCHAR(50),
+    audio_codec      VARCHAR(50),
+    video_bitrate    BIGINT,
+    audio_bitrate    BIGINT,
+    frame_rate       NUMERIC(38, 2),
+    frame_rate_str   VARCHAR(10),
+    sample_rate      INTEGER,
+    channels         INTEGER,
+    complexity_kbps  INTEGER,
+    encoding_ladder  VARCHAR(500),
+    source_checksum  VARCHAR(64),
+    output_checksum  VARCHAR(64),
+    status           VARCHAR(20)   NOT NULL,
+    priority         INTEGER       DEFAULT 100 NOT NULL,
+    progress         INTEGER,
+    retry_count      INTEGER       NOT NULL,
+    processing_time  INTEGER,
+    failure_reason   VARCHAR(500),
+    lease_owner      VARCHAR(128),
+    lease_expires_at TIMESTAMP(6),
+    enabled          BOOLEAN       NOT NULL,
+    started_at       TIMESTAMP(6),
+    completed_at     TIMESTAMP(6),
+    created_at       TIMESTAMP(6)  NOT NULL,
+    updated_at       TIMESTAMP(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_media_transcodes_transcode_uuid UNIQUE (transcode_uuid),
+    CONSTRAINT fk_media_transcodes_original_file FOREIGN KEY (original_file_id) REFERENCES media_files (id)
+);
+
+CREATE TABLE monitor_metrics (
+    id           BIGSERIAL    NOT NULL,
+    service_name VARCHAR(50)  NOT NULL,
+    instance_id  VARCHAR(100),
+    metric_type  VARCHAR(50)  NOT NULL,
+    metric_name  VARCHAR(100) NOT NULL,
+    metric_value FLOAT(53)    NOT NULL,
+    metric_unit  VARCHAR(20),
+    labels       VARCHAR(500),
+    collect_time TIMESTAMP(6) NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    updated_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,6 @@
+-- ddl-auto 建表时为枚举列生成了CHECK约束，之后新增的枚举值（转码WAITING、缩略图SPRITE等）
+-- 不会同步到已有约束中，写入会失败。枚举取值由应用校验，这里删除这些约束。
+ALTER TABLE media_files DROP CONSTRAINT IF EXISTS media_files_file_type_check;
+ALTER TABLE media_files DROP CONSTRAINT IF EXISTS media_files_status_check;
+ALTER TABLE media_thumbnails DROP CONSTRAINT IF EXISTS media_thumbnails_thumbnail_type_check;
+ALTER TABLE media_transcodes DROP CONSTRAINT IF EXISTS media_transcodes_status_check;
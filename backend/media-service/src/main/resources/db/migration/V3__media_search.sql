@@ -0,0 +1,10 @@
+-- 媒体文件搜索：文件名/描述的全文检索列。GIN索引在 V6 中以 CONCURRENTLY 创建。
+-- 分词配置固定为 simple：文件名多为混合语言，不做词干化；查询端（MediaSearchService）使用相同配置。
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- 文件名权重高于描述，由数据库在写入时维护。
+-- 注意：添加 STORED 生成列会重写整张 media_files 表，期间持有 ACCESS EXCLUSIVE 锁、阻塞读写，
+-- 耗时随表大小增长；大表上应安排在维护窗口执行
+ALTER TABLE media_files ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(filename, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(description, '')), 'B')) STORED;
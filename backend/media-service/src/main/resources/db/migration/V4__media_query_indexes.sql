@@ -0,0 +1,49 @@
+-- 热点查询索引。使用 CONCURRENTLY 建索引，不阻塞线上读写（需 spring.flyway.mixed=true，
+-- 这些语句在事务外执行）。file_uuid、transcode_uuid 的唯一索引已由基线中的唯一约束提供。
+
+-- 用户文件列表/游标翻页：WHERE user_id = ? AND enabled ORDER BY created_at DESC, id DESC。
+-- INCLUDE file_size 使用户存储统计可以只扫描索引
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_user_created
+    ON media_files (user_id, enabled, created_at DESC, id DESC) INCLUDE (file_size);
+
+-- 按状态/类型筛选用户文件，只索引未删除的行
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_user_status_created
+    ON media_files (user_id, status, created_at DESC, id DESC) WHERE enabled = true;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_user_type_created
+    ON media_files (user_id, file_type, created_at DESC, id DESC) WHERE enabled = true;
+
+-- 全局按状态扫描（待处理、处理失败）
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_status
+    ON media_files (status) WHERE enabled = true;
+
+-- 清理卡住的上传：WHERE status = 'UPLOADING' AND updated_at < ?
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_stuck_uploads
+    ON media_files (updated_at) WHERE status = 'UPLOADING';
+
+-- 公开文件列表
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_public_created
+    ON media_files (created_at DESC, id DESC) WHERE is_public = true AND enabled = true;
+
+-- 转码结果复用按内容哈希查找
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_content_hash
+    ON media_files (content_hash) WHERE content_hash IS NOT NULL;
+
+-- 转码调度队列：WHERE status = 'PENDING' AND enabled ORDER BY priority DESC, created_at
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_queue
+    ON media_transcodes (priority DESC, created_at) WHERE status = 'PENDING' AND enabled = true;
+
+-- 租约过期回收
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_lease
+    ON media_transcodes (lease_expires_at) WHERE status = 'PROCESSING';
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_original_file
+    ON media_transcodes (original_file_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_file_uuid
+    ON media_transcodes (file_uuid);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_job
+    ON media_transcodes (job_id) WHERE job_id IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_transcodes_parent
+    ON media_transcodes (parent_id) WHERE parent_id IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_thumbnails_media_file
+    ON media_thumbnails (media_file_id);
@@ -0,0 +1,3 @@
+-- 转码记录主键改为序列池化分配（MediaTranscode allocationSize = 50），应用每次取号获得50个ID，
+-- 批量插入不再逐行取回自增主键。列默认值仍使用该序列，直接写SQL插入的行占用单个号段，不会冲突。
+ALTER SEQUENCE media_transcodes_id_seq INCREMENT BY 50;
@@ -0,0 +1,10 @@
+-- 媒体文件搜索索引（检索列见 V3）。使用 CONCURRENTLY 建索引，不阻塞线上读写（需 spring.flyway.mixed=true，
+-- 这些语句在事务外执行）。
+
+-- 全文检索：search_vector @@ query
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_search_vector
+    ON media_files USING GIN (search_vector);
+
+-- 文件名子串与拼写近似匹配：lower(filename) LIKE / % 运算符
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_media_files_filename_trgm
+    ON media_files USING GIN (lower(filename) gin_trgm_ops);
@@ -0,0 +1,215 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.StorageCacheProperties;
+import com.avstream.media.service.impl.CachingStorageService;
+import com.avstream.media.service.impl.MinioStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本地磁盘缓存存储服务测试类
+ *
+ * @author AV Stream Team
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CachingStorageServiceTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private MinioStorageService delegate;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @TempDir
+    Path cacheDir;
+
+    private StorageCacheProperties properties;
+
+    private CachingStorageService cachingStorageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new StorageCacheProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(cacheDir.toString());
+        properties.setAdmissionThreshold(1);
+        properties.setMaxSizeBytes(25);
+
+        cachingStorageService = new CachingStorageService(delegate, properties, metricsService, Runnable::run);
+        cachingStorageService.initialize();
+
+        when(delegate.statObject(anyString())).thenAnswer(invocation ->
+                StoredObjectInfo.of(invocation.getArgument(0), CONTENT.length, "etag"));
+        when(delegate.transferTo(anyString(), anyLong(), anyLong(), any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(3);
+            out.write(CONTENT);
+            return (long) CONTENT.length;
+        });
+    }
+
+    @Test
+    void testTransferTo_ServesRangeFromCache() throws Exception {
+        // 首次访问回源并写入缓存
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+
+        // 再次访问从缓存按范围读取
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = cachingStorageService.transferTo("a.mp4", 2, 3, out);
+
+        assertEquals(3, transferred);
+        assertEquals("234", out.toString(StandardCharsets.UTF_8));
+        verify(delegate, times(1)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(metricsService).recordCacheHit(3);
+    }
+
+    @Test
+    void testTransferTo_RangeMiss_FillsCacheInBackground() throws Exception {
+        // 范围请求未命中时回源输出请求的范围，整对象由后台任务写入缓存
+        cachingStorageService.transferTo("a.mp4", 4, 2, new ByteArrayOutputStream());
+        verify(delegate).transferTo(eq("a.mp4"), eq(4L), eq(2L), any(OutputStream.class));
+        verify(delegate).transferTo(eq("a.mp4"), eq(0L), eq(-1L), any(OutputStream.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cachingStorageService.transferTo("a.mp4", 0, -1, out);
+
+        assertEquals("0123456789", out.toString(StandardCharsets.UTF_8));
+        verify(delegate, times(2)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(metricsService).recordCacheHit(10);
+    }
+
+    @Test
+    void testTransferTo_ExplicitFullLength_ReadsObjectStorageOnce() throws Exception {
+        // 下载和播放接口传入对象大小作为长度，同样按整对象请求边输出边写入缓存
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cachingStorageService.transferTo("a.mp4", 0, CONTENT.length, out);
+
+        assertEquals("0123456789", out.toString(StandardCharsets.UTF_8));
+        verify(delegate, times(1)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(metricsService, times(1)).recordCacheMiss();
+
+        cachingStorageService.transferTo("a.mp4", 2, 3, new ByteArrayOutputStream());
+        verify(delegate, times(1)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(metricsService).recordCacheHit(3);
+    }
+
+    @Test
+    void testTransferTo_BelowAdmissionThreshold_PassesThrough() throws Exception {
+        properties.setAdmissionThreshold(3);
+
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+
+        verify(delegate, times(2)).transferTo(eq("a.mp4"), eq(0L), eq(-1L), any(OutputStream.class));
+        verify(delegate, never()).statObject("a.mp4");
+        verify(metricsService, times(2)).recordCacheMiss();
+    }
+
+    @Test
+    void testTransferTo_ConcurrentMisses_ReadObjectStorageOnce() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(delegate.transferTo(eq("hot.mp4"), anyLong(), anyLong(), any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(3);
+            // 先写出一半，其他请求跟随已写入的部分读取
+            out.write(CONTENT, 0, 5);
+            loadStarted.countDown();
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            out.write(CONTENT, 5, CONTENT.length - 5);
+            return (long) CONTENT.length;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                cachingStorageService.transferTo("hot.mp4", 0, -1, out);
+                return out.toString(StandardCharsets.UTF_8);
+            }));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 6; i++) {
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    cachingStorageService.transferTo("hot.mp4", 0, -1, out);
+                    return out.toString(StandardCharsets.UTF_8);
+                }));
+            }
+            Future<String> range = executor.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                cachingStorageService.transferTo("hot.mp4", 3, 4, out);
+                return out.toString(StandardCharsets.UTF_8);
+            });
+            Thread.sleep(100);
+            releaseLoad.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("0123456789", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals("3456", range.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 填充期间的未命中等待进行中的填充，对象存储只读取一次
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cachingStorageService.transferTo("hot.mp4", 0, -1, out);
+        assertEquals("0123456789", out.toString(StandardCharsets.UTF_8));
+        verify(delegate, times(1)).statObject("hot.mp4");
+        verify(delegate, times(1)).transferTo(eq("hot.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        // 跟随填充读取的请求计为命中，只有回源的那次计为未命中
+        verify(metricsService, times(1)).recordCacheMiss();
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() throws Exception {
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+        cachingStorageService.transferTo("b.mp4", 0, -1, new ByteArrayOutputStream());
+        // 访问a，使b成为最久未使用
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+        // 容量25字节，只能容纳两个对象，写入c时淘汰b
+        cachingStorageService.transferTo("c.mp4", 0, -1, new ByteArrayOutputStream());
+
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+        cachingStorageService.transferTo("b.mp4", 0, -1, new ByteArrayOutputStream());
+
+        verify(delegate, times(1)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(delegate, times(2)).transferTo(eq("b.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+        verify(metricsService, atLeastOnce()).recordCacheEviction();
+    }
+
+    @Test
+    void testDeleteFile_InvalidatesCache() throws Exception {
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+
+        cachingStorageService.deleteFile("a.mp4");
+        cachingStorageService.transferTo("a.mp4", 0, -1, new ByteArrayOutputStream());
+
+        verify(delegate).deleteFile("a.mp4");
+        verify(delegate, times(2)).transferTo(eq("a.mp4"), anyLong(), anyLong(), any(OutputStream.class));
+    }
+}
@@ -0,0 +1,155 @@
+package com.avstream.media.service;
+
+import com.avstream.media.entity.MediaFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 媒体文件下载服务测试类
+ *
+ * @author AV Stream Team
+ */
+@ExtendWith(MockitoExtension.class)
+class MediaDownloadServiceTest {
+
+    private static final String OBJECT_NAME = "test-uuid-123.mp4";
+    private static final long SIZE = 1000L;
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @Mock
+    private StorageService storageService;
+
+    private MediaDownloadService downloadService;
+
+    private MediaFile mediaFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        downloadService = new MediaDownloadService(storageService);
+
+        mediaFile = MediaFile.builder()
+                .fileUuid("test-uuid-123")
+                .filename("test.mp4")
+                .build();
+        mediaFile.setFilePath(OBJECT_NAME);
+        mediaFile.setMimeType("video/mp4");
+        mediaFile.setStatus(MediaFile.MediaStatus.UPLOADED);
+
+        StoredObjectInfo info = StoredObjectInfo.of(OBJECT_NAME, SIZE, "abc");
+        info.setLastModified(LAST_MODIFIED);
+        lenient().when(storageService.statObject(OBJECT_NAME)).thenReturn(info);
+    }
+
+    @Test
+    void testServe_UploadInProgress_ReturnsConflict() throws Exception {
+        mediaFile.setStatus(MediaFile.MediaStatus.UPLOADING);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, new MockHttpServletRequest(), response, true);
+
+        assertEquals(409, response.getStatus());
+        verify(storageService, never()).statObject(anyString());
+        verify(storageService, never()).transferTo(anyString(), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_NoStoredObject_ReturnsNotFound() throws Exception {
+        mediaFile.setFilePath(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, new MockHttpServletRequest(), response, true);
+
+        assertEquals(404, response.getStatus());
+        verify(storageService, never()).statObject(any());
+    }
+
+    @Test
+    void testServe_FullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, true);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(SIZE, response.getContentLengthLong());
+        assertEquals("\"abc\"", response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        verify(storageService).transferTo(eq(OBJECT_NAME), eq(0L), eq(SIZE), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_PartialContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, true);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader("Content-Range"));
+        assertEquals(100L, response.getContentLengthLong());
+        verify(storageService).transferTo(eq(OBJECT_NAME), eq(100L), eq(100L), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_SuffixRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=-200");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, false);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 800-999/1000", response.getHeader("Content-Range"));
+        verify(storageService).transferTo(eq(OBJECT_NAME), eq(800L), eq(200L), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_RangeNotSatisfiable() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=5000-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, true);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader("Content-Range"));
+        verify(storageService, never()).transferTo(anyString(), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_IfRangeMismatch_ReturnsFullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100-199");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, true);
+
+        assertEquals(200, response.getStatus());
+        verify(storageService).transferTo(eq(OBJECT_NAME), eq(0L), eq(SIZE), any(OutputStream.class));
+    }
+
+    @Test
+    void testServe_NotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"abc\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloadService.serve(mediaFile, request, response, true);
+
+        assertEquals(304, response.getStatus());
+        verify(storageService, never()).transferTo(anyString(), anyLong(), anyLong(), any(OutputStream.class));
+    }
+}
@@ -0,0 +1,129 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.MediaFileCacheProperties;
+import com.avstream.media.entity.MediaFile;
+import com.avstream.media.repository.MediaFileRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 媒体文件记录缓存测试类
+ *
+ * @author AV Stream Team
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MediaFileCacheTest {
+
+    private static final String FILE_UUID = "f0e1d2c3-0000-0000-0000-000000000001";
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private MediaFileCache mediaFileCache;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        mediaFileCache = new MediaFileCache(mediaFileRepository, redisTemplate, listenerContainer, objectMapper,
+                new MediaFileCacheProperties());
+        mediaFileCache.initialize();
+    }
+
+    @Test
+    void testLoadsOnceAndSharesThroughRedis() throws Exception {
+        when(mediaFileRepository.findByFileUuid(FILE_UUID))
+                .thenReturn(Optional.of(mediaFile(MediaFile.MediaStatus.UPLOADED)));
+
+        assertEquals("/media/a.mp4", mediaFileCache.get(FILE_UUID).orElseThrow().filePath());
+        assertTrue(mediaFileCache.get(FILE_UUID).orElseThrow().isPublic());
+        verify(mediaFileRepository, times(1)).findByFileUuid(FILE_UUID);
+
+        // 写入Redis的副本可被其他节点还原
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).set(eq("media:file:" + FILE_UUID), json.capture(), any(Duration.class));
+        MediaFileSnapshot shared = objectMapper.readValue(json.getValue(), MediaFileSnapshot.class);
+        assertEquals(MediaFile.FileType.VIDEO, shared.fileType());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 8, 0), shared.createdAt());
+
+        // 清除后重新从数据库加载
+        mediaFileCache.evict(FILE_UUID);
+        verify(redisTemplate).delete(List.of("media:file:" + FILE_UUID));
+        verify(redisTemplate).convertAndSend("media:file:invalidate", FILE_UUID);
+        mediaFileCache.get(FILE_UUID);
+        verify(mediaFileRepository, times(2)).findByFileUuid(FILE_UUID);
+    }
+
+    @Test
+    void testUploadingFileNotCached() {
+        when(mediaFileRepository.findByFileUuid(FILE_UUID))
+                .thenReturn(Optional.of(mediaFile(MediaFile.MediaStatus.UPLOADING)));
+
+        assertTrue(mediaFileCache.get(FILE_UUID).isPresent());
+        assertTrue(mediaFileCache.get(FILE_UUID).isPresent());
+
+        verify(mediaFileRepository, times(2)).findByFileUuid(FILE_UUID);
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void testRevokesWriteBackRacingWithEvict() {
+        when(mediaFileRepository.findByFileUuid(FILE_UUID))
+                .thenReturn(Optional.of(mediaFile(MediaFile.MediaStatus.UPLOADED)));
+        // 读取数据库期间其他节点修改并清除了该记录
+        when(valueOperations.get("media:file:evicted:" + FILE_UUID))
+                .thenReturn(String.valueOf(System.currentTimeMillis()));
+
+        assertTrue(mediaFileCache.get(FILE_UUID).isPresent());
+        verify(redisTemplate).delete("media:file:" + FILE_UUID);
+
+        mediaFileCache.get(FILE_UUID);
+        verify(mediaFileRepository, times(2)).findByFileUuid(FILE_UUID);
+    }
+
+    private static MediaFile mediaFile(MediaFile.MediaStatus status) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(1L);
+        mediaFile.setFileUuid(FILE_UUID);
+        mediaFile.setUserId(7L);
+        mediaFile.setFilename("a.mp4");
+        mediaFile.setFilePath("/media/a.mp4");
+        mediaFile.setFileSize(1024L);
+        mediaFile.setFileType(MediaFile.FileType.VIDEO);
+        mediaFile.setStatus(status);
+        mediaFile.setIsPublic(true);
+        mediaFile.setCreatedAt(LocalDateTime.of(2024, 5, 1, 8, 0));
+        return mediaFile;
+    }
+}
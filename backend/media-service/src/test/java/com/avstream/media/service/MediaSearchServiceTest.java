@@ -0,0 +1,29 @@
+package com.avstream.media.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 媒体文件搜索测试类
+ *
+ * @author AV Stream Team
+ */
+class MediaSearchServiceTest {
+
+    @Test
+    void testPrefixQueryDropsOperators() {
+        assertEquals("summer:* & holi:*", MediaSearchService.toPrefixQuery("summer holi"));
+        // tsquery运算符和引号不会进入查询
+        assertEquals("a:* & b:* & 视频:*", MediaSearchService.toPrefixQuery("a'&!(b) | 视频"));
+        assertEquals("", MediaSearchService.toPrefixQuery("&&--"));
+    }
+
+    @Test
+    void testHighlightEscapesUserContent() {
+        String fragment = "<script>\u0002holiday\u0003</script>.mp4";
+
+        assertEquals("&lt;script&gt;<em>holiday</em>&lt;/script&gt;.mp4", MediaSearchService.highlight(fragment));
+        assertNull(MediaSearchService.highlight(null));
+    }
+}
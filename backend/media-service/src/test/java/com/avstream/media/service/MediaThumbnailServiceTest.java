@@ -0,0 +1,37 @@
+package com.avstream.media.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缩略图生成服务测试类
+ *
+ * @author AV Stream Team
+ */
+class MediaThumbnailServiceTest {
+
+    @Test
+    void testSpriteIndexSpansSheets() {
+        // 2x2网格，每张雪碧图4个小图；45秒视频按10秒间隔共5个小图，跨两张雪碧图
+        String vtt = MediaThumbnailService.buildSpriteIndex(45.5, 10, 2, 2, 160, 90,
+                List.of("sprite-001.jpg", "sprite-002.jpg"));
+
+        assertTrue(vtt.startsWith("WEBVTT\n"));
+        assertTrue(vtt.contains("00:00:00.000 --> 00:00:10.000\nsprite-001.jpg#xywh=0,0,160,90\n"));
+        assertTrue(vtt.contains("00:00:30.000 --> 00:00:40.000\nsprite-001.jpg#xywh=160,90,160,90\n"));
+        // 最后一个小图截止到视频结尾
+        assertTrue(vtt.endsWith("00:00:40.000 --> 00:00:45.500\nsprite-002.jpg#xywh=0,0,160,90\n"));
+    }
+
+    @Test
+    void testSpriteIndexStopsAtGeneratedSheets() {
+        String vtt = MediaThumbnailService.buildSpriteIndex(3700, 10, 10, 10, 160, 90, List.of("sprite-001.jpg"));
+
+        // 只生成了一张雪碧图时，索引只覆盖其中的100个小图
+        assertEquals(100, vtt.split("-->").length - 1);
+        assertTrue(vtt.contains("00:16:30.000 --> 00:16:40.000\nsprite-001.jpg#xywh=1440,810,160,90\n"));
+    }
+}
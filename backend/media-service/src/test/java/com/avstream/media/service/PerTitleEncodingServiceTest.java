@@ -0,0 +1,79 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.entity.MediaTranscode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按内容复杂度选择码率阶梯测试类
+ *
+ * @author AV Stream Team
+ */
+class PerTitleEncodingServiceTest {
+
+    private final PerTitleEncodingService service =
+            new PerTitleEncodingService(null, null, new TranscodeProperties(), null);
+
+    @Test
+    void testLowComplexityLowersBitrate() {
+        MediaTranscode hd = rendition("1920x1080", 4_000_000L);
+        MediaTranscode sd = rendition("854x480", 1_000_000L);
+
+        List<MediaTranscode> rungs = service.applyLadder(List.of(hd, sd), 400, 1920, 1080);
+
+        // 400kbps × (1920×1080 / 640×360)^0.75 ≈ 2078kbps，约为模板码率的一半
+        assertEquals(List.of(hd, sd), rungs);
+        assertEquals(2_080_000L, hd.getVideoBitrate());
+        assertEquals(620_000L, sd.getVideoBitrate());
+        assertEquals("1920x1080@2080k,854x480@620k", sd.getEncodingLadder());
+        assertEquals(400, hd.getComplexityKbps());
+    }
+
+    @Test
+    void testVeryLowComplexityClampedToMinRatio() {
+        MediaTranscode sd = rendition("854x480", 1_000_000L);
+
+        service.applyLadder(List.of(sd), 100, null, null);
+
+        // 换算结果低于模板码率的40%，取下限
+        assertEquals(400_000L, sd.getVideoBitrate());
+    }
+
+    @Test
+    void testHighComplexityCappedAndNoUpscale() {
+        MediaTranscode hd = rendition("1920x1080", 4_000_000L);
+
+        service.applyLadder(List.of(hd), 5000, 1280, 720);
+
+        // 片源只有720p，不放大
+        assertEquals("1280x720", hd.getResolution());
+        // 高复杂度码率不超过模板码率的1.2倍
+        assertEquals(4_800_000L, hd.getVideoBitrate());
+    }
+
+    @Test
+    void testSmallSourceMergesRungsWithSameResolution() {
+        MediaTranscode hd = rendition("1920x1080", 4_000_000L);
+        MediaTranscode hdReady = rendition("1280x720", 2_500_000L);
+        MediaTranscode sd = rendition("854x480", 1_000_000L);
+
+        List<MediaTranscode> rungs = service.applyLadder(List.of(hd, hdReady, sd), 400, 854, 480);
+
+        // 三档都缩小到片源分辨率，合并为排在最前的一档，码率取原本就是该分辨率的一档
+        assertEquals(List.of(hd), rungs);
+        assertEquals("854x480", hd.getResolution());
+        assertEquals(620_000L, hd.getVideoBitrate());
+        assertEquals("854x480@620k", sd.getEncodingLadder());
+    }
+
+    private static MediaTranscode rendition(String resolution, long bitrate) {
+        MediaTranscode transcode = new MediaTranscode();
+        transcode.setResolution(resolution);
+        transcode.setVideoBitrate(bitrate);
+        return transcode;
+    }
+}
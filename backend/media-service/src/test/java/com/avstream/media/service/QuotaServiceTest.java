@@ -0,0 +1,156 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.MediaServiceConfig;
+import com.avstream.media.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户存储配额服务测试类
+ *
+ * 验证预留、提交、释放以及用量初始化分别由一次脚本调用（或一次哈希删除）完成，键和参数正确
+ *
+ * @author AV Stream Team
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class QuotaServiceTest {
+
+    private static final Long USER_ID = 7L;
+    private static final String FILE_UUID = "a1b2c3d4-0000-0000-0000-000000000001";
+    private static final String USAGE_KEY = StorageUsageService.userKey(USER_ID);
+    private static final String RESERVATION_KEY = "media:quota:reservations:" + USER_ID;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    private final MediaServiceConfig config = new MediaServiceConfig();
+
+    /** 依次记录的脚本调用：脚本、键、参数 */
+    private final List<ScriptCall> scriptCalls = new ArrayList<>();
+
+    private QuotaService quotaService;
+
+    @BeforeEach
+    void setUp() {
+        config.setUserStorageQuota(1000L);
+        config.setQuotaReservationTtlHours(1);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        quotaService = new QuotaService(redisTemplate, new StorageUsageService(redisTemplate),
+                mediaFileRepository, config);
+    }
+
+    @Test
+    void testReserve_SeedsUsageInOneScriptBeforeReserving() {
+        when(hashOperations.hasKey(USAGE_KEY, "bytes")).thenReturn(false);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{300L, 2L});
+        when(mediaFileRepository.sumStorageUsageByUserId(USER_ID)).thenReturn(rows);
+        answerScripts(1L);
+
+        assertTrue(quotaService.reserve(USER_ID, FILE_UUID, 200L));
+
+        assertEquals(2, scriptCalls.size());
+        ScriptCall init = scriptCalls.get(0);
+        assertTrue(init.script().contains("HEXISTS"));
+        assertEquals(List.of(USAGE_KEY), init.keys());
+        assertEquals(List.of("300", "2"), init.args());
+
+        ScriptCall reserve = scriptCalls.get(1);
+        assertEquals(List.of(USAGE_KEY, RESERVATION_KEY), reserve.keys());
+        assertEquals(FILE_UUID, reserve.args().get(0));
+        assertEquals("200", reserve.args().get(1));
+        assertEquals("1000", reserve.args().get(2));
+        assertEquals(String.valueOf(3600_000L), reserve.args().get(4));
+
+        // 初始化不再分两次写入字段
+        verify(hashOperations, never()).putIfAbsent(any(), any(), any());
+    }
+
+    @Test
+    void testReserve_SkipsSeedingWhenUsageLoaded() {
+        when(hashOperations.hasKey(USAGE_KEY, "bytes")).thenReturn(true);
+        answerScripts(1L);
+
+        assertTrue(quotaService.reserve(USER_ID, FILE_UUID, 200L));
+
+        assertEquals(1, scriptCalls.size());
+        verify(mediaFileRepository, never()).sumStorageUsageByUserId(any());
+    }
+
+    @Test
+    void testReserve_RejectedWhenQuotaExceeded() {
+        when(hashOperations.hasKey(USAGE_KEY, "bytes")).thenReturn(true);
+        answerScripts(0L);
+
+        assertFalse(quotaService.reserve(USER_ID, FILE_UUID, 2000L));
+    }
+
+    @Test
+    void testCommit_MovesReservationToUsageInOneScript() {
+        answerScripts(1L);
+
+        quotaService.commit(USER_ID, FILE_UUID, 180L);
+
+        assertEquals(1, scriptCalls.size());
+        ScriptCall commit = scriptCalls.get(0);
+        assertTrue(commit.script().contains("HDEL"));
+        assertTrue(commit.script().contains("HINCRBY"));
+        assertEquals(List.of(USAGE_KEY, RESERVATION_KEY), commit.keys());
+        assertEquals(List.of(FILE_UUID, "180"), commit.args());
+    }
+
+    @Test
+    void testCommit_RedisFailureDoesNotPropagate() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertDoesNotThrow(() -> quotaService.commit(USER_ID, FILE_UUID, 180L));
+    }
+
+    @Test
+    void testRelease_DeletesReservation() {
+        quotaService.release(USER_ID, FILE_UUID);
+
+        verify(hashOperations).delete(RESERVATION_KEY, FILE_UUID);
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void answerScripts(Long result) {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            RedisScript<Long> script = (RedisScript<Long>) arguments[0];
+            List<String> keys = (List<String>) arguments[1];
+            List<String> args = Arrays.stream(arguments, 2, arguments.length).map(String::valueOf).toList();
+            scriptCalls.add(new ScriptCall(script.getScriptAsString(), keys, args));
+            return result;
+        });
+    }
+
+    private record ScriptCall(String script, List<String> keys, List<String> args) {
+    }
+}
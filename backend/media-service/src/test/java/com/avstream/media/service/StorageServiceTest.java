@@ -84,10 +84,10 @@ class StorageServiceTest {
         doNothing().when(minioClient).putObject(any(PutObjectArgs.class));
 
         // 执行测试
-        boolean result = storageService.uploadChunk(multipartFile, fileUuid, chunkNumber);
+        String sha256 = storageService.uploadChunk(multipartFile, fileUuid, chunkNumber);
 
-        // 验证结果
-        assertTrue(result);
+        // 验证结果：返回分片内容摘要
+        assertEquals(64, sha256.length());
         
         // 验证方法调用
         verify(minioClient, times(1)).putObject(any(PutObjectArgs.class));
@@ -98,21 +98,26 @@ class StorageServiceTest {
         // 准备测试数据
         String fileUuid = "test-uuid-123";
         int totalChunks = 3;
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(15L * 1024 * 1024);
+        when(stat.etag()).thenReturn("etag-3");
         
         // 模拟MinIO客户端行为
-        when(minioClient.listObjects(any(ListObjectsArgs.class)))
-                .thenReturn(mock(Iterable.class));
-        doNothing().when(minioClient).putObject(any(PutObjectArgs.class));
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(stat);
 
         // 执行测试
-        boolean result = storageService.mergeChunks(fileUuid, totalChunks);
+        StoredObjectInfo result = storageService.mergeChunks(fileUuid, totalChunks, "video.mp4");
 
         // 验证结果
-        assertTrue(result);
+        assertEquals(fileUuid + ".mp4", result.getObjectName());
+        assertEquals(15L * 1024 * 1024, result.getSize());
+        assertEquals("etag-3", result.getEtag());
         
-        // 验证方法调用
-        verify(minioClient, times(1)).listObjects(any(ListObjectsArgs.class));
-        verify(minioClient, times(1)).putObject(any(PutObjectArgs.class));
+        // 验证方法调用：服务端合并，不下载分片也不回读合并结果
+        verify(minioClient, times(1)).composeObject(any(ComposeObjectArgs.class));
+        verify(minioClient, never()).getObject(any(GetObjectArgs.class));
+        // 合并结果提交前保留分片，由调用方提交后删除
+        verify(minioClient, never()).removeObjects(any(RemoveObjectsArgs.class));
     }
 
     @Test
@@ -161,7 +166,7 @@ class StorageServiceTest {
         // 模拟MinIO客户端行为
         when(minioClient.listObjects(any(ListObjectsArgs.class)))
                 .thenReturn(mock(Iterable.class));
-        doNothing().when(minioClient).removeObject(any(RemoveObjectArgs.class));
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class))).thenReturn(java.util.Collections.emptyList());
 
         // 执行测试
         boolean result = storageService.cancelUpload(fileUuid);
@@ -169,8 +174,9 @@ class StorageServiceTest {
         // 验证结果
         assertTrue(result);
         
-        // 验证方法调用
+        // 验证方法调用：按前缀列举后批量删除，不再逐个删除分片
         verify(minioClient, times(1)).listObjects(any(ListObjectsArgs.class));
+        verify(minioClient, never()).removeObject(any(RemoveObjectArgs.class));
     }
 
     @Test
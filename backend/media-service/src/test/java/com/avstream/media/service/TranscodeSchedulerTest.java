@@ -0,0 +1,151 @@
+package com.avstream.media.service;
+
+import com.avstream.media.config.TranscodeProperties;
+import com.avstream.media.exception.TranscodeException;
+import com.avstream.media.repository.MediaTranscodeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 转码调度器与租约服务测试类
+ *
+ * 入队准入按队列深度和单用户排队数限制；租约的条件更新由数据库语句保证，这里验证调度器按语句结果处理：
+ * 租约已被其他节点接管时本节点不再持有、续约不生效；过期租约被回收后任务重新领取执行。
+ * 租约到期时间由数据库按租约时长计算，调度器只传递时长。
+ *
+ * @author AV Stream Team
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TranscodeSchedulerTest {
+
+    private static final String WORKER_ID = "node-a";
+    private static final Long TRANSCODE_ID = 42L;
+
+    @Mock
+    private MediaTranscodeRepository transcodeRepository;
+
+    @Mock
+    private TranscodeService transcodeService;
+
+    private final TranscodeProperties transcodeProperties = new TranscodeProperties();
+
+    private TranscodeScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        transcodeProperties.setWorkerId(WORKER_ID);
+        transcodeProperties.setMaxConcurrentJobs(2);
+        TranscodeLeaseService leaseService = new TranscodeLeaseService(transcodeRepository, transcodeProperties);
+        scheduler = new TranscodeScheduler(transcodeRepository, transcodeService, transcodeProperties, leaseService);
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testCheckAdmission_RejectsBatchOverQueueDepth() {
+        when(transcodeRepository.countPending()).thenReturn(499L);
+        when(transcodeRepository.countPendingByUserId(1L)).thenReturn(0L);
+
+        scheduler.checkAdmission(1L, 1);
+        TranscodeException e = assertThrows(TranscodeException.class, () -> scheduler.checkAdmission(1L, 2));
+        assertEquals(TranscodeException.queueFull().getCode(), e.getCode());
+    }
+
+    @Test
+    void testCheckAdmission_RejectsOverPerUserLimit() {
+        when(transcodeRepository.countPending()).thenReturn(0L);
+        when(transcodeRepository.countPendingByUserId(1L)).thenReturn(48L);
+
+        scheduler.checkAdmission(1L, 2);
+        assertThrows(TranscodeException.class, () -> scheduler.checkAdmission(1L, 3));
+    }
+
+    @Test
+    void testHoldsLease_RejectsStaleOwner() {
+        // 租约过期后已被其他节点重新领取
+        when(transcodeRepository.findLeaseOwner(TRANSCODE_ID)).thenReturn("node-b");
+
+        assertFalse(scheduler.holdsLease(TRANSCODE_ID));
+
+        when(transcodeRepository.findLeaseOwner(TRANSCODE_ID)).thenReturn(WORKER_ID);
+        assertTrue(scheduler.holdsLease(TRANSCODE_ID));
+    }
+
+    @Test
+    void testRenew_StaleOwnerRenewsNothing() {
+        // 续约语句按 lease_owner 匹配，租约已被接管时不更新任何行
+        when(transcodeRepository.renewLeases(anyList(), eq(WORKER_ID), anyLong())).thenReturn(0);
+        TranscodeLeaseService leaseService = new TranscodeLeaseService(transcodeRepository, transcodeProperties);
+
+        assertEquals(0, leaseService.renew(Set.of(TRANSCODE_ID), WORKER_ID));
+        verify(transcodeRepository).renewLeases(eq(List.of(TRANSCODE_ID)), eq(WORKER_ID),
+                eq(transcodeProperties.getLeaseDurationMs()));
+    }
+
+    @Test
+    void testClaim_SkipsRowsLeasedByOtherNodes() {
+        // 候选中 2 已被其他节点锁定，只领取 1 和 3，以及 1 的同组码率 11
+        when(transcodeRepository.lockPendingIds(List.of(1L, 2L, 3L))).thenReturn(List.of(3L, 1L));
+        when(transcodeRepository.lockPendingJobSiblings(List.of(1L, 3L))).thenReturn(List.of(11L));
+        TranscodeLeaseService leaseService = new TranscodeLeaseService(transcodeRepository, transcodeProperties);
+
+        List<Long> claimed = leaseService.claim(List.of(1L, 2L, 3L), 2, WORKER_ID);
+
+        assertEquals(List.of(1L, 3L), claimed);
+        verify(transcodeRepository).acquireLeases(eq(List.of(1L, 3L, 11L)), eq(WORKER_ID),
+                eq(transcodeProperties.getLeaseDurationMs()));
+    }
+
+    @Test
+    void testReapExpiredLeases_RequeuesAndRedispatches() {
+        when(transcodeRepository.requeueExpiredLeases()).thenReturn(1);
+        when(transcodeRepository.findNextDispatchIds(anyInt())).thenReturn(List.of(TRANSCODE_ID), List.of());
+        when(transcodeRepository.lockPendingIds(List.of(TRANSCODE_ID))).thenReturn(List.of(TRANSCODE_ID));
+
+        scheduler.reapExpiredLeases();
+
+        verify(transcodeRepository).requeueExpiredLeases();
+
+        // 退回队列的任务被本节点重新领取并执行
+        verify(transcodeRepository, timeout(5000))
+                .acquireLeases(eq(List.of(TRANSCODE_ID)), eq(WORKER_ID), anyLong());
+        verify(transcodeService, timeout(5000)).executeTranscodeTask(TRANSCODE_ID);
+    }
+
+    @Test
+    void testReapExpiredLeases_NothingExpired() {
+        when(transcodeRepository.requeueExpiredLeases()).thenReturn(0);
+
+        scheduler.reapExpiredLeases();
+
+        verify(transcodeRepository).requeueExpiredLeases();
+        verify(transcodeRepository, after(200).never()).findNextDispatchIds(anyInt());
+    }
+
+    @Test
+    void testReapExpiredLeases_ApiModeDoesNotReap() {
+        transcodeProperties.setMode(TranscodeProperties.Mode.API);
+
+        scheduler.reapExpiredLeases();
+
+        verify(transcodeRepository, never()).requeueExpiredLeases();
+    }
+}
@@ -0,0 +1,78 @@
+package com.avstream.media.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FFmpeg进度解析测试类
+ *
+ * @author AV Stream Team
+ */
+class FFmpegProgressParserTest {
+
+    private static final String OUTPUT = """
+            frame=120
+            fps=59.8
+            bitrate=1520.3kbits/s
+            out_time_us=4000000
+            out_time_ms=4000000
+            out_time=00:00:04.000000
+            speed=1.99x
+            progress=continue
+            frame=300
+            out_time_us=10010000
+            speed=2.5x
+            progress=end
+            """;
+
+    @Test
+    void testParseProgressBlocks() throws IOException {
+        List<Long> times = new ArrayList<>();
+        List<Double> speeds = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+
+        new FFmpegProgressParser().parse(stream(OUTPUT), (outTimeUs, speed, end) -> {
+            times.add(outTimeUs);
+            speeds.add(speed);
+            ends.add(end);
+        });
+
+        assertEquals(2, times.size());
+        assertEquals(4_000_000L, times.get(0));
+        assertEquals(1.99, speeds.get(0), 1e-9);
+        assertFalse(ends.get(0));
+        assertEquals(10_010_000L, times.get(1));
+        assertEquals(2.5, speeds.get(1), 1e-9);
+        assertTrue(ends.get(1));
+    }
+
+    @Test
+    void testUnknownValuesAndSplitReads() throws IOException {
+        String output = "out_time_us=N/A\r\nspeed=N/A\r\nprogress=continue\r\nout_time_us=42\nspeed=0.5x\nprogress=end";
+        List<String> events = new ArrayList<>();
+
+        // 每次只返回一个字节，验证跨读取边界的行拼接
+        InputStream slow = new ByteArrayInputStream(output.getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(1, len));
+            }
+        };
+        new FFmpegProgressParser().parse(slow, (outTimeUs, speed, end) ->
+                events.add(outTimeUs + "/" + speed + "/" + end));
+
+        assertEquals(List.of("-1/-1.0/false", "42/0.5/true"), events);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
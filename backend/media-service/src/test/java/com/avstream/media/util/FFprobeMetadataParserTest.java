@@ -0,0 +1,107 @@
+package com.avstream.media.util;
+
+import com.avstream.media.entity.MediaMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FFprobe元数据解析测试类
+ *
+ * @author AV Stream Team
+ */
+class FFprobeMetadataParserTest {
+
+    private static final String OUTPUT = """
+            {
+                "streams": [
+                    {
+                        "index": 0,
+                        "codec_name": "mjpeg",
+                        "codec_type": "video",
+                        "width": 600,
+                        "height": 600,
+                        "disposition": { "default": 0, "attached_pic": 1 }
+                    },
+                    {
+                        "index": 1,
+                        "codec_name": "h264",
+                        "codec_type": "video",
+                        "width": 1920,
+                        "height": 1080,
+                        "pix_fmt": "yuv420p",
+                        "display_aspect_ratio": "16:9",
+                        "r_frame_rate": "30000/1001",
+                        "avg_frame_rate": "30000/1001",
+                        "bit_rate": "4500000",
+                        "side_data_list": [ { "side_data_type": "Display Matrix", "rotation": 0 } ],
+                        "disposition": { "default": 1, "attached_pic": 0 },
+                        "tags": { "language": "und" }
+                    },
+                    {
+                        "index": 2,
+                        "codec_name": "aac",
+                        "codec_type": "audio",
+                        "sample_rate": "48000",
+                        "channels": 2,
+                        "bits_per_sample": 0,
+                        "bit_rate": "128000"
+                    }
+                ],
+                "format": {
+                    "format_name": "mov,mp4,m4a,3gp,3g2,mj2",
+                    "duration": "125.458000",
+                    "size": "73400320",
+                    "bit_rate": "4680512",
+                    "tags": { "encoder": "Lavf60.3.100", "creation_time": "2024-05-01T08:00:00.000000Z" }
+                }
+            }
+            """;
+
+    private final FFprobeMetadataParser parser = new FFprobeMetadataParser();
+
+    @Test
+    void testParseSkipsCoverArtAndNestedData() throws IOException {
+        MediaMetadata metadata = parse(OUTPUT);
+
+        assertEquals("h264", metadata.getVideoCodec());
+        assertEquals(1920, metadata.getWidth());
+        assertEquals(1080, metadata.getHeight());
+        assertEquals(4_500_000L, metadata.getVideoBitrate());
+        assertEquals(new BigDecimal("29.97"), metadata.getFrameRate());
+        assertEquals("16:9", metadata.getAspectRatio());
+
+        assertEquals("aac", metadata.getAudioCodec());
+        assertEquals(48000, metadata.getSampleRate());
+        assertEquals(2, metadata.getChannels());
+        assertNull(metadata.getBitDepth());
+
+        assertEquals(new BigDecimal("125.458000"), metadata.getDuration());
+        assertEquals("mov", metadata.getContainerFormat());
+        assertEquals(73_400_320L, metadata.getFileSize());
+        assertEquals("Lavf60.3.100", metadata.getEncoder());
+    }
+
+    @Test
+    void testAudioOnlyFile() throws IOException {
+        MediaMetadata metadata = parse("""
+                {"streams":[{"codec_name":"flac","codec_type":"audio","sample_rate":"44100","channels":2,
+                "bits_per_raw_sample":"24"}],"format":{"format_name":"flac","duration":"200.5","bit_rate":"900000"}}
+                """);
+
+        assertNull(metadata.getVideoCodec());
+        assertNull(metadata.getVideoBitrate());
+        assertEquals(24, metadata.getBitDepth());
+        assertEquals("flac", metadata.getContainerFormat());
+        assertEquals(new BigDecimal("200.5"), metadata.getDuration());
+    }
+
+    private MediaMetadata parse(String json) throws IOException {
+        return parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
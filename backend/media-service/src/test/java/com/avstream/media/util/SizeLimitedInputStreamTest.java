@@ -0,0 +1,32 @@
+package com.avstream.media.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限长输入流测试类
+ *
+ * @author AV Stream Team
+ */
+class SizeLimitedInputStreamTest {
+
+    @Test
+    void testReadsUpToLimit() throws IOException {
+        try (SizeLimitedInputStream in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[100]), 100)) {
+            assertEquals(100, in.readAllBytes().length);
+            assertEquals(100, in.getCount());
+        }
+    }
+
+    @Test
+    void testAbortsWhenLimitExceeded() {
+        InputStream in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+
+        assertThrows(SizeLimitedInputStream.LimitExceededException.class, in::readAllBytes);
+    }
+}